@@ -0,0 +1,152 @@
+package dev.rilling.webmention4j.benchmarks;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates documents resembling real-world sources, e.g. blog posts with many unrelated links.
+ * Generation is deterministic, so that runs are comparable.
+ */
+public final class Corpus {
+
+	/**
+	 * The URL that is mentioned.
+	 */
+	public static final URI TARGET = URI.create("https://example.com/blog/mentioned-post");
+
+	private static final String[] WORDS = {"lorem", "ipsum", "dolor", "sit", "amet", "consectetur", "adipiscing",
+		"elit", "sed", "do", "eiusmod", "tempor", "incididunt", "ut", "labore", "et", "dolore", "magna", "aliqua"};
+
+	private Corpus() {
+	}
+
+	/**
+	 * Format of a generated document.
+	 */
+	public enum Format {
+		/**
+		 * Blog post with paragraphs containing anchors. The mention is an anchor with {@code rel="webmention"}, so
+		 * that the same documents can be used for endpoint discovery.
+		 */
+		HTML,
+		/**
+		 * Plain text with URLs in between.
+		 */
+		TEXT,
+		/**
+		 * JSON feed with one object per entry.
+		 */
+		JSON
+	}
+
+	/**
+	 * Position of the mention of {@link #TARGET} in a generated document.
+	 */
+	public enum Position {
+		START,
+		MIDDLE,
+		END,
+		/**
+		 * The document does not mention the target, so that it has to be read completely.
+		 */
+		ABSENT
+	}
+
+	/**
+	 * Generates a document.
+	 *
+	 * @param format    Format of the document.
+	 * @param sizeBytes Approximate size of the document.
+	 * @param position  Position of the mention.
+	 * @return The UTF-8 encoded document.
+	 */
+	public static byte @NotNull [] generate(@NotNull Format format, int sizeBytes, @NotNull Position position) {
+		Random random = new Random(sizeBytes);
+		List<String> blocks = new ArrayList<>();
+		int blocksBytes = 0;
+		while (blocksBytes < sizeBytes) {
+			String block = createBlock(format, random, blocks.size());
+			blocks.add(block);
+			blocksBytes += block.length();
+		}
+		String mention = createMention(format);
+		switch (position) {
+			case START -> blocks.add(0, mention);
+			case MIDDLE -> blocks.add(blocks.size() / 2, mention);
+			case END -> blocks.add(mention);
+			case ABSENT -> {
+			}
+		}
+
+		StringBuilder builder = new StringBuilder(blocksBytes + mention.length() + 256);
+		switch (format) {
+			case HTML -> builder.append("""
+				<!DOCTYPE html>
+				<html lang="en">
+				<head>
+					<meta charset="utf-8">
+					<title>A Post</title>
+				</head>
+				<body>
+				<article>
+				""");
+			case JSON -> builder.append("{\"version\":\"https://jsonfeed.org/version/1.1\",\"items\":[");
+			case TEXT -> {
+			}
+		}
+		for (int i = 0; i < blocks.size(); i++) {
+			if (format == Format.JSON && i > 0) {
+				builder.append(',');
+			}
+			builder.append(blocks.get(i));
+		}
+		switch (format) {
+			case HTML -> builder.append("</article>\n</body>\n</html>\n");
+			case JSON -> builder.append("]}");
+			case TEXT -> {
+			}
+		}
+		return builder.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static String createBlock(Format format, Random random, int index) {
+		String url = "https://example.org/posts/%d".formatted(index);
+		return switch (format) {
+			// Some anchors have a rel value, so that link parsing has more to do than ignoring them.
+			case HTML -> "<p>%s <a href=\"%s\"%s>%s</a> %s</p>\n".formatted(createSentence(random),
+				url,
+				index % 4 == 0 ? " rel=\"nofollow\"" : "",
+				createSentence(random),
+				createSentence(random));
+			case TEXT -> "%s %s %s\n".formatted(createSentence(random), url, createSentence(random));
+			case JSON -> "{\"id\":\"%d\",\"url\":\"%s\",\"content_text\":\"%s\"}".formatted(index,
+				url,
+				createSentence(random));
+		};
+	}
+
+	private static String createMention(Format format) {
+		return switch (format) {
+			case HTML -> "<p>As written in <a href=\"%s\" rel=\"webmention\">this post</a>.</p>\n".formatted(TARGET);
+			case TEXT -> "As written in %s.\n".formatted(TARGET);
+			case JSON -> "{\"id\":\"mention\",\"url\":\"%s\",\"content_text\":\"As written.\"}".formatted(TARGET);
+		};
+	}
+
+	private static String createSentence(Random random) {
+		int length = 5 + random.nextInt(15);
+		StringBuilder sentence = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			if (i > 0) {
+				sentence.append(' ');
+			}
+			sentence.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		return sentence.toString();
+	}
+}
@@ -0,0 +1,93 @@
+package dev.rilling.webmention4j.benchmarks;
+
+import dev.rilling.webmention4j.client.internal.link.HeaderLinkParser;
+import dev.rilling.webmention4j.client.internal.link.HtmlLinkParser;
+import dev.rilling.webmention4j.client.internal.link.Link;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks parsing links during endpoint discovery, from the body using {@link HtmlLinkParser} and from headers
+ * using {@link HeaderLinkParser}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LinkParserBenchmark {
+
+	private static final URI LOCATION = URI.create("https://example.com/blog/post");
+
+	private final HtmlLinkParser htmlLinkParser = new HtmlLinkParser();
+	private final HeaderLinkParser headerLinkParser = new HeaderLinkParser();
+
+	@Benchmark
+	public List<Link> parseHtml(HtmlDocument htmlDocument) throws IOException {
+		return htmlLinkParser.parse(LOCATION, Responses.create(htmlDocument.document, ContentType.TEXT_HTML));
+	}
+
+	@Benchmark
+	public List<Link> parseHeaders(LinkHeaders linkHeaders) throws IOException {
+		ClassicHttpResponse response = Responses.create(new byte[0], ContentType.TEXT_HTML);
+		for (String linkHeaderValue : linkHeaders.values) {
+			response.addHeader(HttpHeaders.LINK, linkHeaderValue);
+		}
+		return headerLinkParser.parse(LOCATION, response);
+	}
+
+	/**
+	 * Separate from {@link LinkHeaders}, so that benchmarks are not repeated for parameters they do not use.
+	 */
+	@State(Scope.Benchmark)
+	public static class HtmlDocument {
+		@Param({"2048", "65536", "1048576", "4194304"})
+		public int sizeBytes;
+
+		@Param({"START", "MIDDLE", "END", "ABSENT"})
+		public Corpus.Position position;
+
+		byte[] document;
+
+		@Setup
+		public void setUp() {
+			document = Corpus.generate(Corpus.Format.HTML, sizeBytes, position);
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class LinkHeaders {
+		@Param({"1", "8"})
+		public int headerCount;
+
+		String[] values;
+
+		@Setup
+		public void setUp() {
+			values = new String[headerCount];
+			for (int i = 0; i < headerCount - 1; i++) {
+				values[i] = "<https://example.com/assets/%d.css>; rel=\"preload\"; as=\"style\"".formatted(i);
+			}
+			// Last, as the webmention link has to be searched for.
+			values[headerCount - 1] = "</webmention?version=1>; rel=\"webmention\"";
+		}
+	}
+}
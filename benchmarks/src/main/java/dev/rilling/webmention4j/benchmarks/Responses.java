@@ -0,0 +1,26 @@
+package dev.rilling.webmention4j.benchmarks;
+
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.message.BasicClassicHttpResponse;
+import org.jetbrains.annotations.NotNull;
+
+final class Responses {
+
+	private Responses() {
+	}
+
+	/**
+	 * Creates a response as received from a server. Cheap, as the body is not copied.
+	 */
+	@NotNull
+	static ClassicHttpResponse create(byte @NotNull [] body, @NotNull ContentType contentType) {
+		BasicClassicHttpResponse response = new BasicClassicHttpResponse(HttpStatus.SC_OK);
+		response.setHeader(HttpHeaders.CONTENT_TYPE, contentType.toString());
+		response.setEntity(new ByteArrayEntity(body, contentType));
+		return response;
+	}
+}
@@ -0,0 +1,70 @@
+package dev.rilling.webmention4j.benchmarks;
+
+import dev.rilling.webmention4j.server.internal.verifier.HtmlVerifier;
+import dev.rilling.webmention4j.server.internal.verifier.JsonVerifier;
+import dev.rilling.webmention4j.server.internal.verifier.TextVerifier;
+import dev.rilling.webmention4j.server.internal.verifier.Verifier;
+import org.apache.hc.core5.http.ContentType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link Verifier#verify} per verifier, document size and position of the mention.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VerifierBenchmark {
+
+	@Param({"HTML", "TEXT", "JSON"})
+	public Corpus.Format format;
+
+	@Param({"2048", "65536", "1048576", "4194304"})
+	public int sizeBytes;
+
+	@Param({"START", "MIDDLE", "END", "ABSENT"})
+	public Corpus.Position position;
+
+	private Verifier verifier;
+	private ContentType contentType;
+	private byte[] document;
+
+	@Setup
+	public void setUp() {
+		switch (format) {
+			case HTML -> {
+				verifier = new HtmlVerifier();
+				contentType = ContentType.TEXT_HTML;
+			}
+			case TEXT -> {
+				verifier = new TextVerifier();
+				contentType = ContentType.TEXT_PLAIN;
+			}
+			case JSON -> {
+				verifier = new JsonVerifier();
+				contentType = ContentType.APPLICATION_JSON;
+			}
+		}
+		document = Corpus.generate(format, sizeBytes, position);
+	}
+
+	@Benchmark
+	public Verifier.Result verify() throws IOException {
+		return verifier.verify(Responses.create(document, contentType), Corpus.TARGET);
+	}
+}
@@ -0,0 +1,39 @@
+package dev.rilling.webmention4j.client.internal.link;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link LinkUtils}, which is called for every link found. In this package, as {@link LinkUtils} is not
+ * public.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LinkUtilsBenchmark {
+
+	private static final URI BASE_URI = URI.create("https://example.com/blog/post");
+
+	@Benchmark
+	public Link fromHeaderValue() {
+		return LinkUtils.fromHeaderValue(BASE_URI, "</webmention?version=1>; rel=\"webmention\"");
+	}
+
+	@Benchmark
+	public Link fromElement() {
+		return LinkUtils.fromElement(BASE_URI, "../other-post#comments", "nofollow noopener");
+	}
+}
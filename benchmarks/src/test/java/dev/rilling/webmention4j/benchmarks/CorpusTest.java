@@ -0,0 +1,55 @@
+package dev.rilling.webmention4j.benchmarks;
+
+import dev.rilling.webmention4j.server.internal.verifier.HtmlVerifier;
+import dev.rilling.webmention4j.server.internal.verifier.JsonVerifier;
+import dev.rilling.webmention4j.server.internal.verifier.TextVerifier;
+import dev.rilling.webmention4j.server.internal.verifier.Verifier;
+import org.apache.hc.core5.http.ContentType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CorpusTest {
+
+	@Test
+	@DisplayName("#generate places mention at position")
+	void generatePlacesMention() {
+		String target = Corpus.TARGET.toString();
+
+		String start = new String(Corpus.generate(Corpus.Format.TEXT, 65536, Corpus.Position.START),
+			StandardCharsets.UTF_8);
+		String middle = new String(Corpus.generate(Corpus.Format.TEXT, 65536, Corpus.Position.MIDDLE),
+			StandardCharsets.UTF_8);
+		String end = new String(Corpus.generate(Corpus.Format.TEXT, 65536, Corpus.Position.END),
+			StandardCharsets.UTF_8);
+		String absent = new String(Corpus.generate(Corpus.Format.TEXT, 65536, Corpus.Position.ABSENT),
+			StandardCharsets.UTF_8);
+
+		assertThat(start.indexOf(target)).isLessThan(start.length() / 10);
+		assertThat(middle.indexOf(target)).isBetween(middle.length() * 4 / 10, middle.length() * 6 / 10);
+		assertThat(end.indexOf(target)).isGreaterThan(end.length() * 9 / 10);
+		assertThat(absent).doesNotContain(target);
+		assertThat(absent.length()).isBetween(65536, 65536 + 1024);
+	}
+
+	@Test
+	@DisplayName("#generate creates documents that verifiers accept")
+	void generateCreatesVerifiableDocuments() throws IOException {
+		assertVerifies(new HtmlVerifier(), Corpus.Format.HTML, ContentType.TEXT_HTML);
+		assertVerifies(new TextVerifier(), Corpus.Format.TEXT, ContentType.TEXT_PLAIN);
+		assertVerifies(new JsonVerifier(), Corpus.Format.JSON, ContentType.APPLICATION_JSON);
+	}
+
+	private static void assertVerifies(Verifier verifier, Corpus.Format format, ContentType contentType)
+		throws IOException {
+		byte[] mentioning = Corpus.generate(format, 4096, Corpus.Position.MIDDLE);
+		byte[] notMentioning = Corpus.generate(format, 4096, Corpus.Position.ABSENT);
+
+		assertThat(verifier.verify(Responses.create(mentioning, contentType), Corpus.TARGET).valid()).isTrue();
+		assertThat(verifier.verify(Responses.create(notMentioning, contentType), Corpus.TARGET).valid()).isFalse();
+	}
+}
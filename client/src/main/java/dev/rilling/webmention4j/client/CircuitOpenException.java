@@ -0,0 +1,43 @@
+package dev.rilling.webmention4j.client;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Serial;
+import java.time.Duration;
+
+/**
+ * Thrown if a host is not contacted because recent requests to it failed.
+ * Webmentions for it can be retried once {@link #getRetryAfter()} passed.
+ *
+ * @see WebmentionClient.Config#setCircuitBreakerFailureThreshold(int)
+ */
+public class CircuitOpenException extends IOException {
+	@Serial
+	private static final long serialVersionUID = 5305742138530318113L;
+
+	private final String host;
+	private final Duration retryAfter;
+
+	CircuitOpenException(@NotNull String host, @NotNull Duration retryAfter) {
+		super("Host '%s' is unavailable after repeated failures, retry in %s.".formatted(host, retryAfter));
+		this.host = host;
+		this.retryAfter = retryAfter;
+	}
+
+	/**
+	 * @return Host that was not contacted.
+	 */
+	@NotNull
+	public String getHost() {
+		return host;
+	}
+
+	/**
+	 * @return Time until a request to the host is attempted again.
+	 */
+	@NotNull
+	public Duration getRetryAfter() {
+		return retryAfter;
+	}
+}
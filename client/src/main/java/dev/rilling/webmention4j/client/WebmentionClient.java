@@ -1,31 +1,60 @@
 package dev.rilling.webmention4j.client;
 
+import dev.rilling.webmention4j.client.internal.CircuitBreaker;
+import dev.rilling.webmention4j.client.internal.ConnectionWarmer;
 import dev.rilling.webmention4j.client.internal.EndpointDiscoveryService;
 import dev.rilling.webmention4j.client.internal.EndpointService;
 import dev.rilling.webmention4j.client.internal.LocalhostRejectingRedirectStrategy;
 import dev.rilling.webmention4j.client.internal.link.HeaderLinkParser;
 import dev.rilling.webmention4j.client.internal.link.HtmlLinkParser;
 import dev.rilling.webmention4j.common.Webmention;
+import dev.rilling.webmention4j.common.internal.AdaptiveTimeouts;
+import dev.rilling.webmention4j.common.internal.FetchLimits;
+import dev.rilling.webmention4j.common.internal.HttpClientInstrumentation;
 import dev.rilling.webmention4j.common.internal.HttpUtils;
 import dev.rilling.webmention4j.common.internal.UriUtils;
+import dev.rilling.webmention4j.common.metrics.MetricsListener;
+import dev.rilling.webmention4j.common.metrics.MetricsRecorder;
+import org.apache.hc.client5.http.DnsResolver;
+import org.apache.hc.client5.http.config.ConnectionConfig;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.io.HttpClientConnectionManager;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.util.TimeValue;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.URI;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.Objects;
 import java.util.Optional;
 
 /**
  * Client that allows for Webmention sending and Webmention endpoint discovery.
+ * <p>
+ * Connections are kept open to be reused by later requests. Connections that were idle for more than a minute are
+ * closed on the next request, {@link #close()} closes all of them, so clients should be closed once no longer needed.
  */
 // Spec: '3.1 Sending Webmentions'
-public final class WebmentionClient {
+public final class WebmentionClient implements Closeable {
+	private static final int ADAPTIVE_TIMEOUT_HOSTS = 1024;
+	private static final int DEFAULT_MAX_CONNECTIONS = 25;
+	private static final TimeValue MAX_IDLE_TIME = TimeValue.ofMinutes(1);
+	private static final TimeValue VALIDATE_AFTER_INACTIVITY = TimeValue.ofSeconds(1);
+
 	private final EndpointDiscoveryService endpointDiscoveryService;
 	private final EndpointService endpointService;
 	private final HttpClientFactory httpClientFactory;
+	private final CircuitBreaker circuitBreaker;
+	private final HttpClientConnectionManager connectionManager;
+	private final ConnectionWarmer connectionWarmer;
 	private final Config config;
 
 
@@ -42,29 +71,116 @@ public final class WebmentionClient {
 	 * @param config Custom configuration.
 	 */
 	public WebmentionClient(@NotNull Config config) {
-		this(new Config(config), WebmentionClient::createDefaultHttpClient, new EndpointService(), new EndpointDiscoveryService(new HeaderLinkParser(), new HtmlLinkParser()));
+		this(new Config(config), config.createFetchLimits());
+	}
+
+	private WebmentionClient(@NotNull Config config, @NotNull FetchLimits fetchLimits) {
+		this(config, fetchLimits, new AdaptiveTimeouts(
+			// The response timeout may have been configured to be shorter than the default minimum.
+			config.getMinResponseTimeout().compareTo(fetchLimits.responseTimeout()) < 0 ?
+				config.getMinResponseTimeout() :
+				fetchLimits.responseTimeout(),
+			fetchLimits.responseTimeout(),
+			ADAPTIVE_TIMEOUT_HOSTS));
+	}
+
+	private WebmentionClient(@NotNull Config config,
+							 @NotNull FetchLimits fetchLimits,
+							 @NotNull AdaptiveTimeouts adaptiveTimeouts) {
+		this(config,
+			fetchLimits,
+			adaptiveTimeouts,
+			HttpClientInstrumentation.createDnsResolver(config.getMetricsListener()));
+	}
+
+	private WebmentionClient(@NotNull Config config,
+							 @NotNull FetchLimits fetchLimits,
+							 @NotNull AdaptiveTimeouts adaptiveTimeouts,
+							 @NotNull DnsResolver dnsResolver) {
+		this(config,
+			fetchLimits,
+			adaptiveTimeouts,
+			dnsResolver,
+			createConnectionManager(fetchLimits, dnsResolver, config.getMaxWarmUpConnections()));
+	}
+
+	private WebmentionClient(@NotNull Config config,
+							 @NotNull FetchLimits fetchLimits,
+							 @NotNull AdaptiveTimeouts adaptiveTimeouts,
+							 @NotNull DnsResolver dnsResolver,
+							 @NotNull PoolingHttpClientConnectionManager connectionManager) {
+		this(config,
+			allowLocalhostRedirect -> createDefaultHttpClient(connectionManager,
+				fetchLimits,
+				adaptiveTimeouts,
+				config.getMetricsListener(),
+				allowLocalhostRedirect),
+			new EndpointService(config.getMetricsListener()),
+			new EndpointDiscoveryService(new HeaderLinkParser(),
+				new HtmlLinkParser(),
+				fetchLimits,
+				config.getMetricsListener()),
+			new CircuitBreaker(config.getCircuitBreakerFailureThreshold(), config.getCircuitBreakerOpenDuration()),
+			connectionManager,
+			new ConnectionWarmer(connectionManager,
+				dnsResolver,
+				fetchLimits.connectTimeout(),
+				config.getMaxWarmUpConnections()));
 	}
 
 	WebmentionClient(@NotNull Config config,
 					 @NotNull HttpClientFactory httpClientFactory,
 					 @NotNull EndpointService endpointService,
-					 @NotNull EndpointDiscoveryService endpointDiscoveryService) {
+					 @NotNull EndpointDiscoveryService endpointDiscoveryService,
+					 @NotNull CircuitBreaker circuitBreaker,
+					 @NotNull HttpClientConnectionManager connectionManager,
+					 @NotNull ConnectionWarmer connectionWarmer) {
 		this.config = config;
 		this.endpointDiscoveryService = endpointDiscoveryService;
 		this.endpointService = endpointService;
 		this.httpClientFactory = httpClientFactory;
+		this.circuitBreaker = circuitBreaker;
+		this.connectionManager = connectionManager;
+		this.connectionWarmer = connectionWarmer;
+	}
+
+	/**
+	 * Prepares sending Webmentions to many targets, e.g. all pages linked from a source. Resolves the hosts of the
+	 * targets in parallel and opens connections to them, so that discovery for each can start right away. Blocks until
+	 * done.
+	 * <p>
+	 * Optional, and only worthwhile if the targets are contacted soon after, as servers close idle connections after a
+	 * while. Hosts that cannot be reached are skipped, sending to them will report the failure.
+	 *
+	 * @param targets Target URLs that Webmentions will be sent to.
+	 * @see Config#setMaxWarmUpConnections(int)
+	 */
+	public void warmUp(@NotNull Collection<URI> targets) {
+		connectionWarmer.warmUp(targets);
+	}
+
+	/**
+	 * Closes connections kept open to be reused, e.g. after {@link #warmUp(Collection)}. The client should not be used
+	 * afterwards.
+	 */
+	@Override
+	public void close() {
+		connectionManager.close(CloseMode.GRACEFUL);
 	}
 
 	/**
 	 * Checks if a Webmention endpoint exists for this target URL.
 	 *
 	 * @param target Page to check endpoint of.
-	 * @throws IOException if I/O fails.
+	 * @throws CircuitOpenException if the target host is skipped after repeated failures.
+	 * @throws IOException          if I/O fails.
 	 */
 	public boolean supportsWebmention(@NotNull URI target) throws IOException {
-		try (CloseableHttpClient httpClient = httpClientFactory.create(true)) {
-			return endpointDiscoveryService.discoverEndpoint(httpClient, target).isPresent();
-		}
+		return callHost(target, () -> {
+			try (CloseableHttpClient httpClient = httpClientFactory.create(true)) {
+				return endpointDiscoveryService.discoverEndpoint(httpClient, target).isPresent();
+			}
+		});
 	}
 
 	/**
@@ -72,15 +188,17 @@ public final class WebmentionClient {
 	 *
 	 * @param webmention Webmention to send.
 	 * @return URL to use to monitor request status, if supported by the endpoint.
-	 * @throws IOException if I/O fails.
+	 * @throws CircuitOpenException if the target or endpoint host is skipped after repeated failures.
+	 * @throws IOException          if I/O fails.
 	 */
 	@NotNull
 	public Optional<URI> sendWebmention(@NotNull Webmention webmention) throws IOException {
-		URI endpoint;
-		try (CloseableHttpClient httpClient = httpClientFactory.create(true)) {
-			// Spec: '3.1.2 Sender discovers receiver Webmention endpoint'
-			endpoint = endpointDiscoveryService.discoverEndpoint(httpClient, webmention.target()).orElseThrow(() -> new IOException("Could not find any webmention endpoint URL in the target resource."));
-		}
+		URI endpoint = callHost(webmention.target(), () -> {
+			try (CloseableHttpClient httpClient = httpClientFactory.create(true)) {
+				// Spec: '3.1.2 Sender discovers receiver Webmention endpoint'
+				return endpointDiscoveryService.discoverEndpoint(httpClient, webmention.target()).orElseThrow(() -> new IOException("Could not find any webmention endpoint URL in the target resource."));
+			}
+		});
 
 		/*
 		 * Spec:
@@ -93,9 +211,37 @@ public final class WebmentionClient {
 			throw new IOException(("Endpoint '%s' is localhost or a loopback IP address, refusing to notify.").formatted(
 				endpoint));
 		}
-		try (CloseableHttpClient httpClient = httpClientFactory.create(config.isAllowLocalhostEndpoint())) {
-			// Spec: '3.1.3 Sender notifies receiver'
-			return endpointService.notifyEndpoint(httpClient, endpoint, webmention);
+		return callHost(endpoint, () -> {
+			try (CloseableHttpClient httpClient = httpClientFactory.create(config.isAllowLocalhostEndpoint())) {
+				// Spec: '3.1.3 Sender notifies receiver'
+				return endpointService.notifyEndpoint(httpClient, endpoint, webmention);
+			}
+		});
+	}
+
+	private <T> T callHost(URI uri, HostCall<T> call) throws IOException {
+		String host = uri.getHost();
+		if (host == null) {
+			return call.call();
+		}
+		if (!circuitBreaker.tryAcquire(host)) {
+			throw new CircuitOpenException(host, circuitBreaker.getRetryAfter(host));
+		}
+		boolean failed = false;
+		boolean interrupted = false;
+		try {
+			return call.call();
+		} catch (IOException e) {
+			failed = CircuitBreaker.isHostFailure(e);
+			// Interrupting the thread neither proves the host up nor down, so the circuit is left as it is.
+			interrupted = !failed && e instanceof InterruptedIOException;
+			throw e;
+		} finally {
+			if (failed) {
+				circuitBreaker.recordFailure(host);
+			} else if (!interrupted) {
+				circuitBreaker.recordSuccess(host);
+			}
 		}
 	}
 
@@ -104,16 +250,46 @@ public final class WebmentionClient {
 	 */
 	public static class Config {
 		private boolean allowLocalhostEndpoint;
+		private long maxBodyBytes;
+		private int maxErrorBodyBytes;
+		private Duration connectTimeout;
+		private Duration responseTimeout;
+		private Duration minResponseTimeout;
+		private Duration totalTimeout;
+		private int circuitBreakerFailureThreshold;
+		private Duration circuitBreakerOpenDuration;
+		private int maxWarmUpConnections;
+		private MetricsListener metricsListener;
 
 		/**
 		 * Creates a new configuration with default values.
 		 */
 		public Config() {
 			allowLocalhostEndpoint = false;
+			maxBodyBytes = FetchLimits.DEFAULT.maxBodyBytes();
+			maxErrorBodyBytes = FetchLimits.DEFAULT.maxErrorBodyBytes();
+			connectTimeout = FetchLimits.DEFAULT.connectTimeout();
+			responseTimeout = FetchLimits.DEFAULT.responseTimeout();
+			minResponseTimeout = Duration.ofSeconds(3);
+			totalTimeout = FetchLimits.DEFAULT.totalTimeout();
+			circuitBreakerFailureThreshold = 5;
+			circuitBreakerOpenDuration = Duration.ofMinutes(1);
+			maxWarmUpConnections = 20;
+			metricsListener = MetricsListener.noop();
 		}
 
 		private Config(Config original) {
 			allowLocalhostEndpoint = original.allowLocalhostEndpoint;
+			maxBodyBytes = original.maxBodyBytes;
+			maxErrorBodyBytes = original.maxErrorBodyBytes;
+			connectTimeout = original.connectTimeout;
+			responseTimeout = original.responseTimeout;
+			minResponseTimeout = original.minResponseTimeout;
+			totalTimeout = original.totalTimeout;
+			circuitBreakerFailureThreshold = original.circuitBreakerFailureThreshold;
+			circuitBreakerOpenDuration = original.circuitBreakerOpenDuration;
+			maxWarmUpConnections = original.maxWarmUpConnections;
+			metricsListener = original.metricsListener;
 		}
 
 		/**
@@ -139,6 +315,178 @@ public final class WebmentionClient {
 			return allowLocalhostEndpoint;
 		}
 
+		/**
+		 * Configures the maximum number of bytes read from a target page during endpoint discovery.
+		 * Larger responses are aborted.
+		 * Defaults to 5 MiB.
+		 */
+		public void setMaxBodyBytes(long maxBodyBytes) {
+			this.maxBodyBytes = maxBodyBytes;
+		}
+
+		/**
+		 * @see #setMaxBodyBytes(long)
+		 */
+		public long getMaxBodyBytes() {
+			return maxBodyBytes;
+		}
+
+		/**
+		 * Configures the maximum number of bytes read from an error response body to include in the exception message.
+		 * Defaults to 4 KiB.
+		 */
+		public void setMaxErrorBodyBytes(int maxErrorBodyBytes) {
+			this.maxErrorBodyBytes = maxErrorBodyBytes;
+		}
+
+		/**
+		 * @see #setMaxErrorBodyBytes(int)
+		 */
+		public int getMaxErrorBodyBytes() {
+			return maxErrorBodyBytes;
+		}
+
+		/**
+		 * Configures the maximum time to establish a connection.
+		 * Defaults to 10 seconds.
+		 */
+		public void setConnectTimeout(@NotNull Duration connectTimeout) {
+			this.connectTimeout = connectTimeout;
+		}
+
+		/**
+		 * @see #setConnectTimeout(Duration)
+		 */
+		@NotNull
+		public Duration getConnectTimeout() {
+			return connectTimeout;
+		}
+
+		/**
+		 * Configures the maximum time to wait for data, be it the response head or the next part of the body.
+		 * For hosts that responded quickly before, a shorter time is used (see
+		 * {@link #setMinResponseTimeout(Duration)}).
+		 * Defaults to 10 seconds.
+		 */
+		public void setResponseTimeout(@NotNull Duration responseTimeout) {
+			this.responseTimeout = responseTimeout;
+		}
+
+		/**
+		 * @see #setResponseTimeout(Duration)
+		 */
+		@NotNull
+		public Duration getResponseTimeout() {
+			return responseTimeout;
+		}
+
+		/**
+		 * Configures the lower bound of the time to wait for data from a host that responded quickly before.
+		 * The time is derived from how long the recent responses of the host took, and is at most the
+		 * {@link #setResponseTimeout(Duration) response timeout}, which is also used if this is longer. Set it to the
+		 * response timeout to always use that.
+		 * Defaults to 3 seconds.
+		 */
+		public void setMinResponseTimeout(@NotNull Duration minResponseTimeout) {
+			this.minResponseTimeout = minResponseTimeout;
+		}
+
+		/**
+		 * @see #setMinResponseTimeout(Duration)
+		 */
+		@NotNull
+		public Duration getMinResponseTimeout() {
+			return minResponseTimeout;
+		}
+
+		/**
+		 * Configures the maximum time for fetching a target page during endpoint discovery, including reading its body.
+		 * Responses that are streamed slower are aborted.
+		 * Defaults to 30 seconds.
+		 */
+		public void setTotalTimeout(@NotNull Duration totalTimeout) {
+			this.totalTimeout = totalTimeout;
+		}
+
+		/**
+		 * @see #setTotalTimeout(Duration)
+		 */
+		@NotNull
+		public Duration getTotalTimeout() {
+			return totalTimeout;
+		}
+
+		/**
+		 * Configures after how many consecutive failures to reach a host, e.g. connect timeouts, requests to it fail
+		 * fast with a {@link CircuitOpenException} instead, so that an unreachable host does not stall sending many
+		 * Webmentions. Hosts are tried again after {@link #setCircuitBreakerOpenDuration(Duration)}.
+		 * 0 disables this.
+		 * Defaults to 5.
+		 */
+		public void setCircuitBreakerFailureThreshold(int circuitBreakerFailureThreshold) {
+			this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+		}
+
+		/**
+		 * @see #setCircuitBreakerFailureThreshold(int)
+		 */
+		public int getCircuitBreakerFailureThreshold() {
+			return circuitBreakerFailureThreshold;
+		}
+
+		/**
+		 * Configures how long requests to a host fail fast after {@link #setCircuitBreakerFailureThreshold(int)}
+		 * was reached. Afterwards, a single request is attempted, and requests fail fast again if it fails.
+		 * Defaults to 1 minute.
+		 */
+		public void setCircuitBreakerOpenDuration(@NotNull Duration circuitBreakerOpenDuration) {
+			this.circuitBreakerOpenDuration = circuitBreakerOpenDuration;
+		}
+
+		/**
+		 * @see #setCircuitBreakerOpenDuration(Duration)
+		 */
+		@NotNull
+		public Duration getCircuitBreakerOpenDuration() {
+			return circuitBreakerOpenDuration;
+		}
+
+		/**
+		 * Configures how many connections {@link WebmentionClient#warmUp(Collection)} opens at most. Hosts of further
+		 * targets are only resolved.
+		 * Defaults to 20.
+		 */
+		public void setMaxWarmUpConnections(int maxWarmUpConnections) {
+			this.maxWarmUpConnections = maxWarmUpConnections;
+		}
+
+		/**
+		 * @see #setMaxWarmUpConnections(int)
+		 */
+		public int getMaxWarmUpConnections() {
+			return maxWarmUpConnections;
+		}
+
+		/**
+		 * Configures the listener notified about the phases of sending Webmentions, e.g. {@link MetricsRecorder}.
+		 * Defaults to a listener ignoring them.
+		 */
+		public void setMetricsListener(@NotNull MetricsListener metricsListener) {
+			this.metricsListener = metricsListener;
+		}
+
+		/**
+		 * @see #setMetricsListener(MetricsListener)
+		 */
+		@NotNull
+		public MetricsListener getMetricsListener() {
+			return metricsListener;
+		}
+
+		private FetchLimits createFetchLimits() {
+			return new FetchLimits(maxBodyBytes, maxErrorBodyBytes, connectTimeout, responseTimeout, totalTimeout);
+		}
+
 		@Override
 		public boolean equals(Object obj) {
 			if (this == obj) {
@@ -148,17 +496,39 @@ public final class WebmentionClient {
 				return false;
 			}
 			Config config = (Config) obj;
-			return allowLocalhostEndpoint == config.allowLocalhostEndpoint;
+			return allowLocalhostEndpoint == config.allowLocalhostEndpoint && maxBodyBytes == config.maxBodyBytes &&
+				   maxErrorBodyBytes == config.maxErrorBodyBytes && connectTimeout.equals(config.connectTimeout) &&
+				   responseTimeout.equals(config.responseTimeout) &&
+				   minResponseTimeout.equals(config.minResponseTimeout) && totalTimeout.equals(config.totalTimeout) &&
+				   circuitBreakerFailureThreshold == config.circuitBreakerFailureThreshold &&
+				   circuitBreakerOpenDuration.equals(config.circuitBreakerOpenDuration) &&
+				   maxWarmUpConnections == config.maxWarmUpConnections &&
+				   metricsListener.equals(config.metricsListener);
 		}
 
 		@Override
 		public int hashCode() {
-			return Objects.hash(allowLocalhostEndpoint);
+			return Objects.hash(allowLocalhostEndpoint,
+				maxBodyBytes,
+				maxErrorBodyBytes,
+				connectTimeout,
+				responseTimeout,
+				minResponseTimeout,
+				totalTimeout,
+				circuitBreakerFailureThreshold,
+				circuitBreakerOpenDuration,
+				maxWarmUpConnections,
+				metricsListener);
 		}
 
 		@Override
 		public String toString() {
-			return "Config{" + "allowLocalhostEndpoint=" + allowLocalhostEndpoint + '}';
+			return "Config{" + "allowLocalhostEndpoint=" + allowLocalhostEndpoint + ", maxBodyBytes=" + maxBodyBytes +
+				   ", maxErrorBodyBytes=" + maxErrorBodyBytes + ", connectTimeout=" + connectTimeout +
+				   ", responseTimeout=" + responseTimeout + ", minResponseTimeout=" + minResponseTimeout +
+				   ", totalTimeout=" + totalTimeout + ", circuitBreakerFailureThreshold=" +
+				   circuitBreakerFailureThreshold + ", circuitBreakerOpenDuration=" + circuitBreakerOpenDuration +
+				   ", maxWarmUpConnections=" + maxWarmUpConnections + ", metricsListener=" + metricsListener + '}';
 		}
 	}
 
@@ -167,7 +537,29 @@ public final class WebmentionClient {
 		CloseableHttpClient create(boolean allowLocalhostRedirect);
 	}
 
-	private static CloseableHttpClient createDefaultHttpClient(boolean allowLocalhostRedirect) {
+	@FunctionalInterface
+	private interface HostCall<T> {
+		T call() throws IOException;
+	}
+
+	private static PoolingHttpClientConnectionManager createConnectionManager(FetchLimits fetchLimits,
+																			 DnsResolver dnsResolver,
+																			 int maxWarmUpConnections) {
+		return PoolingHttpClientConnectionManagerBuilder.create()
+			// Pooled connections may have been closed by the server in the meantime, e.g. after a warm-up.
+			.setDefaultConnectionConfig(ConnectionConfig.copy(fetchLimits.createConnectionConfig())
+				.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY)
+				.build())
+			.setDnsResolver(dnsResolver)
+			.setMaxConnTotal(Math.max(DEFAULT_MAX_CONNECTIONS, maxWarmUpConnections))
+			.build();
+	}
+
+	private static CloseableHttpClient createDefaultHttpClient(PoolingHttpClientConnectionManager connectionManager,
+															   FetchLimits fetchLimits,
+															   AdaptiveTimeouts adaptiveTimeouts,
+															   MetricsListener metricsListener,
+															   boolean allowLocalhostRedirect) {
 		/*
 		 * Spec:
 		 * 'Senders MAY customize the HTTP User Agent used when fetching the target URL
@@ -175,7 +567,14 @@ public final class WebmentionClient {
 		 *  In this case, it is recommended to include the string "Webmention" in the User Agent.
 		 *  This provides people with a pointer to find out why the discovery request was made.'
 		 */
-		HttpClientBuilder builder = HttpClients.custom();
+		// The connection manager is shared by the clients of the same WebmentionClient, so that connections are reused.
+		connectionManager.closeIdle(MAX_IDLE_TIME);
+		HttpClientBuilder builder = HttpClients.custom()
+			.setConnectionManager(connectionManager)
+			.setConnectionManagerShared(true)
+			.setDefaultRequestConfig(fetchLimits.createRequestConfig());
+		HttpClientInstrumentation.instrument(builder, metricsListener);
+		adaptiveTimeouts.instrument(builder);
 		if (!allowLocalhostRedirect) {
 			/*
 			 * Spec:
@@ -0,0 +1,159 @@
+package dev.rilling.webmention4j.client.internal;
+
+import org.apache.hc.client5.http.ConnectTimeoutException;
+import org.apache.hc.core5.http.NoHttpResponseException;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker keyed by host, so that requests to a host that is unreachable fail fast instead of each waiting
+ * for timeouts.
+ * <p>
+ * A host's circuit is closed until a number of consecutive requests failed, then it opens and rejects requests for a
+ * while. Afterwards, it is half-open and allows a single trial request, whose outcome closes or opens it again.
+ * Only failures indicating that the host is unreachable count (see {@link #isHostFailure(IOException)}), error
+ * responses show that the host is up.
+ * <p>
+ * Only hosts with failures are stored, so memory usage is bounded by the number of failing hosts.
+ */
+public final class CircuitBreaker {
+
+	private final int failureThreshold;
+	private final long openNanos;
+	private final LongSupplier nanoTime;
+
+	private final ConcurrentMap<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param failureThreshold Number of consecutive failures after which a host's circuit opens.
+	 *                         0 disables the circuit breaker.
+	 * @param openDuration     Duration for which an open circuit rejects requests before allowing a trial request.
+	 */
+	public CircuitBreaker(int failureThreshold, @NotNull Duration openDuration) {
+		this(failureThreshold, openDuration, System::nanoTime);
+	}
+
+	CircuitBreaker(int failureThreshold, @NotNull Duration openDuration, @NotNull LongSupplier nanoTime) {
+		if (failureThreshold < 0) {
+			throw new IllegalArgumentException("Failure threshold must not be negative.");
+		}
+		if (openDuration.isNegative()) {
+			throw new IllegalArgumentException("Open duration must not be negative.");
+		}
+		this.failureThreshold = failureThreshold;
+		openNanos = openDuration.toNanos();
+		this.nanoTime = nanoTime;
+	}
+
+	/**
+	 * Checks if a request to the host may be made. If this returns true, the outcome must be reported with
+	 * {@link #recordSuccess(String)} or {@link #recordFailure(String)}.
+	 *
+	 * @param host Host to request.
+	 * @return if the request may be made, false if the circuit is open.
+	 */
+	public boolean tryAcquire(@NotNull String host) {
+		if (failureThreshold == 0) {
+			return true;
+		}
+		long now = nanoTime.getAsLong();
+		boolean[] acquired = {true};
+		circuits.computeIfPresent(normalize(host), (key, circuit) -> {
+			if (circuit.state == State.CLOSED) {
+				return circuit;
+			}
+			// A trial that never reported its outcome does not block the host forever.
+			if (now - circuit.sinceNanos >= openNanos) {
+				return new Circuit(State.HALF_OPEN, circuit.failures, now);
+			}
+			acquired[0] = false;
+			return circuit;
+		});
+		return acquired[0];
+	}
+
+	/**
+	 * Records that a request to the host succeeded, closing its circuit.
+	 *
+	 * @param host Requested host.
+	 */
+	public void recordSuccess(@NotNull String host) {
+		if (failureThreshold == 0) {
+			return;
+		}
+		circuits.remove(normalize(host));
+	}
+
+	/**
+	 * Records that a request to the host failed, opening its circuit if the threshold is reached or the request was a
+	 * trial request.
+	 *
+	 * @param host Requested host.
+	 */
+	public void recordFailure(@NotNull String host) {
+		if (failureThreshold == 0) {
+			return;
+		}
+		long now = nanoTime.getAsLong();
+		circuits.compute(normalize(host), (key, circuit) -> {
+			int failures = circuit == null ? 1 : circuit.failures + 1;
+			if (failures >= failureThreshold || (circuit != null && circuit.state == State.HALF_OPEN)) {
+				return new Circuit(State.OPEN, failures, now);
+			}
+			return new Circuit(State.CLOSED, failures, now);
+		});
+	}
+
+	/**
+	 * @param host Host to check.
+	 * @return Time until the host's circuit allows a trial request, or zero if it is not open.
+	 */
+	@NotNull
+	public Duration getRetryAfter(@NotNull String host) {
+		Circuit circuit = circuits.get(normalize(host));
+		if (circuit == null || circuit.state == State.CLOSED) {
+			return Duration.ZERO;
+		}
+		return Duration.ofNanos(Math.max(openNanos - (nanoTime.getAsLong() - circuit.sinceNanos), 0));
+	}
+
+	/**
+	 * Checks if an exception indicates that the host could not be reached or did not respond, as opposed to e.g.
+	 * an error response.
+	 *
+	 * Other {@link InterruptedIOException}s are caused by interrupting the calling thread and say nothing about the
+	 * host.
+	 *
+	 * @param e Exception of the request.
+	 * @return if the exception counts as failure of the host.
+	 */
+	public static boolean isHostFailure(@NotNull IOException e) {
+		// Connection refused or reset, DNS failures and connect or response timeouts.
+		return e instanceof SocketException || e instanceof UnknownHostException ||
+			   e instanceof SocketTimeoutException || e instanceof ConnectTimeoutException ||
+			   e instanceof NoHttpResponseException;
+	}
+
+	private static String normalize(String host) {
+		return host.toLowerCase(Locale.ROOT);
+	}
+
+	private enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private record Circuit(State state, int failures, long sinceNanos) {
+	}
+}
@@ -0,0 +1,156 @@
+package dev.rilling.webmention4j.client.internal;
+
+import org.apache.hc.client5.http.DnsResolver;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.DefaultSchemePortResolver;
+import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.io.HttpClientConnectionManager;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.client5.http.routing.RoutingSupport;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prepares contacting many hosts by resolving them in parallel and opening connections to them in advance, so that
+ * the first request to each host can skip DNS lookup and connection setup including the TLS handshake.
+ * <p>
+ * Failures are ignored, as the requests themselves will report them.
+ */
+public final class ConnectionWarmer {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionWarmer.class);
+
+	private static final int MAX_THREADS = 16;
+	// Connections are closed by the pool once they were idle for this long without being used.
+	private static final TimeValue WARM_CONNECTION_KEEP_ALIVE = TimeValue.ofMinutes(1);
+
+	private final @NotNull HttpClientConnectionManager connectionManager;
+	private final @NotNull DnsResolver dnsResolver;
+	private final @NotNull Duration connectTimeout;
+	private final int maxConnections;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param connectionManager Connection manager that is shared by the HTTP clients making the requests.
+	 * @param dnsResolver       Resolver used by the connection manager, so that it caches the resolved addresses.
+	 * @param connectTimeout    Maximum time to establish a connection.
+	 * @param maxConnections    Maximum number of connections to open. Further hosts are only resolved.
+	 */
+	public ConnectionWarmer(@NotNull HttpClientConnectionManager connectionManager,
+							@NotNull DnsResolver dnsResolver,
+							@NotNull Duration connectTimeout,
+							int maxConnections) {
+		this.connectionManager = connectionManager;
+		this.dnsResolver = dnsResolver;
+		this.connectTimeout = connectTimeout;
+		this.maxConnections = maxConnections;
+	}
+
+	/**
+	 * Resolves the distinct hosts of the URIs and opens connections to the first ones, blocking until done.
+	 *
+	 * @param uris URIs that will be requested. Only HTTP(S) URIs are considered.
+	 * @return Number of connections opened.
+	 */
+	public int warmUp(@NotNull Collection<URI> uris) {
+		Set<HttpHost> hosts = new LinkedHashSet<>();
+		for (URI uri : uris) {
+			if (uri.getHost() != null && ("http".equalsIgnoreCase(uri.getScheme()) ||
+										  "https".equalsIgnoreCase(uri.getScheme()))) {
+				hosts.add(RoutingSupport.normalize(new HttpHost(uri.getScheme().toLowerCase(Locale.ROOT), uri.getHost(),
+					uri.getPort()), DefaultSchemePortResolver.INSTANCE));
+			}
+		}
+		if (hosts.isEmpty()) {
+			return 0;
+		}
+
+		AtomicInteger openedCount = new AtomicInteger();
+		List<Callable<Void>> tasks = new ArrayList<>(hosts.size());
+		int index = 0;
+		for (HttpHost host : hosts) {
+			boolean connect = index++ < maxConnections;
+			tasks.add(() -> {
+				if (warmUp(host, connect)) {
+					openedCount.incrementAndGet();
+				}
+				return null;
+			});
+		}
+
+		ExecutorService executorService = Executors.newFixedThreadPool(Math.min(hosts.size(), MAX_THREADS),
+			runnable -> {
+				Thread thread = new Thread(runnable, "webmention4j-warm-up");
+				thread.setDaemon(true);
+				return thread;
+			});
+		try {
+			executorService.invokeAll(tasks);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			executorService.shutdownNow();
+		}
+		LOGGER.debug("Warmed up {} hosts with {} connections.", hosts.size(), openedCount.get());
+		return openedCount.get();
+	}
+
+	private boolean warmUp(HttpHost host, boolean connect) {
+		try {
+			dnsResolver.resolve(host.getHostName());
+		} catch (UnknownHostException e) {
+			LOGGER.debug("Could not resolve '{}' during warm-up.", host, e);
+			return false;
+		}
+		if (!connect) {
+			return false;
+		}
+
+		HttpRoute route = new HttpRoute(host, null, "https".equals(host.getSchemeName()));
+		ConnectionEndpoint endpoint;
+		try {
+			endpoint = connectionManager.lease("warm-up", route, Timeout.of(connectTimeout), null)
+				.get(Timeout.of(connectTimeout));
+		} catch (ExecutionException | TimeoutException e) {
+			LOGGER.debug("Could not lease connection to '{}' during warm-up.", host, e);
+			return false;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		boolean connected = false;
+		try {
+			if (!endpoint.isConnected()) {
+				connectionManager.connect(endpoint, Timeout.of(connectTimeout), HttpClientContext.create());
+			}
+			connected = true;
+		} catch (IOException e) {
+			LOGGER.debug("Could not connect to '{}' during warm-up.", host, e);
+		} finally {
+			// Not keeping the connection closes it.
+			connectionManager.release(endpoint, null, connected ? WARM_CONNECTION_KEEP_ALIVE : null);
+		}
+		return connected;
+	}
+}
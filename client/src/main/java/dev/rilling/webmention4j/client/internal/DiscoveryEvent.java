@@ -0,0 +1,54 @@
+package dev.rilling.webmention4j.client.internal;
+
+import dev.rilling.webmention4j.common.internal.EventUris;
+import dev.rilling.webmention4j.common.internal.PhaseTimer;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.URI;
+
+/**
+ * JFR event emitted by {@link EndpointDiscoveryService#discoverEndpoint}.
+ */
+@Name(DiscoveryEvent.NAME)
+@Label("Webmention Endpoint Discovery")
+@Description("Fetching a target to discover its Webmention endpoint")
+@Category({"webmention4j", "Client"})
+@StackTrace(false)
+final class DiscoveryEvent extends jdk.jfr.Event {
+	static final String NAME = "dev.rilling.webmention4j.EndpointDiscovery";
+
+	@Label("Target")
+	String target;
+
+	@Label("Endpoint")
+	String endpoint;
+
+	@Label("Bytes Read")
+	@DataAmount
+	long bytesRead;
+
+	@Label("Outcome")
+	String outcome;
+
+	/**
+	 * Ends and commits this event, if enabled.
+	 */
+	void complete(@NotNull URI target, @Nullable URI endpoint, @NotNull PhaseTimer timer) {
+		end();
+		if (!shouldCommit()) {
+			return;
+		}
+		this.target = EventUris.format(target);
+		this.endpoint = EventUris.format(endpoint);
+		bytesRead = timer.getBytes();
+		outcome = timer.getOutcome();
+		commit();
+	}
+}
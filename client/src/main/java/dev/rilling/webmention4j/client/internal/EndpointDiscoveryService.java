@@ -4,18 +4,31 @@ import dev.rilling.webmention4j.client.internal.link.HeaderLinkParser;
 import dev.rilling.webmention4j.client.internal.link.HtmlLinkParser;
 import dev.rilling.webmention4j.client.internal.link.Link;
 import dev.rilling.webmention4j.client.internal.link.LinkParser;
+import dev.rilling.webmention4j.common.internal.FetchLimitExceededException;
+import dev.rilling.webmention4j.common.internal.FetchLimits;
+import dev.rilling.webmention4j.common.internal.HtmlUtils;
 import dev.rilling.webmention4j.common.internal.HttpUtils;
+import dev.rilling.webmention4j.common.internal.PhaseTimer;
+import dev.rilling.webmention4j.common.metrics.MetricsListener;
+import dev.rilling.webmention4j.common.metrics.Phase;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
-import org.apache.hc.core5.http.ClassicHttpRequest;
 import org.apache.hc.core5.http.ClassicHttpResponse;
-import org.apache.hc.core5.http.io.support.ClassicRequestBuilder;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Service handling Webmention endpoint detection.
@@ -23,19 +36,57 @@ import java.util.Optional;
 public final class EndpointDiscoveryService {
 	private static final Logger LOGGER = LoggerFactory.getLogger(EndpointDiscoveryService.class);
 
+	private static final String WEBMENTION_REL = "webmention";
+	private static final KeywordPrefilter WEBMENTION_PREFILTER = new KeywordPrefilter(WEBMENTION_REL);
+
 	private final @NotNull HeaderLinkParser headerLinkParser;
 	private final @NotNull HtmlLinkParser htmlLinkParser;
+	private final @NotNull FetchLimits fetchLimits;
+	private final @NotNull MetricsListener metricsListener;
+
+	private final LongAdder avoidedHtmlParseCount = new LongAdder();
+	private final LongAdder limitExceededCount = new LongAdder();
 
 	/**
-	 * Constructor.
+	 * Constructor using {@link FetchLimits#DEFAULT}.
 	 *
 	 * @param headerLinkParser A {@link HeaderLinkParser}.
 	 * @param htmlLinkParser   A {@link HtmlLinkParser}.
 	 */
 	public EndpointDiscoveryService(@NotNull HeaderLinkParser headerLinkParser,
 									@NotNull HtmlLinkParser htmlLinkParser) {
+		this(headerLinkParser, htmlLinkParser, FetchLimits.DEFAULT);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param headerLinkParser A {@link HeaderLinkParser}.
+	 * @param htmlLinkParser   A {@link HtmlLinkParser}.
+	 * @param fetchLimits      Limits to apply when fetching the target.
+	 */
+	public EndpointDiscoveryService(@NotNull HeaderLinkParser headerLinkParser,
+									@NotNull HtmlLinkParser htmlLinkParser,
+									@NotNull FetchLimits fetchLimits) {
+		this(headerLinkParser, htmlLinkParser, fetchLimits, MetricsListener.noop());
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param headerLinkParser A {@link HeaderLinkParser}.
+	 * @param htmlLinkParser   A {@link HtmlLinkParser}.
+	 * @param fetchLimits      Limits to apply when fetching the target.
+	 * @param metricsListener  Listener to report {@link Phase#DISCOVERY} and {@link Phase#HTML_PARSE} to.
+	 */
+	public EndpointDiscoveryService(@NotNull HeaderLinkParser headerLinkParser,
+									@NotNull HtmlLinkParser htmlLinkParser,
+									@NotNull FetchLimits fetchLimits,
+									@NotNull MetricsListener metricsListener) {
 		this.headerLinkParser = headerLinkParser;
 		this.htmlLinkParser = htmlLinkParser;
+		this.fetchLimits = fetchLimits;
+		this.metricsListener = metricsListener;
 	}
 
 	/**
@@ -44,9 +95,11 @@ public final class EndpointDiscoveryService {
 	 * @param httpClient HTTP client.
 	 *                   Must be configured to follow redirects.
 	 *                   Should be configured to use a fitting UA string.
+	 *                   Should be configured with the connect and response timeouts of the {@link FetchLimits}.
 	 * @param target     Target URL (e.g., the referenced website).
 	 * @return The Webmention endpoint URL if one is found, or empty.
-	 * @throws IOException if I/O fails.
+	 * @throws FetchLimitExceededException if fetching the target exceeds the {@link FetchLimits}.
+	 * @throws IOException                 if I/O fails.
 	 */
 	// Spec: https://www.w3.org/TR/webmention/#h-sender-discovers-receiver-webmention-endpoint
 	@NotNull
@@ -55,17 +108,39 @@ public final class EndpointDiscoveryService {
 		// We could make a HEAD request beforehand, but this is not required.
 
 		// Spec: 'The sender MUST fetch the target URL'
-		ClassicHttpRequest request = ClassicRequestBuilder.get(target).build();
+		HttpGet request = new HttpGet(target);
 
 		LOGGER.debug("Requesting endpoint information from '{}'.", target);
-		return httpClient.execute(request, response -> discoverEndpoint(target, response));
+		DiscoveryEvent event = new DiscoveryEvent();
+		event.begin();
+		try (PhaseTimer timer = PhaseTimer.start(metricsListener, Phase.DISCOVERY, "")) {
+			Optional<URI> endpoint = Optional.empty();
+			try {
+				endpoint = HttpUtils.executeLimited(httpClient,
+					request,
+					fetchLimits,
+					timer,
+					response -> discoverEndpoint(target, response));
+				timer.setOutcome(endpoint.isPresent() ? "found" : "not_found");
+				return endpoint;
+			} catch (FetchLimitExceededException e) {
+				timer.setOutcome("limit_exceeded");
+				throw e;
+			} finally {
+				event.complete(target, endpoint.orElse(null), timer);
+			}
+		} catch (FetchLimitExceededException e) {
+			limitExceededCount.increment();
+			LOGGER.warn("Aborted requesting endpoint information from '{}': {}", target, e.getMessage());
+			throw e;
+		}
 	}
 
 	private Optional<URI> discoverEndpoint(URI target, ClassicHttpResponse response)
 		throws IOException {
 		LOGGER.trace("Received response '{}' from '{}'.", response, target);
 
-		HttpUtils.validateResponse(response);
+		HttpUtils.validateResponse(response, fetchLimits.maxErrorBodyBytes());
 
 		/*
 		 * Spec:
@@ -82,7 +157,22 @@ public final class EndpointDiscoveryService {
 			return fromHeader;
 		}
 
-		Optional<URI> fromBody = findWebmentionEndpoint(htmlLinkParser, target, response);
+		/*
+		 * Building the HTML DOM is the most expensive part of discovery, and most pages do not declare an endpoint.
+		 * If the rel value does not even appear in the raw body, there is no need to parse it.
+		 */
+		if (!containsWebmentionKeyword(response)) {
+			avoidedHtmlParseCount.increment();
+			metricsListener.onPhase(Phase.HTML_PARSE, "", 0, 0, "skipped");
+			LOGGER.debug("Found no endpoint for '{}', body does not mention '{}'.", target, WEBMENTION_REL);
+			return Optional.empty();
+		}
+
+		Optional<URI> fromBody;
+		try (PhaseTimer timer = PhaseTimer.start(metricsListener, Phase.HTML_PARSE, "")) {
+			fromBody = findWebmentionEndpoint(htmlLinkParser, target, response);
+			timer.setOutcome(fromBody.isPresent() ? "found" : "not_found");
+		}
 		if (fromBody.isPresent()) {
 			LOGGER.debug("Found endpoint '{}' in body.", fromBody.get());
 			return fromBody;
@@ -106,8 +196,52 @@ public final class EndpointDiscoveryService {
 		// TODO: is `target` really equal to the response location? e.g. with redirects
 		return linkParser.parse(target, response)
 			.stream()
-			.filter(link -> link.rel().contains("webmention"))
+			.filter(link -> link.rel().contains(WEBMENTION_REL))
 			.findFirst()
 			.map(Link::uri);
 	}
+
+	/**
+	 * Checks if the HTML body of the response may contain an endpoint.
+	 * If the body is read for this, the response entity is replaced by a buffered copy,
+	 * so it can still be parsed afterward.
+	 */
+	private boolean containsWebmentionKeyword(ClassicHttpResponse response) throws IOException {
+		HttpEntity entity = response.getEntity();
+		if (!HtmlUtils.isHtml(response) || entity == null) {
+			// Nothing to parse anyway, let the parser decide.
+			return true;
+		}
+		ContentType contentType = ContentType.parseLenient(entity.getContentType());
+		if (contentType != null && !isAsciiCompatible(contentType.getCharset())) {
+			// Raw bytes cannot be matched against the keyword, fall back to always parsing.
+			return true;
+		}
+
+		KeywordPrefilter.Result result;
+		try (InputStream content = entity.getContent()) {
+			result = WEBMENTION_PREFILTER.scan(content);
+		}
+		response.setEntity(new ByteArrayEntity(result.body(), contentType));
+		return result.found();
+	}
+
+	private static boolean isAsciiCompatible(Charset charset) {
+		return charset == null || Arrays.equals(WEBMENTION_REL.getBytes(charset),
+			WEBMENTION_REL.getBytes(StandardCharsets.US_ASCII));
+	}
+
+	/**
+	 * @return How many times parsing of an HTML body was skipped because it could not contain an endpoint.
+	 */
+	public long getAvoidedHtmlParseCount() {
+		return avoidedHtmlParseCount.sum();
+	}
+
+	/**
+	 * @return How many times fetching a target was aborted because it exceeded the {@link FetchLimits}.
+	 */
+	public long getLimitExceededCount() {
+		return limitExceededCount.sum();
+	}
 }
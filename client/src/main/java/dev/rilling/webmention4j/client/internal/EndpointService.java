@@ -2,6 +2,9 @@ package dev.rilling.webmention4j.client.internal;
 
 import dev.rilling.webmention4j.common.Webmention;
 import dev.rilling.webmention4j.common.internal.HttpUtils;
+import dev.rilling.webmention4j.common.internal.PhaseTimer;
+import dev.rilling.webmention4j.common.metrics.MetricsListener;
+import dev.rilling.webmention4j.common.metrics.Phase;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.core5.http.ClassicHttpRequest;
 import org.apache.hc.core5.http.HttpStatus;
@@ -22,6 +25,24 @@ import java.util.Optional;
 public final class EndpointService {
 	private static final Logger LOGGER = LoggerFactory.getLogger(EndpointService.class);
 
+	private final @NotNull MetricsListener metricsListener;
+
+	/**
+	 * Constructor not reporting metrics.
+	 */
+	public EndpointService() {
+		this(MetricsListener.noop());
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param metricsListener Listener to report {@link Phase#NOTIFY} to.
+	 */
+	public EndpointService(@NotNull MetricsListener metricsListener) {
+		this.metricsListener = metricsListener;
+	}
+
 	/**
 	 * Sends a Webmention request to the given endpoint.
 	 *
@@ -55,8 +76,24 @@ public final class EndpointService {
 			.build();
 
 		LOGGER.debug("Sending request '{}'.", request);
+		NotificationEvent event = new NotificationEvent();
+		event.begin();
+		try (PhaseTimer timer = PhaseTimer.start(metricsListener, Phase.NOTIFY, "")) {
+			try {
+				return execute(httpClient, request, endpoint, timer);
+			} finally {
+				event.complete(endpoint, webmention, timer);
+			}
+		}
+	}
+
+	private static Optional<URI> execute(CloseableHttpClient httpClient,
+										 ClassicHttpRequest request,
+										 URI endpoint,
+										 PhaseTimer timer) throws IOException {
 		return httpClient.execute(request, response -> {
 			LOGGER.trace("Received response '{}' from '{}'.", response, endpoint);
+			timer.setOutcome(String.valueOf(response.getCode()));
 
 			/*
 			 * Spec:
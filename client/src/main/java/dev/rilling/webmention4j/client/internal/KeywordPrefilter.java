@@ -0,0 +1,99 @@
+package dev.rilling.webmention4j.client.internal;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Checks if a body contains a keyword while buffering it, allowing callers to skip expensive parsing of bodies
+ * that cannot possibly contain what they are looking for.
+ * <p>
+ * Matching is ASCII case-insensitive and done on the raw bytes, so it is only meaningful for
+ * ASCII-compatible encodings (e.g., UTF-8 or ISO-8859-1).
+ */
+public final class KeywordPrefilter {
+	private static final int BUFFER_SIZE = 8192;
+
+	private final byte[] keyword;
+	private final int[] failure;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param keyword Keyword to look for. Must be non-empty ASCII.
+	 */
+	public KeywordPrefilter(@NotNull String keyword) {
+		if (keyword.isEmpty()) {
+			throw new IllegalArgumentException("Keyword must not be empty.");
+		}
+		this.keyword = keyword.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.US_ASCII);
+		failure = createFailureTable(this.keyword);
+	}
+
+	/**
+	 * Reads the stream to its end, looking for the keyword.
+	 * Matching state is carried over between reads, so matches spanning buffer boundaries are found.
+	 *
+	 * @param inputStream Stream to read. Will not be closed.
+	 * @return The buffered body and if the keyword was found in it.
+	 * @throws IOException if I/O fails.
+	 */
+	@NotNull
+	public Result scan(@NotNull InputStream inputStream) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		byte[] buffer = new byte[BUFFER_SIZE];
+		int matched = 0;
+		boolean found = false;
+		int read;
+		while ((read = inputStream.read(buffer)) != -1) {
+			body.write(buffer, 0, read);
+			for (int i = 0; i < read && !found; i++) {
+				byte current = toLowerCase(buffer[i]);
+				while (matched > 0 && keyword[matched] != current) {
+					matched = failure[matched - 1];
+				}
+				if (keyword[matched] == current) {
+					matched++;
+				}
+				if (matched == keyword.length) {
+					found = true;
+				}
+			}
+		}
+		return new Result(body.toByteArray(), found);
+	}
+
+	private static byte toLowerCase(byte b) {
+		if (b >= 'A' && b <= 'Z') {
+			return (byte) (b + ('a' - 'A'));
+		}
+		return b;
+	}
+
+	// Knuth-Morris-Pratt prefix function.
+	private static int[] createFailureTable(byte[] pattern) {
+		int[] table = new int[pattern.length];
+		int k = 0;
+		for (int i = 1; i < pattern.length; i++) {
+			while (k > 0 && pattern[k] != pattern[i]) {
+				k = table[k - 1];
+			}
+			if (pattern[k] == pattern[i]) {
+				k++;
+			}
+			table[i] = k;
+		}
+		return table;
+	}
+
+	/**
+	 * @param body  The complete body that was read.
+	 * @param found If the keyword was found in the body.
+	 */
+	public record Result(byte @NotNull [] body, boolean found) {
+	}
+}
@@ -0,0 +1,53 @@
+package dev.rilling.webmention4j.client.internal;
+
+import dev.rilling.webmention4j.common.Webmention;
+import dev.rilling.webmention4j.common.internal.EventUris;
+import dev.rilling.webmention4j.common.internal.PhaseTimer;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.jetbrains.annotations.NotNull;
+
+import java.net.URI;
+
+/**
+ * JFR event emitted by {@link EndpointService#notifyEndpoint}.
+ */
+@Name(NotificationEvent.NAME)
+@Label("Webmention Notification")
+@Description("Sending a Webmention to an endpoint")
+@Category({"webmention4j", "Client"})
+@StackTrace(false)
+final class NotificationEvent extends jdk.jfr.Event {
+	static final String NAME = "dev.rilling.webmention4j.Notification";
+
+	@Label("Endpoint")
+	String endpoint;
+
+	@Label("Source")
+	String source;
+
+	@Label("Target")
+	String target;
+
+	@Label("Outcome")
+	@Description("HTTP status code, or 'error' if there was no response")
+	String outcome;
+
+	/**
+	 * Ends and commits this event, if enabled.
+	 */
+	void complete(@NotNull URI endpoint, @NotNull Webmention webmention, @NotNull PhaseTimer timer) {
+		end();
+		if (!shouldCommit()) {
+			return;
+		}
+		this.endpoint = EventUris.format(endpoint);
+		source = EventUris.format(webmention.source());
+		target = EventUris.format(webmention.target());
+		outcome = timer.getOutcome();
+		commit();
+	}
+}
@@ -1,6 +1,7 @@
 package dev.rilling.webmention4j.client;
 
 import dev.rilling.webmention4j.common.Webmention;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -26,6 +27,11 @@ class WebmentionClientExternalIT {
 
 	final WebmentionClient client = new WebmentionClient();
 
+	@AfterEach
+	void tearDown() {
+		client.close();
+	}
+
 	@ParameterizedTest
 	@MethodSource(value = "createEndpoints")
 	void supportsWebmention(URI target) throws Exception {
@@ -6,16 +6,24 @@ import com.github.tomakehurst.wiremock.matching.EqualToPattern;
 import com.github.tomakehurst.wiremock.matching.UrlPattern;
 import dev.rilling.webmention4j.client.WebmentionClient.Config;
 import dev.rilling.webmention4j.common.Webmention;
+import dev.rilling.webmention4j.common.metrics.MetricsRecorder;
+import dev.rilling.webmention4j.common.metrics.Phase;
 import org.apache.hc.core5.http.HttpHeaders;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 
 import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
@@ -39,6 +47,11 @@ class WebmentionClientIT {
 		webmentionClient = new WebmentionClient(config);
 	}
 
+	@AfterEach
+	void tearDown() {
+		webmentionClient.close();
+	}
+
 	@Test
 	@DisplayName("#supportsWebmention returns false if no endpoint is found")
 	void supportsWebmentionFalse() throws IOException {
@@ -70,6 +83,28 @@ class WebmentionClientIT {
 			.hasMessage("Could not find any webmention endpoint URL in the target resource.");
 	}
 
+	@Test
+	@DisplayName("#sendWebmention reports phases to metrics listener")
+	void sendWebmentionReportsMetrics() throws IOException {
+		TARGET_SERVER.stubFor(get("/post").willReturn(ok().withHeader(HttpHeaders.LINK,
+			"</endpoint>; rel=\"webmention\"")));
+		TARGET_SERVER.stubFor(post("/endpoint").willReturn(aResponse().withStatus(202)));
+
+		MetricsRecorder recorder = new MetricsRecorder();
+		Config config = new Config();
+		config.setAllowLocalhostEndpoint(true);
+		config.setMetricsListener(recorder);
+		try (WebmentionClient client = new WebmentionClient(config)) {
+			client.sendWebmention(new Webmention(URI.create("https://example.com"),
+				URI.create(TARGET_SERVER.url("/post"))));
+		}
+
+		assertThat(recorder.getDurations()).containsKeys(new MetricsRecorder.Series(Phase.DNS, "", "ok"),
+			new MetricsRecorder.Series(Phase.CONNECT, "", "ok"),
+			new MetricsRecorder.Series(Phase.DISCOVERY, "", "found"),
+			new MetricsRecorder.Series(Phase.NOTIFY, "", "202"));
+	}
+
 	@Test
 	@DisplayName("#sendWebmention sends webmention")
 	void sendWebmentionSends() throws IOException {
@@ -87,4 +122,71 @@ class WebmentionClientIT {
 		EqualToPattern bodyPattern = new EqualToPattern("source=%s&target=%s".formatted(encodedSource, encodedTarget));
 		TARGET_SERVER.verify(newRequestPattern(RequestMethod.POST, urlPattern).withRequestBody(bodyPattern));
 	}
+
+	@Test
+	@DisplayName("#sendWebmention fails fast for unreachable host after repeated failures")
+	void sendWebmentionCircuitOpen() throws IOException {
+		int closedPort;
+		try (ServerSocket serverSocket = new ServerSocket(0)) {
+			closedPort = serverSocket.getLocalPort();
+		}
+		Config config = new Config();
+		config.setCircuitBreakerFailureThreshold(2);
+		Webmention webmention = new Webmention(URI.create("https://example.com"),
+			URI.create("http://127.0.0.1:%d/post".formatted(closedPort)));
+		try (WebmentionClient client = new WebmentionClient(config)) {
+			assertThatThrownBy(() -> client.sendWebmention(webmention)).isInstanceOf(ConnectException.class);
+			assertThatThrownBy(() -> client.sendWebmention(webmention)).isInstanceOf(ConnectException.class);
+			assertThatThrownBy(() -> client.sendWebmention(webmention)).isInstanceOfSatisfying(
+				CircuitOpenException.class,
+				e -> {
+					assertThat(e.getHost()).isEqualTo("127.0.0.1");
+					assertThat(e.getRetryAfter()).isPositive();
+				});
+		}
+	}
+
+	@Test
+	@DisplayName("#supportsWebmention cuts slow responses of usually fast hosts, but not of slow hosts")
+	void supportsWebmentionAdaptiveTimeout() throws IOException {
+		TARGET_SERVER.stubFor(get("/fast").willReturn(ok()));
+		TARGET_SERVER.stubFor(get("/slow").willReturn(ok().withFixedDelay(500)));
+		TARGET_SERVER.stubFor(get("/outlier").willReturn(ok().withFixedDelay(1000)));
+		Config config = new Config();
+		config.setResponseTimeout(Duration.ofSeconds(2));
+		config.setMinResponseTimeout(Duration.ofMillis(200));
+		URI fastHost = URI.create(TARGET_SERVER.url("/"));
+		URI slowHost = URI.create("http://127.0.0.1:%d/".formatted(TARGET_SERVER.getPort()));
+		try (WebmentionClient client = new WebmentionClient(config)) {
+			for (int i = 0; i < 10; i++) {
+				client.supportsWebmention(fastHost.resolve("/fast"));
+				client.supportsWebmention(slowHost.resolve("/slow"));
+			}
+
+			assertThatThrownBy(() -> client.supportsWebmention(fastHost.resolve("/outlier"))).isInstanceOf(
+				SocketTimeoutException.class);
+			assertThat(client.supportsWebmention(slowHost.resolve("/outlier"))).isFalse();
+		}
+	}
+
+	@Test
+	@DisplayName("#warmUp opens connections that are used by following requests")
+	void warmUpOpensConnections() throws IOException {
+		TARGET_SERVER.stubFor(get("/post").willReturn(ok()));
+
+		MetricsRecorder recorder = new MetricsRecorder();
+		Config config = new Config();
+		config.setMetricsListener(recorder);
+		try (WebmentionClient client = new WebmentionClient(config)) {
+			URI target = URI.create(TARGET_SERVER.url("/post"));
+			client.warmUp(List.of(target, URI.create(TARGET_SERVER.url("/other-post")), URI.create("mailto:a@b.c")));
+			MetricsRecorder.Series dnsSeries = new MetricsRecorder.Series(Phase.DNS, "", "ok");
+			assertThat(recorder.getDurations()).containsOnlyKeys(dnsSeries);
+			long dnsCount = recorder.getDurations().get(dnsSeries).getCount();
+
+			client.supportsWebmention(target);
+			// The pooled connection is used, so the host is not resolved again to connect.
+			assertThat(recorder.getDurations().get(dnsSeries).getCount()).isEqualTo(dnsCount);
+		}
+	}
 }
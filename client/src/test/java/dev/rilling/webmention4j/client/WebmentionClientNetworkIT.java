@@ -0,0 +1,90 @@
+package dev.rilling.webmention4j.client;
+
+import dev.rilling.webmention4j.client.WebmentionClient.Config;
+import dev.rilling.webmention4j.common.Webmention;
+import dev.rilling.webmention4j.common.test.AutoClosableExtension;
+import dev.rilling.webmention4j.common.test.HostBehavior;
+import dev.rilling.webmention4j.common.test.SimulatedWebmentionNetwork;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WebmentionClientNetworkIT {
+
+	private static final int HOST_COUNT = 500;
+
+	@RegisterExtension
+	static final AutoClosableExtension<SimulatedWebmentionNetwork> NETWORK = new AutoClosableExtension<>(
+		() -> new SimulatedWebmentionNetwork(HOST_COUNT, SimulatedWebmentionNetwork.mixedBehaviors(42)));
+
+	WebmentionClient webmentionClient;
+
+	@BeforeEach
+	void setUp() {
+		NETWORK.get().reset();
+
+		Config config = new Config();
+		config.setAllowLocalhostEndpoint(true);
+		webmentionClient = new WebmentionClient(config);
+	}
+
+	@AfterEach
+	void tearDown() {
+		webmentionClient.close();
+	}
+
+	@Test
+	@DisplayName("#sendWebmention sends Webmentions to many hosts")
+	void sendWebmentionManyHosts() {
+		SimulatedWebmentionNetwork network = NETWORK.get();
+		URI source = URI.create("https://example.com");
+
+		int sent = 0;
+		int failed = 0;
+		for (int host = 0; host < HOST_COUNT; host++) {
+			HostBehavior behavior = network.getBehavior(host);
+			// Rate limited discovery requests are retried.
+			boolean expectedSuccess = behavior.endpointLocation() != HostBehavior.EndpointLocation.NONE;
+			try {
+				Optional<URI> monitoringUrl = webmentionClient.sendWebmention(new Webmention(source,
+					network.getTargetUri(host)));
+				assertThat(expectedSuccess).as("Host %d succeeded", host).isTrue();
+				assertThat(monitoringUrl.isPresent()).isEqualTo(behavior.endpointStatus() == 201);
+				sent++;
+			} catch (IOException e) {
+				assertThat(expectedSuccess).as("Host %d failed: %s", host, e.getMessage()).isFalse();
+				failed++;
+			}
+			assertThat(network.getReceivedWebmentionCount(host)).isEqualTo(expectedSuccess ? 1 : 0);
+			assertThat(network.getPageRequestCount(host)).isEqualTo(behavior.redirects() + 1);
+		}
+
+		assertThat(sent).isPositive();
+		assertThat(failed).isPositive();
+		assertThat(network.getTotalReceivedWebmentionCount()).isEqualTo(sent);
+	}
+
+	@Test
+	@DisplayName("#sendWebmention succeeds for rate limited host once the limit is over")
+	void sendWebmentionRateLimited() throws IOException {
+		try (SimulatedWebmentionNetwork network = new SimulatedWebmentionNetwork(1,
+			host -> HostBehavior.DEFAULT.withRateLimitedRequests(2))) {
+			Webmention webmention = new Webmention(URI.create("https://example.com"), network.getTargetUri(0));
+
+			assertThatThrownBy(() -> webmentionClient.sendWebmention(webmention)).isInstanceOf(IOException.class);
+			webmentionClient.sendWebmention(webmention);
+
+			assertThat(network.getRequestCount(0)).isEqualTo(4);
+			assertThat(network.getReceivedWebmentionCount(0)).isEqualTo(1);
+		}
+	}
+}
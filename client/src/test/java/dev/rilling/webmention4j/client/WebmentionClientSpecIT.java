@@ -31,7 +31,6 @@ class WebmentionClientSpecIT {
 	void sendWebmentionLocalhost() {
 		Config config = new Config();
 		config.setAllowLocalhostEndpoint(false);
-		WebmentionClient webmentionClient = new WebmentionClient(config);
 
 		TARGET_SERVER.stubFor(get("/post").willReturn(ok().withHeader(HttpHeaders.LINK,
 			"</endpoint>; rel=\"webmention\"")));
@@ -40,10 +39,12 @@ class WebmentionClientSpecIT {
 
 		URI target = URI.create(TARGET_SERVER.url("/post"));
 		Webmention webmention = new Webmention(URI.create("https://example.com"), target);
-		assertThatThrownBy(() -> webmentionClient.sendWebmention(webmention)).isNotNull()
-			.isInstanceOf(IOException.class)
-			.hasMessageMatching(
-				"Endpoint 'http://.*/endpoint' is localhost or a loopback IP address, refusing to notify\\.");
+		try (WebmentionClient webmentionClient = new WebmentionClient(config)) {
+			assertThatThrownBy(() -> webmentionClient.sendWebmention(webmention)).isNotNull()
+				.isInstanceOf(IOException.class)
+				.hasMessageMatching(
+					"Endpoint 'http://.*/endpoint' is localhost or a loopback IP address, refusing to notify\\.");
+		}
 	}
 
 	@Test
@@ -53,7 +54,6 @@ class WebmentionClientSpecIT {
 	void sendWebmentionLocalhostRedirect() {
 		Config config = new Config();
 		config.setAllowLocalhostEndpoint(false);
-		WebmentionClient webmentionClient = new WebmentionClient(config);
 
 		TARGET_SERVER.stubFor(get("/post").willReturn(ok().withHeader(HttpHeaders.LINK,
 			"</endpoint>; rel=\"webmention\"")));
@@ -62,10 +62,12 @@ class WebmentionClientSpecIT {
 
 		URI target = URI.create(TARGET_SERVER.url("/post"));
 		Webmention webmention = new Webmention(URI.create("https://example.com"), target);
-		assertThatThrownBy(() -> webmentionClient.sendWebmention(webmention)).isNotNull()
-			.isInstanceOf(IOException.class)
-			.hasMessageMatching(
-				"Endpoint 'http://.*/endpoint' is localhost or a loopback IP address, refusing to notify\\.");
+		try (WebmentionClient webmentionClient = new WebmentionClient(config)) {
+			assertThatThrownBy(() -> webmentionClient.sendWebmention(webmention)).isNotNull()
+				.isInstanceOf(IOException.class)
+				.hasMessageMatching(
+					"Endpoint 'http://.*/endpoint' is localhost or a loopback IP address, refusing to notify\\.");
+		}
 	}
 
 	// TODO: add test for localhost found during redirect following for notification.
@@ -0,0 +1,92 @@
+package dev.rilling.webmention4j.client.internal;
+
+import org.apache.hc.client5.http.ConnectTimeoutException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTest {
+
+	final AtomicLong nanoTime = new AtomicLong(0);
+
+	@Test
+	@DisplayName("#tryAcquire rejects requests once the failure threshold is reached")
+	void tryAcquireOpens() {
+		CircuitBreaker circuitBreaker = new CircuitBreaker(2, Duration.ofSeconds(10), nanoTime::get);
+
+		assertThat(circuitBreaker.tryAcquire("example.com")).isTrue();
+		circuitBreaker.recordFailure("example.com");
+		assertThat(circuitBreaker.tryAcquire("example.com")).isTrue();
+		circuitBreaker.recordFailure("example.com");
+
+		assertThat(circuitBreaker.tryAcquire("example.com")).isFalse();
+		assertThat(circuitBreaker.tryAcquire("EXAMPLE.com")).isFalse();
+		assertThat(circuitBreaker.tryAcquire("example.org")).isTrue();
+		assertThat(circuitBreaker.getRetryAfter("example.com")).isEqualTo(Duration.ofSeconds(10));
+	}
+
+	@Test
+	@DisplayName("#recordSuccess resets consecutive failures")
+	void recordSuccessResets() {
+		CircuitBreaker circuitBreaker = new CircuitBreaker(2, Duration.ofSeconds(10), nanoTime::get);
+
+		circuitBreaker.recordFailure("example.com");
+		circuitBreaker.recordSuccess("example.com");
+		circuitBreaker.recordFailure("example.com");
+
+		assertThat(circuitBreaker.tryAcquire("example.com")).isTrue();
+		assertThat(circuitBreaker.getRetryAfter("example.com")).isZero();
+	}
+
+	@Test
+	@DisplayName("#tryAcquire allows a single trial request after the open duration")
+	void tryAcquireHalfOpen() {
+		CircuitBreaker circuitBreaker = new CircuitBreaker(1, Duration.ofSeconds(10), nanoTime::get);
+		circuitBreaker.recordFailure("example.com");
+
+		nanoTime.addAndGet(Duration.ofSeconds(10).toNanos());
+		assertThat(circuitBreaker.tryAcquire("example.com")).isTrue();
+		assertThat(circuitBreaker.tryAcquire("example.com")).isFalse();
+
+		// Failed trial opens the circuit again.
+		circuitBreaker.recordFailure("example.com");
+		assertThat(circuitBreaker.tryAcquire("example.com")).isFalse();
+
+		nanoTime.addAndGet(Duration.ofSeconds(10).toNanos());
+		assertThat(circuitBreaker.tryAcquire("example.com")).isTrue();
+		circuitBreaker.recordSuccess("example.com");
+		assertThat(circuitBreaker.tryAcquire("example.com")).isTrue();
+		assertThat(circuitBreaker.tryAcquire("example.com")).isTrue();
+	}
+
+	@Test
+	@DisplayName("#tryAcquire always allows requests if disabled")
+	void tryAcquireDisabled() {
+		CircuitBreaker circuitBreaker = new CircuitBreaker(0, Duration.ofSeconds(10), nanoTime::get);
+
+		circuitBreaker.recordFailure("example.com");
+		circuitBreaker.recordFailure("example.com");
+
+		assertThat(circuitBreaker.tryAcquire("example.com")).isTrue();
+	}
+
+	@Test
+	@DisplayName("#isHostFailure only counts unreachable hosts")
+	void isHostFailure() {
+		assertThat(CircuitBreaker.isHostFailure(new ConnectException())).isTrue();
+		assertThat(CircuitBreaker.isHostFailure(new ConnectTimeoutException("Timeout"))).isTrue();
+		assertThat(CircuitBreaker.isHostFailure(new SocketTimeoutException("Read timed out"))).isTrue();
+		assertThat(CircuitBreaker.isHostFailure(new UnknownHostException())).isTrue();
+		assertThat(CircuitBreaker.isHostFailure(new InterruptedIOException())).isFalse();
+		assertThat(CircuitBreaker.isHostFailure(new IOException("Request failed: 404 - Not Found"))).isFalse();
+	}
+}
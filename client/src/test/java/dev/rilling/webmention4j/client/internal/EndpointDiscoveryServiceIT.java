@@ -3,20 +3,31 @@ package dev.rilling.webmention4j.client.internal;
 import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
 import dev.rilling.webmention4j.client.internal.link.HeaderLinkParser;
 import dev.rilling.webmention4j.client.internal.link.HtmlLinkParser;
+import dev.rilling.webmention4j.common.internal.FetchLimitExceededException;
+import dev.rilling.webmention4j.common.internal.FetchLimits;
 import dev.rilling.webmention4j.common.test.AutoClosableExtension;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpHeaders;
 import org.apache.hc.core5.http.HttpStatus;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
 import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
 
-import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
-import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class EndpointDiscoveryServiceIT {
@@ -53,4 +64,78 @@ class EndpointDiscoveryServiceIT {
 
 	}
 
+	@Test
+	@DisplayName("#discoverEndpoint skips HTML parsing if body cannot contain an endpoint")
+	void skipsHtmlParsing() throws IOException {
+		TARGET_SERVER.stubFor(get("/no-endpoint").willReturn(ok().withHeader(HttpHeaders.CONTENT_TYPE,
+			ContentType.TEXT_HTML.toString()).withBody("""
+			<html lang="en">
+			<head>
+				<title>Foo</title>
+			</head>
+			<body>
+				<a href="https://example.com">cool site</a>
+			</body>
+			</html>""")));
+		TARGET_SERVER.stubFor(get("/endpoint").willReturn(ok().withHeader(HttpHeaders.CONTENT_TYPE,
+			ContentType.TEXT_HTML.toString()).withBody("""
+			<html lang="en">
+			<head>
+				<title>Foo</title>
+				<link href="http://aaronpk.example/webmention-endpoint" rel="webmention" />
+			</head>
+			<body>
+			</body>
+			</html>""")));
+
+		assertThat(endpointDiscoveryService.discoverEndpoint(HTTP_CLIENT_EXTENSION.get(),
+			URI.create(TARGET_SERVER.url("/no-endpoint")))).isEmpty();
+		assertThat(endpointDiscoveryService.getAvoidedHtmlParseCount()).isEqualTo(1);
+
+		assertThat(endpointDiscoveryService.discoverEndpoint(HTTP_CLIENT_EXTENSION.get(),
+			URI.create(TARGET_SERVER.url("/endpoint")))).contains(URI.create("http://aaronpk.example/webmention-endpoint"));
+		assertThat(endpointDiscoveryService.getAvoidedHtmlParseCount()).isEqualTo(1);
+	}
+
+	@Test
+	@DisplayName("#discoverEndpoint emits JFR event")
+	void emitsEvent(@TempDir Path tempDir) throws IOException {
+		String body = "<link href=\"http://aaronpk.example/webmention-endpoint\" rel=\"webmention\" />";
+		TARGET_SERVER.stubFor(get("/event").willReturn(ok().withHeader(HttpHeaders.CONTENT_TYPE,
+			ContentType.TEXT_HTML.toString()).withBody(body)));
+		URI target = URI.create(TARGET_SERVER.url("/event"));
+
+		Path recordingFile = tempDir.resolve("recording.jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable(DiscoveryEvent.NAME);
+			recording.start();
+			endpointDiscoveryService.discoverEndpoint(HTTP_CLIENT_EXTENSION.get(), target);
+			recording.stop();
+			recording.dump(recordingFile);
+		}
+
+		List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+		assertThat(events).singleElement().satisfies(event -> {
+			assertThat(event.getString("target")).isEqualTo(target.toString());
+			assertThat(event.getString("endpoint")).isEqualTo("http://aaronpk.example/webmention-endpoint");
+			assertThat(event.getLong("bytesRead")).isEqualTo(body.length());
+			assertThat(event.getString("outcome")).isEqualTo("found");
+		});
+	}
+
+	@Test
+	@DisplayName("#discoverEndpoint aborts if body exceeds size limit")
+	void abortsOnBodySize() {
+		TARGET_SERVER.stubFor(get("/large").willReturn(ok().withHeader(HttpHeaders.CONTENT_TYPE,
+			ContentType.TEXT_HTML.toString()).withBody("<p>webmention</p>".repeat(100))));
+
+		EndpointDiscoveryService limitedEndpointDiscoveryService = new EndpointDiscoveryService(new HeaderLinkParser(),
+			new HtmlLinkParser(),
+			new FetchLimits(100, 100, Duration.ofSeconds(5), Duration.ofSeconds(5), Duration.ofSeconds(5)));
+
+		assertThatThrownBy(() -> limitedEndpointDiscoveryService.discoverEndpoint(HTTP_CLIENT_EXTENSION.get(),
+			URI.create(TARGET_SERVER.url("/large")))).isInstanceOf(FetchLimitExceededException.class);
+		assertThat(limitedEndpointDiscoveryService.getLimitExceededCount()).isEqualTo(1);
+	}
+
 }
@@ -0,0 +1,66 @@
+package dev.rilling.webmention4j.client.internal;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KeywordPrefilterTest {
+
+	final KeywordPrefilter keywordPrefilter = new KeywordPrefilter("webmention");
+
+	@Test
+	@DisplayName("#scan finds keyword")
+	void scanFindsKeyword() throws IOException {
+		byte[] body = "<link rel=\"webmention\" href=\"/endpoint\">".getBytes(StandardCharsets.UTF_8);
+
+		KeywordPrefilter.Result result = keywordPrefilter.scan(new ByteArrayInputStream(body));
+		assertThat(result.found()).isTrue();
+		assertThat(result.body()).isEqualTo(body);
+	}
+
+	@Test
+	@DisplayName("#scan ignores case")
+	void scanIgnoresCase() throws IOException {
+		byte[] body = "<link rel=\"WebMention\" href=\"/endpoint\">".getBytes(StandardCharsets.UTF_8);
+
+		assertThat(keywordPrefilter.scan(new ByteArrayInputStream(body)).found()).isTrue();
+	}
+
+	@Test
+	@DisplayName("#scan finds keyword across read boundaries")
+	void scanFindsKeywordAcrossReads() throws IOException {
+		byte[] body = "<a rel=\"webwebmention\" href=\"/endpoint\">".getBytes(StandardCharsets.UTF_8);
+
+		KeywordPrefilter.Result result = keywordPrefilter.scan(new SingleByteInputStream(new ByteArrayInputStream(body)));
+		assertThat(result.found()).isTrue();
+		assertThat(result.body()).isEqualTo(body);
+	}
+
+	@Test
+	@DisplayName("#scan returns full body if keyword is missing")
+	void scanMissingKeyword() throws IOException {
+		byte[] body = "<a href=\"https://example.com\">webmentio</a>".getBytes(StandardCharsets.UTF_8);
+
+		KeywordPrefilter.Result result = keywordPrefilter.scan(new ByteArrayInputStream(body));
+		assertThat(result.found()).isFalse();
+		assertThat(result.body()).isEqualTo(body);
+	}
+
+	private static final class SingleByteInputStream extends FilterInputStream {
+		SingleByteInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			return super.read(b, off, Math.min(len, 1));
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package dev.rilling.webmention4j.common.test;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+
+/**
+ * Behavior of a single host of a {@link SimulatedWebmentionNetwork}.
+ *
+ * @param endpointLocation    Where the target page advertises its endpoint.
+ * @param redirects           Number of redirects before the target page is served.
+ * @param latency             Delay before each response of the host is sent.
+ * @param rateLimitedRequests Number of requests to the host that are answered with '429 Too Many Requests' before
+ *                            requests are served.
+ * @param endpointStatus      Status the endpoint responds with to valid Webmentions, e.g. 201 or 202.
+ */
+public record HostBehavior(@NotNull EndpointLocation endpointLocation,
+						   int redirects,
+						   @NotNull Duration latency,
+						   int rateLimitedRequests,
+						   int endpointStatus) {
+
+	/**
+	 * Host advertising its endpoint in a header and accepting Webmentions right away.
+	 */
+	public static final HostBehavior DEFAULT = new HostBehavior(EndpointLocation.LINK_HEADER,
+		0,
+		Duration.ZERO,
+		0,
+		202);
+
+	/**
+	 * Where a target page advertises its endpoint.
+	 */
+	public enum EndpointLocation {
+		/**
+		 * 'Link' header of the response.
+		 */
+		LINK_HEADER,
+		/**
+		 * {@code <link>} element in the HTML head.
+		 */
+		HTML_LINK,
+		/**
+		 * {@code <a>} element in the HTML body.
+		 */
+		HTML_ANCHOR,
+		/**
+		 * Not at all, the host does not support Webmentions.
+		 */
+		NONE
+	}
+
+	@NotNull
+	public HostBehavior withEndpointLocation(@NotNull EndpointLocation endpointLocation) {
+		return new HostBehavior(endpointLocation, redirects, latency, rateLimitedRequests, endpointStatus);
+	}
+
+	@NotNull
+	public HostBehavior withRedirects(int redirects) {
+		return new HostBehavior(endpointLocation, redirects, latency, rateLimitedRequests, endpointStatus);
+	}
+
+	@NotNull
+	public HostBehavior withLatency(@NotNull Duration latency) {
+		return new HostBehavior(endpointLocation, redirects, latency, rateLimitedRequests, endpointStatus);
+	}
+
+	@NotNull
+	public HostBehavior withRateLimitedRequests(int rateLimitedRequests) {
+		return new HostBehavior(endpointLocation, redirects, latency, rateLimitedRequests, endpointStatus);
+	}
+
+	@NotNull
+	public HostBehavior withEndpointStatus(int endpointStatus) {
+		return new HostBehavior(endpointLocation, redirects, latency, rateLimitedRequests, endpointStatus);
+	}
+}
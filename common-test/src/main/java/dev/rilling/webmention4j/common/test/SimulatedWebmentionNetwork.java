@@ -0,0 +1,371 @@
+package dev.rilling.webmention4j.common.test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Simulates many hosts serving Webmention target pages and endpoints in-process, e.g. to test sending
+ * Webmentions in bulk.
+ * <p>
+ * Each host has its own loopback address ({@code 127.1.0.0}, {@code 127.1.0.1}, ...), so that clients treat them as
+ * distinct hosts, e.g. for connection pooling. All hosts are served by a single server listening on all addresses
+ * on one port, which requires the whole {@code 127.0.0.0/8} block to be routed to the loopback interface, as on
+ * Linux. Requests from other than loopback addresses are refused.
+ * <p>
+ * Every host serves a target page at {@link #getTargetUri(int)} and a Webmention endpoint at
+ * {@link #getEndpointUri(int)}, behaving as described by its {@link HostBehavior}. Requests are counted per host,
+ * so that tests can check e.g. how often endpoint discovery was done.
+ */
+public final class SimulatedWebmentionNetwork implements AutoCloseable {
+
+	/**
+	 * Maximum number of hosts, limited by the addresses of {@code 127.1.0.0/16}.
+	 */
+	public static final int MAX_HOST_COUNT = 65536;
+
+	private static final String TARGET_PATH = "/post";
+	private static final String ENDPOINT_PATH = "/webmention";
+
+	private final List<HostBehavior> behaviors;
+	private final ExecutorService executor;
+	private final HttpServer server;
+	private final AtomicLongArray requestCounts;
+	private final AtomicLongArray pageRequestCounts;
+	private final AtomicLongArray endpointRequestCounts;
+	private final AtomicLongArray receivedWebmentionCounts;
+
+	/**
+	 * Creates and starts a new network.
+	 *
+	 * @param hostCount Number of hosts to simulate.
+	 * @param behaviors Function returning the behavior of the host with the given index.
+	 * @throws UncheckedIOException if the server cannot be started.
+	 * @see #mixedBehaviors(long)
+	 */
+	public SimulatedWebmentionNetwork(int hostCount, @NotNull IntFunction<HostBehavior> behaviors) {
+		if (hostCount < 1 || hostCount > MAX_HOST_COUNT) {
+			throw new IllegalArgumentException("Host count must be between 1 and %d.".formatted(MAX_HOST_COUNT));
+		}
+		this.behaviors = IntStream.range(0, hostCount).mapToObj(behaviors).toList();
+		requestCounts = new AtomicLongArray(hostCount);
+		pageRequestCounts = new AtomicLongArray(hostCount);
+		endpointRequestCounts = new AtomicLongArray(hostCount);
+		receivedWebmentionCounts = new AtomicLongArray(hostCount);
+
+		// Responses of slow hosts block their thread, so threads are not bounded.
+		executor = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "simulated-webmention-network");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			server = HttpServer.create(new InetSocketAddress(0), 1024);
+		} catch (IOException e) {
+			executor.shutdownNow();
+			throw new UncheckedIOException("Could not create server.", e);
+		}
+		server.setExecutor(executor);
+		server.createContext("/", this::handle);
+		server.start();
+	}
+
+	/**
+	 * Creates behaviors with a realistic mix of endpoint locations, redirects, slow hosts, rate limiting hosts and
+	 * hosts not supporting Webmentions. The behavior of a host only depends on the seed and its index.
+	 *
+	 * @param seed Seed of the random assignment.
+	 * @return Behaviors by host index.
+	 */
+	@NotNull
+	public static IntFunction<HostBehavior> mixedBehaviors(long seed) {
+		return index -> {
+			SplittableRandom random = new SplittableRandom(seed ^ (index * 0x9E3779B97F4A7C15L));
+			HostBehavior behavior = HostBehavior.DEFAULT;
+			int location = random.nextInt(100);
+			if (location < 30) {
+				behavior = behavior.withEndpointLocation(HostBehavior.EndpointLocation.HTML_LINK);
+			} else if (location < 45) {
+				behavior = behavior.withEndpointLocation(HostBehavior.EndpointLocation.HTML_ANCHOR);
+			} else if (location < 50) {
+				behavior = behavior.withEndpointLocation(HostBehavior.EndpointLocation.NONE);
+			}
+			if (random.nextInt(100) < 10) {
+				behavior = behavior.withRedirects(1 + random.nextInt(2));
+			}
+			if (random.nextInt(100) < 5) {
+				behavior = behavior.withLatency(Duration.ofMillis(50 + random.nextInt(50)));
+			}
+			// Rate limited hosts are rare, as clients retrying wait for at least a second.
+			if (random.nextInt(100) < 1) {
+				behavior = behavior.withRateLimitedRequests(1);
+			}
+			if (random.nextInt(100) < 20) {
+				behavior = behavior.withEndpointStatus(201);
+			}
+			return behavior;
+		};
+	}
+
+	public int getHostCount() {
+		return behaviors.size();
+	}
+
+	@NotNull
+	public HostBehavior getBehavior(int host) {
+		return behaviors.get(host);
+	}
+
+	/**
+	 * @return URL of the target page of the host, which advertises its endpoint.
+	 */
+	@NotNull
+	public URI getTargetUri(int host) {
+		return getHostUri(host).resolve(TARGET_PATH);
+	}
+
+	/**
+	 * @return URLs of the target pages of all hosts, by host index.
+	 */
+	@NotNull
+	public List<URI> getTargetUris() {
+		return IntStream.range(0, behaviors.size()).mapToObj(this::getTargetUri).toList();
+	}
+
+	/**
+	 * @return URL of the Webmention endpoint of the host.
+	 */
+	@NotNull
+	public URI getEndpointUri(int host) {
+		return getHostUri(host).resolve(ENDPOINT_PATH);
+	}
+
+	/**
+	 * @return Number of requests to the host, including rate limited ones.
+	 */
+	public long getRequestCount(int host) {
+		return requestCounts.get(host);
+	}
+
+	/**
+	 * @return Number of requests to the target page of the host, including redirects.
+	 */
+	public long getPageRequestCount(int host) {
+		return pageRequestCounts.get(host);
+	}
+
+	/**
+	 * @return Number of requests to the endpoint of the host, including invalid ones.
+	 */
+	public long getEndpointRequestCount(int host) {
+		return endpointRequestCounts.get(host);
+	}
+
+	/**
+	 * @return Number of valid Webmentions the endpoint of the host accepted.
+	 */
+	public long getReceivedWebmentionCount(int host) {
+		return receivedWebmentionCounts.get(host);
+	}
+
+	/**
+	 * @return Number of requests to all hosts.
+	 */
+	public long getTotalRequestCount() {
+		return sum(requestCounts);
+	}
+
+	/**
+	 * @return Number of valid Webmentions accepted by all hosts.
+	 */
+	public long getTotalReceivedWebmentionCount() {
+		return sum(receivedWebmentionCounts);
+	}
+
+	/**
+	 * Resets all counts, including those of requests that were rate limited.
+	 */
+	public void reset() {
+		for (int i = 0; i < behaviors.size(); i++) {
+			requestCounts.set(i, 0);
+			pageRequestCounts.set(i, 0);
+			endpointRequestCounts.set(i, 0);
+			receivedWebmentionCounts.set(i, 0);
+		}
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private URI getHostUri(int host) {
+		return URI.create("http://127.1.%d.%d:%d/".formatted(host >> 8,
+			host & 0xFF,
+			server.getAddress().getPort()));
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			if (!exchange.getRemoteAddress().getAddress().isLoopbackAddress()) {
+				respond(exchange, 403, "Forbidden.");
+				return;
+			}
+			int host = getHostIndex(exchange.getLocalAddress().getAddress());
+			if (host == -1) {
+				respond(exchange, 404, "Not found.");
+				return;
+			}
+			HostBehavior behavior = behaviors.get(host);
+
+			long requestCount = requestCounts.incrementAndGet(host);
+			if (!behavior.latency().isZero()) {
+				sleep(behavior.latency());
+			}
+			if (requestCount <= behavior.rateLimitedRequests()) {
+				exchange.getResponseHeaders().set("Retry-After", "1");
+				respond(exchange, 429, "Too many requests.");
+				return;
+			}
+
+			String path = exchange.getRequestURI().getPath();
+			String method = exchange.getRequestMethod();
+			if (path.equals(ENDPOINT_PATH) && method.equals("POST")) {
+				endpointRequestCounts.incrementAndGet(host);
+				handleEndpoint(exchange, host, behavior);
+			} else if ((path.equals(TARGET_PATH) || path.startsWith(TARGET_PATH + "/")) &&
+					   (method.equals("GET") || method.equals("HEAD"))) {
+				pageRequestCounts.incrementAndGet(host);
+				handlePage(exchange, path, behavior);
+			} else {
+				respond(exchange, 404, "Not found.");
+			}
+		}
+	}
+
+	private void handlePage(HttpExchange exchange, String path, HostBehavior behavior) throws IOException {
+		// Redirects go from '/post' to '/post/1', '/post/2' and so on.
+		int step;
+		try {
+			step = path.equals(TARGET_PATH) ? 0 : Integer.parseInt(path.substring(TARGET_PATH.length() + 1));
+		} catch (NumberFormatException e) {
+			respond(exchange, 404, "Not found.");
+			return;
+		}
+		if (step < behavior.redirects()) {
+			exchange.getResponseHeaders().set("Location", TARGET_PATH + "/" + (step + 1));
+			respond(exchange, 302, "Found.");
+			return;
+		}
+
+		String head = "";
+		String body = "<p>A post.</p>";
+		switch (behavior.endpointLocation()) {
+			case LINK_HEADER -> exchange.getResponseHeaders()
+				.set("Link", "<%s>; rel=\"webmention\"".formatted(ENDPOINT_PATH));
+			case HTML_LINK -> head = "<link rel=\"webmention\" href=\"%s\">".formatted(ENDPOINT_PATH);
+			case HTML_ANCHOR -> body = "<p>A post, <a rel=\"webmention\" href=\"%s\">mention it</a>.</p>".formatted(
+				ENDPOINT_PATH);
+			case NONE -> {
+			}
+		}
+		byte[] page = "<!DOCTYPE html><html><head><title>Post</title>%s</head><body>%s</body></html>".formatted(head,
+			body).getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+		if (exchange.getRequestMethod().equals("HEAD")) {
+			exchange.sendResponseHeaders(200, -1);
+			return;
+		}
+		exchange.sendResponseHeaders(200, page.length);
+		try (OutputStream responseBody = exchange.getResponseBody()) {
+			responseBody.write(page);
+		}
+	}
+
+	private void handleEndpoint(HttpExchange exchange, int host, HostBehavior behavior) throws IOException {
+		Map<String, String> parameters;
+		try (InputStream requestBody = exchange.getRequestBody()) {
+			parameters = parseForm(new String(requestBody.readAllBytes(), StandardCharsets.UTF_8));
+		}
+		String source = parameters.get("source");
+		String target = parameters.get("target");
+		if (source == null || target == null || !target.startsWith(getHostUri(host).toString())) {
+			respond(exchange, 400, "Invalid Webmention.");
+			return;
+		}
+
+		long count = receivedWebmentionCounts.incrementAndGet(host);
+		if (behavior.endpointStatus() == 201) {
+			exchange.getResponseHeaders().set("Location", "/status/" + count);
+		}
+		respond(exchange, behavior.endpointStatus(), "Webmention accepted.");
+	}
+
+	private static void respond(HttpExchange exchange, int status, String message) throws IOException {
+		// Empty responses break keep-alive connections of the JDK server, so a message is always sent.
+		byte[] body = message.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream responseBody = exchange.getResponseBody()) {
+			responseBody.write(body);
+		}
+	}
+
+	private int getHostIndex(InetAddress address) {
+		byte[] bytes = address.getAddress();
+		if (bytes.length != 4 || bytes[0] != 127 || bytes[1] != 1) {
+			return -1;
+		}
+		int host = ((bytes[2] & 0xFF) << 8) | (bytes[3] & 0xFF);
+		return host < behaviors.size() ? host : -1;
+	}
+
+	private static Map<String, String> parseForm(String form) {
+		Map<String, String> parameters = new HashMap<>();
+		for (String pair : form.split("&")) {
+			int separator = pair.indexOf('=');
+			if (separator > 0) {
+				parameters.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+					URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+			}
+		}
+		return parameters;
+	}
+
+	private static void sleep(Duration duration) {
+		try {
+			Thread.sleep(duration.toMillis());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static long sum(AtomicLongArray array) {
+		long sum = 0;
+		for (int i = 0; i < array.length(); i++) {
+			sum += array.get(i);
+		}
+		return sum;
+	}
+}
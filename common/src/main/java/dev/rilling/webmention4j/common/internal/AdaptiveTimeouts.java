@@ -0,0 +1,156 @@
+package dev.rilling.webmention4j.common.internal;
+
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.ChainElement;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.util.Timeout;
+import org.jetbrains.annotations.NotNull;
+
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Response timeouts derived from the latency recently observed per host, so that slow tails of usually fast hosts
+ * are cut early, while consistently slow hosts still get as much time as they need, up to a maximum.
+ * <p>
+ * The latency until the response head arrives is sampled in a window of recent requests per host. Once there are
+ * enough samples, the timeout is a multiple of their high percentile, bounded by the minimum and maximum. Requests
+ * that time out are sampled with their timeout, so that the timeout grows for hosts that became slower.
+ * <p>
+ * Windows are stored in a fixed number of slots selected by the hash of the host. A host replaces whichever window
+ * occupied its slot, which only resets that host to the maximum timeout.
+ */
+public final class AdaptiveTimeouts {
+	static final int WINDOW_SIZE = 32;
+	static final int MIN_SAMPLES = 8;
+	private static final double PERCENTILE = 0.95;
+	private static final int MULTIPLIER = 4;
+
+	private final long minNanos;
+	private final long maxNanos;
+
+	private final AtomicReferenceArray<Window> slots;
+	private final int mask;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param minTimeout Lower bound of response timeouts.
+	 * @param maxTimeout Upper bound of response timeouts, used for hosts without enough samples.
+	 * @param maxHosts   Number of hosts to keep windows for. Rounded up to a power of two.
+	 */
+	public AdaptiveTimeouts(@NotNull Duration minTimeout, @NotNull Duration maxTimeout, int maxHosts) {
+		if (minTimeout.isNegative() || minTimeout.isZero() || maxTimeout.compareTo(minTimeout) < 0) {
+			throw new IllegalArgumentException("Minimum timeout must be positive and not exceed the maximum timeout.");
+		}
+		if (maxHosts < 1 || maxHosts > 1 << 30) {
+			throw new IllegalArgumentException("Host count must be between 1 and 2^30.");
+		}
+		minNanos = minTimeout.toNanos();
+		maxNanos = maxTimeout.toNanos();
+
+		int size = Integer.highestOneBit(maxHosts);
+		if (size < maxHosts) {
+			size <<= 1;
+		}
+		slots = new AtomicReferenceArray<>(size);
+		mask = size - 1;
+	}
+
+	/**
+	 * @param host Host to request.
+	 * @return Response timeout to use for the host.
+	 */
+	@NotNull
+	public Duration getResponseTimeout(@NotNull String host) {
+		String key = normalize(host);
+		Window window = slots.get(slotIndex(key));
+		if (window == null || !window.host.equals(key) || window.count < MIN_SAMPLES) {
+			return Duration.ofNanos(maxNanos);
+		}
+		long[] sorted = Arrays.copyOf(window.latencies, window.count);
+		Arrays.sort(sorted);
+		long percentile = sorted[(int) Math.ceil(PERCENTILE * sorted.length) - 1];
+		long timeout = percentile > maxNanos / MULTIPLIER ? maxNanos : percentile * MULTIPLIER;
+		return Duration.ofNanos(Math.max(minNanos, timeout));
+	}
+
+	/**
+	 * Records the latency of a request.
+	 *
+	 * @param host    Requested host.
+	 * @param latency Time until the response head arrived, or the timeout if none arrived in time.
+	 */
+	public void record(@NotNull String host, @NotNull Duration latency) {
+		String key = normalize(host);
+		int index = slotIndex(key);
+		long nanos = latency.toNanos();
+		while (true) {
+			Window current = slots.get(index);
+			Window next;
+			if (current == null || !current.host.equals(key)) {
+				long[] latencies = new long[WINDOW_SIZE];
+				latencies[0] = nanos;
+				next = new Window(key, latencies, 1, 1);
+			} else {
+				long[] latencies = current.latencies.clone();
+				latencies[current.next] = nanos;
+				next = new Window(key,
+					latencies,
+					(current.next + 1) % WINDOW_SIZE,
+					Math.min(current.count + 1, WINDOW_SIZE));
+			}
+			if (slots.compareAndSet(index, current, next)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Adds an interceptor applying the timeouts to each request and recording the latency of its response.
+	 * Requests following redirects are handled separately for each host.
+	 *
+	 * @param builder Builder of the client.
+	 */
+	public void instrument(@NotNull HttpClientBuilder builder) {
+		// After connecting, so that only the time waiting for the response is measured.
+		builder.addExecInterceptorAfter(ChainElement.CONNECT.name(), "webmention4j-adaptive-timeout",
+			(request, scope, chain) -> {
+				String host = scope.route.getTargetHost().getHostName();
+				Duration timeout = getResponseTimeout(host);
+				HttpClientContext context = scope.clientContext;
+				context.setRequestConfig(RequestConfig.copy(context.getRequestConfigOrDefault())
+					.setResponseTimeout(Timeout.of(timeout))
+					.build());
+
+				long start = System.nanoTime();
+				ClassicHttpResponse response;
+				try {
+					response = chain.proceed(request, scope);
+				} catch (SocketTimeoutException e) {
+					record(host, timeout);
+					throw e;
+				}
+				// Other failures say nothing about the latency of the host, so only responses are recorded.
+				record(host, Duration.ofNanos(System.nanoTime() - start));
+				return response;
+			});
+	}
+
+	private int slotIndex(String key) {
+		int hash = key.hashCode();
+		return (hash ^ (hash >>> 16)) & mask;
+	}
+
+	private static String normalize(String host) {
+		return host.toLowerCase(Locale.ROOT);
+	}
+
+	private record Window(String host, long[] latencies, int next, int count) {
+	}
+}
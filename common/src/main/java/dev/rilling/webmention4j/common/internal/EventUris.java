@@ -0,0 +1,45 @@
+package dev.rilling.webmention4j.common.internal;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.URI;
+
+/**
+ * Formats URIs recorded in JFR events.
+ * If the system property {@value #REDACT_PROPERTY} is {@code true}, only the origin of URIs is recorded, so that
+ * recordings do not contain paths or query parameters (which may e.g. include tokens).
+ */
+public final class EventUris {
+	public static final String REDACT_PROPERTY = "webmention4j.jfr.redactUris";
+
+	private static final boolean REDACT = Boolean.getBoolean(REDACT_PROPERTY);
+
+	private EventUris() {
+	}
+
+	/**
+	 * @return The URI to record, redacted if configured.
+	 */
+	@Nullable
+	public static String format(@Nullable URI uri) {
+		if (uri == null) {
+			return null;
+		}
+		return REDACT ? redact(uri) : uri.toString();
+	}
+
+	/**
+	 * @return The URI without user info, path, query and fragment.
+	 */
+	@NotNull
+	static String redact(@NotNull URI uri) {
+		String scheme = uri.getScheme() != null ? uri.getScheme() + ":" : "";
+		if (uri.isOpaque() || uri.getHost() == null) {
+			return scheme;
+		}
+		return uri.getPort() != -1 ?
+			   "%s//%s:%d".formatted(scheme, uri.getHost(), uri.getPort()) :
+			   "%s//%s".formatted(scheme, uri.getHost());
+	}
+}
@@ -0,0 +1,45 @@
+package dev.rilling.webmention4j.common.internal;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Serial;
+
+/**
+ * Thrown if fetching a remote resource exceeds one of its {@link FetchLimits}.
+ */
+public class FetchLimitExceededException extends IOException {
+	@Serial
+	private static final long serialVersionUID = -3441806405330950264L;
+
+	private final Limit limit;
+
+	FetchLimitExceededException(@NotNull Limit limit, @NotNull String message) {
+		super(message);
+		this.limit = limit;
+	}
+
+	FetchLimitExceededException(@NotNull Limit limit, @NotNull String message, @NotNull Throwable cause) {
+		super(message, cause);
+		this.limit = limit;
+	}
+
+	/**
+	 * @return The limit that was exceeded.
+	 */
+	@NotNull
+	public Limit getLimit() {
+		return limit;
+	}
+
+	public enum Limit {
+		/**
+		 * @see FetchLimits#maxBodyBytes()
+		 */
+		BODY_SIZE,
+		/**
+		 * @see FetchLimits#totalTimeout()
+		 */
+		TOTAL_TIMEOUT
+	}
+}
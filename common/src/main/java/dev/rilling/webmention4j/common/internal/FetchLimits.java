@@ -0,0 +1,60 @@
+package dev.rilling.webmention4j.common.internal;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.core5.util.Timeout;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+
+/**
+ * Limits applied when fetching remote resources whose content is not under our control.
+ *
+ * @param maxBodyBytes      Maximum number of body bytes to read.
+ * @param maxErrorBodyBytes Maximum number of body bytes to read for error responses (used for messages only).
+ * @param connectTimeout    Maximum time to establish a connection.
+ * @param responseTimeout   Maximum time to wait for data, be it the response head or the next part of the body.
+ * @param totalTimeout      Maximum time for the whole exchange, including reading the body.
+ * @see HttpUtils#executeLimited
+ */
+public record FetchLimits(long maxBodyBytes,
+						  int maxErrorBodyBytes,
+						  @NotNull Duration connectTimeout,
+						  @NotNull Duration responseTimeout,
+						  @NotNull Duration totalTimeout) {
+
+	public static final FetchLimits DEFAULT = new FetchLimits(5L * 1024 * 1024,
+		4 * 1024,
+		Duration.ofSeconds(10),
+		Duration.ofSeconds(10),
+		Duration.ofSeconds(30));
+
+	public FetchLimits {
+		if (maxBodyBytes < 0 || maxErrorBodyBytes < 0) {
+			throw new IllegalArgumentException("Byte limits must not be negative.");
+		}
+		if (connectTimeout.isNegative() || connectTimeout.isZero() || responseTimeout.isNegative() ||
+			responseTimeout.isZero() || totalTimeout.isNegative() || totalTimeout.isZero()) {
+			throw new IllegalArgumentException("Timeouts must be positive.");
+		}
+	}
+
+	/**
+	 * @return Connection configuration applying the connect and response timeouts.
+	 */
+	@NotNull
+	public ConnectionConfig createConnectionConfig() {
+		return ConnectionConfig.custom()
+			.setConnectTimeout(Timeout.of(connectTimeout))
+			.setSocketTimeout(Timeout.of(responseTimeout))
+			.build();
+	}
+
+	/**
+	 * @return Request configuration applying the response timeout.
+	 */
+	@NotNull
+	public RequestConfig createRequestConfig() {
+		return RequestConfig.custom().setResponseTimeout(Timeout.of(responseTimeout)).build();
+	}
+}
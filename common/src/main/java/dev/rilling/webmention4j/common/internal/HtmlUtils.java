@@ -3,8 +3,6 @@ package dev.rilling.webmention4j.common.internal;
 import org.apache.hc.core5.http.ContentType;
 import org.apache.hc.core5.http.HttpEntity;
 import org.apache.hc.core5.http.MessageHeaders;
-import org.apache.hc.core5.http.ParseException;
-import org.apache.hc.core5.http.io.entity.EntityUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
@@ -12,6 +10,8 @@ import org.jsoup.nodes.Element;
 import org.jsoup.select.Evaluator;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
 
 public final class HtmlUtils {
 
@@ -33,10 +33,14 @@ public final class HtmlUtils {
 	 */
 	@NotNull
 	public static Document parse(@NotNull HttpEntity entity) throws IOException {
-		try {
-			return Jsoup.parse(EntityUtils.toString(entity));
-		} catch (ParseException e) {
-			throw new IOException("Could not parse body.", e);
+		// Parsed from the stream, so that the body is not held as a string in addition to the document.
+		try (InputStream inputStream = entity.getContent()) {
+			if (inputStream == null) {
+				return Document.createShell("");
+			}
+			// Without a declared charset, Jsoup detects it from a byte order mark or <meta> element.
+			String charsetName = HttpUtils.extractCharset(entity).map(Charset::name).orElse(null);
+			return Jsoup.parse(inputStream, charsetName, "");
 		}
 	}
 
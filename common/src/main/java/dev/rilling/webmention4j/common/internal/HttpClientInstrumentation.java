@@ -0,0 +1,81 @@
+package dev.rilling.webmention4j.common.internal;
+
+import dev.rilling.webmention4j.common.metrics.MetricsListener;
+import dev.rilling.webmention4j.common.metrics.Phase;
+import org.apache.hc.client5.http.DnsResolver;
+import org.apache.hc.client5.http.SystemDefaultDnsResolver;
+import org.apache.hc.client5.http.impl.ChainElement;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.jetbrains.annotations.NotNull;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Reports the {@link Phase#DNS} and {@link Phase#CONNECT} phases of HTTP clients to a {@link MetricsListener}.
+ */
+public final class HttpClientInstrumentation {
+	private static final String CONNECT_TIMER_ATTRIBUTE = "dev.rilling.webmention4j.connect-timer";
+
+	private HttpClientInstrumentation() {
+	}
+
+	/**
+	 * @param listener Listener to report to.
+	 * @return A resolver using the system resolver, reporting {@link Phase#DNS}.
+	 */
+	@NotNull
+	public static DnsResolver createDnsResolver(@NotNull MetricsListener listener) {
+		return new TimingDnsResolver(SystemDefaultDnsResolver.INSTANCE, listener);
+	}
+
+	/**
+	 * Adds interceptors reporting {@link Phase#CONNECT}.
+	 *
+	 * @param builder  Builder of the client.
+	 * @param listener Listener to report to.
+	 */
+	public static void instrument(@NotNull HttpClientBuilder builder, @NotNull MetricsListener listener) {
+		// Connecting happens inside the CONNECT element, so it is measured from before it until the element after it.
+		builder.addExecInterceptorBefore(ChainElement.CONNECT.name(), "webmention4j-connect-start",
+			(request, scope, chain) -> {
+				try (PhaseTimer timer = PhaseTimer.start(listener, Phase.CONNECT, "")) {
+					scope.clientContext.setAttribute(CONNECT_TIMER_ATTRIBUTE, timer);
+					// If connecting fails, the timer is closed with its default outcome here.
+					return chain.proceed(request, scope);
+				}
+			});
+		builder.addExecInterceptorAfter(ChainElement.CONNECT.name(), "webmention4j-connect-end",
+			(request, scope, chain) -> {
+				if (scope.clientContext.getAttribute(CONNECT_TIMER_ATTRIBUTE) instanceof PhaseTimer timer) {
+					timer.setOutcome("ok");
+					timer.close();
+				}
+				return chain.proceed(request, scope);
+			});
+	}
+
+	private static final class TimingDnsResolver implements DnsResolver {
+		private final DnsResolver delegate;
+		private final MetricsListener listener;
+
+		TimingDnsResolver(DnsResolver delegate, MetricsListener listener) {
+			this.delegate = delegate;
+			this.listener = listener;
+		}
+
+		@Override
+		public InetAddress[] resolve(String host) throws UnknownHostException {
+			try (PhaseTimer timer = PhaseTimer.start(listener, Phase.DNS, "")) {
+				InetAddress[] addresses = delegate.resolve(host);
+				timer.setOutcome("ok");
+				return addresses;
+			}
+		}
+
+		@Override
+		public String resolveCanonicalHostname(String host) throws UnknownHostException {
+			return delegate.resolveCanonicalHostname(host);
+		}
+	}
+}
@@ -1,43 +1,216 @@
 package dev.rilling.webmention4j.common.internal;
 
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.core5.http.*;
+import org.apache.hc.core5.http.io.EofSensorInputStream;
+import org.apache.hc.core5.http.io.HttpClientResponseHandler;
 import org.apache.hc.core5.http.io.entity.EntityUtils;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public final class HttpUtils {
 
+	// Socket timeouts only limit each read on its own, so requests are aborted once their total timeout passed.
+	private static final ScheduledThreadPoolExecutor DEADLINE_EXECUTOR = createDeadlineExecutor();
+
 	private HttpUtils() {
 	}
 
 
 	/**
 	 * Validates that the response has a 2xx status code.
+	 * At most {@link FetchLimits#maxErrorBodyBytes()} of {@link FetchLimits#DEFAULT} are read from an error body.
 	 *
 	 * @param response Response to check.
 	 * @throws IOException if the response has a non-2xx status code.
 	 */
 	public static void validateResponse(@NotNull ClassicHttpResponse response) throws IOException {
+		validateResponse(response, FetchLimits.DEFAULT.maxErrorBodyBytes());
+	}
+
+	/**
+	 * Validates that the response has a 2xx status code.
+	 *
+	 * @param response          Response to check.
+	 * @param maxErrorBodyBytes Maximum number of bytes to read from an error body for the exception message.
+	 * @throws IOException if the response has a non-2xx status code.
+	 */
+	public static void validateResponse(@NotNull ClassicHttpResponse response, int maxErrorBodyBytes)
+		throws IOException {
 		// See AbstractHttpClientResponseHandler
 		if (response.getCode() >= HttpStatus.SC_REDIRECTION) {
 			String body;
 			if (response.getEntity() == null) {
 				body = "<no body>";
 			} else {
-				try {
-					body = EntityUtils.toString(response.getEntity());
-				} catch (ParseException ignored) {
-					body = "<parsing of body failed>";
-				}
+				body = readTruncated(response.getEntity(), maxErrorBodyBytes);
 			}
 			throw new IOException("Request failed: %d - %s:%n%s".formatted(response.getCode(), response.getReasonPhrase(), body));
 		}
 	}
 
+	/**
+	 * Opens the content of an entity as a reader, so that it can be parsed without reading it into a string first.
+	 *
+	 * @param entity Entity to read.
+	 * @return Reader decoding the content with the declared charset, or ISO-8859-1 like
+	 * {@link EntityUtils#toString(HttpEntity)}.
+	 * @throws IOException if I/O fails.
+	 */
+	@NotNull
+	public static Reader openReader(@NotNull HttpEntity entity) throws IOException {
+		InputStream inputStream = entity.getContent();
+		if (inputStream == null) {
+			return Reader.nullReader();
+		}
+		return new InputStreamReader(inputStream, extractCharset(entity).orElse(StandardCharsets.ISO_8859_1));
+	}
+
+	/**
+	 * @return The charset declared by the 'Content-Type' of the entity, if any.
+	 */
+	@NotNull
+	public static Optional<Charset> extractCharset(@NotNull HttpEntity entity) {
+		return Optional.ofNullable(ContentType.parseLenient(entity.getContentType())).map(ContentType::getCharset);
+	}
+
+	private static String readTruncated(HttpEntity entity, int maxBytes) throws IOException {
+		Charset charset = extractCharset(entity).orElse(StandardCharsets.ISO_8859_1);
+		InputStream inputStream = entity.getContent();
+		if (inputStream == null) {
+			return "<no body>";
+		}
+		byte[] bytes = inputStream.readNBytes(maxBytes);
+		String body = new String(bytes, charset);
+		if (bytes.length == maxBytes && inputStream.read() != -1) {
+			// Closing would drain the rest of the body just to throw it away, discard the connection instead.
+			abort(entity, inputStream);
+			return body + "[...]";
+		}
+		inputStream.close();
+		return body;
+	}
+
+	private static void abort(HttpEntity entity, InputStream inputStream) throws IOException {
+		if (entity instanceof LimitedHttpEntity limitedEntity) {
+			// #executeLimited cancels the request once the exception is thrown.
+			limitedEntity.abort();
+		} else if (inputStream instanceof EofSensorInputStream eofSensorInputStream) {
+			eofSensorInputStream.abort();
+		} else {
+			inputStream.close();
+		}
+	}
+
+	/**
+	 * Executes a request, enforcing the given limits while the response is handled.
+	 * <p>
+	 * If a limit is exceeded, or the handler fails, the request is aborted, discarding the connection instead of
+	 * draining the remaining body.
+	 *
+	 * @param httpClient      HTTP client. Should be configured using {@link FetchLimits#createConnectionConfig()}
+	 *                        and {@link FetchLimits#createRequestConfig()} to apply the connection and response
+	 *                        timeouts.
+	 * @param request         Request to execute.
+	 * @param limits          Limits to enforce.
+	 * @param responseHandler Handler for the response. The response entity, if present, enforces the limits on read.
+	 * @return Result of the handler.
+	 * @throws FetchLimitExceededException if a limit was exceeded.
+	 * @throws IOException                 if I/O fails.
+	 */
+	public static <T> T executeLimited(@NotNull CloseableHttpClient httpClient,
+									   @NotNull HttpUriRequestBase request,
+									   @NotNull FetchLimits limits,
+									   @NotNull HttpClientResponseHandler<? extends T> responseHandler)
+		throws IOException {
+		return executeLimited(httpClient, request, limits, null, responseHandler);
+	}
+
+	/**
+	 * Like {@link #executeLimited(CloseableHttpClient, HttpUriRequestBase, FetchLimits, HttpClientResponseHandler)},
+	 * but adds the number of body bytes read to a timer.
+	 *
+	 * @param timer Timer of the phase the request is part of, if any.
+	 */
+	public static <T> T executeLimited(@NotNull CloseableHttpClient httpClient,
+									   @NotNull HttpUriRequestBase request,
+									   @NotNull FetchLimits limits,
+									   @Nullable PhaseTimer timer,
+									   @NotNull HttpClientResponseHandler<? extends T> responseHandler)
+		throws IOException {
+		long deadlineNanos = System.nanoTime() + limits.totalTimeout().toNanos();
+		// Unblocks reads that would otherwise wait for the socket timeout, which may be longer than the time left.
+		ScheduledFuture<?> abortOnDeadline = DEADLINE_EXECUTOR.schedule(request::cancel,
+			limits.totalTimeout().toNanos(),
+			TimeUnit.NANOSECONDS);
+		try {
+			return executeLimited(httpClient, request, limits, timer, responseHandler, deadlineNanos);
+		} catch (FetchLimitExceededException e) {
+			throw e;
+		} catch (IOException e) {
+			if (System.nanoTime() - deadlineNanos > 0) {
+				throw new FetchLimitExceededException(FetchLimitExceededException.Limit.TOTAL_TIMEOUT,
+					"Total time limit for request exceeded.",
+					e);
+			}
+			throw e;
+		} finally {
+			abortOnDeadline.cancel(false);
+		}
+	}
+
+	private static <T> T executeLimited(CloseableHttpClient httpClient,
+										HttpUriRequestBase request,
+										FetchLimits limits,
+										@Nullable PhaseTimer timer,
+										HttpClientResponseHandler<? extends T> responseHandler,
+										long deadlineNanos) throws IOException {
+		return httpClient.execute(request, response -> {
+			LimitedHttpEntity limitedEntity = null;
+			try {
+				LimitedHttpEntity.checkDeadline(deadlineNanos);
+				HttpEntity entity = response.getEntity();
+				if (entity != null) {
+					if (entity.getContentLength() > limits.maxBodyBytes()) {
+						throw new FetchLimitExceededException(FetchLimitExceededException.Limit.BODY_SIZE,
+							"Declared body size of %d bytes exceeds limit of %d bytes.".formatted(entity.getContentLength(),
+								limits.maxBodyBytes()));
+					}
+					limitedEntity = new LimitedHttpEntity(entity, limits.maxBodyBytes(), deadlineNanos);
+					response.setEntity(limitedEntity);
+				}
+
+				T result = responseHandler.handleResponse(response);
+				EntityUtils.consume(limitedEntity);
+				return result;
+			} catch (IOException | HttpException | RuntimeException e) {
+				if (limitedEntity != null) {
+					limitedEntity.abort();
+				}
+				request.cancel();
+				throw e;
+			} finally {
+				if (timer != null && limitedEntity != null) {
+					timer.addBytes(limitedEntity.getBytesRead());
+				}
+			}
+		});
+	}
+
 	/**
 	 * @return The 'Content-Type' header value of the response, if one is defined.
 	 */
@@ -77,6 +250,17 @@ public final class HttpUtils {
 		return "%s/%s".formatted(name, getVersionString(implementationPackage));
 	}
 
+	private static ScheduledThreadPoolExecutor createDeadlineExecutor() {
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+			Thread thread = new Thread(runnable, "webmention4j-fetch-deadline");
+			thread.setDaemon(true);
+			return thread;
+		});
+		// Most requests finish in time, so do not keep their cancelled tasks around until the deadline.
+		executor.setRemoveOnCancelPolicy(true);
+		return executor;
+	}
+
 	private static String getVersionString(Package implementationPackage) {
 		if (implementationPackage.getImplementationVersion() == null) {
 			return "0.0.0-development";
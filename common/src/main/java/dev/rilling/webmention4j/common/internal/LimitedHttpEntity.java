@@ -0,0 +1,139 @@
+package dev.rilling.webmention4j.common.internal;
+
+import dev.rilling.webmention4j.common.internal.FetchLimitExceededException.Limit;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.entity.HttpEntityWrapper;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Entity wrapper that enforces a body size limit and a deadline on all reads, including the draining of the
+ * remaining body when the content is closed.
+ */
+final class LimitedHttpEntity extends HttpEntityWrapper {
+	private final long maxBytes;
+	private final long deadlineNanos;
+
+	private LimitedInputStream content;
+
+	LimitedHttpEntity(@NotNull HttpEntity wrappedEntity, long maxBytes, long deadlineNanos) {
+		super(wrappedEntity);
+		this.maxBytes = maxBytes;
+		this.deadlineNanos = deadlineNanos;
+	}
+
+	@Override
+	public InputStream getContent() throws IOException {
+		// Streaming entities return the same stream every time, the read count has to be shared.
+		if (content == null) {
+			content = new LimitedInputStream(super.getContent());
+		}
+		return content;
+	}
+
+	@Override
+	public boolean isRepeatable() {
+		return false;
+	}
+
+	@Override
+	public void writeTo(OutputStream outStream) throws IOException {
+		try (InputStream inputStream = getContent()) {
+			inputStream.transferTo(outStream);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (content != null) {
+			content.close();
+		} else {
+			super.close();
+		}
+	}
+
+	/**
+	 * Marks the entity as aborted, meaning closing will no longer drain or close the underlying content.
+	 * The connection must be discarded separately.
+	 */
+	void abort() {
+		if (content == null) {
+			content = new LimitedInputStream(InputStream.nullInputStream());
+		}
+		content.aborted = true;
+	}
+
+	/**
+	 * @return Number of bytes read from the content so far.
+	 */
+	long getBytesRead() {
+		return content == null ? 0 : content.count;
+	}
+
+	static void checkDeadline(long deadlineNanos) throws FetchLimitExceededException {
+		if (System.nanoTime() - deadlineNanos > 0) {
+			throw new FetchLimitExceededException(Limit.TOTAL_TIMEOUT, "Total time limit for request exceeded.");
+		}
+	}
+
+	private final class LimitedInputStream extends FilterInputStream {
+		private long count = 0;
+		private boolean aborted = false;
+
+		LimitedInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			checkDeadline(deadlineNanos);
+			int read = super.read();
+			if (read != -1) {
+				count(1);
+			}
+			return read;
+		}
+
+		@Override
+		public int read(byte @NotNull [] b, int off, int len) throws IOException {
+			checkDeadline(deadlineNanos);
+			int read = super.read(b, off, len);
+			if (read > 0) {
+				count(read);
+			}
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			// Route through read to keep counting.
+			return Math.max(read(new byte[(int) Math.min(n, 8192)]), 0);
+		}
+
+		private void count(int read) throws FetchLimitExceededException {
+			count += read;
+			if (count > maxBytes) {
+				throw new FetchLimitExceededException(Limit.BODY_SIZE,
+					"Body size limit of %d bytes exceeded.".formatted(maxBytes));
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (aborted) {
+				return;
+			}
+			aborted = true;
+			// Drain using limited reads, as closing the underlying stream would otherwise read all remaining data.
+			byte[] buffer = new byte[8192];
+			while (read(buffer) != -1) {
+				// Discard
+			}
+			super.close();
+		}
+	}
+}
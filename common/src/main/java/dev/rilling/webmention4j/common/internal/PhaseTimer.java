@@ -0,0 +1,81 @@
+package dev.rilling.webmention4j.common.internal;
+
+import dev.rilling.webmention4j.common.metrics.MetricsListener;
+import dev.rilling.webmention4j.common.metrics.Phase;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Measures a phase and reports it to a {@link MetricsListener} when closed.
+ * The outcome defaults to {@code error}, so that phases ending with an exception are reported as such.
+ */
+public final class PhaseTimer implements AutoCloseable {
+	private final MetricsListener listener;
+	private final Phase phase;
+	private final String detail;
+	private final long startNanos;
+
+	private long bytes = 0;
+	private String outcome = "error";
+	private boolean closed = false;
+
+	private PhaseTimer(MetricsListener listener, Phase phase, String detail) {
+		this.listener = listener;
+		this.phase = phase;
+		this.detail = detail;
+		startNanos = System.nanoTime();
+	}
+
+	/**
+	 * Starts measuring a phase.
+	 *
+	 * @param listener Listener to report to.
+	 * @param phase    The phase.
+	 * @param detail   Phase-specific detail, or empty.
+	 * @return The running timer.
+	 */
+	@NotNull
+	public static PhaseTimer start(@NotNull MetricsListener listener, @NotNull Phase phase, @NotNull String detail) {
+		return new PhaseTimer(listener, phase, detail);
+	}
+
+	/**
+	 * @param bytes Bytes to add to the bytes transferred during the phase.
+	 */
+	public void addBytes(long bytes) {
+		this.bytes += bytes;
+	}
+
+	/**
+	 * @param outcome Outcome code to report.
+	 */
+	public void setOutcome(@NotNull String outcome) {
+		this.outcome = outcome;
+	}
+
+	/**
+	 * @return Bytes transferred during the phase so far.
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * @return Outcome code that is reported.
+	 */
+	@NotNull
+	public String getOutcome() {
+		return outcome;
+	}
+
+	/**
+	 * Reports the phase. Subsequent calls have no effect.
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		listener.onPhase(phase, detail, System.nanoTime() - startNanos, bytes, outcome);
+	}
+}
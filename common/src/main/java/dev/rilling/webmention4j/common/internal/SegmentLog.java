@@ -0,0 +1,320 @@
+package dev.rilling.webmention4j.common.internal;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Log of checksummed records written to a segment file, for structures that keep their state in memory and need to
+ * recover it after a restart.
+ * <p>
+ * Once the segment exceeds the configured size (and twice the size it had after the last roll), a new segment is
+ * started containing a snapshot of the live records, and the old segment is deleted. Disk usage is therefore bounded
+ * by the segment size or twice the size of the live records, whichever is larger.
+ * <p>
+ * Appends and rolls must be serialized by the caller, usually while it updates its in-memory state. Syncs may be
+ * called concurrently without holding that lock: concurrent callers share a single {@code fsync} (group commit).
+ */
+public final class SegmentLog implements Closeable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(SegmentLog.class);
+
+	// Arbitrary sanity limit to detect corrupted length prefixes.
+	private static final int MAX_RECORD_BYTES = 1024 * 1024;
+	private static final int SNAPSHOT_BUFFER_BYTES = 64 * 1024;
+
+	private final Path directory;
+	private final String name;
+	private final Pattern segmentName;
+	private final long segmentBytes;
+	private final Snapshot snapshot;
+
+	private final Object syncLock = new Object();
+
+	// Serialized by the caller.
+	private long segmentSequence;
+	private Path segment;
+	private long compactedBytes;
+	// Replaced under syncLock.
+	private FileChannel channel;
+
+	private volatile long writtenCount = 0;
+	// Guarded by syncLock.
+	private long syncedCount = 0;
+
+	private SegmentLog(Path directory, String name, long segmentBytes, Snapshot snapshot) {
+		this.directory = directory;
+		this.name = name;
+		segmentName = Pattern.compile(Pattern.quote(name) + "-(\\d{20})\\.log");
+		this.segmentBytes = segmentBytes;
+		this.snapshot = snapshot;
+	}
+
+	/**
+	 * Opens the log, replaying the records of existing segments and then starting a new segment from a snapshot.
+	 *
+	 * @param directory    Directory to store segments in. Created if it does not exist.
+	 *                     Must not be used by another log with the same name at the same time.
+	 * @param name         Name the segment files start with.
+	 * @param segmentBytes Size after which a new segment is started.
+	 * @param replay       Called for every intact record of existing segments, in order of writing. Records may be
+	 *                     replayed more than once if a crash left a segment behind during a roll.
+	 * @param snapshot     Called to write the live records to a new segment.
+	 * @return The opened log.
+	 * @throws IOException if I/O fails.
+	 */
+	@NotNull
+	public static SegmentLog open(@NotNull Path directory,
+								  @NotNull String name,
+								  long segmentBytes,
+								  @NotNull Replay replay,
+								  @NotNull Snapshot snapshot) throws IOException {
+		Files.createDirectories(directory);
+		SegmentLog log = new SegmentLog(directory, name, segmentBytes, snapshot);
+		List<Path> segments = log.listSegments();
+		for (Path existingSegment : segments) {
+			readSegment(existingSegment, replay);
+		}
+		if (!segments.isEmpty()) {
+			log.segmentSequence = log.parseSequence(segments.get(segments.size() - 1));
+		}
+
+		// Start with a compacted segment, then remove all old ones.
+		log.roll();
+		for (Path existingSegment : segments) {
+			Files.deleteIfExists(existingSegment);
+		}
+		return log;
+	}
+
+	/**
+	 * Writes a record. It reaches the operating system, but is only durable after {@link #sync(long)}.
+	 * Must be serialized with other appends and rolls.
+	 *
+	 * @param payload Record payload.
+	 * @return Count to pass to {@link #sync(long)} to make the record durable.
+	 * @throws IOException if I/O fails.
+	 */
+	public long append(byte @NotNull [] payload) throws IOException {
+		write(frame(payload));
+		return ++writtenCount;
+	}
+
+	/**
+	 * Starts a new segment if the current one grew too large. Should be called after the appended record was applied
+	 * to the state the snapshot is written from. Must be serialized with appends and other rolls.
+	 *
+	 * @throws IOException if I/O fails.
+	 */
+	public void rollIfNeeded() throws IOException {
+		// If many records are live, avoid rolling over and over again.
+		if (channel.position() >= Math.max(segmentBytes, compactedBytes * 2)) {
+			roll();
+		}
+	}
+
+	/**
+	 * Starts a new segment containing a snapshot of the live records, and deletes the current one.
+	 * Must be serialized with appends and other rolls.
+	 *
+	 * @throws IOException if I/O fails.
+	 */
+	public void roll() throws IOException {
+		Path previousSegment = segment;
+		FileChannel previousChannel = channel;
+
+		segmentSequence++;
+		Path nextSegment = directory.resolve("%s-%020d.log".formatted(name, segmentSequence));
+		FileChannel nextChannel = FileChannel.open(nextSegment,
+			StandardOpenOption.CREATE_NEW,
+			StandardOpenOption.WRITE);
+		synchronized (syncLock) {
+			channel = nextChannel;
+			segment = nextSegment;
+			ByteBuffer buffer = ByteBuffer.allocate(SNAPSHOT_BUFFER_BYTES);
+			snapshot.writeTo(payload -> {
+				ByteBuffer record = frame(payload);
+				if (record.remaining() > buffer.remaining()) {
+					write(buffer.flip());
+					buffer.clear();
+				}
+				if (record.remaining() > buffer.remaining()) {
+					write(record);
+				} else {
+					buffer.put(record);
+				}
+			});
+			write(buffer.flip());
+			nextChannel.force(true);
+			syncedCount = writtenCount;
+			compactedBytes = nextChannel.position();
+
+			if (previousChannel != null) {
+				previousChannel.close();
+			}
+		}
+		if (previousSegment != null) {
+			Files.delete(previousSegment);
+		}
+	}
+
+	/**
+	 * Forces records to disk. Whoever gets there first forces everything written so far, so that concurrent callers
+	 * are usually covered by a single {@code fsync}.
+	 *
+	 * @param count Count returned by {@link #append(byte[])}.
+	 * @throws IOException if I/O fails.
+	 */
+	public void sync(long count) throws IOException {
+		synchronized (syncLock) {
+			if (syncedCount >= count || !channel.isOpen()) {
+				return;
+			}
+			long target = writtenCount;
+			channel.force(false);
+			syncedCount = target;
+		}
+	}
+
+	/**
+	 * Forces all records written so far to disk.
+	 *
+	 * @throws IOException if I/O fails.
+	 */
+	public void sync() throws IOException {
+		sync(writtenCount);
+	}
+
+	/**
+	 * Forces all records to disk and closes the segment. Must be serialized with appends and rolls.
+	 *
+	 * @throws IOException if I/O fails.
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (syncLock) {
+			channel.force(false);
+			channel.close();
+		}
+	}
+
+	private void write(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private List<Path> listSegments() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(file -> segmentName.matcher(file.getFileName().toString()).matches())
+				.sorted()
+				.toList();
+		}
+	}
+
+	private long parseSequence(Path file) {
+		Matcher matcher = segmentName.matcher(file.getFileName().toString());
+		if (!matcher.matches()) {
+			throw new IllegalArgumentException("Not a segment: '%s'.".formatted(file));
+		}
+		return Long.parseLong(matcher.group(1));
+	}
+
+	private static void readSegment(Path file, Replay replay) throws IOException {
+		try (InputStream inputStream = Files.newInputStream(file);
+			 DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(inputStream))) {
+			while (true) {
+				byte[] payload = readRecord(dataInputStream, file);
+				if (payload == null) {
+					return;
+				}
+				replay.apply(ByteBuffer.wrap(payload), file);
+			}
+		}
+	}
+
+	@Nullable
+	private static byte[] readRecord(DataInputStream dataInputStream, Path file) throws IOException {
+		try {
+			int length = dataInputStream.readInt();
+			if (length <= 0 || length > MAX_RECORD_BYTES) {
+				LOGGER.warn("Corrupted record length in segment '{}', ignoring rest of segment.", file);
+				return null;
+			}
+			long checksum = dataInputStream.readInt() & 0xFFFFFFFFL;
+			byte[] payload = dataInputStream.readNBytes(length);
+			if (payload.length != length || checksum(payload) != checksum) {
+				// Most likely a write that was interrupted by a crash, which was never acknowledged.
+				LOGGER.warn("Incomplete record in segment '{}', ignoring rest of segment.", file);
+				return null;
+			}
+			return payload;
+		} catch (EOFException e) {
+			return null;
+		}
+	}
+
+	private static ByteBuffer frame(byte[] payload) {
+		if (payload.length > MAX_RECORD_BYTES) {
+			throw new IllegalArgumentException("Record is too large.");
+		}
+		ByteBuffer record = ByteBuffer.allocate(Integer.BYTES * 2 + payload.length);
+		record.putInt(payload.length).putInt((int) checksum(payload)).put(payload);
+		return record.flip();
+	}
+
+	private static long checksum(byte[] payload) {
+		CRC32 crc32 = new CRC32();
+		crc32.update(payload);
+		return crc32.getValue();
+	}
+
+	/**
+	 * Applies a record read while opening the log.
+	 */
+	@FunctionalInterface
+	public interface Replay {
+		/**
+		 * @param payload Record payload.
+		 * @param file    Segment the record was read from, for logging.
+		 */
+		void apply(@NotNull ByteBuffer payload, @NotNull Path file);
+	}
+
+	/**
+	 * Writes the live records to a new segment.
+	 */
+	@FunctionalInterface
+	public interface Snapshot {
+		/**
+		 * @param writer Writer to pass each record payload to.
+		 * @throws IOException if I/O fails.
+		 */
+		void writeTo(@NotNull Writer writer) throws IOException;
+	}
+
+	/**
+	 * Writes a record payload.
+	 */
+	@FunctionalInterface
+	public interface Writer {
+		void write(byte @NotNull [] payload) throws IOException;
+	}
+}
@@ -0,0 +1,36 @@
+package dev.rilling.webmention4j.common.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free counter. Concurrent increments do not contend, at the cost of reads being more expensive.
+ */
+public final class Counter {
+	private final LongAdder value = new LongAdder();
+
+	/**
+	 * Adds one.
+	 */
+	public void increment() {
+		value.increment();
+	}
+
+	/**
+	 * @param amount Amount to add.
+	 */
+	public void add(long amount) {
+		value.add(amount);
+	}
+
+	/**
+	 * @return Current value. Not an atomic snapshot if updated concurrently.
+	 */
+	public long get() {
+		return value.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "Counter{" + "value=" + get() + '}';
+	}
+}
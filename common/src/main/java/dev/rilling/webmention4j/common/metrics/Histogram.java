@@ -0,0 +1,101 @@
+package dev.rilling.webmention4j.common.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram counting values into buckets with fixed upper bounds.
+ * Concurrent recording does not contend, at the cost of reads being more expensive.
+ */
+public final class Histogram {
+	private static final long[] DURATION_BOUNDS_MILLIS = {1, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000,
+		30000};
+
+	private final long[] upperBounds;
+	// One more than bounds, for values exceeding all of them.
+	private final LongAdder[] buckets;
+	private final LongAdder sum = new LongAdder();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param upperBounds Inclusive upper bounds of the buckets, in ascending order.
+	 */
+	public Histogram(long @NotNull ... upperBounds) {
+		for (int i = 1; i < upperBounds.length; i++) {
+			if (upperBounds[i] <= upperBounds[i - 1]) {
+				throw new IllegalArgumentException("Upper bounds must be ascending.");
+			}
+		}
+		this.upperBounds = upperBounds.clone();
+		buckets = new LongAdder[upperBounds.length + 1];
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * @return A histogram for durations in nanoseconds, with bounds from 1 millisecond to 30 seconds.
+	 */
+	@NotNull
+	public static Histogram forDurations() {
+		return new Histogram(Arrays.stream(DURATION_BOUNDS_MILLIS).map(TimeUnit.MILLISECONDS::toNanos).toArray());
+	}
+
+	/**
+	 * @param value Value to record.
+	 */
+	public void record(long value) {
+		int index = Arrays.binarySearch(upperBounds, value);
+		if (index < 0) {
+			index = -index - 1;
+		}
+		buckets[index].increment();
+		sum.add(value);
+	}
+
+	/**
+	 * @return Inclusive upper bounds of the buckets, in ascending order.
+	 */
+	public long @NotNull [] getUpperBounds() {
+		return upperBounds.clone();
+	}
+
+	/**
+	 * @return Number of values per bucket, not cumulative. Has one more element than {@link #getUpperBounds()},
+	 * counting values exceeding all bounds.
+	 */
+	public long @NotNull [] getBucketCounts() {
+		long[] counts = new long[buckets.length];
+		for (int i = 0; i < buckets.length; i++) {
+			counts[i] = buckets[i].sum();
+		}
+		return counts;
+	}
+
+	/**
+	 * @return Number of recorded values.
+	 */
+	public long getCount() {
+		long count = 0;
+		for (LongAdder bucket : buckets) {
+			count += bucket.sum();
+		}
+		return count;
+	}
+
+	/**
+	 * @return Sum of recorded values.
+	 */
+	public long getSum() {
+		return sum.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "Histogram{" + "count=" + getCount() + ", sum=" + getSum() + '}';
+	}
+}
@@ -0,0 +1,55 @@
+package dev.rilling.webmention4j.common.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Listener notified about the phases of sending and receiving Webmentions, e.g. to feed a metrics backend.
+ * See {@link MetricsRecorder} for a built-in implementation.
+ * <p>
+ * Methods are called on the thread performing the work, possibly concurrently. They should return quickly and must
+ * not throw.
+ */
+public interface MetricsListener {
+
+	/**
+	 * @return A listener ignoring all calls.
+	 */
+	@NotNull
+	static MetricsListener noop() {
+		return NoopMetricsListener.INSTANCE;
+	}
+
+	/**
+	 * Called once a phase completed, successfully or not.
+	 *
+	 * @param phase         The phase.
+	 * @param detail        Phase-specific detail, e.g. the verifier used. Empty if there is none.
+	 * @param durationNanos Duration of the phase.
+	 * @param bytes         Bytes transferred during the phase, if applicable.
+	 * @param outcome       Phase-specific outcome code, see {@link Phase}.
+	 */
+	default void onPhase(@NotNull Phase phase,
+						 @NotNull String detail,
+						 long durationNanos,
+						 long bytes,
+						 @NotNull String outcome) {
+	}
+
+	/**
+	 * Called when a cache was consulted.
+	 *
+	 * @param cache Name of the cache.
+	 * @param hit   If the cache could be used.
+	 */
+	default void onCacheLookup(@NotNull String cache, boolean hit) {
+	}
+
+	/**
+	 * Called when a receiver rejected a Webmention, either while handling the request or during background
+	 * verification.
+	 *
+	 * @param reason Reason code, e.g. {@code no_link} or {@code rate_limited_client}.
+	 */
+	default void onRejected(@NotNull String reason) {
+	}
+}
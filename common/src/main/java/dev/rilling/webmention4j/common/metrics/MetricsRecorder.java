@@ -0,0 +1,103 @@
+package dev.rilling.webmention4j.common.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Listener aggregating reported phases into {@link Histogram}s and {@link Counter}s, which can be read at any time
+ * to export them to a metrics backend.
+ * <p>
+ * Recording is lock-free once a series was seen, so it does not slow down the reporting threads.
+ */
+public final class MetricsRecorder implements MetricsListener {
+	private final ConcurrentMap<Series, Histogram> durations = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Series, Counter> bytes = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Counter> cacheHits = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Counter> cacheMisses = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Counter> rejections = new ConcurrentHashMap<>();
+
+	@Override
+	public void onPhase(@NotNull Phase phase,
+						@NotNull String detail,
+						long durationNanos,
+						long bytes,
+						@NotNull String outcome) {
+		Series series = new Series(phase, detail, outcome);
+		getOrCreate(durations, series, Histogram::forDurations).record(durationNanos);
+		if (bytes > 0) {
+			getOrCreate(this.bytes, series, Counter::new).add(bytes);
+		}
+	}
+
+	@Override
+	public void onCacheLookup(@NotNull String cache, boolean hit) {
+		getOrCreate(hit ? cacheHits : cacheMisses, cache, Counter::new).increment();
+	}
+
+	@Override
+	public void onRejected(@NotNull String reason) {
+		getOrCreate(rejections, reason, Counter::new).increment();
+	}
+
+	/**
+	 * @return Durations in nanoseconds per series. Live view.
+	 */
+	@NotNull
+	public Map<Series, Histogram> getDurations() {
+		return Collections.unmodifiableMap(durations);
+	}
+
+	/**
+	 * @return Bytes transferred per series. Series without transferred bytes are missing. Live view.
+	 */
+	@NotNull
+	public Map<Series, Counter> getBytes() {
+		return Collections.unmodifiableMap(bytes);
+	}
+
+	/**
+	 * @return Cache hits per cache name. Live view.
+	 */
+	@NotNull
+	public Map<String, Counter> getCacheHits() {
+		return Collections.unmodifiableMap(cacheHits);
+	}
+
+	/**
+	 * @return Cache misses per cache name. Live view.
+	 */
+	@NotNull
+	public Map<String, Counter> getCacheMisses() {
+		return Collections.unmodifiableMap(cacheMisses);
+	}
+
+	/**
+	 * @return Rejected Webmentions per reason. Live view.
+	 */
+	@NotNull
+	public Map<String, Counter> getRejections() {
+		return Collections.unmodifiableMap(rejections);
+	}
+
+	private static <K, V> V getOrCreate(ConcurrentMap<K, V> map, K key, Supplier<V> factory) {
+		// Plain lookup first, as computeIfAbsent may lock even if the key is present.
+		V value = map.get(key);
+		if (value == null) {
+			value = map.computeIfAbsent(key, ignored -> factory.get());
+		}
+		return value;
+	}
+
+	/**
+	 * @param phase   The phase.
+	 * @param detail  Phase-specific detail, or empty.
+	 * @param outcome Phase-specific outcome code.
+	 */
+	public record Series(@NotNull Phase phase, @NotNull String detail, @NotNull String outcome) {
+	}
+}
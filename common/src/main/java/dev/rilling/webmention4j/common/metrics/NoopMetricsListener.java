@@ -0,0 +1,8 @@
+package dev.rilling.webmention4j.common.metrics;
+
+final class NoopMetricsListener implements MetricsListener {
+	static final NoopMetricsListener INSTANCE = new NoopMetricsListener();
+
+	private NoopMetricsListener() {
+	}
+}
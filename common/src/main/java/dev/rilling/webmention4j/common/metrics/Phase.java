@@ -0,0 +1,45 @@
+package dev.rilling.webmention4j.common.metrics;
+
+/**
+ * Phase of sending or receiving a Webmention reported to a {@link MetricsListener}.
+ */
+public enum Phase {
+	/**
+	 * Resolving a host name. Outcome is {@code ok} or {@code error}.
+	 */
+	DNS,
+	/**
+	 * Obtaining a connection, including waiting for a pooled one and establishing it. Near zero if a connection is
+	 * reused. Outcome is {@code ok} or {@code error}.
+	 */
+	CONNECT,
+	/**
+	 * Client: Fetching a target to discover its endpoint, including parsing. Bytes are those read from the body.
+	 * Outcome is {@code found}, {@code not_found}, {@code limit_exceeded} or {@code error}.
+	 */
+	DISCOVERY,
+	/**
+	 * Client: Parsing an HTML body for an endpoint. Outcome is {@code found}, {@code not_found}, {@code skipped}
+	 * (if the body cannot contain one) or {@code error}.
+	 */
+	HTML_PARSE,
+	/**
+	 * Client: Notifying an endpoint. Outcome is the HTTP status code, or {@code error} if there was no response.
+	 */
+	NOTIFY,
+	/**
+	 * Receiver: Fetching a source for verification, including verifying it. Bytes are those read from the body.
+	 * Outcome is the HTTP status code, {@code limit_exceeded} or {@code error}.
+	 */
+	SOURCE_FETCH,
+	/**
+	 * Receiver: Checking a fetched source for a link to the target. Detail is the media type of the verifier.
+	 * Outcome is {@code valid}, {@code invalid} or {@code error}.
+	 */
+	VERIFY,
+	/**
+	 * Receiver: Handling a request to the endpoint. Outcome is {@code accepted}, {@code queued}, {@code unchanged}
+	 * (if the outcome was cached), {@code bad_request}, {@code rate_limited}, {@code unavailable} or {@code error}.
+	 */
+	RECEIVE
+}
@@ -0,0 +1,59 @@
+package dev.rilling.webmention4j.common.internal;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveTimeoutsTest {
+
+	@Test
+	@DisplayName("#getResponseTimeout uses maximum until enough samples exist")
+	void getResponseTimeoutWithoutSamples() {
+		AdaptiveTimeouts adaptiveTimeouts = new AdaptiveTimeouts(Duration.ofSeconds(1), Duration.ofSeconds(10), 16);
+		for (int i = 0; i < AdaptiveTimeouts.MIN_SAMPLES - 1; i++) {
+			adaptiveTimeouts.record("example.com", Duration.ofMillis(100));
+		}
+
+		assertThat(adaptiveTimeouts.getResponseTimeout("example.com")).isEqualTo(Duration.ofSeconds(10));
+	}
+
+	@Test
+	@DisplayName("#getResponseTimeout derives timeout from recent latency within bounds")
+	void getResponseTimeoutBounded() {
+		AdaptiveTimeouts adaptiveTimeouts = new AdaptiveTimeouts(Duration.ofSeconds(1), Duration.ofSeconds(10), 1024);
+		for (int i = 0; i < AdaptiveTimeouts.WINDOW_SIZE; i++) {
+			adaptiveTimeouts.record("fast.example.com", Duration.ofMillis(10));
+			adaptiveTimeouts.record("medium.example.com", Duration.ofMillis(500));
+			adaptiveTimeouts.record("slow.example.com", Duration.ofSeconds(5));
+		}
+
+		assertThat(adaptiveTimeouts.getResponseTimeout("fast.example.com")).isEqualTo(Duration.ofSeconds(1));
+		assertThat(adaptiveTimeouts.getResponseTimeout("MEDIUM.example.com")).isEqualTo(Duration.ofSeconds(2));
+		assertThat(adaptiveTimeouts.getResponseTimeout("slow.example.com")).isEqualTo(Duration.ofSeconds(10));
+	}
+
+	@Test
+	@DisplayName("#getResponseTimeout follows the high percentile of the window")
+	void getResponseTimeoutPercentile() {
+		AdaptiveTimeouts adaptiveTimeouts = new AdaptiveTimeouts(Duration.ofMillis(1), Duration.ofSeconds(10), 16);
+		// A single outlier is ignored, but more than 5% of the window are not.
+		adaptiveTimeouts.record("example.com", Duration.ofSeconds(2));
+		for (int i = 1; i < AdaptiveTimeouts.WINDOW_SIZE; i++) {
+			adaptiveTimeouts.record("example.com", Duration.ofMillis(100));
+		}
+		assertThat(adaptiveTimeouts.getResponseTimeout("example.com")).isEqualTo(Duration.ofMillis(400));
+
+		adaptiveTimeouts.record("example.com", Duration.ofMillis(800));
+		adaptiveTimeouts.record("example.com", Duration.ofMillis(800));
+		assertThat(adaptiveTimeouts.getResponseTimeout("example.com")).isEqualTo(Duration.ofMillis(3200));
+
+		// Old samples leave the window.
+		for (int i = 0; i < AdaptiveTimeouts.WINDOW_SIZE; i++) {
+			adaptiveTimeouts.record("example.com", Duration.ofMillis(50));
+		}
+		assertThat(adaptiveTimeouts.getResponseTimeout("example.com")).isEqualTo(Duration.ofMillis(200));
+	}
+}
@@ -59,6 +59,18 @@ class HttpUtilsTest {
 		}
 	}
 
+	@Test
+	@DisplayName("#validateResponse limits error body size")
+	void validateResponseLimitsErrorBody() throws IOException {
+		try (ClassicHttpResponse response = new BasicClassicHttpResponse(HttpStatus.SC_NOT_FOUND)) {
+			response.setEntity(new StringEntity("0123456789", ContentType.TEXT_PLAIN));
+
+			assertThatThrownBy(() -> validateResponse(response, 4)).isInstanceOf(IOException.class).hasMessage("""
+				Request failed: 404 - Not Found:
+				0123[...]""");
+		}
+	}
+
 	@Test
 	@DisplayName("#extractContentType extracts content type")
 	void extractContentTypeExtracts() throws IOException {
@@ -0,0 +1,89 @@
+package dev.rilling.webmention4j.common.internal;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SegmentLogTest {
+
+	@Test
+	@DisplayName("#open replays appended records")
+	void replaysRecords(@TempDir Path directory) throws IOException {
+		try (SegmentLog log = SegmentLog.open(directory, "test", 1024, (payload, file) -> {
+		}, writer -> {
+		})) {
+			log.sync(log.append(bytes("a")));
+			log.append(bytes("b"));
+		}
+
+		List<String> replayed = new ArrayList<>();
+		SegmentLog.open(directory, "test", 1024, (payload, file) -> replayed.add(string(payload)),
+			writer -> writer.write(bytes("snapshot"))).close();
+		assertThat(replayed).containsExactly("a", "b");
+
+		replayed.clear();
+		SegmentLog.open(directory, "test", 1024, (payload, file) -> replayed.add(string(payload)), writer -> {
+		}).close();
+		assertThat(replayed).containsExactly("snapshot");
+	}
+
+	@Test
+	@DisplayName("#open ignores incomplete records")
+	void ignoresIncompleteRecords(@TempDir Path directory) throws IOException {
+		try (SegmentLog log = SegmentLog.open(directory, "test", 1024, (payload, file) -> {
+		}, writer -> {
+		})) {
+			log.append(bytes("a"));
+		}
+		Path segment = listSegments(directory).get(0);
+		// Simulates a crash during a write.
+		Files.write(segment, new byte[]{0, 0, 0, 42, 1, 2}, StandardOpenOption.APPEND);
+
+		List<String> replayed = new ArrayList<>();
+		SegmentLog.open(directory, "test", 1024, (payload, file) -> replayed.add(string(payload)), writer -> {
+		}).close();
+		assertThat(replayed).containsExactly("a");
+	}
+
+	@Test
+	@DisplayName("#rollIfNeeded starts a new segment from the snapshot")
+	void rollsSegments(@TempDir Path directory) throws IOException {
+		try (SegmentLog log = SegmentLog.open(directory, "test", 64, (payload, file) -> {
+		}, writer -> writer.write(bytes("snapshot")))) {
+			for (int i = 0; i < 100; i++) {
+				log.append(bytes("record"));
+				log.rollIfNeeded();
+			}
+
+			List<Path> segments = listSegments(directory);
+			assertThat(segments).hasSize(1);
+			assertThat(Files.size(segments.get(0))).isLessThan(128);
+		}
+	}
+
+	private static byte[] bytes(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static String string(ByteBuffer payload) {
+		return StandardCharsets.UTF_8.decode(payload).toString();
+	}
+
+	private static List<Path> listSegments(Path directory) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.toList();
+		}
+	}
+}
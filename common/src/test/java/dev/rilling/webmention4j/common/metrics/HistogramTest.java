@@ -0,0 +1,51 @@
+package dev.rilling.webmention4j.common.metrics;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HistogramTest {
+
+	@Test
+	@DisplayName("#record counts values into buckets by inclusive upper bound")
+	void recordCountsIntoBuckets() {
+		Histogram histogram = new Histogram(10, 100);
+
+		histogram.record(1);
+		histogram.record(10);
+		histogram.record(11);
+		histogram.record(1000);
+
+		assertThat(histogram.getBucketCounts()).containsExactly(2, 1, 1);
+		assertThat(histogram.getCount()).isEqualTo(4);
+		assertThat(histogram.getSum()).isEqualTo(1022);
+	}
+
+	@Test
+	@DisplayName("#record is safe for concurrent use")
+	void recordConcurrently() throws InterruptedException {
+		Histogram histogram = Histogram.forDurations();
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(() -> {
+				for (int j = 0; j < 10_000; j++) {
+					histogram.record(j * 1000L);
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertThat(histogram.getCount()).isEqualTo(40_000);
+	}
+
+	@Test
+	@DisplayName("#<init> rejects unordered bounds")
+	void rejectsUnorderedBounds() {
+		assertThatThrownBy(() -> new Histogram(10, 10)).isInstanceOf(IllegalArgumentException.class);
+	}
+}
@@ -0,0 +1,51 @@
+package dev.rilling.webmention4j.common.metrics;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MetricsRecorderTest {
+
+	@Test
+	@DisplayName("#onPhase aggregates durations and bytes per series")
+	void onPhaseAggregates() {
+		MetricsRecorder recorder = new MetricsRecorder();
+
+		recorder.onPhase(Phase.VERIFY, "text/html", 1_000_000, 0, "valid");
+		recorder.onPhase(Phase.VERIFY, "text/html", 3_000_000, 0, "valid");
+		recorder.onPhase(Phase.SOURCE_FETCH, "", 5_000_000, 512, "200");
+
+		MetricsRecorder.Series verifySeries = new MetricsRecorder.Series(Phase.VERIFY, "text/html", "valid");
+		assertThat(recorder.getDurations().get(verifySeries).getCount()).isEqualTo(2);
+		assertThat(recorder.getDurations().get(verifySeries).getSum()).isEqualTo(4_000_000);
+		assertThat(recorder.getBytes()).doesNotContainKey(verifySeries);
+		assertThat(recorder.getBytes()
+			.get(new MetricsRecorder.Series(Phase.SOURCE_FETCH, "", "200"))
+			.get()).isEqualTo(512);
+	}
+
+	@Test
+	@DisplayName("#onCacheLookup counts hits and misses")
+	void onCacheLookupCounts() {
+		MetricsRecorder recorder = new MetricsRecorder();
+
+		recorder.onCacheLookup("verification", true);
+		recorder.onCacheLookup("verification", false);
+		recorder.onCacheLookup("verification", true);
+
+		assertThat(recorder.getCacheHits().get("verification").get()).isEqualTo(2);
+		assertThat(recorder.getCacheMisses().get("verification").get()).isEqualTo(1);
+	}
+
+	@Test
+	@DisplayName("#onRejected counts rejections per reason")
+	void onRejectedCounts() {
+		MetricsRecorder recorder = new MetricsRecorder();
+
+		recorder.onRejected("no_link");
+		recorder.onRejected("no_link");
+
+		assertThat(recorder.getRejections().get("no_link").get()).isEqualTo(2);
+	}
+}
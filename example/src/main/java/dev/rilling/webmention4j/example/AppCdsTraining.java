@@ -0,0 +1,55 @@
+package dev.rilling.webmention4j.example;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Training run for the AppCDS archive of {@link WebmentionClientExample} (see the {@code appcds} profile).
+ * <p>
+ * Crawls a page served from a local server and sends Webmentions to the endpoints it advertises, so that the classes
+ * for CLI parsing, HTML parsing, endpoint discovery and notification are loaded and archived.
+ */
+public final class AppCdsTraining {
+
+	private AppCdsTraining() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		String serverUri = "http://localhost:%d".formatted(server.getAddress().getPort());
+		server.createContext("/source", exchange -> respond(exchange, 200, "text/html", """
+			<html><body>
+			<a href="%1$s/header-target">Header</a>
+			<a href="%1$s/html-target">HTML</a>
+			</body></html>""".formatted(serverUri)));
+		server.createContext("/header-target", exchange -> {
+			exchange.getResponseHeaders().set("Link", "<%s/webmention>; rel=\"webmention\"".formatted(serverUri));
+			respond(exchange, 200, "text/html", "<html><body>Header</body></html>");
+		});
+		server.createContext("/html-target", exchange -> respond(exchange, 200, "text/html", """
+			<html><head><link rel="webmention" href="/webmention"></head><body>HTML</body></html>"""));
+		server.createContext("/webmention", exchange -> respond(exchange, 202, "text/plain", "Accepted."));
+		server.start();
+		try {
+			WebmentionClientExample.main(new String[]{"--source", serverUri + "/source", "--crawl",
+				"--include-identical-host", "--allow-localhost-endpoint"});
+		} finally {
+			server.stop(0);
+		}
+	}
+
+	private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream responseBody = exchange.getResponseBody()) {
+			responseBody.write(bytes);
+		}
+	}
+}
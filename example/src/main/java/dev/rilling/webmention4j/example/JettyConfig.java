@@ -0,0 +1,265 @@
+package dev.rilling.webmention4j.example;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.VirtualThreads;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Configuration POJO for the threads and connectors of an embedded Jetty server.
+ * Defaults match the defaults of Jetty.
+ */
+final class JettyConfig {
+
+	private static final Option MIN_THREADS = Option.builder()
+		.option("tmin")
+		.longOpt("min-threads")
+		.hasArg(true)
+		.desc("Minimum number of server threads. Defaults to 8.")
+		.build();
+	private static final Option MAX_THREADS = Option.builder()
+		.option("tmax")
+		.longOpt("max-threads")
+		.hasArg(true)
+		.desc("Maximum number of server threads, including acceptor and selector threads. Defaults to 200.")
+		.build();
+	private static final Option MAX_QUEUED = Option.builder()
+		.option("tq")
+		.longOpt("max-queued")
+		.hasArg(true)
+		.desc("Maximum number of jobs waiting for a server thread. Connections are closed if exceeded. " +
+			"Defaults to unbounded.")
+		.build();
+	private static final Option ACCEPTORS = Option.builder()
+		.option("ta")
+		.longOpt("acceptors")
+		.hasArg(true)
+		.desc("Number of acceptor threads. Defaults to a number based on available processors.")
+		.build();
+	private static final Option SELECTORS = Option.builder()
+		.option("ts")
+		.longOpt("selectors")
+		.hasArg(true)
+		.desc("Number of selector threads. Defaults to a number based on available processors.")
+		.build();
+	private static final Option IDLE_TIMEOUT = Option.builder()
+		.option("it")
+		.longOpt("idle-timeout")
+		.hasArg(true)
+		.desc("Seconds after which idle connections are closed. Defaults to 30.")
+		.build();
+	private static final Option VIRTUAL_THREADS = Option.builder()
+		.option("vt")
+		.longOpt("virtual-threads")
+		.hasArg(false)
+		.desc("Dispatches requests to virtual threads instead of server threads. Requires Java 21 or newer.")
+		.build();
+
+	private int minThreads = 8;
+	private int maxThreads = 200;
+	private int maxQueued = -1;
+	private int acceptors = -1;
+	private int selectors = -1;
+	private Duration idleTimeout = Duration.ofSeconds(30);
+	private boolean virtualThreads = false;
+
+	/**
+	 * Creates a new configuration with default values.
+	 */
+	public JettyConfig() {
+	}
+
+	/**
+	 * Creates a copy of a configuration.
+	 */
+	public JettyConfig(@NotNull JettyConfig original) {
+		minThreads = original.minThreads;
+		maxThreads = original.maxThreads;
+		maxQueued = original.maxQueued;
+		acceptors = original.acceptors;
+		selectors = original.selectors;
+		idleTimeout = original.idleTimeout;
+		virtualThreads = original.virtualThreads;
+	}
+
+	/**
+	 * Adds the command line options read by {@link #fromCommandLine(CommandLine)}.
+	 */
+	public static void addOptions(@NotNull Options options) {
+		options.addOption(MIN_THREADS)
+			.addOption(MAX_THREADS)
+			.addOption(MAX_QUEUED)
+			.addOption(ACCEPTORS)
+			.addOption(SELECTORS)
+			.addOption(IDLE_TIMEOUT)
+			.addOption(VIRTUAL_THREADS);
+	}
+
+	/**
+	 * Creates a configuration from the options added by {@link #addOptions(Options)}, using defaults for those not set.
+	 */
+	@NotNull
+	public static JettyConfig fromCommandLine(@NotNull CommandLine commandLine) {
+		JettyConfig config = new JettyConfig();
+		if (commandLine.hasOption(MIN_THREADS)) {
+			config.setMinThreads(Integer.parseInt(commandLine.getOptionValue(MIN_THREADS)));
+		}
+		if (commandLine.hasOption(MAX_THREADS)) {
+			config.setMaxThreads(Integer.parseInt(commandLine.getOptionValue(MAX_THREADS)));
+		}
+		if (commandLine.hasOption(MAX_QUEUED)) {
+			config.setMaxQueued(Integer.parseInt(commandLine.getOptionValue(MAX_QUEUED)));
+		}
+		if (commandLine.hasOption(ACCEPTORS)) {
+			config.setAcceptors(Integer.parseInt(commandLine.getOptionValue(ACCEPTORS)));
+		}
+		if (commandLine.hasOption(SELECTORS)) {
+			config.setSelectors(Integer.parseInt(commandLine.getOptionValue(SELECTORS)));
+		}
+		if (commandLine.hasOption(IDLE_TIMEOUT)) {
+			config.setIdleTimeout(Duration.ofSeconds(Long.parseLong(commandLine.getOptionValue(IDLE_TIMEOUT))));
+		}
+		config.setVirtualThreads(commandLine.hasOption(VIRTUAL_THREADS));
+		return config;
+	}
+
+	/**
+	 * Creates a server without connectors, using a thread pool based on this configuration.
+	 *
+	 * @throws IllegalArgumentException if the configuration is invalid, e.g. virtual threads are not supported.
+	 */
+	@NotNull
+	public Server createServer() {
+		if (minThreads < 1 || maxThreads < minThreads) {
+			throw new IllegalArgumentException("Thread counts must be positive and the maximum at least the minimum.");
+		}
+		QueuedThreadPool threadPool;
+		if (maxQueued > 0) {
+			threadPool = new QueuedThreadPool(maxThreads,
+				minThreads,
+				60_000,
+				new BlockingArrayQueue<>(maxQueued, 0, maxQueued));
+		} else {
+			threadPool = new QueuedThreadPool(maxThreads, minThreads);
+		}
+		threadPool.setName("webmention4j-server");
+		if (virtualThreads) {
+			if (!VirtualThreads.areSupported()) {
+				throw new IllegalArgumentException("Virtual threads are not supported by this Java runtime.");
+			}
+			// Acceptors and selectors keep using the pool, only dispatched requests run on virtual threads.
+			threadPool.setVirtualThreadsExecutor(VirtualThreads.getDefaultVirtualThreadsExecutor());
+		}
+		return new Server(threadPool);
+	}
+
+	/**
+	 * Creates a connector for the server based on this configuration. Host and port still need to be set.
+	 */
+	@NotNull
+	public ServerConnector createConnector(@NotNull Server server) {
+		ServerConnector connector = new ServerConnector(server, acceptors, selectors);
+		connector.setIdleTimeout(idleTimeout.toMillis());
+		return connector;
+	}
+
+	public int getMinThreads() {
+		return minThreads;
+	}
+
+	public void setMinThreads(int minThreads) {
+		this.minThreads = minThreads;
+	}
+
+	public int getMaxThreads() {
+		return maxThreads;
+	}
+
+	public void setMaxThreads(int maxThreads) {
+		this.maxThreads = maxThreads;
+	}
+
+	/**
+	 * @return Maximum number of jobs waiting for a thread, or -1 if unbounded.
+	 */
+	public int getMaxQueued() {
+		return maxQueued;
+	}
+
+	public void setMaxQueued(int maxQueued) {
+		this.maxQueued = maxQueued;
+	}
+
+	/**
+	 * @return Number of acceptor threads, or -1 to let Jetty decide.
+	 */
+	public int getAcceptors() {
+		return acceptors;
+	}
+
+	public void setAcceptors(int acceptors) {
+		this.acceptors = acceptors;
+	}
+
+	/**
+	 * @return Number of selector threads, or -1 to let Jetty decide.
+	 */
+	public int getSelectors() {
+		return selectors;
+	}
+
+	public void setSelectors(int selectors) {
+		this.selectors = selectors;
+	}
+
+	@NotNull
+	public Duration getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	public void setIdleTimeout(@NotNull Duration idleTimeout) {
+		this.idleTimeout = idleTimeout;
+	}
+
+	public boolean isVirtualThreads() {
+		return virtualThreads;
+	}
+
+	public void setVirtualThreads(boolean virtualThreads) {
+		this.virtualThreads = virtualThreads;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null || getClass() != obj.getClass()) {
+			return false;
+		}
+		JettyConfig config = (JettyConfig) obj;
+		return minThreads == config.minThreads && maxThreads == config.maxThreads && maxQueued == config.maxQueued &&
+			   acceptors == config.acceptors && selectors == config.selectors &&
+			   idleTimeout.equals(config.idleTimeout) && virtualThreads == config.virtualThreads;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(minThreads, maxThreads, maxQueued, acceptors, selectors, idleTimeout, virtualThreads);
+	}
+
+	@Override
+	public String toString() {
+		return "JettyConfig{" + "minThreads=" + minThreads + ", maxThreads=" + maxThreads + ", maxQueued=" +
+			   maxQueued + ", acceptors=" + acceptors + ", selectors=" + selectors + ", idleTimeout=" + idleTimeout +
+			   ", virtualThreads=" + virtualThreads + '}';
+	}
+}
@@ -19,6 +19,8 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
 
 import static dev.rilling.webmention4j.example.CliUtils.parseArgs;
 import static dev.rilling.webmention4j.example.CliUtils.printHelp;
@@ -84,8 +86,8 @@ public final class WebmentionClientExample {
 
 	private final WebmentionClient webmentionClient;
 
-	private WebmentionClientExample(WebmentionClient.Config config) {
-		webmentionClient = new WebmentionClient(config);
+	private WebmentionClientExample(WebmentionClient webmentionClient) {
+		this.webmentionClient = webmentionClient;
 	}
 
 	/**
@@ -106,21 +108,24 @@ public final class WebmentionClientExample {
 		if (commandLine.hasOption(ALLOW_LOCALHOST_ENDPOINT)) {
 			config.setAllowLocalhostEndpoint(true);
 		}
-		WebmentionClientExample webmentionClientExample = new WebmentionClientExample(config);
-
-		if (commandLine.hasOption(CRAWL)) {
-			webmentionClientExample.sendWebmentionForLinked(source, commandLine.hasOption(INCLUDE_IDENTICAL_HOST));
-		} else if (commandLine.hasOption(TARGET)) {
-			URI target = URI.create(commandLine.getOptionValue(TARGET));
-			webmentionClientExample.sendWebmention(source, target);
-		} else {
-			throw new IllegalArgumentException("Either '--%s' or '--%s' has to be specified.".formatted(TARGET.getLongOpt(),
-				CRAWL.getLongOpt()));
+		try (WebmentionClient webmentionClient = new WebmentionClient(config)) {
+			WebmentionClientExample webmentionClientExample = new WebmentionClientExample(webmentionClient);
+
+			if (commandLine.hasOption(CRAWL)) {
+				webmentionClientExample.sendWebmentionForLinked(source, commandLine.hasOption(INCLUDE_IDENTICAL_HOST));
+			} else if (commandLine.hasOption(TARGET)) {
+				URI target = URI.create(commandLine.getOptionValue(TARGET));
+				webmentionClientExample.sendWebmention(source, target);
+			} else {
+				throw new IllegalArgumentException("Either '--%s' or '--%s' has to be specified.".formatted(TARGET.getLongOpt(),
+					CRAWL.getLongOpt()));
+			}
 		}
 	}
 
 	private void sendWebmentionForLinked(URI source, boolean includeIdenticalHost) {
 		Document sourceDocument = readSourceDocument(source);
+		List<URI> targets = new ArrayList<>();
 		for (Element element : sourceDocument.select(new HtmlUtils.LinkLikeElementEvaluator())) {
 			URI target;
 			String linkStr = HtmlUtils.LinkLikeElementEvaluator.getLink(element);
@@ -141,6 +146,11 @@ public final class WebmentionClientExample {
 				continue;
 			}
 
+			targets.add(target);
+		}
+
+		webmentionClient.warmUp(targets);
+		for (URI target : targets) {
 			sendWebmention(source, target);
 		}
 	}
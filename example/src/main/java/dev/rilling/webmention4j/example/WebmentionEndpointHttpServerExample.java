@@ -0,0 +1,156 @@
+package dev.rilling.webmention4j.example;
+
+import com.sun.net.httpserver.HttpServer;
+import dev.rilling.webmention4j.common.Webmention;
+import dev.rilling.webmention4j.server.AbstractWebmentionEndpointHandler;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.eclipse.jetty.util.VirtualThreads;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import static dev.rilling.webmention4j.example.CliUtils.parseArgs;
+import static dev.rilling.webmention4j.example.CliUtils.printHelp;
+
+public final class WebmentionEndpointHttpServerExample {
+	private static final Logger LOGGER = LoggerFactory.getLogger(WebmentionEndpointHttpServerExample.class);
+
+	private static final int DEFAULT_PORT = 8080;
+	private static final String DEFAULT_ADDRESS = "0.0.0.0";
+	private static final int DEFAULT_THREADS = 50;
+
+	private static final Option HELP = Option.builder()
+		.option("h")
+		.longOpt("help")
+		.hasArg(false)
+		.desc("Shows this help text.")
+		.build();
+
+	private static final Option ADDRESS = Option.builder()
+		.option("a")
+		.longOpt("address")
+		.hasArg(true)
+		.desc("Address to listen on. Defaults to '%s'.".formatted(DEFAULT_ADDRESS))
+		.build();
+	private static final Option PORT = Option.builder()
+		.option("p")
+		.longOpt("port")
+		.hasArg(true)
+		.desc("Port to listen on. Defaults to '%s'.".formatted(DEFAULT_PORT))
+		.build();
+	private static final Option THREADS = Option.builder()
+		.option("t")
+		.longOpt("threads")
+		.hasArg(true)
+		.desc("Number of threads handling requests. Defaults to '%s'.".formatted(DEFAULT_THREADS))
+		.build();
+	private static final Option VIRTUAL_THREADS = Option.builder()
+		.option("vt")
+		.longOpt("virtual-threads")
+		.hasArg(false)
+		.desc("Handles each request on its own virtual thread instead of a thread pool. Requires Java 21 or newer.")
+		.build();
+
+	private static final Option VALID_HOSTS = Option.builder()
+		.option("vh")
+		.longOpt("valid-hosts")
+		.hasArg(true)
+		.desc("Comma-separated list of target hosts to receive Webmentions for. " +
+			"Wildcards like '*.example.com' match all subdomains. " +
+			"If not set, Webmentions are received regardless of target host.")
+		.build();
+	private static final Option VALID_HOSTS_FILE = Option.builder()
+		.option("vhf")
+		.longOpt("valid-hosts-file")
+		.hasArg(true)
+		.desc("File containing target hosts to receive Webmentions for, one per line. " +
+			"Reloaded when changed. May not be combined with '--valid-hosts'.")
+		.build();
+
+	private static final Options OPTIONS = new Options().addOption(HELP)
+		.addOption(ADDRESS)
+		.addOption(PORT)
+		.addOption(THREADS)
+		.addOption(VIRTUAL_THREADS)
+		.addOption(VALID_HOSTS)
+		.addOption(VALID_HOSTS_FILE);
+
+	private WebmentionEndpointHttpServerExample() {
+	}
+
+	/**
+	 * Starts Webmention endpoint server using the HTTP server built into the JDK.
+	 * <p>
+	 * Call with `--help` for usage information.
+	 * <p>
+	 * Security:
+	 * This server is not designed to be exposed directly to the internet.
+	 * Instead, a reverse proxy should be used that directs only HTTP traffic for the POST method to it.
+	 */
+	public static void main(String[] args) {
+		CommandLine commandLine = parseArgs(args, OPTIONS);
+		if (commandLine.hasOption(HELP)) {
+			printHelp(OPTIONS);
+			return;
+		}
+
+		String address = commandLine.getOptionValue(ADDRESS, DEFAULT_ADDRESS);
+		int port = Integer.parseInt(commandLine.getOptionValue(PORT, String.valueOf(DEFAULT_PORT)));
+		InetSocketAddress socketAddress = new InetSocketAddress(address, port);
+
+		Executor executor;
+		if (commandLine.hasOption(VIRTUAL_THREADS)) {
+			if (!VirtualThreads.areSupported()) {
+				throw new IllegalArgumentException("Virtual threads are not supported by this Java runtime.");
+			}
+			executor = VirtualThreads.getDefaultVirtualThreadsExecutor();
+		} else {
+			int threads = Integer.parseInt(commandLine.getOptionValue(THREADS, String.valueOf(DEFAULT_THREADS)));
+			executor = Executors.newFixedThreadPool(threads);
+		}
+
+		Map<String, String> parameters = new HashMap<>();
+		if (commandLine.hasOption(VALID_HOSTS)) {
+			parameters.put("validHosts", commandLine.getOptionValue(VALID_HOSTS));
+		}
+		if (commandLine.hasOption(VALID_HOSTS_FILE)) {
+			parameters.put("validHostsFile", commandLine.getOptionValue(VALID_HOSTS_FILE));
+		}
+
+		startServer(socketAddress, executor, parameters);
+	}
+
+	private static void startServer(InetSocketAddress socketAddress, Executor executor, Map<String, String> parameters) {
+		LoggingWebmentionEndpointHandler handler = new LoggingWebmentionEndpointHandler();
+		try {
+			handler.init(parameters);
+			HttpServer server = HttpServer.create(socketAddress, 0);
+			server.createContext("/", handler);
+			server.setExecutor(executor);
+			server.start();
+			LOGGER.info("Listening on '{}'.", socketAddress);
+		} catch (IOException e) {
+			LOGGER.error("Unexpected error.", e);
+			handler.close();
+		}
+	}
+
+	private static class LoggingWebmentionEndpointHandler extends AbstractWebmentionEndpointHandler {
+		private static final Logger HANDLER_LOGGER = LoggerFactory.getLogger(LoggingWebmentionEndpointHandler.class);
+
+		@Override
+		protected void handleWebmention(@NotNull Webmention webmention) {
+			HANDLER_LOGGER.info("Received Webmention '{}'.", webmention);
+		}
+	}
+
+}
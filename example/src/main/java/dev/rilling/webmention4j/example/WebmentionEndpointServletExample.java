@@ -6,6 +6,7 @@ import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.handler.ErrorHandler;
 import org.eclipse.jetty.servlet.ServletHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
@@ -50,13 +51,26 @@ public final class WebmentionEndpointServletExample {
 		.longOpt("valid-hosts")
 		.hasArg(true)
 		.desc("Comma-separated list of target hosts to receive Webmentions for. " +
+			"Wildcards like '*.example.com' match all subdomains. " +
 			"If not set, Webmentions are received regardless of target host.")
 		.build();
+	private static final Option VALID_HOSTS_FILE = Option.builder()
+		.option("vhf")
+		.longOpt("valid-hosts-file")
+		.hasArg(true)
+		.desc("File containing target hosts to receive Webmentions for, one per line. " +
+			"Reloaded when changed. May not be combined with '--valid-hosts'.")
+		.build();
 
 	private static final Options OPTIONS = new Options().addOption(HELP)
 		.addOption(ADDRESS)
 		.addOption(PORT)
-		.addOption(VALID_HOSTS);
+		.addOption(VALID_HOSTS)
+		.addOption(VALID_HOSTS_FILE);
+
+	static {
+		JettyConfig.addOptions(OPTIONS);
+	}
 
 	private WebmentionEndpointServletExample() {
 	}
@@ -80,22 +94,32 @@ public final class WebmentionEndpointServletExample {
 		String address = commandLine.getOptionValue(ADDRESS, DEFAULT_ADDRESS);
 		int port = Integer.parseInt(commandLine.getOptionValue(PORT, String.valueOf(DEFAULT_PORT)));
 		InetSocketAddress socketAddress = new InetSocketAddress(address, port);
+		JettyConfig jettyConfig = JettyConfig.fromCommandLine(commandLine);
 
 		@Nullable String validHosts = commandLine.getOptionValue(VALID_HOSTS);
+		@Nullable String validHostsFile = commandLine.getOptionValue(VALID_HOSTS_FILE);
 
 		WebmentionEndpointServletExample servletExample = new WebmentionEndpointServletExample();
-		servletExample.startServer(socketAddress, validHosts);
+		servletExample.startServer(socketAddress, jettyConfig, validHosts, validHostsFile);
 	}
 
-	private void startServer(InetSocketAddress socketAddress, String validHosts) {
-		// TODO: Allow configuration of used threads
-		Server server = new Server(socketAddress);
+	private void startServer(InetSocketAddress socketAddress,
+							 JettyConfig jettyConfig,
+							 String validHosts,
+							 String validHostsFile) {
+		Server server = jettyConfig.createServer();
+		ServerConnector connector = jettyConfig.createConnector(server);
+		connector.setHost(socketAddress.getHostString());
+		connector.setPort(socketAddress.getPort());
+		server.addConnector(connector);
 
 		server.setErrorHandler(createErrorHandler());
 
 		ServletHandler servletHandler = new ServletHandler();
 		ServletHolder servletHolder = servletHandler.addServletWithMapping(LoggingWebmentionEndpointServlet.class, "/");
 		servletHolder.setInitParameter("validHosts", validHosts);
+		servletHolder.setInitParameter("validHostsFile", validHostsFile);
+		servletHolder.setAsyncSupported(true);
 		server.setHandler(servletHandler);
 
 		try {
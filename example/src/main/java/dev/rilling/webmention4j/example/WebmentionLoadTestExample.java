@@ -0,0 +1,532 @@
+package dev.rilling.webmention4j.example;
+
+import dev.rilling.webmention4j.common.Webmention;
+import dev.rilling.webmention4j.common.metrics.Counter;
+import dev.rilling.webmention4j.common.metrics.Histogram;
+import dev.rilling.webmention4j.common.metrics.MetricsListener;
+import dev.rilling.webmention4j.common.metrics.MetricsRecorder;
+import dev.rilling.webmention4j.common.metrics.Phase;
+import dev.rilling.webmention4j.server.AbstractWebmentionEndpointServlet;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.eclipse.jetty.server.NetworkConnector;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static dev.rilling.webmention4j.example.CliUtils.parseArgs;
+import static dev.rilling.webmention4j.example.CliUtils.printHelp;
+
+/**
+ * Load test of the endpoint servlet on this machine, e.g. for capacity planning.
+ * Starts the endpoint servlet in embedded Jetty like {@link WebmentionEndpointServletExample}, and a stub server
+ * serving synthetic sources. Webmentions are then sent at a fixed rate, independent of how fast they are answered.
+ */
+public final class WebmentionLoadTestExample {
+	private static final Logger LOGGER = LoggerFactory.getLogger(WebmentionLoadTestExample.class);
+
+	private static final String TARGET = "https://target.example/post";
+	private static final Duration DRAIN_TIMEOUT = Duration.ofMinutes(1);
+
+	private static final Option HELP = Option.builder()
+		.option("h")
+		.longOpt("help")
+		.hasArg(false)
+		.desc("Shows this help text.")
+		.build();
+
+	private static final Option RATE = Option.builder()
+		.option("r")
+		.longOpt("rate")
+		.hasArg(true)
+		.desc("Webmentions to send per second. Defaults to 100.")
+		.build();
+	private static final Option DURATION = Option.builder()
+		.option("d")
+		.longOpt("duration")
+		.hasArg(true)
+		.desc("Seconds to send Webmentions for, per mode. Defaults to 30.")
+		.build();
+	private static final Option CONCURRENCY = Option.builder()
+		.option("c")
+		.longOpt("concurrency")
+		.hasArg(true)
+		.desc("Maximum number of requests waiting for a response. If reached, Webmentions are dropped instead of " +
+			"sent, and counted as such. Defaults to 256.")
+		.build();
+	private static final Option MODE = Option.builder()
+		.option("m")
+		.longOpt("mode")
+		.hasArg(true)
+		.desc("'blocking' to verify during the request, 'async' to verify in the background, " +
+			"or 'both' to run one after the other. Defaults to 'both'.")
+		.build();
+
+	private static final Option SOURCE_LATENCY = Option.builder()
+		.option("sl")
+		.longOpt("source-latency")
+		.hasArg(true)
+		.desc("Milliseconds sources take to respond. Defaults to 50.")
+		.build();
+	private static final Option SOURCE_SIZE = Option.builder()
+		.option("ss")
+		.longOpt("source-size")
+		.hasArg(true)
+		.desc("Size of source pages in bytes. Defaults to 16384.")
+		.build();
+	private static final Option SOURCE_FAILURE_RATE = Option.builder()
+		.option("sf")
+		.longOpt("source-failure-rate")
+		.hasArg(true)
+		.desc("Fraction of source requests answered with '500 Internal Server Error'. Defaults to 0.01.")
+		.build();
+	private static final Option SOURCE_HOSTS = Option.builder()
+		.option("sh")
+		.longOpt("source-hosts")
+		.hasArg(true)
+		.desc("Number of hosts to serve sources on, as the endpoint limits connections per host. " +
+			"Uses the loopback addresses starting at 127.0.0.1, which all need to be available. Defaults to 1.")
+		.build();
+
+	private static final Option INIT_PARAMETER = Option.builder()
+		.option("i")
+		.longOpt("init-parameter")
+		.hasArgs()
+		.desc("Init parameter of the endpoint servlet in the form 'name=value', e.g. 'verificationThreads=8'. " +
+			"May be repeated.")
+		.build();
+
+	private static final Options OPTIONS = new Options().addOption(HELP)
+		.addOption(RATE)
+		.addOption(DURATION)
+		.addOption(CONCURRENCY)
+		.addOption(MODE)
+		.addOption(SOURCE_LATENCY)
+		.addOption(SOURCE_SIZE)
+		.addOption(SOURCE_FAILURE_RATE)
+		.addOption(SOURCE_HOSTS)
+		.addOption(INIT_PARAMETER);
+
+	static {
+		// Applies to the endpoint server, the source server always uses defaults.
+		JettyConfig.addOptions(OPTIONS);
+	}
+
+	private WebmentionLoadTestExample() {
+	}
+
+	/**
+	 * Runs the load test and logs the results.
+	 * <p>
+	 * Call with `--help` for usage information.
+	 */
+	public static void main(String[] args) throws Exception {
+		CommandLine commandLine = parseArgs(args, OPTIONS);
+		if (commandLine.hasOption(HELP)) {
+			printHelp(OPTIONS);
+			return;
+		}
+
+		double rate = Double.parseDouble(commandLine.getOptionValue(RATE, "100"));
+		Duration duration = Duration.ofSeconds(Long.parseLong(commandLine.getOptionValue(DURATION, "30")));
+		int concurrency = Integer.parseInt(commandLine.getOptionValue(CONCURRENCY, "256"));
+		String mode = commandLine.getOptionValue(MODE, "both");
+		Duration sourceLatency = Duration.ofMillis(Long.parseLong(commandLine.getOptionValue(SOURCE_LATENCY, "50")));
+		int sourceSize = Integer.parseInt(commandLine.getOptionValue(SOURCE_SIZE, "16384"));
+		double sourceFailureRate = Double.parseDouble(commandLine.getOptionValue(SOURCE_FAILURE_RATE, "0.01"));
+		int sourceHosts = Integer.parseInt(commandLine.getOptionValue(SOURCE_HOSTS, "1"));
+		Map<String, String> initParameters = parseInitParameters(commandLine.getOptionValues(INIT_PARAMETER));
+		JettyConfig endpointJettyConfig = JettyConfig.fromCommandLine(commandLine);
+		if (rate <= 0 || duration.isNegative() || duration.isZero() || concurrency < 1 || sourceHosts < 1 ||
+			sourceHosts > 254) {
+			throw new IllegalArgumentException("Rate, duration, concurrency and source hosts must be positive, " +
+											   "and there may be at most 254 source hosts.");
+		}
+
+		List<Boolean> asyncModes = switch (mode) {
+			case "blocking" -> List.of(false);
+			case "async" -> List.of(true);
+			case "both" -> List.of(false, true);
+			default -> throw new IllegalArgumentException("Unknown mode '%s'.".formatted(mode));
+		};
+
+		ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+		Server sourceServer = startServer(new SourceServlet(scheduler,
+			sourceLatency,
+			createSourcePage(sourceSize),
+			sourceFailureRate), Map.of(), new JettyConfig(), sourceHosts);
+		List<URI> sourceUris = getServerUris(sourceServer);
+		LOGGER.info("Serving sources on {}.", sourceUris);
+		try {
+			for (boolean async : asyncModes) {
+				runMode(async,
+					sourceUris,
+					initParameters,
+					endpointJettyConfig,
+					new LoadGenerator(scheduler, rate, duration, concurrency));
+			}
+		} finally {
+			sourceServer.stop();
+			scheduler.shutdownNow();
+		}
+	}
+
+	private static void runMode(boolean async,
+								List<URI> sourceUris,
+								Map<String, String> initParameters,
+								JettyConfig jettyConfig,
+								LoadGenerator loadGenerator) throws Exception {
+		String modeName = async ? "async" : "blocking";
+		MetricsRecorder recorder = new MetricsRecorder();
+		CountingWebmentionEndpointServlet servlet = new CountingWebmentionEndpointServlet(recorder);
+		Map<String, String> modeInitParameters = new HashMap<>(initParameters);
+		modeInitParameters.put("asyncVerification", String.valueOf(async));
+
+		Server endpointServer = startServer(servlet, modeInitParameters, jettyConfig, 1);
+		try {
+			URI endpointUri = getServerUris(endpointServer).get(0);
+			LOGGER.info("Running '{}' mode against '{}'.", modeName, endpointUri);
+
+			LoadResult result = loadGenerator.run(endpointUri, sourceUris);
+
+			// Background verification may lag behind, so wait for it to get its throughput, too.
+			long fetchesExpected = async ? result.getStatusCount(201) : 0;
+			long drainStartNanos = System.nanoTime();
+			while (countSourceFetches(recorder) < fetchesExpected &&
+				   System.nanoTime() - drainStartNanos < DRAIN_TIMEOUT.toNanos()) {
+				Thread.sleep(50);
+			}
+			double verificationSeconds = (System.nanoTime() - result.startNanos()) / 1e9;
+
+			logResult(modeName, result);
+			if (async) {
+				LOGGER.info("[{}] Background verifications: {} in {} s ({} per second)",
+					modeName,
+					countSourceFetches(recorder),
+					format(verificationSeconds),
+					format(countSourceFetches(recorder) / verificationSeconds));
+			}
+			LOGGER.info("[{}] Handled: {}, rejected: {}",
+				modeName,
+				servlet.getHandledCount(),
+				snapshot(recorder.getRejections()));
+		} finally {
+			endpointServer.stop();
+		}
+	}
+
+	private static void logResult(String modeName, LoadResult result) {
+		long[] latencies = result.latenciesNanos();
+		Arrays.sort(latencies);
+		LOGGER.info("[{}] Sent: {}, dropped due to concurrency limit: {}",
+			modeName,
+			result.sent(),
+			result.dropped());
+		LOGGER.info("[{}] Throughput: {} responses per second",
+			modeName,
+			format(latencies.length / (result.durationNanos() / 1e9)));
+		LOGGER.info("[{}] Latency (ms): p50={}, p90={}, p99={}, p99.9={}, max={}",
+			modeName,
+			formatMillis(percentile(latencies, 0.5)),
+			formatMillis(percentile(latencies, 0.9)),
+			formatMillis(percentile(latencies, 0.99)),
+			formatMillis(percentile(latencies, 0.999)),
+			formatMillis(latencies.length > 0 ? latencies[latencies.length - 1] : 0));
+		LOGGER.info("[{}] Responses by status: {}, errors without response: {}",
+			modeName,
+			result.statusCounts(),
+			result.errors());
+	}
+
+	private static long countSourceFetches(MetricsRecorder recorder) {
+		return recorder.getDurations()
+			.entrySet()
+			.stream()
+			.filter(entry -> entry.getKey().phase() == Phase.SOURCE_FETCH)
+			.map(Map.Entry::getValue)
+			.mapToLong(Histogram::getCount)
+			.sum();
+	}
+
+	private static Map<String, Long> snapshot(Map<String, Counter> counters) {
+		Map<String, Long> snapshot = new TreeMap<>();
+		counters.forEach((name, counter) -> snapshot.put(name, counter.get()));
+		return snapshot;
+	}
+
+	private static long percentile(long[] sorted, double percentile) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int index = (int) Math.ceil(percentile * sorted.length) - 1;
+		return sorted[Math.max(0, index)];
+	}
+
+	private static String formatMillis(long nanos) {
+		return format(nanos / 1e6);
+	}
+
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.1f", value);
+	}
+
+	private static Map<String, String> parseInitParameters(String[] values) {
+		Map<String, String> initParameters = new HashMap<>();
+		if (values == null) {
+			return initParameters;
+		}
+		for (String value : values) {
+			int separatorIndex = value.indexOf('=');
+			if (separatorIndex < 1) {
+				throw new IllegalArgumentException("Init parameter '%s' is not in the form 'name=value'.".formatted(
+					value));
+			}
+			initParameters.put(value.substring(0, separatorIndex), value.substring(separatorIndex + 1));
+		}
+		return initParameters;
+	}
+
+	private static byte[] createSourcePage(int sizeBytes) {
+		StringBuilder page = new StringBuilder(sizeBytes + 256);
+		page.append("<!DOCTYPE html>\n<html lang=\"en\">\n<head><title>Source</title></head>\n<body>\n");
+		int paragraph = 0;
+		while (page.length() < sizeBytes) {
+			page.append("<p>Lorem ipsum dolor sit amet, <a href=\"https://example.org/")
+				.append(paragraph++)
+				.append("\">consectetur</a> adipiscing elit.</p>\n");
+		}
+		// At the end, so that the whole page is read.
+		page.append("<p><a href=\"").append(TARGET).append("\">Mentioned</a></p>\n</body>\n</html>\n");
+		return page.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static Server startServer(HttpServlet servlet,
+									  Map<String, String> initParameters,
+									  JettyConfig jettyConfig,
+									  int hosts) throws Exception {
+		Server server = jettyConfig.createServer();
+		for (int i = 1; i <= hosts; i++) {
+			ServerConnector connector = jettyConfig.createConnector(server);
+			connector.setHost("127.0.0." + i);
+			server.addConnector(connector);
+		}
+		ServletHandler servletHandler = new ServletHandler();
+		ServletHolder servletHolder = new ServletHolder(servlet);
+		servletHolder.setInitParameters(initParameters);
+		servletHolder.setAsyncSupported(true);
+		servletHandler.addServletWithMapping(servletHolder, "/*");
+		server.setHandler(servletHandler);
+		server.start();
+		return server;
+	}
+
+	private static List<URI> getServerUris(Server server) {
+		return Arrays.stream(server.getConnectors())
+			.map(NetworkConnector.class::cast)
+			.map(connector -> URI.create("http://%s:%d/".formatted(connector.getHost(), connector.getLocalPort())))
+			.toList();
+	}
+
+	/**
+	 * Sends Webmentions at a fixed rate (open model), so that a slow endpoint does not lower the load, but
+	 * increases latency.
+	 */
+	private static final class LoadGenerator {
+		private final ScheduledExecutorService scheduler;
+		private final long periodNanos;
+		private final Duration duration;
+		private final int concurrency;
+		private final HttpClient httpClient = HttpClient.newBuilder()
+			.connectTimeout(Duration.ofSeconds(10))
+			.build();
+
+		LoadGenerator(ScheduledExecutorService scheduler, double rate, Duration duration, int concurrency) {
+			this.scheduler = scheduler;
+			periodNanos = Math.max(1, (long) (1e9 / rate));
+			this.duration = duration;
+			this.concurrency = concurrency;
+		}
+
+		LoadResult run(URI endpointUri, List<URI> sourceUris) throws InterruptedException {
+			Semaphore permits = new Semaphore(concurrency);
+			AtomicLong sequence = new AtomicLong();
+			LongAdder dropped = new LongAdder();
+			LongAdder errors = new LongAdder();
+			Map<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+			LatencyRecorder latencies = new LatencyRecorder();
+
+			long startNanos = System.nanoTime();
+			ScheduledFuture<?> sending = scheduler.scheduleAtFixedRate(() -> {
+				if (!permits.tryAcquire()) {
+					dropped.increment();
+					return;
+				}
+				long id = sequence.incrementAndGet();
+				URI sourceUri = sourceUris.get((int) (id % sourceUris.size()));
+				String body = "source=%s&target=%s".formatted(URLEncoder.encode(sourceUri.resolve("/source/" + id)
+					.toString(), StandardCharsets.UTF_8), URLEncoder.encode(TARGET, StandardCharsets.UTF_8));
+				HttpRequest request = HttpRequest.newBuilder(endpointUri)
+					.header("Content-Type", "application/x-www-form-urlencoded")
+					.timeout(Duration.ofMinutes(1))
+					.POST(HttpRequest.BodyPublishers.ofString(body))
+					.build();
+				long requestStartNanos = System.nanoTime();
+				httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+					.whenComplete((response, e) -> {
+						permits.release();
+						if (e != null) {
+							errors.increment();
+							return;
+						}
+						latencies.record(System.nanoTime() - requestStartNanos);
+						statusCounts.computeIfAbsent(response.statusCode(), ignored -> new LongAdder()).increment();
+					});
+			}, 0, periodNanos, TimeUnit.NANOSECONDS);
+
+			Thread.sleep(duration.toMillis());
+			sending.cancel(false);
+			long durationNanos = System.nanoTime() - startNanos;
+			// Wait for outstanding responses.
+			permits.acquire(concurrency);
+			permits.release(concurrency);
+
+			Map<Integer, Long> statusCountSnapshot = new TreeMap<>();
+			statusCounts.forEach((status, count) -> statusCountSnapshot.put(status, count.sum()));
+			return new LoadResult(startNanos,
+				durationNanos,
+				sequence.get(),
+				dropped.sum(),
+				errors.sum(),
+				statusCountSnapshot,
+				latencies.toArray());
+		}
+	}
+
+	private record LoadResult(long startNanos,
+							  long durationNanos,
+							  long sent,
+							  long dropped,
+							  long errors,
+							  Map<Integer, Long> statusCounts,
+							  long[] latenciesNanos) {
+
+		long getStatusCount(int status) {
+			return statusCounts.getOrDefault(status, 0L);
+		}
+	}
+
+	/**
+	 * Keeps all latencies, so that percentiles are exact.
+	 */
+	private static final class LatencyRecorder {
+		private long[] values = new long[1024];
+		private int size = 0;
+
+		synchronized void record(long value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+
+		synchronized long[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+
+	/**
+	 * Serves the same page for every path, after a delay that does not occupy a thread.
+	 */
+	@SuppressWarnings("serial")
+	private static final class SourceServlet extends HttpServlet {
+		private final transient ScheduledExecutorService scheduler;
+		private final Duration latency;
+		private final byte[] page;
+		private final double failureRate;
+
+		SourceServlet(ScheduledExecutorService scheduler, Duration latency, byte[] page, double failureRate) {
+			this.scheduler = scheduler;
+			this.latency = latency;
+			this.page = page;
+			this.failureRate = failureRate;
+		}
+
+		@Override
+		protected void doGet(HttpServletRequest req, HttpServletResponse resp) {
+			boolean fail = ThreadLocalRandom.current().nextDouble() < failureRate;
+			AsyncContext asyncContext = req.startAsync();
+			scheduler.schedule(() -> {
+				try {
+					if (fail) {
+						resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+					} else {
+						resp.setContentType("text/html; charset=utf-8");
+						resp.setContentLength(page.length);
+						resp.getOutputStream().write(page);
+					}
+				} catch (IOException e) {
+					LOGGER.debug("Could not serve source.", e);
+				} finally {
+					asyncContext.complete();
+				}
+			}, latency.toNanos(), TimeUnit.NANOSECONDS);
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static final class CountingWebmentionEndpointServlet extends AbstractWebmentionEndpointServlet {
+		private final transient MetricsRecorder recorder;
+		private final LongAdder handledCount = new LongAdder();
+
+		CountingWebmentionEndpointServlet(MetricsRecorder recorder) {
+			this.recorder = recorder;
+		}
+
+		@Override
+		protected @NotNull MetricsListener createMetricsListener() {
+			return recorder;
+		}
+
+		@Override
+		protected void handleWebmention(@NotNull Webmention webmention) {
+			handledCount.increment();
+		}
+
+		long getHandledCount() {
+			return handledCount.sum();
+		}
+	}
+}
@@ -0,0 +1,257 @@
+package dev.rilling.webmention4j.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpsServer;
+import dev.rilling.webmention4j.common.Webmention;
+import dev.rilling.webmention4j.common.metrics.MetricsListener;
+import dev.rilling.webmention4j.common.metrics.MetricsRecorder;
+import dev.rilling.webmention4j.server.internal.InitParameters;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Handler receiving Webmentions using the HTTP server built into the JDK ({@code com.sun.net.httpserver}), for
+ * deployments without a servlet container. Works like {@link AbstractWebmentionEndpointServlet}, which also
+ * documents the supported parameters, and has the same methods to override.
+ * <p>
+ * Call {@link #init(Map)} before adding the handler to a server, and {@link #close()} after stopping it:
+ * <pre>{@code
+ * HttpServer server = HttpServer.create(new InetSocketAddress(8080), 0);
+ * handler.init(Map.of("validHosts", "example.com"));
+ * server.createContext("/webmention", handler);
+ * server.setExecutor(executor);
+ * server.start();
+ * }</pre>
+ * Verification blocks the thread handling the request, unless {@code asyncVerification} is enabled. The server's
+ * executor should therefore have enough threads, e.g. one thread per task (virtual threads if available).
+ * Responses to handling that completes later (see {@link #handleWebmentionAsync(Webmention, VerifiedSource)}) are
+ * sent from the thread completing it.
+ */
+// Spec: '3.2 Receiving Webmentions'
+public abstract class AbstractWebmentionEndpointHandler implements HttpHandler, Closeable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(AbstractWebmentionEndpointHandler.class);
+
+	// Webmention requests only contain two URLs, so anything larger is not worth reading.
+	private static final int MAX_FORM_BYTES = 64 * 1024;
+	private static final int SC_REQUEST_ENTITY_TOO_LARGE = 413;
+
+	@Nullable
+	private volatile WebmentionReceiver receiver;
+
+	/**
+	 * Starts receiving Webmentions.
+	 *
+	 * @param parameters Parameters, as documented for the init parameters of
+	 *                   {@link AbstractWebmentionEndpointServlet}.
+	 * @throws IllegalArgumentException if a parameter is invalid.
+	 * @throws IllegalStateException    if already initialized.
+	 * @throws IOException              if the valid hosts file or journal cannot be read.
+	 */
+	public final synchronized void init(@NotNull Map<String, String> parameters) throws IOException {
+		if (receiver != null) {
+			throw new IllegalStateException("Handler is already initialized.");
+		}
+		Map<String, String> parametersCopy = Map.copyOf(parameters);
+		receiver = new WebmentionReceiver(new InitParameters(parametersCopy::get),
+			createMetricsListener(),
+			this::handleWebmentionAsync,
+			this::handleWebmentions);
+	}
+
+	/**
+	 * Stops background tasks and releases resources. Stop the server first, so that no requests are handled anymore.
+	 * Subsequent calls have no effect.
+	 */
+	@Override
+	public final synchronized void close() {
+		WebmentionReceiver currentReceiver = receiver;
+		if (currentReceiver != null) {
+			currentReceiver.close();
+		}
+	}
+
+	/**
+	 * Atomically replaces the target hosts to receive Webmentions for.
+	 * May be called at any time after initialization. Requests in progress are not blocked.
+	 *
+	 * @param validHosts Hosts in the format of the {@code validHosts} parameter,
+	 *                   or null to receive Webmentions regardless of target host.
+	 * @throws IllegalArgumentException if a host pattern is invalid.
+	 */
+	protected final void setValidHosts(@Nullable Collection<String> validHosts) {
+		getReceiver().setValidHosts(validHosts);
+	}
+
+	@Override
+	public final void handle(HttpExchange exchange) throws IOException {
+		WebmentionReceiver currentReceiver = getReceiver();
+		String method = exchange.getRequestMethod();
+		if (method.equals("POST")) {
+			Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+			byte[] body;
+			try (InputStream requestBody = exchange.getRequestBody()) {
+				body = requestBody.readNBytes(MAX_FORM_BYTES + 1);
+			}
+			if (body.length > MAX_FORM_BYTES) {
+				send(exchange, WebmentionReceiver.Response.error(SC_REQUEST_ENTITY_TOO_LARGE, "Request is too large."));
+				return;
+			}
+			// Like servlets, query parameters take precedence over the ones in the body.
+			parseQuery(new String(body, StandardCharsets.UTF_8)).forEach(parameters::putIfAbsent);
+
+			CompletableFuture<WebmentionReceiver.Response> response = currentReceiver.receive(
+				new WebmentionReceiver.Request(getRequestUrl(exchange),
+					exchange.getRemoteAddress().getAddress().getHostAddress(),
+					exchange.getRequestHeaders().getFirst("Content-Type"),
+					parameters::get));
+			response.whenComplete((completedResponse, e) -> {
+				try {
+					send(exchange, completedResponse);
+				} catch (IOException ex) {
+					LOGGER.warn("Could not send response.", ex);
+					exchange.close();
+				}
+			});
+		} else if (method.equals("GET")) {
+			Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+			send(exchange, currentReceiver.getStatus(parameters.get("status")));
+		} else {
+			exchange.getResponseHeaders().set("Allow", "GET, POST");
+			send(exchange, WebmentionReceiver.Response.error(WebmentionReceiver.SC_METHOD_NOT_ALLOWED, null));
+		}
+	}
+
+	/**
+	 * Creates the listener notified about the phases of receiving Webmentions, e.g. a {@link MetricsRecorder}.
+	 * Called once during initialization.
+	 * <p>
+	 * By default, a listener ignoring them is returned.
+	 *
+	 * @return The listener.
+	 */
+	@NotNull
+	protected MetricsListener createMetricsListener() {
+		return MetricsListener.noop();
+	}
+
+	/**
+	 * Allows handler consumer to react to a successfully accepted Webmention.
+	 *
+	 * @param webmention The received Webmention.
+	 * @see AbstractWebmentionEndpointServlet#handleWebmention(Webmention)
+	 */
+	protected abstract void handleWebmention(@NotNull Webmention webmention);
+
+	/**
+	 * Allows handler consumer to react to a successfully accepted Webmention, using the source that was fetched during
+	 * verification.
+	 * <p>
+	 * By default, {@link #handleWebmention(Webmention)} is called.
+	 *
+	 * @param webmention The received Webmention.
+	 * @param source     The verified source. Only valid until this method returns.
+	 * @see AbstractWebmentionEndpointServlet#handleWebmention(Webmention, VerifiedSource)
+	 */
+	protected void handleWebmention(@NotNull Webmention webmention, @NotNull VerifiedSource source) {
+		handleWebmention(webmention);
+	}
+
+	/**
+	 * Allows handler consumer to react to a successfully accepted Webmention without blocking the calling thread.
+	 * <p>
+	 * By default, {@link #handleWebmention(Webmention, VerifiedSource)} is called and a completed stage is returned.
+	 *
+	 * @param webmention The received Webmention.
+	 * @param source     The verified source. Only valid until the returned stage completes.
+	 * @return Stage completing once the Webmention was handled.
+	 * @see AbstractWebmentionEndpointServlet#handleWebmentionAsync(Webmention, VerifiedSource)
+	 */
+	@NotNull
+	protected CompletionStage<Void> handleWebmentionAsync(@NotNull Webmention webmention,
+														  @NotNull VerifiedSource source) {
+		handleWebmention(webmention, source);
+		return CompletableFuture.completedFuture(null);
+	}
+
+	/**
+	 * Allows handler consumer to react to multiple successfully accepted Webmentions at once.
+	 * Only called if {@code handlerBatchSize} is greater than 1.
+	 * <p>
+	 * By default, {@link #handleWebmention(Webmention)} is called for each Webmention.
+	 *
+	 * @param webmentions The received Webmentions, in order of verification.
+	 * @see AbstractWebmentionEndpointServlet#handleWebmentions(List)
+	 */
+	protected void handleWebmentions(@NotNull List<Webmention> webmentions) {
+		for (Webmention webmention : webmentions) {
+			handleWebmention(webmention);
+		}
+	}
+
+	private WebmentionReceiver getReceiver() {
+		WebmentionReceiver currentReceiver = receiver;
+		if (currentReceiver == null) {
+			throw new IllegalStateException("Handler is not initialized.");
+		}
+		return currentReceiver;
+	}
+
+	private static String getRequestUrl(HttpExchange exchange) {
+		String scheme = exchange.getHttpContext().getServer() instanceof HttpsServer ? "https" : "http";
+		String host = exchange.getRequestHeaders().getFirst("Host");
+		if (host == null) {
+			host = exchange.getLocalAddress().getHostString() + ":" + exchange.getLocalAddress().getPort();
+		}
+		return scheme + "://" + host + exchange.getRequestURI().getRawPath();
+	}
+
+	private static Map<String, String> parseQuery(@Nullable String query) {
+		Map<String, String> parameters = new HashMap<>();
+		if (query == null || query.isEmpty()) {
+			return parameters;
+		}
+		for (String pair : query.split("&")) {
+			int separator = pair.indexOf('=');
+			String name = separator == -1 ? pair : pair.substring(0, separator);
+			String value = separator == -1 ? "" : pair.substring(separator + 1);
+			try {
+				parameters.putIfAbsent(URLDecoder.decode(name, StandardCharsets.UTF_8),
+					URLDecoder.decode(value, StandardCharsets.UTF_8));
+			} catch (IllegalArgumentException e) {
+				// Malformed percent-encoding, treated like a missing parameter.
+				LOGGER.debug("Ignoring malformed parameter '{}'.", pair, e);
+			}
+		}
+		return parameters;
+	}
+
+	private static void send(HttpExchange exchange, WebmentionReceiver.Response response) throws IOException {
+		try (exchange) {
+			response.headers().forEach(exchange.getResponseHeaders()::set);
+			byte[] body = response.body() != null ? response.body().getBytes(StandardCharsets.UTF_8) : new byte[0];
+			exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+			// A length of 0 sends an empty chunked body, which keeps the connection usable unlike sending no body.
+			exchange.sendResponseHeaders(response.status(), body.length);
+			try (OutputStream responseBody = exchange.getResponseBody()) {
+				responseBody.write(body);
+			}
+		}
+	}
+}
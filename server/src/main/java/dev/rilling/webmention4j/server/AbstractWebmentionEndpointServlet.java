@@ -1,44 +1,90 @@
 package dev.rilling.webmention4j.server;
 
 import dev.rilling.webmention4j.common.Webmention;
-import dev.rilling.webmention4j.common.internal.HttpUtils;
-import dev.rilling.webmention4j.server.internal.VerificationService;
-import dev.rilling.webmention4j.server.internal.verifier.HtmlVerifier;
-import dev.rilling.webmention4j.server.internal.verifier.JsonVerifier;
-import dev.rilling.webmention4j.server.internal.verifier.TextVerifier;
+import dev.rilling.webmention4j.common.metrics.MetricsListener;
+import dev.rilling.webmention4j.common.metrics.MetricsRecorder;
+import dev.rilling.webmention4j.server.internal.InitParameters;
+import jakarta.servlet.AsyncContext;
 import jakarta.servlet.ServletConfig;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
-import org.apache.hc.core5.http.ContentType;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.io.Serial;
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
-import java.util.Set;
-import java.util.function.Supplier;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Servlet handling receiving Webmentions.
- * Subclass this to handle successful Webmentions in {@link #handleWebmention(Webmention)}.
+ * Subclass this to handle successful Webmentions in {@link #handleWebmention(Webmention)}. To use the source fetched
+ * during verification (e.g., to display the mention), override {@link #handleWebmention(Webmention, VerifiedSource)}
+ * instead. If handling involves slow I/O, override {@link #handleWebmentionAsync(Webmention, VerifiedSource)}. For the
+ * latter, the servlet should support async processing, so that no container thread is occupied while waiting for
+ * handling to complete. To collect metrics, override {@link #createMetricsListener()}, e.g. to return a
+ * {@link MetricsRecorder} that is also exposed by a {@link PrometheusMetricsServlet}.
  * <p>
  * Init parameters:
  * <ul>
- *     <li>{@code validHosts}: Comma-separated list of target hosts to receive Webmentions for. If not set, Webmentions
+ *     <li>{@code validHosts}: Comma-separated list of target hosts to receive Webmentions for. Wildcards like
+ *     {@code *.example.com} match all subdomains. If neither this nor {@code validHostsFile} is set, Webmentions
  *     are received regardless of target host.</li>
+ *     <li>{@code validHostsFile}: Path to a file containing target hosts to receive Webmentions for, one per line, in
+ *     the same format as {@code validHosts}. The file is reloaded if it changes.</li>
+ *     <li>{@code validHostsReloadInterval}: ISO-8601 duration after which {@code validHostsFile} is checked for changes.
+ *     Defaults to {@code PT1M}.</li>
+ *     <li>{@code maxBodyBytes}: Maximum number of bytes read from a source during verification. Defaults to 5 MiB.</li>
+ *     <li>{@code maxErrorBodyBytes}: Maximum number of bytes read from a source error response. Defaults to 4 KiB.</li>
+ *     <li>{@code connectTimeout}: ISO-8601 duration to wait for a connection to a source. Defaults to {@code PT10S}.</li>
+ *     <li>{@code responseTimeout}: ISO-8601 duration to wait for data from a source. Defaults to {@code PT10S}.</li>
+ *     <li>{@code minResponseTimeout}: ISO-8601 duration to wait for data from a source at least. Sources that responded
+ *     quickly before get less time than {@code responseTimeout}, derived from how long their recent responses took.
+ *     Set to the value of {@code responseTimeout} to always use it. Defaults to {@code PT3S}, or {@code responseTimeout}
+ *     if that is shorter.</li>
+ *     <li>{@code totalTimeout}: ISO-8601 duration fetching a source may take in total. Defaults to {@code PT30S}.</li>
+ *     <li>{@code clientRateLimit}: Requests per second accepted from a single client IP address. If not set, clients
+ *     are not rate limited.</li>
+ *     <li>{@code clientRateLimitBurst}: Number of requests a client IP address may burst. Defaults to the rate.</li>
+ *     <li>{@code sourceHostRateLimit}: Requests per second accepted for a single source host. If not set, source hosts
+ *     are not rate limited.</li>
+ *     <li>{@code sourceHostRateLimitBurst}: Number of requests for a source host that may burst. Defaults to the
+ *     rate.</li>
+ *     <li>{@code rateLimitSlots}: Number of buckets each rate limiter keeps, bounding its memory usage. Defaults to
+ *     65536.</li>
+ *     <li>{@code asyncVerification}: If {@code true}, Webmentions are verified in the background after responding
+ *     with {@code 201 Created}. The {@code Location} header points to a status URL which can be requested using
+ *     {@code GET}. Defaults to {@code false}.</li>
+ *     <li>{@code verificationThreads}: Number of threads verifying Webmentions in the background. Defaults to 4.</li>
+ *     <li>{@code verificationQueueCapacity}: Number of Webmentions that may wait for background verification before
+ *     requests are answered with {@code 503 Service Unavailable}. Defaults to 1000.</li>
+ *     <li>{@code journalDirectory}: Directory in which Webmentions waiting for background verification are journaled,
+ *     so that they are verified after a restart. If not set, waiting Webmentions are lost on restart.</li>
+ *     <li>{@code journalSegmentBytes}: Size after which the journal is compacted. Defaults to 16 MiB.</li>
+ *     <li>{@code statusStoreCapacity}: Number of Webmentions to keep the status of. Defaults to 16384.</li>
+ *     <li>{@code sourceSpoolThresholdBytes}: Maximum size of source bodies kept in memory for
+ *     {@link VerifiedSource}, larger ones are spooled to a temporary file. Defaults to 256 KiB.</li>
+ *     <li>{@code verificationCacheTtl}: ISO-8601 duration for which the outcome of verifying a Webmention is reused
+ *     when the same Webmention is received again. Within this time, the source is not fetched, and successfully
+ *     verified Webmentions are not handled again. Afterwards, the source is revalidated using its {@code ETag} or
+ *     {@code Last-Modified} headers, if present. If not set, outcomes are not cached.</li>
+ *     <li>{@code verificationCacheCapacity}: Number of outcomes to cache. Defaults to 4096.</li>
+ *     <li>{@code handlerBatchSize}: If greater than 1, verified Webmentions are collected and passed to
+ *     {@link #handleWebmentions(List)} in batches of up to this size. Defaults to 1.</li>
+ *     <li>{@code handlerBatchDelay}: ISO-8601 duration to wait for more Webmentions before passing an incomplete batch.
+ *     Defaults to {@code PT0.1S}.</li>
  * </ul>
  * <p>
+ * Requests are handled by a container-neutral receiver, which is also used by
+ * {@link AbstractWebmentionEndpointHandler} to receive Webmentions without a servlet container.
+ * <p>
  * Serialization of this servlet is NOT supported.
  */
 // Spec: '3.2 Receiving Webmentions'
@@ -47,181 +93,194 @@ public abstract class AbstractWebmentionEndpointServlet extends HttpServlet {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(AbstractWebmentionEndpointServlet.class);
 
-	private static final ContentType EXPECTED_CONTENT_TYPE = ContentType.APPLICATION_FORM_URLENCODED;
-
-	private final Supplier<CloseableHttpClient> httpClientFactory;
-	private final VerificationService verificationService;
-
-	private CloseableHttpClient httpClient;
-
-	@Nullable
-	private Set<String> validHosts;
-
-	protected AbstractWebmentionEndpointServlet() {
-		this(AbstractWebmentionEndpointServlet::createDefaultHttpClient,
-			new VerificationService(List.of(new HtmlVerifier(), new TextVerifier(), new JsonVerifier())));
-	}
-
-	private AbstractWebmentionEndpointServlet(@NotNull Supplier<CloseableHttpClient> httpClientFactory,
-											  @NotNull VerificationService verificationService) {
-		this.httpClientFactory = httpClientFactory;
-		this.verificationService = verificationService;
-	}
+	private WebmentionReceiver receiver;
 
 	@Override
 	public void init(ServletConfig config) throws ServletException {
 		super.init(config);
 
-		String validHostsParam = config.getInitParameter("validHosts");
-		if (validHostsParam != null) {
-			validHosts = Arrays.stream(validHostsParam.split(",")).collect(Collectors.toUnmodifiableSet());
+		try {
+			receiver = new WebmentionReceiver(new InitParameters(config::getInitParameter),
+				createMetricsListener(),
+				this::handleWebmentionAsync,
+				this::handleWebmentions);
+		} catch (IOException | IllegalArgumentException | ArithmeticException e) {
+			throw new ServletException(e.getMessage(), e);
 		}
+	}
 
-		httpClient = httpClientFactory.get();
+	/**
+	 * Atomically replaces the target hosts to receive Webmentions for.
+	 * May be called at any time, e.g., from a scheduled task polling another source of hosts.
+	 * Requests in progress are not blocked.
+	 *
+	 * @param validHosts Hosts in the format of the {@code validHosts} init parameter,
+	 *                   or null to receive Webmentions regardless of target host.
+	 * @throws IllegalArgumentException if a host pattern is invalid.
+	 */
+	protected final void setValidHosts(@Nullable Collection<String> validHosts) {
+		receiver.setValidHosts(validHosts);
 	}
 
 	@Override
 	public void destroy() {
 		super.destroy();
 
-		try {
-			httpClient.close();
-		} catch (IOException e) {
-			LOGGER.warn("Could not close HTTP client.", e);
-		}
+		receiver.close();
 	}
 
 	@Override
 	protected final void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
-		try {
-			processRequest(req);
-		} catch (BadRequestException e) {
-			LOGGER.warn("Bad request.", e);
-			resp.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+		CompletableFuture<WebmentionReceiver.Response> response = receiver.receive(new WebmentionReceiver.Request(
+			req.getRequestURL().toString(),
+			req.getRemoteAddr(),
+			req.getContentType(),
+			req::getParameter));
+		if (!response.isDone() && req.isAsyncSupported()) {
+			respondOnCompletion(req.startAsync(), response);
 			return;
 		}
 
-		/*
-		 * Spec:
-		 * 'If the receiver chooses to process the request and perform the verification step synchronously (not
-		 * recommended), it MUST respond with a 200 OK status on success.'
-		 * */
-		resp.setStatus(HttpServletResponse.SC_OK);
+		WebmentionReceiver.Response completedResponse;
+		try {
+			completedResponse = response.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LOGGER.warn("Interrupted while handling Webmention.", e);
+			completedResponse = WebmentionReceiver.Response.error(WebmentionReceiver.SC_SERVICE_UNAVAILABLE,
+				"Interrupted while handling Webmention.",
+				WebmentionReceiver.QUEUE_FULL_RETRY_AFTER_SECONDS);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Could not handle Webmention.", e.getCause());
+		}
+		send(resp, completedResponse);
 	}
 
-	/**
-	 * Allows servlet consumer to react to a successfully accepted Webmention.
-	 * As this is performed during the request processing, long running tasks here should be avoided.
-	 *
-	 * @param webmention The received Webmention.
-	 */
-	protected abstract void handleWebmention(@NotNull Webmention webmention);
+	private static void respondOnCompletion(AsyncContext asyncContext,
+											CompletableFuture<WebmentionReceiver.Response> response) {
+		response.whenComplete((completedResponse, e) -> {
+			try {
+				send((HttpServletResponse) asyncContext.getResponse(), completedResponse);
+			} catch (IOException | IllegalStateException ex) {
+				// E.g., if the container timed out the request in the meantime.
+				LOGGER.warn("Could not send response.", ex);
+			} finally {
+				try {
+					asyncContext.complete();
+				} catch (IllegalStateException ex) {
+					LOGGER.debug("Async context was already completed.", ex);
+				}
+			}
+		});
+	}
 
-	private void processRequest(HttpServletRequest req) throws BadRequestException {
-		if (!EXPECTED_CONTENT_TYPE.isSameMimeType(ContentType.parse(req.getContentType()))) {
-			throw new BadRequestException("Content type must be '%s'.".formatted(EXPECTED_CONTENT_TYPE.getMimeType()));
-		}
+	@Override
+	protected final void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+		send(resp, receiver.getStatus(req.getParameter("status")));
+	}
 
-		Webmention webmention = extractWebmention(req);
-		LOGGER.debug("Processing Webmention '{}'.", webmention);
-
-		/*
-		 * Spec:
-		 * 'The receiver SHOULD check that target is a valid resource for which it can accept Webmentions.
-		 *  This check SHOULD happen synchronously to reject invalid Webmentions before more in-depth verification begins.
-		 *  What a "valid resource" means is up to the receiver.
-		 *  For example, some receivers may accept Webmentions for multiple domains,
-		 *  others may accept Webmentions for only the same domain the endpoint is on.'
-		 */
-		if (validHosts != null && !validHosts.contains(webmention.target().getHost())) {
-			throw new BadRequestException("This Webmention target is not valid for this endpoint.");
+	private static void send(HttpServletResponse resp, WebmentionReceiver.Response response) throws IOException {
+		for (Map.Entry<String, String> header : response.headers().entrySet()) {
+			resp.setHeader(header.getKey(), header.getValue());
 		}
-
-		// We could perform the verification asynchronously, but this does not seem as important in when servlets
-		// handle requests with one thread each anyway.
-
-		/*
-		 * Spec:
-		 * 'If the receiver is going to use the Webmention in some way, (displaying it as a comment on a post,
-		 * incrementing a "like" counter, notifying the author of a post), then it MUST perform an HTTP GET request
-		 * on source [...] to confirm that it actually mentions the target.
-		 */
-		try {
-			if (verificationService.isWebmentionValid(httpClient, webmention)) {
-				LOGGER.debug("Webmention '{}' passed verification.", webmention);
+		if (response.isError()) {
+			if (response.body() != null) {
+				resp.sendError(response.status(), response.body());
 			} else {
-				throw new BadRequestException("Source does not contain link to target URL.");
+				resp.sendError(response.status());
 			}
-		} catch (IOException e) {
-			// In theory I/O failures cold also be issues on our side (e.g., trusted CAs being wrong), but
-			// differentiating between those and issues on the source URIs side (e.g., 404s) seems hard.
-			throw new BadRequestException("Verification of source URL could not be performed.", e);
+			return;
+		}
+		resp.setStatus(response.status());
+		if (response.body() != null) {
+			resp.setContentType("text/plain");
+			resp.setCharacterEncoding("UTF-8");
+			resp.getWriter().write(response.body());
 		}
-
-		handleWebmention(webmention);
 	}
 
-	private Webmention extractWebmention(HttpServletRequest req) throws BadRequestException {
-		URI source = extractParameterAsUri(req, "source");
-		URI target = extractParameterAsUri(req, "target");
-
-		// Spec: 'The receiver MUST reject the request if the source URL is the same as the target URL.'
-		if (source.equals(target)) {
-			throw new BadRequestException("Source and target URL must not be identical.");
-		}
-		return new Webmention(source, target);
+	/**
+	 * Creates the listener notified about the phases of receiving Webmentions, e.g. a {@link MetricsRecorder}.
+	 * Called once during initialization.
+	 * <p>
+	 * By default, a listener ignoring them is returned.
+	 *
+	 * @return The listener.
+	 */
+	@NotNull
+	protected MetricsListener createMetricsListener() {
+		return MetricsListener.noop();
 	}
 
-	private URI extractParameterAsUri(HttpServletRequest req, String parameterName)
-		throws BadRequestException {
-		/*
-		 * Spec:
-		 * 'The receiver MUST check that source and target are valid URLs
-		 * and are of schemes that are supported by the receiver.'
-		 */
-		String parameter = req.getParameter(parameterName);
-		if (parameter == null) {
-			throw new BadRequestException("Required parameter '%s' is missing.".formatted(parameterName));
-		}
+	/**
+	 * Allows servlet consumer to react to a successfully accepted Webmention.
+	 * Unless {@code asyncVerification} is enabled, this is performed during the request processing, so long running
+	 * tasks here should be avoided.
+	 *
+	 * @param webmention The received Webmention.
+	 */
+	protected abstract void handleWebmention(@NotNull Webmention webmention);
 
-		URI uri;
-		try {
-			uri = new URI(parameter);
-		} catch (URISyntaxException e) {
-			throw new BadRequestException("Invalid URL syntax: '%s'.".formatted(parameter), e);
-		}
-		if (!verificationService.isUriSchemeSupported(uri)) {
-			throw new BadRequestException("URL scheme '%s' is not supported.".formatted(uri.getScheme()));
-		}
-		return uri;
+	/**
+	 * Allows servlet consumer to react to a successfully accepted Webmention, using the source that was fetched during
+	 * verification. Same constraints as {@link #handleWebmention(Webmention)} apply.
+	 * <p>
+	 * By default, {@link #handleWebmention(Webmention)} is called.
+	 *
+	 * @param webmention The received Webmention.
+	 * @param source     The verified source. Only valid until this method returns.
+	 */
+	protected void handleWebmention(@NotNull Webmention webmention, @NotNull VerifiedSource source) {
+		handleWebmention(webmention);
 	}
 
+	/**
+	 * Allows servlet consumer to react to a successfully accepted Webmention without blocking the calling thread.
+	 * Unless {@code asyncVerification} is enabled, the response is sent once the returned stage completes. If it
+	 * completes exceptionally, the request is answered with {@code 500 Internal Server Error}, or the Webmention is
+	 * marked as rejected, respectively.
+	 * <p>
+	 * By default, {@link #handleWebmention(Webmention, VerifiedSource)} is called and a completed stage is returned.
+	 * Not called if {@code handlerBatchSize} is greater than 1.
+	 *
+	 * @param webmention The received Webmention.
+	 * @param source     The verified source. Only valid until the returned stage completes.
+	 * @return Stage completing once the Webmention was handled.
+	 */
 	@NotNull
-	private static CloseableHttpClient createDefaultHttpClient() {
-		return HttpClients.custom()
-			.setUserAgent(HttpUtils.createUserAgentString("webmention4j-server",
-				AbstractWebmentionEndpointServlet.class.getPackage()))
-			.build();
+	protected CompletionStage<Void> handleWebmentionAsync(@NotNull Webmention webmention,
+														  @NotNull VerifiedSource source) {
+		handleWebmention(webmention, source);
+		return CompletableFuture.completedFuture(null);
 	}
 
-	private static final class BadRequestException extends Exception {
-
-		@Serial
-		private static final long serialVersionUID = -8108083179786850494L;
-
-		/**
-		 * @param message User-facing error message.
-		 */
-		BadRequestException(String message) {
-			super(message);
+	/**
+	 * Allows servlet consumer to react to multiple successfully accepted Webmentions at once, e.g., to store them in
+	 * a single transaction. Only called if {@code handlerBatchSize} is greater than 1.
+	 * If this throws, all Webmentions of the batch are considered as failed.
+	 * <p>
+	 * By default, {@link #handleWebmention(Webmention)} is called for each Webmention. Sources are not retained
+	 * while waiting for a batch to fill up, so they are not available here.
+	 *
+	 * @param webmentions The received Webmentions, in order of verification.
+	 */
+	protected void handleWebmentions(@NotNull List<Webmention> webmentions) {
+		for (Webmention webmention : webmentions) {
+			handleWebmention(webmention);
 		}
+	}
 
-		/**
-		 * @param message User-facing error message.
-		 * @param cause   Exception cause.
-		 */
-		BadRequestException(String message, Throwable cause) {
-			super(message, cause);
-		}
+	/**
+	 * @return Number of Webmentions currently being received or verified in the background.
+	 */
+	long getInFlightCount() {
+		return receiver.getInFlightCount();
+	}
+
+	/**
+	 * @return Number of Webmentions waiting for background verification.
+	 */
+	long getQueuedCount() {
+		return receiver.getQueuedCount();
 	}
 }
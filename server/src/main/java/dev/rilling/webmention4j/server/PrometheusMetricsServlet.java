@@ -0,0 +1,196 @@
+package dev.rilling.webmention4j.server;
+
+import dev.rilling.webmention4j.common.metrics.Counter;
+import dev.rilling.webmention4j.common.metrics.Histogram;
+import dev.rilling.webmention4j.common.metrics.MetricsRecorder;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Servlet exposing the metrics of a {@link MetricsRecorder} in the Prometheus text exposition format.
+ * To expose the metrics of an {@link AbstractWebmentionEndpointServlet}, return the same recorder from its
+ * {@link AbstractWebmentionEndpointServlet#createMetricsListener()}.
+ * <p>
+ * Exposed metrics:
+ * <ul>
+ *     <li>{@code webmention4j_phase_duration_seconds}: Histogram of phase durations, labeled by {@code phase},
+ *     {@code detail} and {@code outcome}. Verification latency per verifier is the {@code verify} phase labeled
+ *     with the verifiers media type.</li>
+ *     <li>{@code webmention4j_phase_bytes_total}: Bytes read per phase, e.g. source bodies fetched.</li>
+ *     <li>{@code webmention4j_cache_lookups_total}: Cache lookups, labeled by {@code cache} and {@code result}.</li>
+ *     <li>{@code webmention4j_rejections_total}: Rejected Webmentions, labeled by {@code reason}. Reasons are
+ *     {@code invalid_request}, {@code invalid_target}, {@code fetch_failed}, {@code gone}, {@code no_link},
+ *     {@code rate_limited_client}, {@code rate_limited_source_host} and {@code unavailable}.</li>
+ *     <li>{@code webmention4j_in_flight}: Webmentions currently being received or verified in the background. Only
+ *     if an endpoint servlet was passed.</li>
+ *     <li>{@code webmention4j_queued}: Webmentions waiting for background verification. Only if an endpoint servlet
+ *     was passed.</li>
+ * </ul>
+ * All values are read from counters that are not locked when written, so scraping never blocks request threads.
+ * As a consequence, values of a scrape are not an atomic snapshot.
+ * <p>
+ * Serialization of this servlet is NOT supported.
+ */
+@SuppressWarnings("serial")
+public class PrometheusMetricsServlet extends HttpServlet {
+
+	private static final String CONTENT_TYPE = "text/plain; version=0.0.4";
+	private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+	private final transient MetricsRecorder recorder;
+	@Nullable
+	private final transient AbstractWebmentionEndpointServlet endpointServlet;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param recorder Recorder to expose.
+	 */
+	public PrometheusMetricsServlet(@NotNull MetricsRecorder recorder) {
+		this(recorder, null);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param recorder        Recorder to expose.
+	 * @param endpointServlet Endpoint servlet to expose in-flight and queued counts of, or null.
+	 */
+	public PrometheusMetricsServlet(@NotNull MetricsRecorder recorder,
+									@Nullable AbstractWebmentionEndpointServlet endpointServlet) {
+		this.recorder = recorder;
+		this.endpointServlet = endpointServlet;
+	}
+
+	@Override
+	protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+		StringBuilder builder = new StringBuilder(4096);
+		appendDurations(builder);
+		appendBytes(builder);
+		appendCacheLookups(builder);
+		appendRejections(builder);
+		if (endpointServlet != null) {
+			appendHeader(builder,
+				"webmention4j_in_flight",
+				"gauge",
+				"Webmentions currently being received or verified in the background.");
+			builder.append("webmention4j_in_flight ").append(endpointServlet.getInFlightCount()).append('\n');
+			appendHeader(builder, "webmention4j_queued", "gauge", "Webmentions waiting for background verification.");
+			builder.append("webmention4j_queued ").append(endpointServlet.getQueuedCount()).append('\n');
+		}
+
+		resp.setStatus(HttpServletResponse.SC_OK);
+		resp.setContentType(CONTENT_TYPE);
+		resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		resp.setHeader("Cache-Control", "no-store");
+		resp.getOutputStream().write(builder.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void appendDurations(StringBuilder builder) {
+		String name = "webmention4j_phase_duration_seconds";
+		appendHeader(builder, name, "histogram", "Duration of phases of sending or receiving Webmentions.");
+		for (Map.Entry<MetricsRecorder.Series, Histogram> entry : sortSeries(recorder.getDurations()).entrySet()) {
+			String labels = formatSeriesLabels(entry.getKey());
+			Histogram histogram = entry.getValue();
+			long[] upperBounds = histogram.getUpperBounds();
+			long[] bucketCounts = histogram.getBucketCounts();
+			// Count is derived from the same bucket values, so that it always matches the '+Inf' bucket.
+			long cumulativeCount = 0;
+			for (int i = 0; i < bucketCounts.length; i++) {
+				cumulativeCount += bucketCounts[i];
+				String upperBound = i < upperBounds.length ?
+									Double.toString(upperBounds[i] / NANOS_PER_SECOND) :
+									"+Inf";
+				builder.append(name)
+					.append("_bucket{")
+					.append(labels)
+					.append(",le=\"")
+					.append(upperBound)
+					.append("\"} ")
+					.append(cumulativeCount)
+					.append('\n');
+			}
+			builder.append(name)
+				.append("_sum{")
+				.append(labels)
+				.append("} ")
+				.append(histogram.getSum() / NANOS_PER_SECOND)
+				.append('\n');
+			builder.append(name).append("_count{").append(labels).append("} ").append(cumulativeCount).append('\n');
+		}
+	}
+
+	private void appendBytes(StringBuilder builder) {
+		String name = "webmention4j_phase_bytes_total";
+		appendHeader(builder, name, "counter", "Bytes read during phases of sending or receiving Webmentions.");
+		for (Map.Entry<MetricsRecorder.Series, Counter> entry : sortSeries(recorder.getBytes()).entrySet()) {
+			appendSample(builder, name, formatSeriesLabels(entry.getKey()), entry.getValue().get());
+		}
+	}
+
+	private void appendCacheLookups(StringBuilder builder) {
+		String name = "webmention4j_cache_lookups_total";
+		appendHeader(builder, name, "counter", "Cache lookups.");
+		for (Map.Entry<String, Counter> entry : new TreeMap<>(recorder.getCacheHits()).entrySet()) {
+			appendSample(builder,
+				name,
+				"cache=\"%s\",result=\"hit\"".formatted(escapeLabelValue(entry.getKey())),
+				entry.getValue().get());
+		}
+		for (Map.Entry<String, Counter> entry : new TreeMap<>(recorder.getCacheMisses()).entrySet()) {
+			appendSample(builder,
+				name,
+				"cache=\"%s\",result=\"miss\"".formatted(escapeLabelValue(entry.getKey())),
+				entry.getValue().get());
+		}
+	}
+
+	private void appendRejections(StringBuilder builder) {
+		String name = "webmention4j_rejections_total";
+		appendHeader(builder, name, "counter", "Rejected Webmentions.");
+		for (Map.Entry<String, Counter> entry : new TreeMap<>(recorder.getRejections()).entrySet()) {
+			appendSample(builder,
+				name,
+				"reason=\"%s\"".formatted(escapeLabelValue(entry.getKey())),
+				entry.getValue().get());
+		}
+	}
+
+	private static void appendHeader(StringBuilder builder, String name, String type, String help) {
+		builder.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		builder.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+	}
+
+	private static void appendSample(StringBuilder builder, String name, String labels, long value) {
+		builder.append(name).append('{').append(labels).append("} ").append(value).append('\n');
+	}
+
+	private static <V> Map<MetricsRecorder.Series, V> sortSeries(Map<MetricsRecorder.Series, V> series) {
+		// Stable order makes the output easier to read and diff.
+		Map<MetricsRecorder.Series, V> sorted = new TreeMap<>(Comparator.comparing(MetricsRecorder.Series::phase)
+			.thenComparing(MetricsRecorder.Series::detail)
+			.thenComparing(MetricsRecorder.Series::outcome));
+		sorted.putAll(series);
+		return sorted;
+	}
+
+	private static String formatSeriesLabels(MetricsRecorder.Series series) {
+		return "phase=\"%s\",detail=\"%s\",outcome=\"%s\"".formatted(series.phase().name().toLowerCase(Locale.ROOT),
+			escapeLabelValue(series.detail()),
+			escapeLabelValue(series.outcome()));
+	}
+
+	private static String escapeLabelValue(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+}
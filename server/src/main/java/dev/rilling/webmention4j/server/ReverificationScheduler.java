@@ -0,0 +1,488 @@
+package dev.rilling.webmention4j.server;
+
+import dev.rilling.webmention4j.common.Webmention;
+import dev.rilling.webmention4j.common.internal.FetchLimits;
+import dev.rilling.webmention4j.server.internal.SpooledBody;
+import dev.rilling.webmention4j.server.internal.VerificationService;
+import dev.rilling.webmention4j.server.internal.verifier.HtmlVerifier;
+import dev.rilling.webmention4j.server.internal.verifier.JsonVerifier;
+import dev.rilling.webmention4j.server.internal.verifier.TextVerifier;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Periodically verifies known Webmentions again, detecting sources that were updated or deleted.
+ * <p>
+ * Webmentions are checked in order of when they are due, with the interval randomly varied so that Webmentions
+ * scheduled at the same time spread out. Sources are fetched using conditional requests if they provided
+ * validators, and the listener is only called if something changed. A source counts as updated if the links extracted
+ * from it changed, so that markup changing on every request (e.g., timestamps or nonces) does not count.
+ * A source counts as deleted if it responds with {@code 410 Gone} or no longer links to the target. Other failures
+ * (e.g., timeouts) are considered temporary, and the Webmention is checked again in the next interval.
+ */
+// Spec: '3.2.3 Updating existing Webmentions'
+public final class ReverificationScheduler implements AutoCloseable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ReverificationScheduler.class);
+
+	private static final long HOST_BUSY_DELAY_MILLIS = 1000;
+
+	private final Listener listener;
+	private final Config config;
+	private final CloseableHttpClient httpClient;
+	private final VerificationService verificationService;
+
+	private final Map<Webmention, Tracked> tracked = new ConcurrentHashMap<>();
+	private final Map<String, Integer> hostInFlight = new ConcurrentHashMap<>();
+
+	private final ReentrantLock queueLock = new ReentrantLock();
+	private final Condition queueChanged = queueLock.newCondition();
+	// Guarded by queueLock.
+	private final PriorityQueue<Tracked> queue = new PriorityQueue<>(Comparator.comparingLong(Tracked::dueMillis));
+
+	private final Semaphore permits;
+	private final ExecutorService workers;
+	private final Thread dispatcher;
+	private volatile boolean running = true;
+
+	/**
+	 * Creates a new scheduler with the default configuration.
+	 *
+	 * @param listener Listener to notify of changes.
+	 */
+	public ReverificationScheduler(@NotNull Listener listener) {
+		this(listener, new Config());
+	}
+
+	/**
+	 * Creates a new scheduler with a custom configuration.
+	 *
+	 * @param listener Listener to notify of changes.
+	 * @param config   Custom configuration.
+	 */
+	public ReverificationScheduler(@NotNull Listener listener, @NotNull Config config) {
+		this(listener,
+			new Config(config),
+			WebmentionReceiver.createDefaultHttpClient(FetchLimits.DEFAULT),
+			new VerificationService(List.of(new HtmlVerifier(), new TextVerifier(), new JsonVerifier())));
+	}
+
+	ReverificationScheduler(@NotNull Listener listener,
+							@NotNull Config config,
+							@NotNull CloseableHttpClient httpClient,
+							@NotNull VerificationService verificationService) {
+		if (config.maxConcurrency < 1 || config.maxConcurrencyPerHost < 1) {
+			throw new IllegalArgumentException("Concurrency must be positive.");
+		}
+		this.listener = listener;
+		this.config = config;
+		this.httpClient = httpClient;
+		this.verificationService = verificationService;
+
+		permits = new Semaphore(config.maxConcurrency);
+		workers = Executors.newFixedThreadPool(config.maxConcurrency,
+			WebmentionReceiver.createDaemonThreadFactory("webmention4j-reverification"));
+		dispatcher = WebmentionReceiver.createDaemonThreadFactory(
+			"webmention4j-reverification-dispatcher").newThread(this::dispatch);
+		dispatcher.start();
+	}
+
+	/**
+	 * Starts checking a Webmention. Does nothing if it is already scheduled.
+	 * As no previous state of the source is known, the first check will only detect deletion.
+	 *
+	 * @param webmention Webmention to check.
+	 */
+	public void schedule(@NotNull Webmention webmention) {
+		schedule(webmention, null, null, null);
+	}
+
+	/**
+	 * Starts checking a Webmention, using the source fetched during verification to detect updates.
+	 * Does nothing if it is already scheduled.
+	 *
+	 * @param webmention Webmention to check.
+	 * @param source     Source as fetched during verification.
+	 */
+	public void schedule(@NotNull Webmention webmention, @NotNull VerifiedSource source) {
+		schedule(webmention,
+			source.getFirstHeader(HttpHeaders.ETAG).orElse(null),
+			source.getFirstHeader(HttpHeaders.LAST_MODIFIED).orElse(null),
+			source.getLinks());
+	}
+
+	private void schedule(Webmention webmention,
+						  @Nullable String etag,
+						  @Nullable String lastModified,
+						  @Nullable List<String> links) {
+		// Spread out the first checks, which would otherwise pile up after a bulk import.
+		long dueMillis = System.currentTimeMillis() +
+						 ThreadLocalRandom.current().nextLong(config.interval.toMillis() + 1);
+		Tracked next = new Tracked(webmention, etag, lastModified, links, dueMillis);
+		if (tracked.putIfAbsent(webmention, next) == null) {
+			enqueue(next);
+		}
+	}
+
+	/**
+	 * Stops checking a Webmention.
+	 *
+	 * @param webmention Webmention to stop checking.
+	 */
+	public void unschedule(@NotNull Webmention webmention) {
+		// Queue entry is skipped once due.
+		tracked.remove(webmention);
+	}
+
+	/**
+	 * @return Number of scheduled Webmentions.
+	 */
+	public int size() {
+		return tracked.size();
+	}
+
+	@Override
+	public void close() throws IOException {
+		running = false;
+		dispatcher.interrupt();
+		workers.shutdownNow();
+		try {
+			if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+				LOGGER.warn("Re-verification did not terminate in time.");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		httpClient.close();
+	}
+
+	private void enqueue(Tracked next) {
+		queueLock.lock();
+		try {
+			queue.add(next);
+			queueChanged.signal();
+		} finally {
+			queueLock.unlock();
+		}
+	}
+
+	private void dispatch() {
+		try {
+			while (running) {
+				Tracked next = takeDue();
+				if (tracked.get(next.webmention) != next) {
+					// Unscheduled in the meantime.
+					continue;
+				}
+
+				permits.acquire();
+				String host = Objects.requireNonNullElse(next.webmention.source().getHost(), "");
+				if (!tryAcquireHost(host)) {
+					permits.release();
+					Tracked deferred = next.withDueMillis(System.currentTimeMillis() + HOST_BUSY_DELAY_MILLIS);
+					if (tracked.replace(next.webmention, next, deferred)) {
+						enqueue(deferred);
+					}
+					continue;
+				}
+				workers.execute(() -> {
+					try {
+						check(next);
+					} finally {
+						releaseHost(host);
+						permits.release();
+					}
+				});
+			}
+		} catch (InterruptedException e) {
+			LOGGER.debug("Dispatcher was interrupted.", e);
+		}
+	}
+
+	private Tracked takeDue() throws InterruptedException {
+		queueLock.lock();
+		try {
+			while (true) {
+				Tracked head = queue.peek();
+				if (head == null) {
+					queueChanged.await();
+				} else {
+					long waitMillis = head.dueMillis - System.currentTimeMillis();
+					if (waitMillis <= 0) {
+						return queue.poll();
+					}
+					queueChanged.await(waitMillis, TimeUnit.MILLISECONDS);
+				}
+			}
+		} finally {
+			queueLock.unlock();
+		}
+	}
+
+	private boolean tryAcquireHost(String host) {
+		boolean[] acquired = {false};
+		hostInFlight.compute(host, (ignored, count) -> {
+			int current = count == null ? 0 : count;
+			if (current >= config.maxConcurrencyPerHost) {
+				return count;
+			}
+			acquired[0] = true;
+			return current + 1;
+		});
+		return acquired[0];
+	}
+
+	private void releaseHost(String host) {
+		// Remove entries of idle hosts, so the map only holds hosts with checks in progress.
+		hostInFlight.computeIfPresent(host, (ignored, count) -> count <= 1 ? null : count - 1);
+	}
+
+	private void check(Tracked current) {
+		Webmention webmention = current.webmention;
+		VerificationService.Verification verification;
+		try {
+			verification = verificationService.verify(httpClient,
+				webmention,
+				current.etag,
+				current.lastModified);
+		} catch (IOException e) {
+			LOGGER.debug("Could not re-verify Webmention '{}', will try again.", webmention, e);
+			reschedule(current, current);
+			return;
+		}
+
+		if (verification.notModified()) {
+			reschedule(current, current);
+			return;
+		}
+		if (verification.gone() || !verification.valid()) {
+			LOGGER.debug("Source of Webmention '{}' was deleted.", webmention);
+			closeBody(verification.body());
+			if (tracked.remove(webmention, current)) {
+				notifyListener(() -> listener.onDeleted(webmention));
+			}
+			return;
+		}
+
+		try (VerifiedSource source = new VerifiedSource(webmention.source(),
+			verification.statusCode(),
+			verification.headers(),
+			verification.links(),
+			verification.body())) {
+			// Invalid sources were handled above, so only the links can differ in outcome.
+			List<String> links = source.getLinks();
+			reschedule(current,
+				new Tracked(webmention,
+					source.getFirstHeader(HttpHeaders.ETAG).orElse(null),
+					source.getFirstHeader(HttpHeaders.LAST_MODIFIED).orElse(null),
+					links,
+					0));
+			if (current.links != null && !current.links.equals(links)) {
+				LOGGER.debug("Source of Webmention '{}' was updated.", webmention);
+				notifyListener(() -> listener.onUpdated(webmention, source));
+			}
+		} catch (IOException e) {
+			LOGGER.warn("Could not clean up source of Webmention '{}'.", webmention, e);
+		}
+	}
+
+	private void reschedule(Tracked current, Tracked next) {
+		double factor = 1 + config.jitter * (ThreadLocalRandom.current().nextDouble() * 2 - 1);
+		long dueMillis = System.currentTimeMillis() + Math.round(config.interval.toMillis() * factor);
+		Tracked rescheduled = next.withDueMillis(dueMillis);
+		// Fails if unscheduled in the meantime.
+		if (tracked.replace(current.webmention, current, rescheduled)) {
+			enqueue(rescheduled);
+		}
+	}
+
+	private static void notifyListener(Runnable notification) {
+		try {
+			notification.run();
+		} catch (RuntimeException e) {
+			LOGGER.error("Listener failed.", e);
+		}
+	}
+
+	private static void closeBody(SpooledBody body) {
+		try {
+			body.close();
+		} catch (IOException e) {
+			LOGGER.warn("Could not clean up body.", e);
+		}
+	}
+
+	/**
+	 * Listener for changes detected by re-verification. Called from worker threads.
+	 */
+	public interface Listener {
+		/**
+		 * Called if the links in the source of a Webmention changed, but it still links to the target.
+		 *
+		 * @param webmention The Webmention.
+		 * @param source     The updated source. Only valid until this method returns.
+		 */
+		void onUpdated(@NotNull Webmention webmention, @NotNull VerifiedSource source);
+
+		/**
+		 * Called if the source of a Webmention was deleted or no longer links to the target.
+		 * The Webmention is no longer checked afterwards.
+		 *
+		 * @param webmention The Webmention.
+		 */
+		void onDeleted(@NotNull Webmention webmention);
+	}
+
+	private record Tracked(@NotNull Webmention webmention,
+						   @Nullable String etag,
+						   @Nullable String lastModified,
+						   @Nullable List<String> links,
+						   long dueMillis) {
+
+		Tracked withDueMillis(long nextDueMillis) {
+			return new Tracked(webmention, etag, lastModified, links, nextDueMillis);
+		}
+	}
+
+	/**
+	 * Configuration POJO.
+	 */
+	public static class Config {
+		private Duration interval;
+		private double jitter;
+		private int maxConcurrency;
+		private int maxConcurrencyPerHost;
+
+		/**
+		 * Creates a new configuration with default values.
+		 */
+		public Config() {
+			interval = Duration.ofDays(1);
+			jitter = 0.1;
+			maxConcurrency = 8;
+			maxConcurrencyPerHost = 2;
+		}
+
+		private Config(Config original) {
+			interval = original.interval;
+			jitter = original.jitter;
+			maxConcurrency = original.maxConcurrency;
+			maxConcurrencyPerHost = original.maxConcurrencyPerHost;
+		}
+
+		/**
+		 * Configures the time between two checks of the same Webmention.
+		 * Defaults to one day.
+		 *
+		 * @throws IllegalArgumentException if the interval is not positive.
+		 */
+		public void setInterval(@NotNull Duration interval) {
+			if (interval.isNegative() || interval.isZero()) {
+				throw new IllegalArgumentException("Interval must be positive.");
+			}
+			this.interval = interval;
+		}
+
+		/**
+		 * @see #setInterval(Duration)
+		 */
+		@NotNull
+		public Duration getInterval() {
+			return interval;
+		}
+
+		/**
+		 * Configures by which fraction the interval is randomly varied, e.g., {@code 0.1} for +/- 10%.
+		 * Defaults to 0.1.
+		 *
+		 * @throws IllegalArgumentException if the jitter is not at least 0 and less than 1.
+		 */
+		public void setJitter(double jitter) {
+			// A jitter of 1 or more could schedule checks in the past, re-checking them in a tight loop.
+			if (!(jitter >= 0 && jitter < 1)) {
+				throw new IllegalArgumentException("Jitter must be at least 0 and less than 1.");
+			}
+			this.jitter = jitter;
+		}
+
+		/**
+		 * @see #setJitter(double)
+		 */
+		public double getJitter() {
+			return jitter;
+		}
+
+		/**
+		 * Configures how many checks may run at the same time.
+		 * Defaults to 8.
+		 */
+		public void setMaxConcurrency(int maxConcurrency) {
+			this.maxConcurrency = maxConcurrency;
+		}
+
+		/**
+		 * @see #setMaxConcurrency(int)
+		 */
+		public int getMaxConcurrency() {
+			return maxConcurrency;
+		}
+
+		/**
+		 * Configures how many checks of sources on the same host may run at the same time.
+		 * Defaults to 2.
+		 */
+		public void setMaxConcurrencyPerHost(int maxConcurrencyPerHost) {
+			this.maxConcurrencyPerHost = maxConcurrencyPerHost;
+		}
+
+		/**
+		 * @see #setMaxConcurrencyPerHost(int)
+		 */
+		public int getMaxConcurrencyPerHost() {
+			return maxConcurrencyPerHost;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj == null || getClass() != obj.getClass()) {
+				return false;
+			}
+			Config config = (Config) obj;
+			return Double.compare(jitter, config.jitter) == 0 && maxConcurrency == config.maxConcurrency &&
+				   maxConcurrencyPerHost == config.maxConcurrencyPerHost && interval.equals(config.interval);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(interval, jitter, maxConcurrency, maxConcurrencyPerHost);
+		}
+
+		@Override
+		public String toString() {
+			return "Config{" + "interval=" + interval + ", jitter=" + jitter + ", maxConcurrency=" + maxConcurrency +
+				   ", maxConcurrencyPerHost=" + maxConcurrencyPerHost + '}';
+		}
+	}
+}
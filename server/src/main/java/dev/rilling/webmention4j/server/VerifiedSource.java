@@ -0,0 +1,123 @@
+package dev.rilling.webmention4j.server;
+
+import dev.rilling.webmention4j.server.internal.SpooledBody;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Source document of a Webmention as fetched during verification, allowing it to be used without fetching it again
+ * (e.g., to display the mention).
+ * <p>
+ * Only valid until the handler it was passed to returns (or its returned stage completes).
+ */
+public final class VerifiedSource implements Closeable {
+	private final URI uri;
+	private final int statusCode;
+	private final Map<String, List<String>> headers;
+	private final List<String> links;
+	private final SpooledBody body;
+
+	VerifiedSource(@NotNull URI uri,
+				   int statusCode,
+				   @NotNull Map<String, List<String>> headers,
+				   @NotNull List<String> links,
+				   @NotNull SpooledBody body) {
+		this.uri = uri;
+		this.statusCode = statusCode;
+		this.headers = headers;
+		this.links = List.copyOf(links);
+		this.body = body;
+	}
+
+	/**
+	 * @return URL the source was fetched from.
+	 */
+	@NotNull
+	public URI getUri() {
+		return uri;
+	}
+
+	/**
+	 * @return HTTP status code of the response.
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * @return All headers of the response, keyed case-insensitively by name.
+	 */
+	@NotNull
+	public Map<String, List<String>> getHeaders() {
+		return headers;
+	}
+
+	/**
+	 * @param name Header name. Case-insensitive.
+	 * @return The first value of the header, if present.
+	 */
+	@NotNull
+	public Optional<String> getFirstHeader(@NotNull String name) {
+		List<String> values = headers.get(name);
+		return values == null || values.isEmpty() ? Optional.empty() : Optional.of(values.get(0));
+	}
+
+	/**
+	 * @return The 'Content-Type' header value, if present.
+	 */
+	@Nullable
+	public String getContentType() {
+		return getFirstHeader("Content-Type").orElse(null);
+	}
+
+	/**
+	 * @return Links found in the source by the verifier of its content type, in document order.
+	 * Not resolved against the source URL.
+	 */
+	@NotNull
+	public List<String> getLinks() {
+		return links;
+	}
+
+	/**
+	 * @return Size of the body in bytes.
+	 */
+	public long getBodySize() {
+		return body.size();
+	}
+
+	/**
+	 * @return A read-only view of the body.
+	 */
+	@NotNull
+	public ByteBuffer getBody() {
+		return body.asByteBuffer();
+	}
+
+	/**
+	 * @return A new stream reading the body from the start.
+	 */
+	@NotNull
+	public InputStream openBody() {
+		return body.openStream();
+	}
+
+	@Override
+	public void close() throws IOException {
+		body.close();
+	}
+
+	@Override
+	public String toString() {
+		return "VerifiedSource{" + "uri=" + uri + ", statusCode=" + statusCode + ", bodySize=" + body.size() + '}';
+	}
+}
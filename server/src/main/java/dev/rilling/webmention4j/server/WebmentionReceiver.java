@@ -0,0 +1,954 @@
+package dev.rilling.webmention4j.server;
+
+import dev.rilling.webmention4j.common.Webmention;
+import dev.rilling.webmention4j.common.internal.AdaptiveTimeouts;
+import dev.rilling.webmention4j.common.internal.FetchLimits;
+import dev.rilling.webmention4j.common.internal.HttpClientInstrumentation;
+import dev.rilling.webmention4j.common.internal.HttpUtils;
+import dev.rilling.webmention4j.common.internal.PhaseTimer;
+import dev.rilling.webmention4j.common.metrics.MetricsListener;
+import dev.rilling.webmention4j.common.metrics.Phase;
+import dev.rilling.webmention4j.server.internal.HostMatcher;
+import dev.rilling.webmention4j.server.internal.InitParameters;
+import dev.rilling.webmention4j.server.internal.MentionJournal;
+import dev.rilling.webmention4j.server.internal.MicroBatcher;
+import dev.rilling.webmention4j.server.internal.RateLimiter;
+import dev.rilling.webmention4j.server.internal.StatusStore;
+import dev.rilling.webmention4j.server.internal.VerificationCache;
+import dev.rilling.webmention4j.server.internal.VerificationService;
+import dev.rilling.webmention4j.server.internal.verifier.HtmlVerifier;
+import dev.rilling.webmention4j.server.internal.verifier.JsonVerifier;
+import dev.rilling.webmention4j.server.internal.verifier.TextVerifier;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Serial;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Receives Webmentions independently of how HTTP is served, so that it can be used by the servlet as well as other
+ * servers. Validates, rate limits and verifies requests, and passes accepted Webmentions to the handler.
+ * <p>
+ * Configured by the parameters documented for {@link AbstractWebmentionEndpointServlet}.
+ */
+// Spec: '3.2 Receiving Webmentions'
+final class WebmentionReceiver implements Closeable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(WebmentionReceiver.class);
+
+	private static final ContentType EXPECTED_CONTENT_TYPE = ContentType.APPLICATION_FORM_URLENCODED;
+
+	private static final int DEFAULT_RATE_LIMIT_SLOTS = 1 << 16;
+	private static final int DEFAULT_VERIFICATION_THREADS = 4;
+	private static final int DEFAULT_VERIFICATION_QUEUE_CAPACITY = 1000;
+	private static final long DEFAULT_JOURNAL_SEGMENT_BYTES = 16L * 1024 * 1024;
+	private static final int DEFAULT_STATUS_STORE_CAPACITY = 1 << 14;
+	private static final int DEFAULT_VERIFICATION_CACHE_CAPACITY = 1 << 12;
+	private static final Duration DEFAULT_MIN_RESPONSE_TIMEOUT = Duration.ofSeconds(3);
+	private static final int ADAPTIVE_TIMEOUT_HOSTS = 1 << 12;
+	static final long QUEUE_FULL_RETRY_AFTER_SECONDS = 60;
+
+	static final int SC_OK = 200;
+	static final int SC_CREATED = 201;
+	static final int SC_BAD_REQUEST = 400;
+	static final int SC_NOT_FOUND = 404;
+	static final int SC_METHOD_NOT_ALLOWED = 405;
+	static final int SC_TOO_MANY_REQUESTS = 429;
+	static final int SC_INTERNAL_SERVER_ERROR = 500;
+	static final int SC_SERVICE_UNAVAILABLE = 503;
+
+	private final MetricsListener metricsListener;
+	private final BiFunction<Webmention, VerifiedSource, CompletionStage<Void>> handler;
+	private CloseableHttpClient httpClient;
+	private VerificationService verificationService;
+	@Nullable
+	private VerificationCache verificationCache;
+
+	@Nullable
+	private volatile HostMatcher validHostMatcher;
+	@Nullable
+	private ScheduledExecutorService validHostsReloadExecutor;
+	@Nullable
+	private FileTime validHostsFileLastModified;
+
+	@Nullable
+	private RateLimiter clientRateLimiter;
+	@Nullable
+	private RateLimiter sourceHostRateLimiter;
+
+	@Nullable
+	private ThreadPoolExecutor verificationExecutor;
+	@Nullable
+	private MentionJournal journal;
+	@Nullable
+	private StatusStore statusStore;
+	private final AtomicLong nextUnjournaledId = new AtomicLong();
+	private final AtomicBoolean closed = new AtomicBoolean();
+
+	// Written by every request, so not contended counters that are only summed up when read.
+	private final LongAdder inFlightCount = new LongAdder();
+	private final LongAdder queuedCount = new LongAdder();
+
+	@Nullable
+	private MicroBatcher<Webmention> handlerBatcher;
+
+	/**
+	 * Creates a receiver and starts its background tasks, if configured.
+	 *
+	 * @param parameters      Configuration parameters.
+	 * @param metricsListener Listener notified about the phases of receiving Webmentions.
+	 * @param handler         Handler of accepted Webmentions, completing once handled.
+	 * @param batchHandler    Handler of accepted Webmentions if {@code handlerBatchSize} is greater than 1.
+	 * @throws IllegalArgumentException if a parameter is invalid.
+	 * @throws IOException              if the valid hosts file or journal cannot be read.
+	 */
+	WebmentionReceiver(@NotNull InitParameters parameters,
+					   @NotNull MetricsListener metricsListener,
+					   @NotNull BiFunction<Webmention, VerifiedSource, CompletionStage<Void>> handler,
+					   @NotNull Consumer<List<Webmention>> batchHandler) throws IOException {
+		this.metricsListener = metricsListener;
+		this.handler = handler;
+		try {
+			init(parameters, batchHandler);
+		} catch (IOException | RuntimeException e) {
+			close();
+			throw e;
+		}
+	}
+
+	private void init(InitParameters parameters, Consumer<List<Webmention>> batchHandler) throws IOException {
+		initValidHosts(parameters);
+
+		clientRateLimiter = parseRateLimiter(parameters, "clientRateLimit");
+		sourceHostRateLimiter = parseRateLimiter(parameters, "sourceHostRateLimit");
+
+		FetchLimits fetchLimits = parseFetchLimits(parameters);
+		Duration minResponseTimeout = parameters.getDuration("minResponseTimeout",
+			min(DEFAULT_MIN_RESPONSE_TIMEOUT, fetchLimits.responseTimeout()));
+		httpClient = createDefaultHttpClient(fetchLimits, minResponseTimeout, metricsListener);
+		int sourceSpoolThresholdBytes = Math.toIntExact(parameters.getLong("sourceSpoolThresholdBytes",
+			VerificationService.DEFAULT_SPOOL_THRESHOLD_BYTES));
+		verificationService = new VerificationService(List.of(new HtmlVerifier(),
+			new TextVerifier(),
+			new JsonVerifier()), fetchLimits, sourceSpoolThresholdBytes, metricsListener);
+
+		Duration verificationCacheTtl = parameters.getDuration("verificationCacheTtl", Duration.ZERO);
+		if (!verificationCacheTtl.isZero() && !verificationCacheTtl.isNegative()) {
+			try {
+				verificationCache = new VerificationCache(Math.toIntExact(parameters.getLong(
+					"verificationCacheCapacity",
+					DEFAULT_VERIFICATION_CACHE_CAPACITY)), verificationCacheTtl);
+			} catch (IllegalArgumentException | ArithmeticException e) {
+				throw new IllegalArgumentException("Invalid verification cache configuration.", e);
+			}
+		}
+
+		int handlerBatchSize = Math.toIntExact(parameters.getLong("handlerBatchSize", 1));
+		if (handlerBatchSize > 1) {
+			Duration handlerBatchDelay = parameters.getDuration("handlerBatchDelay", Duration.ofMillis(100));
+			try {
+				handlerBatcher = new MicroBatcher<>(handlerBatchSize,
+					handlerBatchDelay,
+					batchHandler,
+					createDaemonThreadFactory("webmention4j-handler-batch"));
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("Invalid handler batch configuration.", e);
+			}
+		}
+
+		if (parameters.getBoolean("asyncVerification", false)) {
+			initAsyncVerification(parameters);
+		}
+	}
+
+	private void initAsyncVerification(InitParameters parameters) throws IOException {
+		String journalDirectoryParam = parameters.getString("journalDirectory");
+		List<MentionJournal.Entry> recovered = List.of();
+		if (journalDirectoryParam != null) {
+			try {
+				journal = MentionJournal.open(Path.of(journalDirectoryParam),
+					parameters.getLong("journalSegmentBytes", DEFAULT_JOURNAL_SEGMENT_BYTES));
+			} catch (IOException e) {
+				throw new IOException("Could not open journal.", e);
+			}
+			recovered = journal.getRecovered();
+		}
+
+		int threads = Math.toIntExact(parameters.getLong("verificationThreads", DEFAULT_VERIFICATION_THREADS));
+		int capacity = Math.toIntExact(parameters.getLong("verificationQueueCapacity",
+			DEFAULT_VERIFICATION_QUEUE_CAPACITY));
+		if (threads < 1 || capacity < 1) {
+			throw new IllegalArgumentException("Verification thread count and queue capacity must be positive.");
+		}
+		try {
+			statusStore = new StatusStore(Math.toIntExact(parameters.getLong("statusStoreCapacity",
+				DEFAULT_STATUS_STORE_CAPACITY)));
+		} catch (IllegalArgumentException | ArithmeticException e) {
+			throw new IllegalArgumentException("Invalid status store configuration.", e);
+		}
+
+		// Recovered Webmentions must never be rejected, so make room for them.
+		verificationExecutor = new ThreadPoolExecutor(threads,
+			threads,
+			0,
+			TimeUnit.MILLISECONDS,
+			new ArrayBlockingQueue<>(capacity + recovered.size()),
+			createDaemonThreadFactory("webmention4j-verification"));
+		for (MentionJournal.Entry entry : recovered) {
+			statusStore.put(entry.id(), StatusStore.Status.QUEUED);
+			queuedCount.increment();
+			verificationExecutor.execute(() -> verifyInBackground(entry.id(), entry.webmention()));
+		}
+	}
+
+	private void initValidHosts(InitParameters parameters) throws IOException {
+		String validHostsParam = parameters.getString("validHosts");
+		String validHostsFileParam = parameters.getString("validHostsFile");
+		if (validHostsParam != null && validHostsFileParam != null) {
+			throw new IllegalArgumentException("Only one of 'validHosts' and 'validHostsFile' may be set.");
+		}
+
+		if (validHostsParam != null) {
+			try {
+				setValidHosts(Arrays.asList(validHostsParam.split(",")));
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("Invalid valid hosts configuration.", e);
+			}
+		} else if (validHostsFileParam != null) {
+			Path validHostsFile = Path.of(validHostsFileParam);
+			try {
+				reloadValidHosts(validHostsFile);
+			} catch (IOException e) {
+				throw new IOException("Could not read valid hosts file.", e);
+			}
+
+			Duration reloadInterval = parameters.getDuration("validHostsReloadInterval", Duration.ofMinutes(1));
+			validHostsReloadExecutor = Executors.newSingleThreadScheduledExecutor(createDaemonThreadFactory(
+				"webmention4j-valid-hosts-reload"));
+			validHostsReloadExecutor.scheduleWithFixedDelay(() -> {
+				try {
+					reloadValidHosts(validHostsFile);
+				} catch (IOException | RuntimeException e) {
+					LOGGER.warn("Could not reload valid hosts file, keeping previous hosts.", e);
+				}
+			}, reloadInterval.toMillis(), reloadInterval.toMillis(), TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void reloadValidHosts(Path validHostsFile) throws IOException {
+		FileTime lastModified = Files.getLastModifiedTime(validHostsFile);
+		if (lastModified.equals(validHostsFileLastModified)) {
+			return;
+		}
+		// Matcher is built completely before being swapped in, so requests never see a partial state.
+		validHostMatcher = HostMatcher.read(validHostsFile);
+		validHostsFileLastModified = lastModified;
+		LOGGER.info("Loaded valid hosts from '{}'.", validHostsFile);
+	}
+
+	/**
+	 * Atomically replaces the target hosts to receive Webmentions for.
+	 *
+	 * @param validHosts Hosts in the format of the {@code validHosts} parameter,
+	 *                   or null to receive Webmentions regardless of target host.
+	 * @throws IllegalArgumentException if a host pattern is invalid.
+	 */
+	void setValidHosts(@Nullable Collection<String> validHosts) {
+		validHostMatcher = validHosts == null ? null : HostMatcher.of(validHosts);
+	}
+
+	private static FetchLimits parseFetchLimits(InitParameters parameters) {
+		FetchLimits defaults = FetchLimits.DEFAULT;
+		try {
+			return new FetchLimits(parameters.getLong("maxBodyBytes", defaults.maxBodyBytes()),
+				Math.toIntExact(parameters.getLong("maxErrorBodyBytes", defaults.maxErrorBodyBytes())),
+				parameters.getDuration("connectTimeout", defaults.connectTimeout()),
+				parameters.getDuration("responseTimeout", defaults.responseTimeout()),
+				parameters.getDuration("totalTimeout", defaults.totalTimeout()));
+		} catch (IllegalArgumentException | ArithmeticException e) {
+			throw new IllegalArgumentException("Invalid fetch limit configuration.", e);
+		}
+	}
+
+	@Nullable
+	private static RateLimiter parseRateLimiter(InitParameters parameters, String name) {
+		double permitsPerSecond = parameters.getDouble(name, 0);
+		if (permitsPerSecond <= 0) {
+			return null;
+		}
+		double burst = parameters.getDouble(name + "Burst", Math.max(1, permitsPerSecond));
+		int slots = Math.toIntExact(parameters.getLong("rateLimitSlots", DEFAULT_RATE_LIMIT_SLOTS));
+		try {
+			return new RateLimiter(permitsPerSecond, burst, slots);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid rate limit configuration for '%s'.".formatted(name), e);
+		}
+	}
+
+	/**
+	 * Stops background tasks and releases resources. Webmentions still waiting for background verification are
+	 * journaled (if enabled) and will be verified after the next start. Subsequent calls have no effect.
+	 */
+	@Override
+	public void close() {
+		if (!closed.compareAndSet(false, true)) {
+			return;
+		}
+
+		if (validHostsReloadExecutor != null) {
+			validHostsReloadExecutor.shutdownNow();
+		}
+
+		if (verificationExecutor != null) {
+			verificationExecutor.shutdownNow();
+			try {
+				if (!verificationExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+					LOGGER.warn("Background verification did not terminate in time.");
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (handlerBatcher != null) {
+			handlerBatcher.close();
+		}
+		if (journal != null) {
+			try {
+				journal.close();
+			} catch (IOException e) {
+				LOGGER.warn("Could not close journal.", e);
+			}
+		}
+
+		if (httpClient != null) {
+			try {
+				httpClient.close();
+			} catch (IOException e) {
+				LOGGER.warn("Could not close HTTP client.", e);
+			}
+		}
+	}
+
+	/**
+	 * Receives a Webmention.
+	 *
+	 * @param request The request. Its parameters are only read before this method returns.
+	 * @return Stage completing with the response once the Webmention was handled. Never completes exceptionally.
+	 */
+	@NotNull
+	CompletableFuture<Response> receive(@NotNull Request request) {
+		PhaseTimer timer = PhaseTimer.start(metricsListener, Phase.RECEIVE, "");
+		inFlightCount.increment();
+		CompletableFuture<Response> response;
+		try {
+			response = receive(request, timer);
+		} catch (RuntimeException e) {
+			timer.close();
+			inFlightCount.decrement();
+			throw e;
+		}
+		return response.whenComplete((ignored, e) -> {
+			timer.close();
+			inFlightCount.decrement();
+		});
+	}
+
+	private CompletableFuture<Response> receive(Request request, PhaseTimer timer) {
+		String statusToken;
+		try {
+			Webmention webmention = validateRequest(request);
+			if (verificationExecutor != null) {
+				statusToken = enqueue(webmention);
+			} else {
+				VerifiedSource source = verify(webmention);
+				if (source == null) {
+					timer.setOutcome("unchanged");
+					return CompletableFuture.completedFuture(Response.of(SC_OK));
+				}
+				return deliver(webmention, source).handle((ignored, e) -> {
+					if (e != null) {
+						LOGGER.error("Could not handle Webmention '{}'.", webmention, e);
+						return Response.error(SC_INTERNAL_SERVER_ERROR, "Webmention could not be handled.");
+					}
+					timer.setOutcome("accepted");
+					/*
+					 * Spec:
+					 * 'If the receiver chooses to process the request and perform the verification step synchronously
+					 * (not recommended), it MUST respond with a 200 OK status on success.'
+					 * */
+					return Response.of(SC_OK);
+				});
+			}
+		} catch (BadRequestException e) {
+			LOGGER.warn("Bad request.", e);
+			timer.setOutcome("bad_request");
+			metricsListener.onRejected(e.getReason());
+			return CompletableFuture.completedFuture(Response.error(SC_BAD_REQUEST, e.getMessage()));
+		} catch (TooManyRequestsException e) {
+			LOGGER.debug("Rate limited request.", e);
+			timer.setOutcome("rate_limited");
+			metricsListener.onRejected(e.getReason());
+			return CompletableFuture.completedFuture(Response.error(SC_TOO_MANY_REQUESTS,
+				e.getMessage(),
+				e.getRetryAfterSeconds()));
+		} catch (ServiceUnavailableException e) {
+			LOGGER.warn("Could not accept request.", e);
+			timer.setOutcome("unavailable");
+			metricsListener.onRejected("unavailable");
+			return CompletableFuture.completedFuture(Response.error(SC_SERVICE_UNAVAILABLE,
+				e.getMessage(),
+				QUEUE_FULL_RETRY_AFTER_SECONDS));
+		}
+
+		/*
+		 * Spec:
+		 * 'If the receiver creates a status page which the sender can use to check the status, the receiver MUST
+		 * reply with an HTTP 201 Created response with a Location header pointing to the status page.'
+		 */
+		timer.setOutcome("queued");
+		return CompletableFuture.completedFuture(new Response(SC_CREATED,
+			null,
+			Map.of("Location", request.requestUrl() + "?status=" + statusToken)));
+	}
+
+	/**
+	 * Looks up the status of a Webmention verified in the background.
+	 *
+	 * @param statusParameter Value of the {@code status} query parameter, if present.
+	 * @return The response, with the status as plain text body if found.
+	 */
+	@NotNull
+	Response getStatus(@Nullable String statusParameter) {
+		if (statusStore == null) {
+			return Response.error(SC_METHOD_NOT_ALLOWED, null);
+		}
+
+		StatusStore.Entry entry = null;
+		if (statusParameter != null) {
+			try {
+				entry = statusStore.get(statusParameter);
+			} catch (IllegalArgumentException e) {
+				return Response.error(SC_BAD_REQUEST, "Invalid status ID.");
+			}
+		}
+		if (entry == null) {
+			return Response.error(SC_NOT_FOUND, "Unknown status ID.");
+		}
+
+		String body = entry.status().name().toLowerCase(Locale.ROOT);
+		if (entry.message() != null) {
+			body += ": " + entry.message();
+		}
+		return new Response(SC_OK, body, Map.of("Cache-Control", "no-cache"));
+	}
+
+	private Webmention validateRequest(Request request) throws BadRequestException, TooManyRequestsException {
+		// Cheap checks before any outbound request is made, so that this endpoint cannot be abused to hammer hosts.
+		if (clientRateLimiter != null && !clientRateLimiter.tryAcquire(request.remoteAddress())) {
+			throw new TooManyRequestsException("rate_limited_client",
+				"Too many requests from this client.",
+				clientRateLimiter.getRetryAfterSeconds());
+		}
+
+		if (!EXPECTED_CONTENT_TYPE.isSameMimeType(ContentType.parse(request.contentType()))) {
+			throw new BadRequestException("invalid_request",
+				"Content type must be '%s'.".formatted(EXPECTED_CONTENT_TYPE.getMimeType()));
+		}
+
+		Webmention webmention = extractWebmention(request);
+		LOGGER.debug("Processing Webmention '{}'.", webmention);
+
+		/*
+		 * Spec:
+		 * 'The receiver SHOULD check that target is a valid resource for which it can accept Webmentions.
+		 *  This check SHOULD happen synchronously to reject invalid Webmentions before more in-depth verification begins.
+		 *  What a "valid resource" means is up to the receiver.
+		 *  For example, some receivers may accept Webmentions for multiple domains,
+		 *  others may accept Webmentions for only the same domain the endpoint is on.'
+		 */
+		HostMatcher currentValidHostMatcher = validHostMatcher;
+		if (currentValidHostMatcher != null && !currentValidHostMatcher.matches(webmention.target().getHost())) {
+			throw new BadRequestException("invalid_target",
+				"This Webmention target is not valid for this endpoint.");
+		}
+
+		if (sourceHostRateLimiter != null && !sourceHostRateLimiter.tryAcquire(webmention.source().getHost())) {
+			throw new TooManyRequestsException("rate_limited_source_host",
+				"Too many requests for this source host.",
+				sourceHostRateLimiter.getRetryAfterSeconds());
+		}
+		return webmention;
+	}
+
+	/**
+	 * @return Token to look up the status with.
+	 */
+	private String enqueue(Webmention webmention) throws ServiceUnavailableException {
+		long id;
+		if (journal != null) {
+			try {
+				id = journal.append(webmention);
+			} catch (IOException e) {
+				throw new ServiceUnavailableException("Webmention could not be stored.", e);
+			}
+		} else {
+			id = nextUnjournaledId.getAndIncrement();
+		}
+
+		String statusToken = statusStore.put(id, StatusStore.Status.QUEUED);
+		queuedCount.increment();
+		try {
+			verificationExecutor.execute(() -> verifyInBackground(id, webmention));
+		} catch (RejectedExecutionException e) {
+			queuedCount.decrement();
+			statusStore.remove(id);
+			completeJournalEntry(id);
+			throw new ServiceUnavailableException("Too many Webmentions are waiting for verification.", e);
+		}
+		return statusToken;
+	}
+
+	private void verifyInBackground(long id, Webmention webmention) {
+		queuedCount.decrement();
+		inFlightCount.increment();
+		boolean delivering = false;
+		try {
+			statusStore.update(id, StatusStore.Status.VERIFYING, null);
+			VerifiedSource source;
+			try {
+				source = verify(webmention);
+			} catch (BadRequestException e) {
+				// Not completed if interrupted by shutdown, so that it is verified again after the next start.
+				if (!Thread.currentThread().isInterrupted()) {
+					LOGGER.info("Rejected Webmention '{}': {}", webmention, e.getMessage());
+					metricsListener.onRejected(e.getReason());
+					statusStore.update(id, StatusStore.Status.REJECTED, e.getMessage());
+					completeJournalEntry(id);
+				}
+				return;
+			}
+			if (source == null) {
+				statusStore.update(id, StatusStore.Status.ACCEPTED, null);
+				completeJournalEntry(id);
+				return;
+			}
+
+			delivering = true;
+			deliver(webmention, source).whenComplete((ignored, e) -> {
+				if (e == null) {
+					statusStore.update(id, StatusStore.Status.ACCEPTED, null);
+					completeJournalEntry(id);
+				} else if (!isShutdownFailure(e)) {
+					LOGGER.error("Could not process Webmention '{}'.", webmention, e);
+					statusStore.update(id, StatusStore.Status.REJECTED, "Webmention could not be processed.");
+					completeJournalEntry(id);
+				}
+				// Otherwise not completed if interrupted by shutdown, so that it is handled again after the next start.
+				inFlightCount.decrement();
+			});
+		} finally {
+			if (!delivering) {
+				inFlightCount.decrement();
+			}
+		}
+	}
+
+	// Delivery may complete on another thread, so the interrupt flag of the current one cannot be checked.
+	private boolean isShutdownFailure(Throwable e) {
+		Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+		return cause instanceof InterruptedException || cause instanceof RejectedExecutionException || closed.get();
+	}
+
+	private CompletableFuture<Void> deliver(Webmention webmention, VerifiedSource source) {
+		if (verificationCache == null) {
+			return deliverToHandler(webmention, source);
+		}
+		String etag = source.getFirstHeader(HttpHeaders.ETAG).orElse(null);
+		String lastModified = source.getFirstHeader(HttpHeaders.LAST_MODIFIED).orElse(null);
+		// Only cached once handled, so that a sender retrying after the handler failed reaches the handler again.
+		return deliverToHandler(webmention, source).whenComplete((ignored, e) -> {
+			if (e == null) {
+				verificationCache.put(webmention, true, etag, lastModified);
+			} else {
+				verificationCache.remove(webmention);
+			}
+		});
+	}
+
+	private CompletableFuture<Void> deliverToHandler(Webmention webmention, VerifiedSource source) {
+		if (handlerBatcher != null) {
+			closeSource(source);
+			try {
+				return handlerBatcher.submit(webmention);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return CompletableFuture.failedFuture(e);
+			}
+		}
+		CompletableFuture<Void> delivery = new CompletableFuture<>();
+		CompletionStage<Void> stage;
+		try {
+			stage = handler.apply(webmention, source);
+		} catch (RuntimeException e) {
+			closeSource(source);
+			return CompletableFuture.failedFuture(e);
+		}
+		// Not using 'toCompletableFuture', which implementations are allowed to not support.
+		stage.whenComplete((ignored, e) -> {
+			closeSource(source);
+			if (e == null) {
+				delivery.complete(null);
+			} else {
+				delivery.completeExceptionally(e);
+			}
+		});
+		return delivery;
+	}
+
+	private static void closeSource(VerifiedSource source) {
+		try {
+			source.close();
+		} catch (IOException e) {
+			LOGGER.warn("Could not clean up source '{}'.", source, e);
+		}
+	}
+
+	private void completeJournalEntry(long id) {
+		if (journal == null) {
+			return;
+		}
+		try {
+			journal.complete(id);
+		} catch (IOException e) {
+			LOGGER.warn("Could not record completion of journal entry {}.", id, e);
+		}
+	}
+
+	/**
+	 * @return The verified source, or null if the Webmention was verified successfully before and its source is
+	 * unchanged, so it does not need to be handled again.
+	 */
+	@Nullable
+	private VerifiedSource verify(Webmention webmention) throws BadRequestException {
+		VerificationCache.Entry cached = verificationCache != null ? verificationCache.get(webmention) : null;
+		if (verificationCache != null) {
+			boolean fresh = cached != null && verificationCache.isFresh(cached);
+			metricsListener.onCacheLookup("verification", fresh);
+			if (fresh) {
+				LOGGER.debug("Using cached verification outcome for Webmention '{}'.", webmention);
+				return useCachedOutcome(cached);
+			}
+		}
+
+		/*
+		 * Spec:
+		 * 'If the receiver is going to use the Webmention in some way, (displaying it as a comment on a post,
+		 * incrementing a "like" counter, notifying the author of a post), then it MUST perform an HTTP GET request
+		 * on source [...] to confirm that it actually mentions the target.
+		 */
+		VerificationService.Verification verification;
+		try {
+			verification = cached != null
+						   ? verificationService.verify(httpClient, webmention, cached.etag(), cached.lastModified())
+						   : verificationService.verify(httpClient, webmention);
+		} catch (IOException e) {
+			// In theory I/O failures cold also be issues on our side (e.g., trusted CAs being wrong), but
+			// differentiating between those and issues on the source URIs side (e.g., 404s) seems hard.
+			throw new BadRequestException("fetch_failed", "Verification of source URL could not be performed.", e);
+		}
+
+		if (verification.gone()) {
+			if (verificationCache != null) {
+				verificationCache.put(webmention, false, null, null);
+			}
+			throw new BadRequestException("gone", "Source URL is gone.");
+		}
+		if (cached != null) {
+			metricsListener.onCacheLookup("verification_revalidation", verification.notModified());
+		}
+		if (verification.notModified()) {
+			LOGGER.debug("Source of Webmention '{}' is unchanged.", webmention);
+			verificationCache.refresh(cached);
+			return useCachedOutcome(cached);
+		}
+		VerifiedSource source = new VerifiedSource(webmention.source(),
+			verification.statusCode(),
+			verification.headers(),
+			verification.links(),
+			verification.body());
+		if (!verification.valid()) {
+			if (verificationCache != null) {
+				verificationCache.put(webmention,
+					false,
+					getFirstHeader(verification, HttpHeaders.ETAG),
+					getFirstHeader(verification, HttpHeaders.LAST_MODIFIED));
+			}
+			closeSource(source);
+			throw new BadRequestException("no_link", "Source does not contain link to target URL.");
+		}
+		LOGGER.debug("Webmention '{}' passed verification.", webmention);
+		return source;
+	}
+
+	@Nullable
+	private static VerifiedSource useCachedOutcome(VerificationCache.Entry cached) throws BadRequestException {
+		if (!cached.valid()) {
+			throw new BadRequestException("no_link", "Source does not contain link to target URL.");
+		}
+		return null;
+	}
+
+	@Nullable
+	private static String getFirstHeader(VerificationService.Verification verification, String name) {
+		List<String> values = verification.headers().get(name);
+		return values == null || values.isEmpty() ? null : values.get(0);
+	}
+
+	private Webmention extractWebmention(Request request) throws BadRequestException {
+		URI source = extractParameterAsUri(request, "source");
+		URI target = extractParameterAsUri(request, "target");
+
+		// Spec: 'The receiver MUST reject the request if the source URL is the same as the target URL.'
+		if (source.equals(target)) {
+			throw new BadRequestException("invalid_request", "Source and target URL must not be identical.");
+		}
+		return new Webmention(source, target);
+	}
+
+	private URI extractParameterAsUri(Request request, String parameterName) throws BadRequestException {
+		/*
+		 * Spec:
+		 * 'The receiver MUST check that source and target are valid URLs
+		 * and are of schemes that are supported by the receiver.'
+		 */
+		String parameter = request.parameters().apply(parameterName);
+		if (parameter == null) {
+			throw new BadRequestException("invalid_request",
+				"Required parameter '%s' is missing.".formatted(parameterName));
+		}
+
+		URI uri;
+		try {
+			uri = new URI(parameter);
+		} catch (URISyntaxException e) {
+			throw new BadRequestException("invalid_request", "Invalid URL syntax: '%s'.".formatted(parameter), e);
+		}
+		if (!verificationService.isUriSchemeSupported(uri)) {
+			throw new BadRequestException("invalid_request",
+				"URL scheme '%s' is not supported.".formatted(uri.getScheme()));
+		}
+		// Hosts that are not valid hostnames (e.g. containing '_') end up as registry-based authority without a host.
+		if (uri.getHost() == null) {
+			throw new BadRequestException("invalid_request", "URL must have a valid host: '%s'.".formatted(parameter));
+		}
+		return uri;
+	}
+
+	/**
+	 * @return Number of Webmentions currently being received or verified in the background.
+	 */
+	long getInFlightCount() {
+		return inFlightCount.sum();
+	}
+
+	/**
+	 * @return Number of Webmentions waiting for background verification.
+	 */
+	long getQueuedCount() {
+		return queuedCount.sum();
+	}
+
+	@NotNull
+	static CloseableHttpClient createDefaultHttpClient(@NotNull FetchLimits fetchLimits) {
+		return createDefaultHttpClient(fetchLimits,
+			min(DEFAULT_MIN_RESPONSE_TIMEOUT, fetchLimits.responseTimeout()),
+			MetricsListener.noop());
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the minimum response timeout is not positive or exceeds the response timeout.
+	 */
+	@NotNull
+	static CloseableHttpClient createDefaultHttpClient(@NotNull FetchLimits fetchLimits,
+													   @NotNull Duration minResponseTimeout,
+													   @NotNull MetricsListener metricsListener) {
+		AdaptiveTimeouts adaptiveTimeouts = new AdaptiveTimeouts(minResponseTimeout,
+			fetchLimits.responseTimeout(),
+			ADAPTIVE_TIMEOUT_HOSTS);
+		HttpClientBuilder builder = HttpClients.custom()
+			.setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+				.setDefaultConnectionConfig(fetchLimits.createConnectionConfig())
+				.setDnsResolver(HttpClientInstrumentation.createDnsResolver(metricsListener))
+				.build())
+			.setDefaultRequestConfig(fetchLimits.createRequestConfig())
+			.setUserAgent(HttpUtils.createUserAgentString("webmention4j-server",
+				WebmentionReceiver.class.getPackage()));
+		HttpClientInstrumentation.instrument(builder, metricsListener);
+		adaptiveTimeouts.instrument(builder);
+		return builder.build();
+	}
+
+	private static Duration min(Duration a, Duration b) {
+		return a.compareTo(b) <= 0 ? a : b;
+	}
+
+	@NotNull
+	static ThreadFactory createDaemonThreadFactory(@NotNull String name) {
+		AtomicInteger threadCount = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, "%s-%d".formatted(name, threadCount.incrementAndGet()));
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	/**
+	 * Request to receive a Webmention.
+	 *
+	 * @param requestUrl    URL of the request without query, used for status URLs.
+	 * @param remoteAddress Address of the client.
+	 * @param contentType   Value of the 'Content-Type' header, if present.
+	 * @param parameters    Lookup of form parameters, returning null for missing ones.
+	 */
+	record Request(@NotNull String requestUrl,
+				   @NotNull String remoteAddress,
+				   @Nullable String contentType,
+				   @NotNull Function<String, String> parameters) {
+	}
+
+	/**
+	 * Response to send.
+	 *
+	 * @param status  HTTP status code.
+	 * @param body    Plain text body, or the error message if the status is an error, or null.
+	 * @param headers Headers to set.
+	 */
+	record Response(int status, @Nullable String body, @NotNull Map<String, String> headers) {
+
+		static Response of(int status) {
+			return new Response(status, null, Map.of());
+		}
+
+		static Response error(int status, @Nullable String message) {
+			return new Response(status, message, Map.of());
+		}
+
+		static Response error(int status, @Nullable String message, long retryAfterSeconds) {
+			return new Response(status, message, Map.of("Retry-After", String.valueOf(retryAfterSeconds)));
+		}
+
+		boolean isError() {
+			return status >= 400;
+		}
+	}
+
+	private static final class ServiceUnavailableException extends Exception {
+
+		@Serial
+		private static final long serialVersionUID = -3197346541286120475L;
+
+		/**
+		 * @param message User-facing error message.
+		 * @param cause   Exception cause.
+		 */
+		ServiceUnavailableException(String message, Throwable cause) {
+			super(message, cause);
+		}
+	}
+
+	private static final class TooManyRequestsException extends Exception {
+
+		@Serial
+		private static final long serialVersionUID = 2652094755720513580L;
+
+		private final String reason;
+		private final long retryAfterSeconds;
+
+		/**
+		 * @param reason            Reason code reported to the metrics listener.
+		 * @param message           User-facing error message.
+		 * @param retryAfterSeconds Seconds after which the client may retry.
+		 */
+		TooManyRequestsException(String reason, String message, long retryAfterSeconds) {
+			super(message);
+			this.reason = reason;
+			this.retryAfterSeconds = retryAfterSeconds;
+		}
+
+		String getReason() {
+			return reason;
+		}
+
+		long getRetryAfterSeconds() {
+			return retryAfterSeconds;
+		}
+	}
+
+	private static final class BadRequestException extends Exception {
+
+		@Serial
+		private static final long serialVersionUID = -8108083179786850494L;
+
+		private final String reason;
+
+		/**
+		 * @param reason  Reason code reported to the metrics listener.
+		 * @param message User-facing error message.
+		 */
+		BadRequestException(String reason, String message) {
+			super(message);
+			this.reason = reason;
+		}
+
+		/**
+		 * @param reason  Reason code reported to the metrics listener.
+		 * @param message User-facing error message.
+		 * @param cause   Exception cause.
+		 */
+		BadRequestException(String reason, String message, Throwable cause) {
+			super(message, cause);
+			this.reason = reason;
+		}
+
+		String getReason() {
+			return reason;
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package dev.rilling.webmention4j.server.internal;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Immutable matcher for host names, supporting exact hosts (e.g., {@code example.com}) and
+ * wildcards matching any subdomain (e.g., {@code *.example.com} matches {@code blog.example.com} and
+ * {@code a.blog.example.com}, but not {@code example.com} itself).
+ * <p>
+ * Patterns are stored in a trie of reversed labels, so lookup cost depends on the number of labels in the host,
+ * not on the number of patterns.
+ */
+public final class HostMatcher {
+	private static final String WILDCARD_PREFIX = "*.";
+
+	private final Node root;
+
+	private HostMatcher(Node root) {
+		this.root = root;
+	}
+
+	/**
+	 * Creates a matcher for the given patterns.
+	 *
+	 * @param patterns Exact hosts or wildcard patterns. Case-insensitive.
+	 * @return Matcher for these patterns.
+	 * @throws IllegalArgumentException if a pattern is invalid.
+	 */
+	@NotNull
+	public static HostMatcher of(@NotNull Collection<String> patterns) {
+		Node root = new Node();
+		for (String rawPattern : patterns) {
+			String pattern = normalize(rawPattern);
+			boolean wildcard = pattern.startsWith(WILDCARD_PREFIX);
+			String host = wildcard ? pattern.substring(WILDCARD_PREFIX.length()) : pattern;
+			if (host.isEmpty() || host.contains("*")) {
+				throw new IllegalArgumentException("Invalid host pattern: '%s'.".formatted(rawPattern));
+			}
+
+			Node node = root;
+			String[] labels = host.split("\\.", -1);
+			for (int i = labels.length - 1; i >= 0; i--) {
+				if (labels[i].isEmpty()) {
+					throw new IllegalArgumentException("Invalid host pattern: '%s'.".formatted(rawPattern));
+				}
+				node = node.getOrCreateChild(labels[i]);
+			}
+			if (wildcard) {
+				node.wildcard = true;
+			} else {
+				node.exact = true;
+			}
+		}
+		return new HostMatcher(root);
+	}
+
+	/**
+	 * Reads patterns from a file, one per line. Blank lines and lines starting with {@code #} are ignored.
+	 *
+	 * @param file File to read.
+	 * @return Matcher for these patterns.
+	 * @throws IOException if reading fails.
+	 */
+	@NotNull
+	public static HostMatcher read(@NotNull Path file) throws IOException {
+		List<String> patterns = Files.readAllLines(file, StandardCharsets.UTF_8)
+			.stream()
+			.map(String::strip)
+			.filter(line -> !line.isEmpty() && !line.startsWith("#"))
+			.toList();
+		try {
+			return of(patterns);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Could not parse host patterns in '%s'.".formatted(file), e);
+		}
+	}
+
+	/**
+	 * Checks if the host is matched by any pattern.
+	 *
+	 * @param host Host to check, may be null for URIs without host.
+	 * @return if the host is matched.
+	 */
+	public boolean matches(@Nullable String host) {
+		if (host == null || host.isEmpty()) {
+			return false;
+		}
+		String normalizedHost = normalize(host);
+
+		Node node = root;
+		int end = normalizedHost.length();
+		while (end > 0) {
+			int start = normalizedHost.lastIndexOf('.', end - 1) + 1;
+			// Only match wildcards if at least one label remains.
+			if (node.wildcard) {
+				return true;
+			}
+			node = node.children.get(normalizedHost.substring(start, end));
+			if (node == null) {
+				return false;
+			}
+			end = start - 1;
+		}
+		return node.exact;
+	}
+
+	private static String normalize(String host) {
+		String lowerCase = host.strip().toLowerCase(Locale.ROOT);
+		// Fully qualified form is equivalent.
+		if (lowerCase.endsWith(".")) {
+			return lowerCase.substring(0, lowerCase.length() - 1);
+		}
+		return lowerCase;
+	}
+
+	private static final class Node {
+		// Most nodes are leaves, avoid allocating a map for those.
+		private Map<String, Node> children = Map.of();
+		private boolean exact = false;
+		private boolean wildcard = false;
+
+		private Node getOrCreateChild(String label) {
+			if (children.isEmpty()) {
+				children = new HashMap<>(2);
+			}
+			return children.computeIfAbsent(label, ignored -> new Node());
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package dev.rilling.webmention4j.server.internal;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.function.Function;
+
+/**
+ * Typed access to configuration parameters, e.g. servlet init parameters.
+ */
+public final class InitParameters {
+	private final Function<String, String> lookup;
+
+	/**
+	 * @param lookup Returns the value of the parameter with the given name, or null if it is not set.
+	 */
+	public InitParameters(@NotNull Function<String, String> lookup) {
+		this.lookup = lookup;
+	}
+
+	/**
+	 * @return The parameter value, or null if it is not set.
+	 */
+	@Nullable
+	public String getString(@NotNull String name) {
+		return lookup.apply(name);
+	}
+
+	/**
+	 * @return The parameter value, or the default if it is not set.
+	 * @throws IllegalArgumentException if the value is not a number.
+	 */
+	public long getLong(@NotNull String name, long defaultValue) {
+		String value = getString(name);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Init parameter '%s' is not a number: '%s'.".formatted(name, value), e);
+		}
+	}
+
+	/**
+	 * @return The parameter value, or the default if it is not set.
+	 * @throws IllegalArgumentException if the value is not a number.
+	 */
+	public double getDouble(@NotNull String name, double defaultValue) {
+		String value = getString(name);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Double.parseDouble(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Init parameter '%s' is not a number: '%s'.".formatted(name, value), e);
+		}
+	}
+
+	/**
+	 * @return The parameter value, or the default if it is not set.
+	 * @throws IllegalArgumentException if the value is neither {@code true} nor {@code false}.
+	 */
+	public boolean getBoolean(@NotNull String name, boolean defaultValue) {
+		String value = getString(name);
+		if (value == null) {
+			return defaultValue;
+		}
+		if ("true".equalsIgnoreCase(value)) {
+			return true;
+		}
+		if ("false".equalsIgnoreCase(value)) {
+			return false;
+		}
+		throw new IllegalArgumentException("Init parameter '%s' is not a boolean: '%s'.".formatted(name, value));
+	}
+
+	/**
+	 * @return The parameter value, or the default if it is not set.
+	 * @throws IllegalArgumentException if the value is not an ISO-8601 duration.
+	 */
+	@NotNull
+	public Duration getDuration(@NotNull String name, @NotNull Duration defaultValue) {
+		String value = getString(name);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Duration.parse(value);
+		} catch (DateTimeParseException e) {
+			throw new IllegalArgumentException("Init parameter '%s' is not an ISO-8601 duration: '%s'.".formatted(name,
+				value), e);
+		}
+	}
+}
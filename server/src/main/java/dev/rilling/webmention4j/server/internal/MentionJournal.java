@@ -0,0 +1,197 @@
+package dev.rilling.webmention4j.server.internal;
+
+import dev.rilling.webmention4j.common.Webmention;
+import dev.rilling.webmention4j.common.internal.SegmentLog;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only journal of accepted Webmentions that have not been processed yet, allowing them to be recovered after
+ * a restart.
+ * <p>
+ * Each accepted Webmention is written as a record that is forced to disk before {@link #append(Webmention)} returns.
+ * Concurrent appends share a single {@code fsync} (group commit). Completion is recorded as a separate record that
+ * is not forced, as losing it only means the Webmention is processed again.
+ * <p>
+ * Records are written to a {@link SegmentLog}. Once its segment exceeds the configured size, a new segment is started
+ * containing only the pending Webmentions, and the old segment is deleted. Disk usage is therefore bounded by the segment size
+ * plus the size of the pending Webmentions.
+ */
+public final class MentionJournal implements Closeable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(MentionJournal.class);
+
+	private static final byte TYPE_ACCEPTED = 1;
+	private static final byte TYPE_COMPLETED = 2;
+	private static final byte TYPE_NEXT_ID = 3;
+
+	private final Object writeLock = new Object();
+
+	// Guarded by writeLock.
+	private final Map<Long, Webmention> pending = new LinkedHashMap<>();
+	private long nextId;
+	// Set while opening.
+	private SegmentLog log;
+
+	private final List<Entry> recovered;
+
+	private MentionJournal() {
+		recovered = new ArrayList<>();
+	}
+
+	/**
+	 * Opens the journal, recovering pending Webmentions from existing segments.
+	 *
+	 * @param directory    Directory to store segments in. Created if it does not exist.
+	 * @param segmentBytes Size after which a new segment is started.
+	 * @return The opened journal.
+	 * @throws IOException if I/O fails.
+	 */
+	@NotNull
+	public static MentionJournal open(@NotNull Path directory, long segmentBytes) throws IOException {
+		MentionJournal journal = new MentionJournal();
+		synchronized (journal.writeLock) {
+			journal.log = SegmentLog.open(directory,
+				"journal",
+				segmentBytes,
+				journal::applyRecord,
+				journal::writePending);
+			for (Map.Entry<Long, Webmention> entry : journal.pending.entrySet()) {
+				journal.recovered.add(new Entry(entry.getKey(), entry.getValue()));
+			}
+		}
+		if (!journal.recovered.isEmpty()) {
+			LOGGER.info("Recovered {} pending Webmention(s) from journal '{}'.", journal.recovered.size(), directory);
+		}
+		return journal;
+	}
+
+	/**
+	 * @return Webmentions that were pending when the journal was opened, in order of acceptance.
+	 */
+	@NotNull
+	public List<Entry> getRecovered() {
+		return List.copyOf(recovered);
+	}
+
+	/**
+	 * Durably records an accepted Webmention.
+	 *
+	 * @param webmention Webmention to record.
+	 * @return ID of the record, to be passed to {@link #complete(long)}.
+	 * @throws IOException if I/O fails.
+	 */
+	public long append(@NotNull Webmention webmention) throws IOException {
+		long id;
+		long count;
+		synchronized (writeLock) {
+			id = nextId++;
+			count = log.append(encodeAccepted(id, webmention));
+			pending.put(id, webmention);
+			log.rollIfNeeded();
+		}
+		log.sync(count);
+		return id;
+	}
+
+	/**
+	 * Records that a Webmention was processed and does not need to be recovered anymore.
+	 *
+	 * @param id ID returned by {@link #append(Webmention)}.
+	 * @throws IOException if I/O fails.
+	 */
+	public void complete(long id) throws IOException {
+		synchronized (writeLock) {
+			if (pending.remove(id) == null) {
+				return;
+			}
+			log.append(encodeCompleted(id));
+			log.rollIfNeeded();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		synchronized (writeLock) {
+			log.close();
+		}
+	}
+
+	// Must hold writeLock.
+	private void writePending(SegmentLog.Writer writer) throws IOException {
+		// Keeps IDs from being reused after a restart if all Webmentions were completed.
+		writer.write(encodeNextId(nextId));
+		for (Map.Entry<Long, Webmention> entry : pending.entrySet()) {
+			writer.write(encodeAccepted(entry.getKey(), entry.getValue()));
+		}
+	}
+
+	private void applyRecord(ByteBuffer payload, Path file) {
+		byte type = payload.get();
+		long id = payload.getLong();
+		if (type == TYPE_NEXT_ID) {
+			nextId = Math.max(nextId, id);
+			return;
+		}
+		nextId = Math.max(nextId, id + 1);
+		if (type == TYPE_ACCEPTED) {
+			try {
+				pending.put(id, new Webmention(new URI(readString(payload)), new URI(readString(payload))));
+			} catch (URISyntaxException | IllegalArgumentException e) {
+				LOGGER.warn("Invalid Webmention in journal segment '{}', skipping.", file, e);
+			}
+		} else if (type == TYPE_COMPLETED) {
+			pending.remove(id);
+		} else {
+			LOGGER.warn("Unknown record type {} in journal segment '{}', skipping.", type, file);
+		}
+	}
+
+	private static byte[] encodeAccepted(long id, Webmention webmention) {
+		byte[] source = webmention.source().toString().getBytes(StandardCharsets.UTF_8);
+		byte[] target = webmention.target().toString().getBytes(StandardCharsets.UTF_8);
+		ByteBuffer payload = ByteBuffer.allocate(1 + Long.BYTES + Integer.BYTES + source.length + Integer.BYTES +
+												 target.length);
+		payload.put(TYPE_ACCEPTED).putLong(id);
+		payload.putInt(source.length).put(source);
+		payload.putInt(target.length).put(target);
+		return payload.array();
+	}
+
+	private static byte[] encodeCompleted(long id) {
+		ByteBuffer payload = ByteBuffer.allocate(1 + Long.BYTES);
+		payload.put(TYPE_COMPLETED).putLong(id);
+		return payload.array();
+	}
+
+	private static byte[] encodeNextId(long nextId) {
+		ByteBuffer payload = ByteBuffer.allocate(1 + Long.BYTES);
+		payload.put(TYPE_NEXT_ID).putLong(nextId);
+		return payload.array();
+	}
+
+	private static String readString(ByteBuffer payload) {
+		byte[] bytes = new byte[payload.getInt()];
+		payload.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param id         ID of the record.
+	 * @param webmention The accepted Webmention.
+	 */
+	public record Entry(long id, @NotNull Webmention webmention) {
+	}
+}
@@ -0,0 +1,175 @@
+package dev.rilling.webmention4j.server.internal;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Collects items submitted from many threads and passes them to a sink in batches.
+ * A batch is flushed once it reaches the maximum size, or once the maximum delay passed since its first item was
+ * submitted. Under load, batches therefore grow large, while single items are delayed by at most the maximum delay.
+ *
+ * @param <T> Item type.
+ */
+public final class MicroBatcher<T> implements AutoCloseable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(MicroBatcher.class);
+
+	private static final long IDLE_POLL_MILLIS = 100;
+	private static final int QUEUE_CAPACITY_PER_BATCH = 16;
+
+	private final int maxBatchSize;
+	private final long maxDelayNanos;
+	private final Consumer<List<T>> sink;
+
+	private final BlockingQueue<Pending<T>> queue;
+	private final Thread flusher;
+	private volatile boolean running = true;
+
+	/**
+	 * Constructor. Starts the flushing thread.
+	 *
+	 * @param maxBatchSize  Maximum number of items passed to the sink at once.
+	 * @param maxDelay      Maximum time to wait for more items before flushing.
+	 * @param sink          Sink to pass batches to. Called from a single thread.
+	 * @param threadFactory Factory for the flushing thread.
+	 */
+	public MicroBatcher(int maxBatchSize,
+						@NotNull Duration maxDelay,
+						@NotNull Consumer<List<T>> sink,
+						@NotNull ThreadFactory threadFactory) {
+		if (maxBatchSize < 1) {
+			throw new IllegalArgumentException("Batch size must be positive.");
+		}
+		if (maxDelay.isNegative()) {
+			throw new IllegalArgumentException("Delay must not be negative.");
+		}
+		this.maxBatchSize = maxBatchSize;
+		maxDelayNanos = maxDelay.toNanos();
+		this.sink = sink;
+		queue = new LinkedBlockingQueue<>(maxBatchSize * QUEUE_CAPACITY_PER_BATCH);
+		flusher = threadFactory.newThread(this::run);
+		flusher.start();
+	}
+
+	/**
+	 * Submits an item, blocking while too many items are waiting to be flushed.
+	 *
+	 * @param item Item to submit.
+	 * @return Future completing once the batch containing the item was passed to the sink, or completing
+	 * exceptionally if the sink failed or the batcher is closed.
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	@NotNull
+	public CompletableFuture<Void> submit(@NotNull T item) throws InterruptedException {
+		Pending<T> pending = new Pending<>(item, new CompletableFuture<>());
+		// Waits in steps instead of blocking indefinitely, so that closing is noticed while the queue is full.
+		while (running) {
+			if (queue.offer(pending, IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+				// If closing started meanwhile, the item may have missed the final flush. If it can no longer be
+				// removed, the flusher or #close took it and completes its future.
+				if (!running && queue.remove(pending)) {
+					break;
+				}
+				return pending.future;
+			}
+		}
+		pending.future.completeExceptionally(new RejectedExecutionException("Batcher is closed."));
+		return pending.future;
+	}
+
+	/**
+	 * Stops accepting items, and waits for remaining items to be flushed.
+	 * If interrupted while waiting, the interrupt flag is restored and remaining items are flushed in the background.
+	 */
+	@Override
+	public void close() {
+		running = false;
+		try {
+			flusher.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		// Items submitted concurrently with closing may have missed the final flush.
+		Pending<T> pending;
+		while ((pending = queue.poll()) != null) {
+			pending.future.completeExceptionally(new RejectedExecutionException("Batcher is closed."));
+		}
+	}
+
+	private void run() {
+		List<Pending<T>> batch = new ArrayList<>(maxBatchSize);
+		boolean interrupted = false;
+		while (running || !queue.isEmpty()) {
+			try {
+				collect(batch);
+			} catch (InterruptedException e) {
+				// Flag is only restored at the end, so that remaining items can still be flushed.
+				LOGGER.warn("Interrupted while collecting batch, flushing remaining items.");
+				interrupted = true;
+				running = false;
+			}
+			if (!batch.isEmpty()) {
+				flush(batch);
+				batch.clear();
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void collect(List<Pending<T>> batch) throws InterruptedException {
+		Pending<T> first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+		if (first == null) {
+			return;
+		}
+		batch.add(first);
+
+		long deadline = System.nanoTime() + maxDelayNanos;
+		while (batch.size() < maxBatchSize) {
+			queue.drainTo(batch, maxBatchSize - batch.size());
+			long remaining = deadline - System.nanoTime();
+			if (batch.size() >= maxBatchSize || remaining <= 0) {
+				return;
+			}
+			Pending<T> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+			if (next == null) {
+				return;
+			}
+			batch.add(next);
+		}
+	}
+
+	private void flush(List<Pending<T>> batch) {
+		List<T> items = new ArrayList<>(batch.size());
+		for (Pending<T> pending : batch) {
+			items.add(pending.item);
+		}
+		try {
+			sink.accept(items);
+		} catch (RuntimeException e) {
+			for (Pending<T> pending : batch) {
+				pending.future.completeExceptionally(e);
+			}
+			return;
+		}
+		for (Pending<T> pending : batch) {
+			pending.future.complete(null);
+		}
+	}
+
+	private record Pending<T>(T item, CompletableFuture<Void> future) {
+	}
+}
@@ -0,0 +1,152 @@
+package dev.rilling.webmention4j.server.internal;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free token-bucket rate limiter keyed by arbitrary strings (e.g., hosts or IP addresses).
+ * <p>
+ * Buckets are stored in a fixed number of slots selected by a seeded hash of the key, so memory usage is bounded
+ * regardless of how many distinct keys are seen. If two active keys land in the same slot, they share a bucket,
+ * which can only make limiting stricter, never looser. Buckets that have been idle long enough to be full again are
+ * indistinguishable from new ones, and are evicted incrementally on acquisition.
+ */
+public final class RateLimiter {
+	private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+	private final double permitsPerSecond;
+	private final double burst;
+	private final long idleNanos;
+	private final LongSupplier nanoTime;
+
+	private final int seed;
+	private final AtomicReferenceArray<Bucket> slots;
+	private final int mask;
+	private final AtomicInteger evictionCursor = new AtomicInteger();
+
+	private final LongAdder rejectedCount = new LongAdder();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param permitsPerSecond Rate at which permits are replenished per key.
+	 * @param burst            Maximum number of permits a key can accumulate. Must be at least 1.
+	 * @param maxSlots         Maximum number of buckets to hold. Rounded up to a power of two.
+	 */
+	public RateLimiter(double permitsPerSecond, double burst, int maxSlots) {
+		this(permitsPerSecond, burst, maxSlots, System::nanoTime);
+	}
+
+	RateLimiter(double permitsPerSecond, double burst, int maxSlots, @NotNull LongSupplier nanoTime) {
+		if (permitsPerSecond <= 0) {
+			throw new IllegalArgumentException("Permits per second must be positive.");
+		}
+		if (burst < 1) {
+			throw new IllegalArgumentException("Burst must be at least 1.");
+		}
+		if (maxSlots < 1 || maxSlots > 1 << 30) {
+			throw new IllegalArgumentException("Slot count must be between 1 and 2^30.");
+		}
+		this.permitsPerSecond = permitsPerSecond;
+		this.burst = burst;
+		this.nanoTime = nanoTime;
+		idleNanos = (long) Math.ceil(burst / permitsPerSecond * NANOS_PER_SECOND);
+
+		int size = Integer.highestOneBit(maxSlots);
+		if (size < maxSlots) {
+			size <<= 1;
+		}
+		slots = new AtomicReferenceArray<>(size);
+		mask = size - 1;
+		// Random seed so that colliding keys cannot be precomputed by clients.
+		seed = new SecureRandom().nextInt();
+	}
+
+	/**
+	 * Attempts to take a permit for the key.
+	 *
+	 * @param key Key to limit, e.g., a host.
+	 * @return if a permit was available.
+	 */
+	public boolean tryAcquire(@NotNull String key) {
+		long now = nanoTime.getAsLong();
+		evictNextIfIdle(now);
+
+		int hash = hash(key);
+		int index = hash & mask;
+		while (true) {
+			Bucket current = slots.get(index);
+			Bucket next;
+			if (current == null || (current.keyHash != hash && isIdle(current, now))) {
+				next = new Bucket(hash, burst - 1, now);
+			} else {
+				double tokens = refill(current, now);
+				if (tokens < 1) {
+					rejectedCount.increment();
+					return false;
+				}
+				next = new Bucket(current.keyHash, tokens - 1, now);
+			}
+			if (slots.compareAndSet(index, current, next)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * @return Time in seconds until a key that was rejected will have a permit again, rounded up.
+	 */
+	public long getRetryAfterSeconds() {
+		return (long) Math.ceil(1 / permitsPerSecond);
+	}
+
+	/**
+	 * @return How many acquisitions were rejected.
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.sum();
+	}
+
+	private double refill(Bucket bucket, long now) {
+		double elapsedSeconds = (double) Math.max(now - bucket.updatedNanos, 0) / NANOS_PER_SECOND;
+		return Math.min(burst, bucket.tokens + elapsedSeconds * permitsPerSecond);
+	}
+
+	private boolean isIdle(Bucket bucket, long now) {
+		return now - bucket.updatedNanos >= idleNanos;
+	}
+
+	private void evictNextIfIdle(long now) {
+		int index = evictionCursor.getAndIncrement() & mask;
+		Bucket bucket = slots.get(index);
+		if (bucket != null && isIdle(bucket, now)) {
+			// If this fails, the bucket was just used, and is no longer idle anyway.
+			slots.compareAndSet(index, bucket, null);
+		}
+	}
+
+	private int hash(String key) {
+		// Murmur3-style mixing of the characters, using the instance seed.
+		int h = seed;
+		for (int i = 0; i < key.length(); i++) {
+			int k = key.charAt(i) * 0xcc9e2d51;
+			k = Integer.rotateLeft(k, 15) * 0x1b873593;
+			h = Integer.rotateLeft(h ^ k, 13) * 5 + 0xe6546b64;
+		}
+		h ^= key.length();
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	private record Bucket(int keyHash, double tokens, long updatedNanos) {
+	}
+}
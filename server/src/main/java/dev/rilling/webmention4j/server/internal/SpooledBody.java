@@ -0,0 +1,138 @@
+package dev.rilling.webmention4j.server.internal;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Re-readable copy of a response body.
+ * Bodies up to a threshold are kept in memory, larger ones are written to a temporary file which is then
+ * memory-mapped, so they do not occupy heap space.
+ */
+public final class SpooledBody implements Closeable {
+	private static final SpooledBody EMPTY = new SpooledBody(ByteBuffer.allocate(0), null);
+
+	private final ByteBuffer buffer;
+	@Nullable
+	private final Path file;
+
+	private SpooledBody(ByteBuffer buffer, @Nullable Path file) {
+		this.buffer = buffer.asReadOnlyBuffer();
+		this.file = file;
+	}
+
+	/**
+	 * @return An empty body.
+	 */
+	@NotNull
+	public static SpooledBody empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * Reads the stream to its end.
+	 *
+	 * @param inputStream          Stream to read. Will not be closed.
+	 * @param memoryThresholdBytes Maximum size of bodies to keep in memory.
+	 * @return The body.
+	 * @throws IOException if I/O fails.
+	 */
+	@NotNull
+	public static SpooledBody spool(@NotNull InputStream inputStream, int memoryThresholdBytes) throws IOException {
+		byte[] head = inputStream.readNBytes(memoryThresholdBytes);
+		int next = inputStream.read();
+		if (next == -1) {
+			return new SpooledBody(ByteBuffer.wrap(head), null);
+		}
+
+		Path file = Files.createTempFile("webmention4j-", ".body");
+		try {
+			try (OutputStream outputStream = Files.newOutputStream(file)) {
+				outputStream.write(head);
+				outputStream.write(next);
+				inputStream.transferTo(outputStream);
+			}
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				// Mapping stays valid after the channel is closed.
+				return new SpooledBody(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), file);
+			}
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(file);
+			throw e;
+		}
+	}
+
+	/**
+	 * @return Size in bytes.
+	 */
+	public long size() {
+		return buffer.capacity();
+	}
+
+	/**
+	 * @return A read-only view of the body.
+	 */
+	@NotNull
+	public ByteBuffer asByteBuffer() {
+		return buffer.duplicate();
+	}
+
+	/**
+	 * @return A new stream reading the body from the start.
+	 */
+	@NotNull
+	public InputStream openStream() {
+		return new ByteBufferInputStream(asByteBuffer());
+	}
+
+	/**
+	 * Deletes the temporary file, if one was used.
+	 * On most platforms, the body can still be read afterwards until the mapping is garbage collected.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (file != null) {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	private static final class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte @NotNull [] b, int off, int len) {
+			if (len == 0) {
+				return 0;
+			}
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			int count = Math.min(len, buffer.remaining());
+			buffer.get(b, off, count);
+			return count;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package dev.rilling.webmention4j.server.internal;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free, size-bounded store of the processing status of Webmentions, keyed by sequential IDs.
+ * <p>
+ * IDs are mapped to a fixed number of slots, so each new ID evicts the entry that is {@code capacity} IDs older.
+ * The status of evicted entries is unknown.
+ * <p>
+ * Entries are looked up by an opaque token containing a random part, so that the status of other senders' Webmentions
+ * cannot be enumerated. Tokens are not persisted, so they are unknown after a restart.
+ */
+public final class StatusStore {
+
+	private final SecureRandom random = new SecureRandom();
+
+	private final AtomicReferenceArray<Slot> slots;
+	private final int mask;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param capacity Number of entries to keep. Rounded up to a power of two.
+	 */
+	public StatusStore(int capacity) {
+		if (capacity < 1 || capacity > 1 << 30) {
+			throw new IllegalArgumentException("Capacity must be between 1 and 2^30.");
+		}
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size <<= 1;
+		}
+		slots = new AtomicReferenceArray<>(size);
+		mask = size - 1;
+	}
+
+	/**
+	 * Adds a new entry, evicting the previous entry in its slot.
+	 *
+	 * @param id     ID of the Webmention.
+	 * @param status Initial status.
+	 * @return Token to look up the entry with.
+	 */
+	@NotNull
+	public String put(long id, @NotNull Status status) {
+		long secret = random.nextLong();
+		slots.set(slotIndex(id), new Slot(new Entry(id, status, null), secret));
+		return "%x-%016x".formatted(id, secret);
+	}
+
+	/**
+	 * Updates an existing entry. Does nothing if the entry was evicted in the meantime.
+	 *
+	 * @param id      ID of the Webmention.
+	 * @param status  New status.
+	 * @param message Optional user-facing message, e.g., the rejection reason.
+	 */
+	public void update(long id, @NotNull Status status, @Nullable String message) {
+		int index = slotIndex(id);
+		Entry next = new Entry(id, status, message);
+		while (true) {
+			Slot current = slots.get(index);
+			if (current == null || current.entry.id != id ||
+				slots.compareAndSet(index, current, new Slot(next, current.secret))) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Removes an entry. Does nothing if the entry was evicted in the meantime.
+	 *
+	 * @param id ID of the Webmention.
+	 */
+	public void remove(long id) {
+		int index = slotIndex(id);
+		Slot current = slots.get(index);
+		while (current != null && current.entry.id == id && !slots.compareAndSet(index, current, null)) {
+			current = slots.get(index);
+		}
+	}
+
+	/**
+	 * @param token Token returned by {@link #put(long, Status)}.
+	 * @return The entry, or null if it is unknown or was evicted.
+	 * @throws IllegalArgumentException if the token is malformed.
+	 */
+	@Nullable
+	public Entry get(@NotNull String token) {
+		int separator = token.indexOf('-');
+		if (separator < 0) {
+			throw new IllegalArgumentException("Malformed token.");
+		}
+		long id = Long.parseUnsignedLong(token.substring(0, separator), 16);
+		long secret = Long.parseUnsignedLong(token.substring(separator + 1), 16);
+
+		Slot slot = slots.get(slotIndex(id));
+		if (slot == null || slot.entry.id != id || slot.secret != secret) {
+			return null;
+		}
+		return slot.entry;
+	}
+
+	private int slotIndex(long id) {
+		return (int) (id & mask);
+	}
+
+	/**
+	 * @param id      ID of the Webmention.
+	 * @param status  Current status.
+	 * @param message Optional user-facing message, e.g., the rejection reason.
+	 */
+	public record Entry(long id, @NotNull Status status, @Nullable String message) {
+	}
+
+	private record Slot(Entry entry, long secret) {
+	}
+
+	public enum Status {
+		/**
+		 * Waiting for verification.
+		 */
+		QUEUED,
+		/**
+		 * Verification in progress.
+		 */
+		VERIFYING,
+		/**
+		 * Verified and handled.
+		 */
+		ACCEPTED,
+		/**
+		 * Verification failed or could not be performed.
+		 */
+		REJECTED
+	}
+}
@@ -0,0 +1,147 @@
+package dev.rilling.webmention4j.server.internal;
+
+import dev.rilling.webmention4j.common.Webmention;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free, size-bounded cache of recent verification outcomes, allowing repeated identical Webmentions to be
+ * answered without fetching the source again.
+ * <p>
+ * Entries are stored in a fixed number of slots selected by the hash of the Webmention; a new entry replaces
+ * whichever entry occupied its slot. Entries older than the TTL are stale, but keep their validators
+ * ({@code ETag}/{@code Last-Modified}) so that the source can be revalidated with a conditional request.
+ */
+public final class VerificationCache {
+
+	private final long ttlNanos;
+	private final LongSupplier nanoTime;
+
+	private final AtomicReferenceArray<Entry> slots;
+	private final int mask;
+
+	private final LongAdder hitCount = new LongAdder();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param capacity Number of entries to keep. Rounded up to a power of two.
+	 * @param ttl      Time for which an outcome is used without contacting the source.
+	 */
+	public VerificationCache(int capacity, @NotNull Duration ttl) {
+		this(capacity, ttl, System::nanoTime);
+	}
+
+	VerificationCache(int capacity, @NotNull Duration ttl, @NotNull LongSupplier nanoTime) {
+		if (capacity < 1 || capacity > 1 << 30) {
+			throw new IllegalArgumentException("Capacity must be between 1 and 2^30.");
+		}
+		if (ttl.isNegative()) {
+			throw new IllegalArgumentException("TTL must not be negative.");
+		}
+		ttlNanos = ttl.toNanos();
+		this.nanoTime = nanoTime;
+
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size <<= 1;
+		}
+		slots = new AtomicReferenceArray<>(size);
+		mask = size - 1;
+	}
+
+	/**
+	 * @param webmention Webmention to look up.
+	 * @return The cached entry, fresh or stale, or null if there is none.
+	 */
+	@Nullable
+	public Entry get(@NotNull Webmention webmention) {
+		Entry entry = slots.get(slotIndex(webmention));
+		if (entry == null || !entry.webmention.equals(webmention)) {
+			return null;
+		}
+		return entry;
+	}
+
+	/**
+	 * @param entry Entry to check.
+	 * @return if the entry may be used without contacting the source. Counts as hit if so.
+	 */
+	public boolean isFresh(@NotNull Entry entry) {
+		boolean fresh = nanoTime.getAsLong() - entry.verifiedNanos < ttlNanos;
+		if (fresh) {
+			hitCount.increment();
+		}
+		return fresh;
+	}
+
+	/**
+	 * Caches an outcome.
+	 *
+	 * @param webmention   Verified Webmention.
+	 * @param valid        If verification passed.
+	 * @param etag         'ETag' of the source response, if any.
+	 * @param lastModified 'Last-Modified' of the source response, if any.
+	 */
+	public void put(@NotNull Webmention webmention,
+					boolean valid,
+					@Nullable String etag,
+					@Nullable String lastModified) {
+		slots.set(slotIndex(webmention), new Entry(webmention, valid, etag, lastModified, nanoTime.getAsLong()));
+	}
+
+	/**
+	 * Removes the entry of a Webmention, if any, so that its source is fetched again unconditionally.
+	 *
+	 * @param webmention Webmention to remove.
+	 */
+	public void remove(@NotNull Webmention webmention) {
+		int index = slotIndex(webmention);
+		Entry entry = slots.get(index);
+		if (entry != null && entry.webmention.equals(webmention)) {
+			// Does not remove an entry that replaced it concurrently.
+			slots.compareAndSet(index, entry, null);
+		}
+	}
+
+	/**
+	 * Marks an entry as fresh again after the source was revalidated as unchanged.
+	 *
+	 * @param entry Entry to refresh.
+	 */
+	public void refresh(@NotNull Entry entry) {
+		put(entry.webmention, entry.valid, entry.etag, entry.lastModified);
+	}
+
+	/**
+	 * @return How many lookups were answered without contacting the source.
+	 */
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	private int slotIndex(Webmention webmention) {
+		int h = webmention.hashCode();
+		// Spread higher bits, as the slot count is a power of two.
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	/**
+	 * @param webmention    Verified Webmention.
+	 * @param valid         If verification passed.
+	 * @param etag          'ETag' of the source response, if any.
+	 * @param lastModified  'Last-Modified' of the source response, if any.
+	 * @param verifiedNanos {@link System#nanoTime()} of the verification.
+	 */
+	public record Entry(@NotNull Webmention webmention,
+						boolean valid,
+						@Nullable String etag,
+						@Nullable String lastModified,
+						long verifiedNanos) {
+	}
+}
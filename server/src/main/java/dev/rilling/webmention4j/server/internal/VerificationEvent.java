@@ -0,0 +1,71 @@
+package dev.rilling.webmention4j.server.internal;
+
+import dev.rilling.webmention4j.common.Webmention;
+import dev.rilling.webmention4j.common.internal.EventUris;
+import dev.rilling.webmention4j.common.internal.PhaseTimer;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * JFR event emitted by {@link VerificationService#verify} and thereby
+ * {@link VerificationService#isWebmentionValid}.
+ */
+@Name(VerificationEvent.NAME)
+@Label("Webmention Verification")
+@Description("Fetching a source and checking it for a link to the target")
+@Category({"webmention4j", "Server"})
+@StackTrace(false)
+final class VerificationEvent extends jdk.jfr.Event {
+	static final String NAME = "dev.rilling.webmention4j.Verification";
+
+	@Label("Source")
+	String source;
+
+	@Label("Target")
+	String target;
+
+	@Label("Verifier")
+	@Description("Media type of the verifier used, if the source could be fetched")
+	String verifier;
+
+	@Label("Bytes Read")
+	@DataAmount
+	long bytesRead;
+
+	@Label("Outcome")
+	@Description("'valid', 'invalid', 'not_modified', 'gone', 'limit_exceeded' or 'error'")
+	String outcome;
+
+	/**
+	 * Ends and commits this event, if enabled.
+	 *
+	 * @param verification The result, or null if verification failed.
+	 */
+	void complete(@NotNull Webmention webmention,
+				  @Nullable VerificationService.Verification verification,
+				  @NotNull PhaseTimer timer) {
+		end();
+		if (!shouldCommit()) {
+			return;
+		}
+		source = EventUris.format(webmention.source());
+		target = EventUris.format(webmention.target());
+		bytesRead = timer.getBytes();
+		if (verification == null) {
+			outcome = timer.getOutcome();
+		} else if (verification.notModified()) {
+			outcome = "not_modified";
+		} else if (verification.gone()) {
+			outcome = "gone";
+		} else {
+			outcome = verification.valid() ? "valid" : "invalid";
+		}
+		commit();
+	}
+}
@@ -1,31 +1,84 @@
 package dev.rilling.webmention4j.server.internal;
 
 import dev.rilling.webmention4j.common.Webmention;
+import dev.rilling.webmention4j.common.internal.FetchLimitExceededException;
+import dev.rilling.webmention4j.common.internal.FetchLimits;
 import dev.rilling.webmention4j.common.internal.HttpUtils;
+import dev.rilling.webmention4j.common.internal.PhaseTimer;
 import dev.rilling.webmention4j.common.internal.UriUtils;
+import dev.rilling.webmention4j.common.metrics.MetricsListener;
+import dev.rilling.webmention4j.common.metrics.Phase;
 import dev.rilling.webmention4j.server.internal.verifier.Verifier;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.core5.http.*;
-import org.apache.hc.core5.http.io.support.ClassicRequestBuilder;
+import org.apache.hc.core5.http.io.entity.BasicHttpEntity;
 import org.apache.hc.core5.http.message.BasicHeader;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serial;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
 public class VerificationService {
 	private static final Logger LOGGER = LoggerFactory.getLogger(VerificationService.class);
 
+	public static final int DEFAULT_SPOOL_THRESHOLD_BYTES = 256 * 1024;
+
 	private final List<Verifier> verifiers;
+	private final FetchLimits fetchLimits;
+	private final int spoolThresholdBytes;
+	private final MetricsListener metricsListener;
+
+	private final LongAdder limitExceededCount = new LongAdder();
 
+	/**
+	 * Constructor using {@link FetchLimits#DEFAULT}.
+	 */
 	public VerificationService(@NotNull List<Verifier> verifiers) {
+		this(verifiers, FetchLimits.DEFAULT);
+	}
+
+	/**
+	 * Constructor using {@link #DEFAULT_SPOOL_THRESHOLD_BYTES}.
+	 */
+	public VerificationService(@NotNull List<Verifier> verifiers, @NotNull FetchLimits fetchLimits) {
+		this(verifiers, fetchLimits, DEFAULT_SPOOL_THRESHOLD_BYTES);
+	}
+
+	/**
+	 * @param spoolThresholdBytes Maximum size of source bodies to keep in memory, larger ones are spooled to a
+	 *                            temporary file.
+	 */
+	public VerificationService(@NotNull List<Verifier> verifiers,
+							   @NotNull FetchLimits fetchLimits,
+							   int spoolThresholdBytes) {
+		this(verifiers, fetchLimits, spoolThresholdBytes, MetricsListener.noop());
+	}
+
+	/**
+	 * @param metricsListener Listener to report {@link Phase#SOURCE_FETCH} and {@link Phase#VERIFY} to.
+	 */
+	public VerificationService(@NotNull List<Verifier> verifiers,
+							   @NotNull FetchLimits fetchLimits,
+							   int spoolThresholdBytes,
+							   @NotNull MetricsListener metricsListener) {
 		this.verifiers = List.copyOf(verifiers);
+		this.fetchLimits = fetchLimits;
+		this.spoolThresholdBytes = spoolThresholdBytes;
+		this.metricsListener = metricsListener;
 	}
 
 	/**
@@ -41,36 +94,111 @@ public class VerificationService {
 	 * @param httpClient HTTP client.
 	 *                   Must be configured to follow redirects.
 	 *                   Should be configured to use a fitting UA string.
+	 *                   Should be configured with the connect and response timeouts of the {@link FetchLimits}.
 	 * @param webmention Webmention to verify.
 	 * @return if the verification of the Webmention passes,
 	 * @throws IOException                     if I/O fails.
 	 * @throws UnsupportedContentTypeException if verification cannot be performed due to an unsupported content type.
+	 * @throws FetchLimitExceededException     if fetching the source exceeds the {@link FetchLimits}.
 	 */
-	//Spec: https://www.w3.org/TR/webmention/#webmention-verification
 	public boolean isWebmentionValid(@NotNull CloseableHttpClient httpClient, @NotNull Webmention webmention)
 		throws IOException, UnsupportedContentTypeException {
+		Verification verification = verify(httpClient, webmention);
+		verification.body().close();
+		return verification.valid();
+	}
+
+	/**
+	 * Verifies if the source URL mentions the target URL, keeping the fetched source so that it can be used without
+	 * fetching it again.
+	 *
+	 * @param httpClient HTTP client. See {@link #isWebmentionValid(CloseableHttpClient, Webmention)}.
+	 * @param webmention Webmention to verify.
+	 * @return The verification result. Its body must be closed.
+	 * @throws IOException                     if I/O fails.
+	 * @throws UnsupportedContentTypeException if verification cannot be performed due to an unsupported content type.
+	 * @throws FetchLimitExceededException     if fetching the source exceeds the {@link FetchLimits}.
+	 */
+	@NotNull
+	public Verification verify(@NotNull CloseableHttpClient httpClient, @NotNull Webmention webmention)
+		throws IOException, UnsupportedContentTypeException {
+		return verify(httpClient, webmention, null, null);
+	}
+
+	/**
+	 * Like {@link #verify(CloseableHttpClient, Webmention)}, but sends a conditional request if validators of a
+	 * previous verification are given. If the source is unchanged, the result is {@link Verification#notModified()}.
+	 *
+	 * @param etag         'ETag' of a previous response, if any.
+	 * @param lastModified 'Last-Modified' of a previous response, if any.
+	 */
+	//Spec: https://www.w3.org/TR/webmention/#webmention-verification
+	@NotNull
+	public Verification verify(@NotNull CloseableHttpClient httpClient,
+							   @NotNull Webmention webmention,
+							   @Nullable String etag,
+							   @Nullable String lastModified) throws IOException, UnsupportedContentTypeException {
 		/*
 		 * Spec:
 		 * 'MUST perform an HTTP GET request on source [...].
 		 * The receiver SHOULD include an HTTP Accept header indicating its preference of content
 		 * types that are acceptable.'
 		 */
-		ClassicHttpRequest request = ClassicRequestBuilder.get(webmention.source())
-			.addHeader(createAcceptHeader())
-			.build();
+		HttpGet request = new HttpGet(webmention.source());
+		request.addHeader(createAcceptHeader());
+		if (etag != null) {
+			request.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+		}
+		if (lastModified != null) {
+			request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+		}
 
 		LOGGER.debug("Verifying source '{}'.", webmention.source());
-		return httpClient.execute(request, response -> {
-			if (response.getCode() == HttpStatus.SC_NOT_ACCEPTABLE) {
-				throw new UnsupportedContentTypeException(
-					"Remote server does not support any of the content types supported for verification.");
+		VerificationEvent event = new VerificationEvent();
+		event.begin();
+		try (PhaseTimer timer = PhaseTimer.start(metricsListener, Phase.SOURCE_FETCH, "")) {
+			Verification verification = null;
+			try {
+				verification = HttpUtils.executeLimited(httpClient, request, fetchLimits, timer, response -> {
+					timer.setOutcome(String.valueOf(response.getCode()));
+					if (response.getCode() == HttpStatus.SC_NOT_ACCEPTABLE) {
+						throw new UnsupportedContentTypeException(
+							"Remote server does not support any of the content types supported for verification.");
+					}
+					// Deleted sources are expected to respond with '410 Gone', which callers may want to distinguish from errors.
+					if (response.getCode() == HttpStatus.SC_GONE ||
+						(response.getCode() == HttpStatus.SC_NOT_MODIFIED && (etag != null || lastModified != null))) {
+						return new Verification(false,
+							response.getCode(),
+							extractHeaders(response),
+							List.of(),
+							SpooledBody.empty());
+					}
+					HttpUtils.validateResponse(response, fetchLimits.maxErrorBodyBytes());
+					return verifyResponse(response, webmention, event);
+				});
+				return verification;
+			} catch (FetchLimitExceededException e) {
+				timer.setOutcome("limit_exceeded");
+				throw e;
+			} finally {
+				event.complete(webmention, verification, timer);
 			}
-			HttpUtils.validateResponse(response);
-			return isResponseValid(response, webmention);
-		});
+		} catch (FetchLimitExceededException e) {
+			limitExceededCount.increment();
+			LOGGER.warn("Aborted verifying source '{}': {}", webmention.source(), e.getMessage());
+			throw e;
+		}
 	}
 
-	private boolean isResponseValid(ClassicHttpResponse response, Webmention webmention)
+	/**
+	 * @return How many times fetching a source was aborted because it exceeded the {@link FetchLimits}.
+	 */
+	public long getLimitExceededCount() {
+		return limitExceededCount.sum();
+	}
+
+	private Verification verifyResponse(ClassicHttpResponse response, Webmention webmention, VerificationEvent event)
 		throws IOException {
 		/*
 		 * Spec:
@@ -81,13 +209,41 @@ public class VerificationService {
 		 */
 		Optional<Verifier> verifierOptional = HttpUtils.extractContentType(response)
 			.flatMap(this::findMatchingVerifier);
-		if (verifierOptional.isPresent()) {
-			Verifier verifier = verifierOptional.get();
-			LOGGER.debug("Found verifier '{}' for source '{}'.", verifier, webmention.source());
-			return verifier.isValid(response, webmention.target());
-		} else {
+		if (verifierOptional.isEmpty()) {
 			throw new UnsupportedContentTypeException("Content type of remote server response is not supported.");
 		}
+		Verifier verifier = verifierOptional.get();
+		event.verifier = verifier.getSupportedMimeType();
+		LOGGER.debug("Found verifier '{}' for source '{}'.", verifier, webmention.source());
+
+		SpooledBody body = SpooledBody.empty();
+		HttpEntity entity = response.getEntity();
+		if (entity != null) {
+			try (InputStream inputStream = entity.getContent()) {
+				body = SpooledBody.spool(inputStream, spoolThresholdBytes);
+			}
+			response.setEntity(new BasicHttpEntity(body.openStream(),
+				body.size(),
+				entity.getContentType() != null ? ContentType.parse(entity.getContentType()) : null,
+				entity.getContentEncoding()));
+		}
+		try (PhaseTimer timer = PhaseTimer.start(metricsListener, Phase.VERIFY, verifier.getSupportedMimeType())) {
+			Verifier.Result result = verifier.verify(response, webmention.target());
+			timer.setOutcome(result.valid() ? "valid" : "invalid");
+			return new Verification(result.valid(), response.getCode(), extractHeaders(response), result.links(), body);
+		} catch (IOException | RuntimeException e) {
+			body.close();
+			throw e;
+		}
+	}
+
+	private static Map<String, List<String>> extractHeaders(ClassicHttpResponse response) {
+		Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		for (Header header : response.getHeaders()) {
+			headers.computeIfAbsent(header.getName(), ignored -> new ArrayList<>(1)).add(header.getValue());
+		}
+		headers.replaceAll((name, values) -> List.copyOf(values));
+		return Collections.unmodifiableMap(headers);
 	}
 
 	private Header createAcceptHeader() {
@@ -101,6 +257,35 @@ public class VerificationService {
 			.findFirst();
 	}
 
+	/**
+	 * @param valid      If the source mentions the target.
+	 * @param statusCode HTTP status code of the source response.
+	 * @param headers    Headers of the source response, keyed case-insensitively.
+	 * @param links      Links found in the source.
+	 * @param body       Body of the source response.
+	 */
+	public record Verification(boolean valid,
+							   int statusCode,
+							   @NotNull Map<String, List<String>> headers,
+							   @NotNull List<String> links,
+							   @NotNull SpooledBody body) {
+
+		/**
+		 * @return if the source was not modified since the previous verification. {@link #valid()} is meaningless
+		 * in this case.
+		 */
+		public boolean notModified() {
+			return statusCode == HttpStatus.SC_NOT_MODIFIED;
+		}
+
+		/**
+		 * @return if the source responded with '410 Gone', meaning it was deleted.
+		 */
+		public boolean gone() {
+			return statusCode == HttpStatus.SC_GONE;
+		}
+	}
+
 	public static class UnsupportedContentTypeException extends IOException {
 		@Serial
 		private static final long serialVersionUID = 7007956002984142094L;
@@ -8,6 +8,7 @@ import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.List;
 
 public class HtmlVerifier implements Verifier {
 
@@ -19,17 +20,23 @@ public class HtmlVerifier implements Verifier {
 
 	@Override
 	public boolean isValid(@NotNull ClassicHttpResponse response, @NotNull URI target) throws IOException {
+		return verify(response, target).valid();
+	}
+
+	@NotNull
+	@Override
+	public Result verify(@NotNull ClassicHttpResponse response, @NotNull URI target) throws IOException {
 		if (response.getEntity() == null) {
-			return false;
+			return new Result(false, List.of());
 		}
-		return HtmlUtils.parse(response.getEntity())
+		List<String> links = HtmlUtils.parse(response.getEntity())
 			/*
 			 * Spec:
 			 * '[...] in an HTML5 document, the receiver should look for <a href="*">, <img href="*">,
 			 *  <video src="*"> and other similar links.'
-			 */.select(new LinkLikeElementEvaluator()).stream().map(LinkLikeElementEvaluator::getLink)
-			// Note: The spec does state 'exact match', so strict equality is used rather than resolving the URLs.
-			.anyMatch(link -> target.toString().equals(link));
+			 */.select(new LinkLikeElementEvaluator()).stream().map(LinkLikeElementEvaluator::getLink).toList();
+		// Note: The spec does state 'exact match', so strict equality is used rather than resolving the URLs.
+		return new Result(links.contains(target.toString()), links);
 	}
 
 }
@@ -3,14 +3,20 @@ package dev.rilling.webmention4j.server.internal.verifier;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
+import dev.rilling.webmention4j.common.internal.HttpUtils;
 import org.apache.hc.core5.http.ClassicHttpResponse;
 import org.apache.hc.core5.http.ContentType;
-import org.apache.hc.core5.http.ParseException;
-import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.HttpEntity;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 
 public class JsonVerifier implements Verifier {
 	private static final JsonFactory JSON_FACTORY = JsonFactory.builder().build();
@@ -23,31 +29,51 @@ public class JsonVerifier implements Verifier {
 
 	@Override
 	public boolean isValid(@NotNull ClassicHttpResponse response, @NotNull URI target) throws IOException {
+		return verify(response, target).valid();
+	}
+
+	@NotNull
+	@Override
+	public Result verify(@NotNull ClassicHttpResponse response, @NotNull URI target) throws IOException {
 		if (response.getEntity() == null) {
-			return false;
+			return new Result(false, List.of());
 		}
-		String body;
-		try {
-			body = EntityUtils.toString(response.getEntity());
-		} catch (ParseException e) {
-			throw new IOException("Could not parse body.", e);
+		// Parsed from the stream instead of reading the body into a string first.
+		HttpEntity entity = response.getEntity();
+		try (InputStream inputStream = entity.getContent()) {
+			if (inputStream == null) {
+				return new Result(false, List.of());
+			}
+			Optional<Charset> charset = HttpUtils.extractCharset(entity);
+			// Without a declared charset, Jackson detects the UTF encoding that JSON requires.
+			try (JsonParser jp = charset.isPresent()
+								 ? JSON_FACTORY.createParser(new InputStreamReader(inputStream, charset.get()))
+								 : JSON_FACTORY.createParser(inputStream)) {
+				return scan(jp, target);
+			}
 		}
-		return containsUri(body, target);
 	}
 
-	private boolean containsUri(String rootNode, @NotNull URI target) throws IOException {
+	private Result scan(JsonParser jp, @NotNull URI target) throws IOException {
 		/*
 		 * Spec:
 		 * 'In a JSON (RFC7159) document,
 		 *  the receiver should look for properties whose values are an exact match for the URL.'
 		 */
-		try (JsonParser jp = JSON_FACTORY.createParser(rootNode)) {
-			while (jp.nextToken() != null) {
-				if (jp.currentToken() == JsonToken.VALUE_STRING && target.toString().equals(jp.getText())) {
-					return true;
+		String targetString = target.toString();
+		boolean valid = false;
+		List<String> links = new ArrayList<>();
+		while (jp.nextToken() != null) {
+			if (jp.currentToken() == JsonToken.VALUE_STRING) {
+				String text = jp.getText();
+				if (targetString.equals(text)) {
+					valid = true;
+				}
+				if (text.startsWith("http://") || text.startsWith("https://")) {
+					links.add(text);
 				}
 			}
 		}
-		return false;
+		return new Result(valid, links);
 	}
 }
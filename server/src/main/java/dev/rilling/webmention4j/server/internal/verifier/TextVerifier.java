@@ -1,15 +1,21 @@
 package dev.rilling.webmention4j.server.internal.verifier;
 
+import dev.rilling.webmention4j.common.internal.HttpUtils;
 import org.apache.hc.core5.http.ClassicHttpResponse;
 import org.apache.hc.core5.http.ContentType;
-import org.apache.hc.core5.http.ParseException;
-import org.apache.hc.core5.http.io.entity.EntityUtils;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
+import java.io.Reader;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.MatchResult;
+import java.util.regex.Pattern;
 
 public class TextVerifier implements Verifier {
+	// Only used for extracting links, verification searches for the exact string.
+	private static final Pattern URL_PATTERN = Pattern.compile("https?://[^\\s<>\"]+");
 
 	@NotNull
 	@Override
@@ -19,16 +25,49 @@ public class TextVerifier implements Verifier {
 
 	@Override
 	public boolean isValid(@NotNull ClassicHttpResponse response, @NotNull URI target) throws IOException {
+		return verify(response, target).valid();
+	}
+
+	@NotNull
+	@Override
+	public Result verify(@NotNull ClassicHttpResponse response, @NotNull URI target) throws IOException {
 		if (response.getEntity() == null) {
-			return false;
+			return new Result(false, List.of());
 		}
-		String body;
-		try {
-			body = EntityUtils.toString(response.getEntity());
-		} catch (ParseException e) {
-			throw new IOException("Could not parse body.", e);
+		String targetString = target.toString();
+		boolean valid = false;
+		List<String> links = new ArrayList<>();
+		// Scans tokens instead of the whole body. Neither URLs nor the target contain delimiters, so each match lies
+		// within a single token.
+		try (Reader reader = HttpUtils.openReader(response.getEntity())) {
+			StringBuilder token = new StringBuilder();
+			char[] buffer = new char[8192];
+			int read;
+			while ((read = reader.read(buffer)) != -1) {
+				for (int i = 0; i < read; i++) {
+					if (isDelimiter(buffer[i])) {
+						valid |= scan(token, targetString, links);
+						token.setLength(0);
+					} else {
+						token.append(buffer[i]);
+					}
+				}
+			}
+			valid |= scan(token, targetString, links);
 		}
+		return new Result(valid, links);
+	}
+
+	private static boolean scan(CharSequence token, String targetString, List<String> links) {
+		if (token.isEmpty()) {
+			return false;
+		}
+		URL_PATTERN.matcher(token).results().map(MatchResult::group).forEach(links::add);
 		// Spec: 'If the document is plain text, the receiver should look for the URL by searching for the string.'
-		return body.contains(target.toString());
+		return token.toString().contains(targetString);
+	}
+
+	private static boolean isDelimiter(char c) {
+		return Character.isWhitespace(c) || c == '<' || c == '>' || c == '"';
 	}
 }
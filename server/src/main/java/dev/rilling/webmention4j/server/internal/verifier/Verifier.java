@@ -5,6 +5,7 @@ import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.List;
 
 /**
  * Interface for classes which can verify that a resource mentions another.
@@ -25,4 +26,25 @@ public interface Verifier {
 	 * @throws IOException if I/O fails.
 	 */
 	boolean isValid(@NotNull ClassicHttpResponse response, @NotNull URI target) throws IOException;
+
+	/**
+	 * Checks if the response mentions the target URL, and extracts the links it contains while doing so.
+	 * By default, {@link #isValid(ClassicHttpResponse, URI)} is called and no links are extracted.
+	 *
+	 * @param response Response to check. Same constraints as for {@link #isValid(ClassicHttpResponse, URI)}.
+	 * @param target   Target URL to look for.
+	 * @return if the target URL is mentioned by the response, and the links found.
+	 * @throws IOException if I/O fails.
+	 */
+	@NotNull
+	default Result verify(@NotNull ClassicHttpResponse response, @NotNull URI target) throws IOException {
+		return new Result(isValid(response, target), List.of());
+	}
+
+	/**
+	 * @param valid If the target URL is mentioned.
+	 * @param links Links found, in document order.
+	 */
+	record Result(boolean valid, @NotNull List<String> links) {
+	}
 }
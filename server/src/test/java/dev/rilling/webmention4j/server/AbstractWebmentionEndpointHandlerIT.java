@@ -0,0 +1,177 @@
+package dev.rilling.webmention4j.server;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import com.sun.net.httpserver.HttpServer;
+import dev.rilling.webmention4j.common.Webmention;
+import dev.rilling.webmention4j.common.test.AutoClosableExtension;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.io.support.ClassicRequestBuilder;
+import org.apache.hc.core5.http.message.BasicNameValuePair;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatNoException;
+
+class AbstractWebmentionEndpointHandlerIT {
+
+	@RegisterExtension
+	static final WireMockExtension SOURCE_SERVER = WireMockExtension.newInstance()
+		.options(wireMockConfig().dynamicPort())
+		.build();
+
+	@RegisterExtension
+	static final AutoClosableExtension<CloseableHttpClient> HTTP_CLIENT_EXTENSION = new AutoClosableExtension<>(
+		HttpClients::createDefault);
+
+	static final RecordingWebmentionEndpointHandler HANDLER = new RecordingWebmentionEndpointHandler();
+	static final RecordingWebmentionEndpointHandler ASYNC_HANDLER = new RecordingWebmentionEndpointHandler();
+
+	static ExecutorService executor;
+	static HttpServer server;
+	static URI endpointUri;
+	static URI asyncEndpointUri;
+
+	@BeforeAll
+	static void setUp() throws Exception {
+		HANDLER.init(Map.of());
+		ASYNC_HANDLER.init(Map.of("asyncVerification", "true"));
+
+		executor = Executors.newCachedThreadPool();
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/endpoint", HANDLER);
+		server.createContext("/async-endpoint", ASYNC_HANDLER);
+		server.setExecutor(executor);
+		server.start();
+
+		URI serverUri = URI.create("http://localhost:%d".formatted(server.getAddress().getPort()));
+		endpointUri = serverUri.resolve("/endpoint");
+		asyncEndpointUri = serverUri.resolve("/async-endpoint");
+	}
+
+	@AfterAll
+	static void tearDown() {
+		server.stop(0);
+		executor.shutdownNow();
+		HANDLER.close();
+		ASYNC_HANDLER.close();
+	}
+
+	@Test
+	@DisplayName("Validates content type")
+	void validatesContentType() throws Exception {
+		ClassicHttpRequest request = ClassicRequestBuilder.post(endpointUri)
+			.addHeader("Content-Type", "text/plain")
+			.build();
+
+		HTTP_CLIENT_EXTENSION.get().execute(request, response -> {
+			assertThat(response.getCode()).isEqualTo(HttpStatus.SC_BAD_REQUEST);
+			assertThat(EntityUtils.toString(response.getEntity())).isEqualTo(
+				"Content type must be 'application/x-www-form-urlencoded'.");
+			return null;
+		});
+	}
+
+	@Test
+	@DisplayName("Verifies and handles Webmentions")
+	void handlesWebmention() throws Exception {
+		SOURCE_SERVER.stubFor(get("/blog/post").willReturn(ok("Mentions https://example.com/post.").withHeader(
+			"Content-Type",
+			"text/plain")));
+
+		ClassicHttpRequest request = ClassicRequestBuilder.post(endpointUri)
+			.addHeader("Content-Type", "application/x-www-form-urlencoded")
+			.addParameters(new BasicNameValuePair("source", SOURCE_SERVER.url("/blog/post")),
+				new BasicNameValuePair("target", "https://example.com/post"))
+			.build();
+
+		HTTP_CLIENT_EXTENSION.get().execute(request, response -> {
+			assertThat(response.getCode()).isEqualTo(HttpStatus.SC_OK);
+			return null;
+		});
+		assertThat(HANDLER.getWebmentions()).containsExactly(new Webmention(URI.create(SOURCE_SERVER.url("/blog/post")),
+			URI.create("https://example.com/post")));
+	}
+
+	@Test
+	@DisplayName("Accepts Webmentions for background verification with status URL")
+	void acceptsForAsyncVerification() throws Exception {
+		SOURCE_SERVER.stubFor(get("/blog/other-post").willReturn(ok("Hello World!").withHeader("Content-Type",
+			"text/plain")));
+
+		ClassicHttpRequest request = ClassicRequestBuilder.post(asyncEndpointUri)
+			.addHeader("Content-Type", "application/x-www-form-urlencoded")
+			.addParameters(new BasicNameValuePair("source", SOURCE_SERVER.url("/blog/other-post")),
+				new BasicNameValuePair("target", "https://example.com"))
+			.build();
+
+		String location = HTTP_CLIENT_EXTENSION.get().execute(request, response -> {
+			assertThat(response.getCode()).isEqualTo(HttpStatus.SC_CREATED);
+			return response.getFirstHeader("Location").getValue();
+		});
+		assertThat(location).startsWith(asyncEndpointUri.toString());
+
+		// Source contains no link.
+		String status = "queued";
+		for (int i = 0; i < 100 && !status.startsWith("rejected"); i++) {
+			Thread.sleep(100);
+			status = HTTP_CLIENT_EXTENSION.get()
+				.execute(ClassicRequestBuilder.get(location).build(),
+					response -> EntityUtils.toString(response.getEntity()));
+		}
+		assertThat(status).isEqualTo("rejected: Source does not contain link to target URL.");
+	}
+
+	@Test
+	@DisplayName("Rejects other methods")
+	void rejectsOtherMethods() throws Exception {
+		HTTP_CLIENT_EXTENSION.get().execute(ClassicRequestBuilder.put(endpointUri).build(), response -> {
+			assertThat(response.getCode()).isEqualTo(HttpStatus.SC_METHOD_NOT_ALLOWED);
+			assertThat(response.getFirstHeader("Allow").getValue()).isEqualTo("GET, POST");
+			return null;
+		});
+	}
+
+	@Test
+	@DisplayName("#close may be called more than once")
+	void closesIdempotently(@TempDir Path journalDirectory) throws Exception {
+		RecordingWebmentionEndpointHandler handler = new RecordingWebmentionEndpointHandler();
+		handler.init(Map.of("asyncVerification", "true", "journalDirectory", journalDirectory.toString()));
+
+		handler.close();
+		assertThatNoException().isThrownBy(handler::close);
+	}
+
+	private static final class RecordingWebmentionEndpointHandler extends AbstractWebmentionEndpointHandler {
+		private final List<Webmention> webmentions = new CopyOnWriteArrayList<>();
+
+		@Override
+		protected void handleWebmention(@NotNull Webmention webmention) {
+			webmentions.add(webmention);
+		}
+
+		List<Webmention> getWebmentions() {
+			return webmentions;
+		}
+	}
+}
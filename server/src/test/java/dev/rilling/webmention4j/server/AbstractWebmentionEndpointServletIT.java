@@ -8,10 +8,14 @@ import org.apache.hc.core5.http.ClassicHttpRequest;
 import org.apache.hc.core5.http.HttpStatus;
 import org.apache.hc.core5.http.io.entity.EntityUtils;
 import org.apache.hc.core5.http.io.support.ClassicRequestBuilder;
+import org.apache.hc.core5.http.message.BasicNameValuePair;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 
+import java.util.Map;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -27,6 +31,25 @@ class AbstractWebmentionEndpointServletIT {
 	static final ServletExtension ENDPOINT_SERVER = new ServletExtension("/endpoint",
 		NoopWebmentionEndpointServlet.class);
 
+	@RegisterExtension
+	static final ServletExtension RATE_LIMITED_ENDPOINT_SERVER = new ServletExtension("/endpoint",
+		NoopWebmentionEndpointServlet.class,
+		Map.of("sourceHostRateLimit", "0.01", "sourceHostRateLimitBurst", "1"));
+
+	@RegisterExtension
+	static final ServletExtension ASYNC_ENDPOINT_SERVER = new ServletExtension("/endpoint",
+		NoopWebmentionEndpointServlet.class,
+		Map.of("asyncVerification", "true"));
+
+	@RegisterExtension
+	static final ServletExtension DELAYED_ENDPOINT_SERVER = new ServletExtension("/endpoint",
+		DelayedWebmentionEndpointServlet.class);
+
+	@RegisterExtension
+	static final ServletExtension CACHING_ENDPOINT_SERVER = new ServletExtension("/endpoint",
+		DelayedWebmentionEndpointServlet.class,
+		Map.of("verificationCacheTtl", "PT1H"));
+
 	@RegisterExtension
 	static final AutoClosableExtension<CloseableHttpClient> HTTP_CLIENT_EXTENSION = new AutoClosableExtension<>(
 		HttpClients::createDefault);
@@ -46,4 +69,140 @@ class AbstractWebmentionEndpointServletIT {
 		});
 	}
 
+	@Test
+	@DisplayName("Accepts Webmentions for background verification with status URL")
+	void acceptsForAsyncVerification() throws Exception {
+		SOURCE_SERVER.stubFor(get("/blog/post").willReturn(ok("Hello World!").withHeader("Content-Type",
+			"text/plain")));
+
+		ClassicHttpRequest request = ClassicRequestBuilder.post(ASYNC_ENDPOINT_SERVER.getServletUri())
+			.addHeader("Content-Type", "application/x-www-form-urlencoded")
+			.addParameters(new BasicNameValuePair("source", SOURCE_SERVER.url("/blog/post")),
+				new BasicNameValuePair("target", "https://example.com"))
+			.build();
+
+		String location = HTTP_CLIENT_EXTENSION.get().execute(request, response -> {
+			assertThat(response.getCode()).isEqualTo(HttpStatus.SC_CREATED);
+			return response.getFirstHeader("Location").getValue();
+		});
+		assertThat(location).startsWith(ASYNC_ENDPOINT_SERVER.getServletUri().toString());
+
+		// Source contains no link.
+		String status = "queued";
+		for (int i = 0; i < 100 && !status.startsWith("rejected"); i++) {
+			Thread.sleep(100);
+			status = HTTP_CLIENT_EXTENSION.get()
+				.execute(ClassicRequestBuilder.get(location).build(),
+					response -> EntityUtils.toString(response.getEntity()));
+		}
+		assertThat(status).isEqualTo("rejected: Source does not contain link to target URL.");
+	}
+
+	@Test
+	@DisplayName("Responds once async handling completes")
+	void respondsOnAsyncHandling() throws Exception {
+		SOURCE_SERVER.stubFor(get("/blog/post").willReturn(ok("https://example.com/ok https://example.com/fail")
+			.withHeader("Content-Type", "text/plain")));
+
+		ClassicHttpRequest okRequest = ClassicRequestBuilder.post(DELAYED_ENDPOINT_SERVER.getServletUri())
+			.addHeader("Content-Type", "application/x-www-form-urlencoded")
+			.addParameters(new BasicNameValuePair("source", SOURCE_SERVER.url("/blog/post")),
+				new BasicNameValuePair("target", "https://example.com/ok"))
+			.build();
+		HTTP_CLIENT_EXTENSION.get().execute(okRequest, response -> {
+			assertThat(response.getCode()).isEqualTo(HttpStatus.SC_OK);
+			return null;
+		});
+
+		ClassicHttpRequest failRequest = ClassicRequestBuilder.post(DELAYED_ENDPOINT_SERVER.getServletUri())
+			.addHeader("Content-Type", "application/x-www-form-urlencoded")
+			.addParameters(new BasicNameValuePair("source", SOURCE_SERVER.url("/blog/post")),
+				new BasicNameValuePair("target", "https://example.com/fail"))
+			.build();
+		HTTP_CLIENT_EXTENSION.get().execute(failRequest, response -> {
+			assertThat(response.getCode()).isEqualTo(HttpStatus.SC_INTERNAL_SERVER_ERROR);
+			return null;
+		});
+	}
+
+	@Test
+	@DisplayName("Handles Webmentions again if handling failed, even if verification is cached")
+	void handlesAgainAfterFailure() throws Exception {
+		SOURCE_SERVER.stubFor(get("/blog/cached").willReturn(ok("https://example.com/ok https://example.com/fail")
+			.withHeader("Content-Type", "text/plain")));
+
+		ClassicHttpRequest failRequest = ClassicRequestBuilder.post(CACHING_ENDPOINT_SERVER.getServletUri())
+			.addHeader("Content-Type", "application/x-www-form-urlencoded")
+			.addParameters(new BasicNameValuePair("source", SOURCE_SERVER.url("/blog/cached")),
+				new BasicNameValuePair("target", "https://example.com/fail"))
+			.build();
+		for (int i = 0; i < 2; i++) {
+			// The retry must reach the handler, instead of being answered from the cache as unchanged.
+			HTTP_CLIENT_EXTENSION.get().execute(failRequest, response -> {
+				assertThat(response.getCode()).isEqualTo(HttpStatus.SC_INTERNAL_SERVER_ERROR);
+				return null;
+			});
+		}
+		SOURCE_SERVER.verify(2, getRequestedFor(urlEqualTo("/blog/cached")));
+
+		ClassicHttpRequest okRequest = ClassicRequestBuilder.post(CACHING_ENDPOINT_SERVER.getServletUri())
+			.addHeader("Content-Type", "application/x-www-form-urlencoded")
+			.addParameters(new BasicNameValuePair("source", SOURCE_SERVER.url("/blog/cached")),
+				new BasicNameValuePair("target", "https://example.com/ok"))
+			.build();
+		for (int i = 0; i < 2; i++) {
+			HTTP_CLIENT_EXTENSION.get().execute(okRequest, response -> {
+				assertThat(response.getCode()).isEqualTo(HttpStatus.SC_OK);
+				return null;
+			});
+		}
+		// Once handled, the outcome is cached.
+		SOURCE_SERVER.verify(3, getRequestedFor(urlEqualTo("/blog/cached")));
+	}
+
+	@Test
+	@DisplayName("Rate limits by source host")
+	void rateLimitsSourceHost() throws Exception {
+		SOURCE_SERVER.stubFor(get("/blog/post").willReturn(notFound()));
+
+		BasicNameValuePair sourcePair = new BasicNameValuePair("source", SOURCE_SERVER.url("/blog/post"));
+		BasicNameValuePair targetPair = new BasicNameValuePair("target", "https://example.com");
+		ClassicHttpRequest request = ClassicRequestBuilder.post(RATE_LIMITED_ENDPOINT_SERVER.getServletUri())
+			.addHeader("Content-Type", "application/x-www-form-urlencoded")
+			.addParameters(sourcePair, targetPair)
+			.build();
+
+		// Default client would honor 'Retry-After'.
+		try (CloseableHttpClient httpClient = HttpClients.custom().disableAutomaticRetries().build()) {
+			httpClient.execute(request, response -> {
+				assertThat(response.getCode()).isEqualTo(HttpStatus.SC_BAD_REQUEST);
+				return null;
+			});
+			httpClient.execute(request, response -> {
+				assertThat(response.getCode()).isEqualTo(HttpStatus.SC_TOO_MANY_REQUESTS);
+				assertThat(response.getFirstHeader("Retry-After").getValue()).isEqualTo("100");
+				return null;
+			});
+		}
+		SOURCE_SERVER.verify(1, getRequestedFor(urlEqualTo("/blog/post")));
+	}
+
+	@Test
+	@DisplayName("Rejects source URLs without host when rate limiting by source host")
+	void rejectsSourceWithoutHost() throws Exception {
+		BasicNameValuePair sourcePair = new BasicNameValuePair("source", "http://my_host.example.com/");
+		BasicNameValuePair targetPair = new BasicNameValuePair("target", "https://example.com");
+		ClassicHttpRequest request = ClassicRequestBuilder.post(RATE_LIMITED_ENDPOINT_SERVER.getServletUri())
+			.addHeader("Content-Type", "application/x-www-form-urlencoded")
+			.addParameters(sourcePair, targetPair)
+			.build();
+
+		HTTP_CLIENT_EXTENSION.get().execute(request, response -> {
+			assertThat(response.getCode()).isEqualTo(HttpStatus.SC_BAD_REQUEST);
+			String actualMessage = EntityUtils.toString(response.getEntity());
+			assertThat(actualMessage).contains("URL must have a valid host: &apos;http://my_host.example.com/&apos;.");
+			return null;
+		});
+	}
+
 }
@@ -0,0 +1,29 @@
+package dev.rilling.webmention4j.server;
+
+import dev.rilling.webmention4j.common.Webmention;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Handles Webmentions asynchronously after a delay, failing for targets with the path {@code /fail}.
+ */
+@SuppressWarnings("serial")
+public final class DelayedWebmentionEndpointServlet extends AbstractWebmentionEndpointServlet {
+	@Override
+	protected void handleWebmention(@NotNull Webmention webmention) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	protected @NotNull CompletionStage<Void> handleWebmentionAsync(@NotNull Webmention webmention,
+																   @NotNull VerifiedSource source) {
+		return CompletableFuture.runAsync(() -> {
+			if ("/fail".equals(webmention.target().getPath())) {
+				throw new IllegalStateException("Storage is down.");
+			}
+		}, CompletableFuture.delayedExecutor(100, TimeUnit.MILLISECONDS));
+	}
+}
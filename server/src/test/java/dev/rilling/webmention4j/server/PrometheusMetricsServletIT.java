@@ -0,0 +1,94 @@
+package dev.rilling.webmention4j.server;
+
+import dev.rilling.webmention4j.common.Webmention;
+import dev.rilling.webmention4j.common.metrics.MetricsListener;
+import dev.rilling.webmention4j.common.metrics.MetricsRecorder;
+import dev.rilling.webmention4j.common.metrics.Phase;
+import org.eclipse.jetty.server.NetworkConnector;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrometheusMetricsServletIT {
+
+	private static final HttpClient HTTP_CLIENT = HttpClient.newHttpClient();
+
+	private static final MetricsRecorder RECORDER = new MetricsRecorder();
+
+	private static Server server;
+	private static URI serverUri;
+
+	@BeforeAll
+	static void setUp() throws Exception {
+		server = new Server(0);
+		ServletHandler servletHandler = new ServletHandler();
+		AbstractWebmentionEndpointServlet endpointServlet = new RecordingWebmentionEndpointServlet();
+		servletHandler.addServletWithMapping(new ServletHolder(endpointServlet), "/endpoint");
+		servletHandler.addServletWithMapping(new ServletHolder(new PrometheusMetricsServlet(RECORDER,
+			endpointServlet)), "/metrics");
+		server.setHandler(servletHandler);
+		server.start();
+
+		int port = ((NetworkConnector) server.getConnectors()[0]).getLocalPort();
+		serverUri = URI.create("http://localhost:%d".formatted(port));
+	}
+
+	@AfterAll
+	static void tearDown() throws Exception {
+		server.stop();
+	}
+
+	@Test
+	@DisplayName("Exposes rejections and histograms in Prometheus format")
+	void exposesMetrics() throws Exception {
+		HttpResponse<Void> rejectedResponse = HTTP_CLIENT.send(HttpRequest.newBuilder(serverUri.resolve("/endpoint"))
+			.header("Content-Type", "application/x-www-form-urlencoded")
+			.POST(HttpRequest.BodyPublishers.ofString("source=https%3A%2F%2Fexample.com"))
+			.build(), HttpResponse.BodyHandlers.discarding());
+		assertThat(rejectedResponse.statusCode()).isEqualTo(400);
+		RECORDER.onPhase(Phase.VERIFY, "text/html", Duration.ofMillis(20).toNanos(), 0, "valid");
+
+		HttpResponse<String> response = HTTP_CLIENT.send(HttpRequest.newBuilder(serverUri.resolve("/metrics")).build(),
+			HttpResponse.BodyHandlers.ofString());
+
+		assertThat(response.statusCode()).isEqualTo(200);
+		assertThat(response.headers().firstValue("Content-Type")).hasValueSatisfying(contentType -> assertThat(
+			contentType).startsWith("text/plain"));
+		assertThat(response.body().lines()).contains("# TYPE webmention4j_phase_duration_seconds histogram",
+			"webmention4j_phase_duration_seconds_bucket{phase=\"verify\",detail=\"text/html\",outcome=\"valid\"," +
+			"le=\"0.01\"} 0",
+			"webmention4j_phase_duration_seconds_bucket{phase=\"verify\",detail=\"text/html\",outcome=\"valid\"," +
+			"le=\"0.025\"} 1",
+			"webmention4j_phase_duration_seconds_bucket{phase=\"verify\",detail=\"text/html\",outcome=\"valid\"," +
+			"le=\"+Inf\"} 1",
+			"webmention4j_phase_duration_seconds_count{phase=\"verify\",detail=\"text/html\",outcome=\"valid\"} 1",
+			"webmention4j_rejections_total{reason=\"invalid_request\"} 1",
+			"webmention4j_in_flight 0",
+			"webmention4j_queued 0");
+	}
+
+	@SuppressWarnings("serial")
+	private static final class RecordingWebmentionEndpointServlet extends AbstractWebmentionEndpointServlet {
+		@Override
+		protected @NotNull MetricsListener createMetricsListener() {
+			return RECORDER;
+		}
+
+		@Override
+		protected void handleWebmention(@NotNull Webmention webmention) {
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package dev.rilling.webmention4j.server;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import dev.rilling.webmention4j.common.Webmention;
+import org.apache.hc.core5.http.HttpStatus;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReverificationSchedulerIT {
+
+	@RegisterExtension
+	static final WireMockExtension SOURCE_SERVER = WireMockExtension.newInstance()
+		.options(wireMockConfig().dynamicPort())
+		.build();
+
+	@Test
+	@DisplayName("Notifies of updated and deleted sources")
+	void notifiesOfChanges() throws Exception {
+		SOURCE_SERVER.stubFor(get("/blog/post").willReturn(ok("Hello https://example.com").withHeader("Content-Type",
+			"text/plain")));
+
+		BlockingQueue<String> events = new LinkedBlockingQueue<>();
+		ReverificationScheduler.Config config = new ReverificationScheduler.Config();
+		config.setInterval(Duration.ofMillis(100));
+		config.setJitter(0);
+		try (ReverificationScheduler scheduler = new ReverificationScheduler(new ReverificationScheduler.Listener() {
+			@Override
+			public void onUpdated(@NotNull Webmention webmention, @NotNull VerifiedSource source) {
+				events.add("updated: " + source.getLinks());
+			}
+
+			@Override
+			public void onDeleted(@NotNull Webmention webmention) {
+				events.add("deleted");
+			}
+		}, config)) {
+			scheduler.schedule(new Webmention(URI.create(SOURCE_SERVER.url("/blog/post")),
+				URI.create("https://example.com")));
+			// Let the first check record the current state.
+			Thread.sleep(500);
+			assertThat(events).isEmpty();
+
+			// Changed content with the same links is not an update.
+			SOURCE_SERVER.stubFor(get("/blog/post").willReturn(ok("Hi https://example.com").withHeader(
+				"Content-Type",
+				"text/plain")));
+			Thread.sleep(500);
+			assertThat(events).isEmpty();
+
+			SOURCE_SERVER.stubFor(get("/blog/post").willReturn(ok("Hi https://example.com and https://example.org")
+				.withHeader("Content-Type", "text/plain")));
+			assertThat(events.poll(5, TimeUnit.SECONDS)).isEqualTo(
+				"updated: [https://example.com, https://example.org]");
+
+			SOURCE_SERVER.stubFor(get("/blog/post").willReturn(status(HttpStatus.SC_GONE)));
+			assertThat(events.poll(5, TimeUnit.SECONDS)).isEqualTo("deleted");
+			assertThat(scheduler.size()).isZero();
+		}
+	}
+
+	@Test
+	@DisplayName("Rejects invalid interval and jitter")
+	void rejectsInvalidConfig() {
+		ReverificationScheduler.Config config = new ReverificationScheduler.Config();
+
+		assertThatThrownBy(() -> config.setInterval(Duration.ZERO)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> config.setInterval(Duration.ofDays(-1))).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> config.setJitter(-0.1)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> config.setJitter(1)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> config.setJitter(Double.NaN)).isInstanceOf(IllegalArgumentException.class);
+		assertThat(config.getJitter()).isEqualTo(0.1);
+	}
+}
@@ -7,23 +7,33 @@ import org.eclipse.jetty.server.NetworkConnector;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.Slf4jRequestLogWriter;
 import org.eclipse.jetty.servlet.ServletHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.extension.AfterAllCallback;
 import org.junit.jupiter.api.extension.BeforeAllCallback;
 import org.junit.jupiter.api.extension.ExtensionContext;
 
 import java.net.URI;
+import java.util.Map;
 
 class ServletExtension implements BeforeAllCallback, AfterAllCallback {
 	private final String specPath;
 	private final Class<? extends Servlet> servlet;
+	private final Map<String, String> initParameters;
 
 	private Server server;
 	private URI servletUri;
 
 	ServletExtension(@NotNull String specPath, @NotNull Class<? extends Servlet> servlet) {
+		this(specPath, servlet, Map.of());
+	}
+
+	ServletExtension(@NotNull String specPath,
+					 @NotNull Class<? extends Servlet> servlet,
+					 @NotNull Map<String, String> initParameters) {
 		this.specPath = specPath;
 		this.servlet = servlet;
+		this.initParameters = initParameters;
 	}
 
 	@Override
@@ -32,7 +42,9 @@ class ServletExtension implements BeforeAllCallback, AfterAllCallback {
 		server.setRequestLog(new CustomRequestLog(new Slf4jRequestLogWriter(), CustomRequestLog.EXTENDED_NCSA_FORMAT));
 
 		ServletHandler servletHandler = new ServletHandler();
-		servletHandler.addServletWithMapping(servlet, specPath);
+		ServletHolder servletHolder = servletHandler.addServletWithMapping(servlet, specPath);
+		servletHolder.setInitParameters(initParameters);
+		servletHolder.setAsyncSupported(true);
 		server.setHandler(servletHandler);
 
 		server.start();
@@ -0,0 +1,68 @@
+package dev.rilling.webmention4j.server.internal;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HostMatcherTest {
+
+	@Test
+	@DisplayName("#matches matches exact hosts")
+	void matchesExact() {
+		HostMatcher hostMatcher = HostMatcher.of(List.of("example.com", "blog.example.org"));
+
+		assertThat(hostMatcher.matches("example.com")).isTrue();
+		assertThat(hostMatcher.matches("EXAMPLE.com.")).isTrue();
+		assertThat(hostMatcher.matches("blog.example.org")).isTrue();
+
+		assertThat(hostMatcher.matches("example.org")).isFalse();
+		assertThat(hostMatcher.matches("foo.example.com")).isFalse();
+		assertThat(hostMatcher.matches("com")).isFalse();
+		assertThat(hostMatcher.matches(null)).isFalse();
+	}
+
+	@Test
+	@DisplayName("#matches matches wildcard hosts")
+	void matchesWildcard() {
+		HostMatcher hostMatcher = HostMatcher.of(List.of("*.example.com"));
+
+		assertThat(hostMatcher.matches("blog.example.com")).isTrue();
+		assertThat(hostMatcher.matches("a.blog.example.com")).isTrue();
+
+		assertThat(hostMatcher.matches("example.com")).isFalse();
+		assertThat(hostMatcher.matches("blogexample.com")).isFalse();
+	}
+
+	@Test
+	@DisplayName("#of rejects invalid patterns")
+	void ofRejectsInvalid() {
+		assertThatThrownBy(() -> HostMatcher.of(List.of("*"))).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> HostMatcher.of(List.of("foo.*.example.com"))).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> HostMatcher.of(List.of("foo..example.com"))).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	@DisplayName("#read reads patterns from file")
+	void readReadsFile(@TempDir Path tempDir) throws IOException {
+		Path file = tempDir.resolve("hosts.txt");
+		Files.writeString(file, """
+			# Customers
+			example.com
+
+			*.example.org
+			""");
+
+		HostMatcher hostMatcher = HostMatcher.read(file);
+		assertThat(hostMatcher.matches("example.com")).isTrue();
+		assertThat(hostMatcher.matches("blog.example.org")).isTrue();
+		assertThat(hostMatcher.matches("# Customers")).isFalse();
+	}
+}
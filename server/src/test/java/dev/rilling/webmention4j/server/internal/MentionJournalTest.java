@@ -0,0 +1,102 @@
+package dev.rilling.webmention4j.server.internal;
+
+import dev.rilling.webmention4j.common.Webmention;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MentionJournalTest {
+
+	private static final Webmention WEBMENTION_1 = new Webmention(URI.create("https://a.example.com"),
+		URI.create("https://b.example.com"));
+	private static final Webmention WEBMENTION_2 = new Webmention(URI.create("https://c.example.com"),
+		URI.create("https://d.example.com"));
+
+	@Test
+	@DisplayName("#open recovers pending Webmentions")
+	void recoversPending(@TempDir Path directory) throws IOException {
+		try (MentionJournal journal = MentionJournal.open(directory, 1024 * 1024)) {
+			assertThat(journal.getRecovered()).isEmpty();
+			long id1 = journal.append(WEBMENTION_1);
+			journal.append(WEBMENTION_2);
+			journal.complete(id1);
+		}
+
+		try (MentionJournal journal = MentionJournal.open(directory, 1024 * 1024)) {
+			assertThat(journal.getRecovered()).extracting(MentionJournal.Entry::webmention)
+				.containsExactly(WEBMENTION_2);
+		}
+	}
+
+	@Test
+	@DisplayName("#open ignores incomplete records")
+	void ignoresIncompleteRecords(@TempDir Path directory) throws IOException {
+		try (MentionJournal journal = MentionJournal.open(directory, 1024 * 1024)) {
+			journal.append(WEBMENTION_1);
+		}
+		Path segment = listSegments(directory).get(0);
+		// Simulates a crash during a write.
+		Files.write(segment, new byte[]{0, 0, 0, 42, 1, 2}, StandardOpenOption.APPEND);
+
+		try (MentionJournal journal = MentionJournal.open(directory, 1024 * 1024)) {
+			assertThat(journal.getRecovered()).extracting(MentionJournal.Entry::webmention)
+				.containsExactly(WEBMENTION_1);
+			// IDs must not be reused.
+			assertThat(journal.append(WEBMENTION_2)).isGreaterThan(journal.getRecovered().get(0).id());
+		}
+	}
+
+	@Test
+	@DisplayName("#complete compacts segments")
+	void compactsSegments(@TempDir Path directory) throws IOException {
+		try (MentionJournal journal = MentionJournal.open(directory, 512)) {
+			journal.append(WEBMENTION_1);
+			for (int i = 0; i < 100; i++) {
+				journal.complete(journal.append(WEBMENTION_2));
+			}
+
+			List<Path> segments = listSegments(directory);
+			assertThat(segments).hasSize(1);
+			assertThat(Files.size(segments.get(0))).isLessThan(1024);
+		}
+
+		try (MentionJournal journal = MentionJournal.open(directory, 512)) {
+			assertThat(journal.getRecovered()).extracting(MentionJournal.Entry::webmention)
+				.containsExactly(WEBMENTION_1);
+		}
+	}
+
+	@Test
+	@DisplayName("#open does not reuse IDs after all Webmentions completed")
+	void doesNotReuseIds(@TempDir Path directory) throws IOException {
+		long lastId;
+		try (MentionJournal journal = MentionJournal.open(directory, 1024 * 1024)) {
+			journal.complete(journal.append(WEBMENTION_1));
+			lastId = journal.append(WEBMENTION_2);
+			journal.complete(lastId);
+		}
+
+		// Opening twice compacts the journal to a segment without any Webmentions.
+		MentionJournal.open(directory, 1024 * 1024).close();
+		try (MentionJournal journal = MentionJournal.open(directory, 1024 * 1024)) {
+			assertThat(journal.getRecovered()).isEmpty();
+			assertThat(journal.append(WEBMENTION_1)).isGreaterThan(lastId);
+		}
+	}
+
+	private static List<Path> listSegments(Path directory) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.toList();
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package dev.rilling.webmention4j.server.internal;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MicroBatcherTest {
+
+	@Test
+	@DisplayName("#submit flushes full batches")
+	void flushesFullBatches() throws Exception {
+		List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+		MicroBatcher<Integer> batcher = new MicroBatcher<>(3,
+			Duration.ofMinutes(1),
+			batches::add,
+			Executors.defaultThreadFactory());
+
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			futures.add(batcher.submit(i));
+		}
+		CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+		batcher.close();
+
+		assertThat(batches).containsExactly(List.of(0, 1, 2), List.of(3, 4, 5));
+	}
+
+	@Test
+	@DisplayName("#submit flushes incomplete batches after delay")
+	void flushesAfterDelay() throws Exception {
+		List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+		MicroBatcher<Integer> batcher = new MicroBatcher<>(100,
+			Duration.ofMillis(50),
+			batches::add,
+			Executors.defaultThreadFactory());
+
+		batcher.submit(1).get(10, TimeUnit.SECONDS);
+		batcher.close();
+
+		assertThat(batches).containsExactly(List.of(1));
+	}
+
+	@Test
+	@DisplayName("#submit fails futures if sink fails")
+	void failsIfSinkFails() throws Exception {
+		MicroBatcher<Integer> batcher = new MicroBatcher<>(100, Duration.ofMillis(50), batch -> {
+			throw new IllegalStateException("Database is down.");
+		}, Executors.defaultThreadFactory());
+
+		CompletableFuture<Void> future = batcher.submit(1);
+		batcher.close();
+
+		assertThat(future).isCompletedExceptionally();
+		assertThat(batcher.submit(2)).isCompletedExceptionally();
+	}
+
+	@Test
+	@DisplayName("#submit completes futures of items submitted while closing")
+	void completesWhileClosing() throws Exception {
+		// Small batches fill the queue, so that submitters are waiting for space when closing.
+		MicroBatcher<Integer> batcher = new MicroBatcher<>(1, Duration.ZERO, batch -> {
+		}, Executors.defaultThreadFactory());
+		List<CompletableFuture<Void>> futures = new CopyOnWriteArrayList<>();
+		ExecutorService submitters = Executors.newFixedThreadPool(8);
+		for (int i = 0; i < 8; i++) {
+			submitters.execute(() -> {
+				try {
+					for (int item = 0; item < 1000; item++) {
+						futures.add(batcher.submit(item));
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+		}
+
+		batcher.close();
+		submitters.shutdown();
+		assertThat(submitters.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+		assertThat(futures).hasSize(8000).allSatisfy(future -> assertThat(future).isDone());
+	}
+}
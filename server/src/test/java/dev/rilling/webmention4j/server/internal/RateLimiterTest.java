@@ -0,0 +1,58 @@
+package dev.rilling.webmention4j.server.internal;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimiterTest {
+
+	final AtomicLong nanoTime = new AtomicLong(0);
+
+	@Test
+	@DisplayName("#tryAcquire allows bursts and refills over time")
+	void tryAcquireRefills() {
+		RateLimiter rateLimiter = new RateLimiter(1, 2, 16, nanoTime::get);
+
+		assertThat(rateLimiter.tryAcquire("example.com")).isTrue();
+		assertThat(rateLimiter.tryAcquire("example.com")).isTrue();
+		assertThat(rateLimiter.tryAcquire("example.com")).isFalse();
+		assertThat(rateLimiter.getRejectedCount()).isEqualTo(1);
+
+		nanoTime.addAndGet(1_000_000_000L);
+		assertThat(rateLimiter.tryAcquire("example.com")).isTrue();
+		assertThat(rateLimiter.tryAcquire("example.com")).isFalse();
+	}
+
+	@Test
+	@DisplayName("#tryAcquire limits keys separately")
+	void tryAcquireSeparatesKeys() {
+		// Enough slots to make collisions between two keys very unlikely.
+		RateLimiter rateLimiter = new RateLimiter(1, 1, 1 << 20, nanoTime::get);
+
+		assertThat(rateLimiter.tryAcquire("example.com")).isTrue();
+		assertThat(rateLimiter.tryAcquire("example.com")).isFalse();
+		assertThat(rateLimiter.tryAcquire("example.org")).isTrue();
+	}
+
+	@Test
+	@DisplayName("#tryAcquire shares buckets for colliding active keys")
+	void tryAcquireSharesOnCollision() {
+		RateLimiter rateLimiter = new RateLimiter(1, 1, 1, nanoTime::get);
+
+		assertThat(rateLimiter.tryAcquire("example.com")).isTrue();
+		assertThat(rateLimiter.tryAcquire("example.org")).isFalse();
+
+		nanoTime.addAndGet(1_000_000_000L);
+		assertThat(rateLimiter.tryAcquire("example.org")).isTrue();
+	}
+
+	@Test
+	@DisplayName("#getRetryAfterSeconds rounds up")
+	void getRetryAfterSeconds() {
+		assertThat(new RateLimiter(0.5, 1, 1, nanoTime::get).getRetryAfterSeconds()).isEqualTo(2);
+		assertThat(new RateLimiter(10, 1, 1, nanoTime::get).getRetryAfterSeconds()).isEqualTo(1);
+	}
+}
@@ -0,0 +1,38 @@
+package dev.rilling.webmention4j.server.internal;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpooledBodyTest {
+
+	@Test
+	@DisplayName("#spool keeps small bodies in memory")
+	void spoolsSmallBodies() throws IOException {
+		byte[] bytes = "Hello World!".getBytes(StandardCharsets.UTF_8);
+
+		try (SpooledBody body = SpooledBody.spool(new ByteArrayInputStream(bytes), bytes.length)) {
+			assertThat(body.size()).isEqualTo(bytes.length);
+			assertThat(body.openStream().readAllBytes()).isEqualTo(bytes);
+			// Streams are independent.
+			assertThat(body.openStream().readAllBytes()).isEqualTo(bytes);
+		}
+	}
+
+	@Test
+	@DisplayName("#spool maps large bodies")
+	void spoolsLargeBodies() throws IOException {
+		byte[] bytes = "Hello World!".repeat(1000).getBytes(StandardCharsets.UTF_8);
+
+		try (SpooledBody body = SpooledBody.spool(new ByteArrayInputStream(bytes), 100)) {
+			assertThat(body.size()).isEqualTo(bytes.length);
+			assertThat(body.openStream().readAllBytes()).isEqualTo(bytes);
+			assertThat(body.asByteBuffer().isReadOnly()).isTrue();
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package dev.rilling.webmention4j.server.internal;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class StatusStoreTest {
+
+	@Test
+	@DisplayName("#update changes status")
+	void updateChangesStatus() {
+		StatusStore statusStore = new StatusStore(4);
+		String token = statusStore.put(1, StatusStore.Status.QUEUED);
+
+		statusStore.update(1, StatusStore.Status.REJECTED, "Nope.");
+
+		assertThat(statusStore.get(token)).isEqualTo(new StatusStore.Entry(1, StatusStore.Status.REJECTED, "Nope."));
+	}
+
+	@Test
+	@DisplayName("#put evicts older entries")
+	void putEvicts() {
+		StatusStore statusStore = new StatusStore(4);
+		String token1 = statusStore.put(1, StatusStore.Status.QUEUED);
+		String token5 = statusStore.put(5, StatusStore.Status.QUEUED);
+
+		// Must not resurrect the evicted entry.
+		statusStore.update(1, StatusStore.Status.ACCEPTED, null);
+
+		assertThat(statusStore.get(token1)).isNull();
+		assertThat(statusStore.get(token5)).isEqualTo(new StatusStore.Entry(5, StatusStore.Status.QUEUED, null));
+	}
+
+	@Test
+	@DisplayName("#get requires the token returned by #put")
+	void getRequiresToken() {
+		StatusStore statusStore = new StatusStore(4);
+		String token = statusStore.put(1, StatusStore.Status.QUEUED);
+		String id = token.substring(0, token.indexOf('-'));
+
+		assertThat(statusStore.get(id + "-0")).isNull();
+		assertThatIllegalArgumentException().isThrownBy(() -> statusStore.get(id));
+		assertThatIllegalArgumentException().isThrownBy(() -> statusStore.get("1-xyz"));
+	}
+}
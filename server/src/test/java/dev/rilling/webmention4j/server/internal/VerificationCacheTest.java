@@ -0,0 +1,61 @@
+package dev.rilling.webmention4j.server.internal;
+
+import dev.rilling.webmention4j.common.Webmention;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VerificationCacheTest {
+
+	private static final Webmention WEBMENTION = new Webmention(URI.create("https://a.example.com"),
+		URI.create("https://b.example.com"));
+
+	@Test
+	@DisplayName("#isFresh respects TTL")
+	void isFreshRespectsTtl() {
+		AtomicLong nanoTime = new AtomicLong();
+		VerificationCache verificationCache = new VerificationCache(16, Duration.ofSeconds(10), nanoTime::get);
+		verificationCache.put(WEBMENTION, true, "\"abc\"", null);
+
+		VerificationCache.Entry entry = verificationCache.get(WEBMENTION);
+		assertThat(entry).isNotNull();
+		assertThat(entry.etag()).isEqualTo("\"abc\"");
+		assertThat(verificationCache.isFresh(entry)).isTrue();
+
+		nanoTime.set(Duration.ofSeconds(10).toNanos());
+		assertThat(verificationCache.isFresh(entry)).isFalse();
+
+		verificationCache.refresh(entry);
+		assertThat(verificationCache.isFresh(verificationCache.get(WEBMENTION))).isTrue();
+		assertThat(verificationCache.getHitCount()).isEqualTo(2);
+	}
+
+	@Test
+	@DisplayName("#get returns null for other Webmentions")
+	void getChecksWebmention() {
+		VerificationCache verificationCache = new VerificationCache(1, Duration.ofSeconds(10));
+		verificationCache.put(WEBMENTION, true, null, null);
+
+		assertThat(verificationCache.get(new Webmention(URI.create("https://a.example.com"),
+			URI.create("https://c.example.com")))).isNull();
+	}
+
+	@Test
+	@DisplayName("#remove only removes the given Webmention")
+	void removeChecksWebmention() {
+		VerificationCache verificationCache = new VerificationCache(1, Duration.ofSeconds(10));
+		verificationCache.put(WEBMENTION, true, null, null);
+
+		verificationCache.remove(new Webmention(URI.create("https://a.example.com"),
+			URI.create("https://c.example.com")));
+		assertThat(verificationCache.get(WEBMENTION)).isNotNull();
+
+		verificationCache.remove(WEBMENTION);
+		assertThat(verificationCache.get(WEBMENTION)).isNull();
+	}
+}
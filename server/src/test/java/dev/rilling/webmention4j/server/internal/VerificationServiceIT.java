@@ -2,10 +2,17 @@ package dev.rilling.webmention4j.server.internal;
 
 import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
 import dev.rilling.webmention4j.common.Webmention;
+import dev.rilling.webmention4j.common.internal.FetchLimitExceededException;
+import dev.rilling.webmention4j.common.internal.FetchLimits;
+import dev.rilling.webmention4j.common.metrics.MetricsRecorder;
+import dev.rilling.webmention4j.common.metrics.Phase;
 import dev.rilling.webmention4j.common.test.AutoClosableExtension;
 import dev.rilling.webmention4j.server.internal.verifier.HtmlVerifier;
 import dev.rilling.webmention4j.server.internal.verifier.JsonVerifier;
 import dev.rilling.webmention4j.server.internal.verifier.TextVerifier;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
 import org.apache.hc.core5.http.ContentType;
@@ -14,9 +21,13 @@ import org.apache.hc.core5.http.HttpStatus;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
@@ -51,6 +62,29 @@ class VerificationServiceIT {
 			new Webmention(source, target))).isNotNull().isInstanceOf(IOException.class);
 	}
 
+	@Test
+	@DisplayName("#isWebmentionValid reads only the start of large error bodies")
+	void isWebmentionValidTruncatesErrorBody() {
+		SOURCE_SERVER.stubFor(get("/blog/post").willReturn(notFound().withHeader(HttpHeaders.CONTENT_TYPE,
+			ContentType.TEXT_PLAIN.toString()).withBody("x".repeat(1024 * 1024))));
+
+		MetricsRecorder recorder = new MetricsRecorder();
+		VerificationService instrumentedVerificationService = new VerificationService(List.of(new TextVerifier()),
+			FetchLimits.DEFAULT,
+			VerificationService.DEFAULT_SPOOL_THRESHOLD_BYTES,
+			recorder);
+		URI source = URI.create(SOURCE_SERVER.url("/blog/post"));
+		URI target = URI.create("https://example.com");
+
+		assertThatThrownBy(() -> instrumentedVerificationService.isWebmentionValid(HTTP_CLIENT_EXTENSION.get(),
+			new Webmention(source, target))).isInstanceOf(IOException.class)
+			.isNotInstanceOf(FetchLimitExceededException.class)
+			.hasMessageStartingWith("Request failed: 404")
+			.hasMessageEndingWith("[...]");
+		assertThat(recorder.getBytes().get(new MetricsRecorder.Series(Phase.SOURCE_FETCH, "", "404")).get())
+			.isEqualTo(FetchLimits.DEFAULT.maxErrorBodyBytes() + 1L);
+	}
+
 	@Test
 	@DisplayName("#isWebmentionValid throws on 'Not Acceptable' response")
 	void isWebmentionValidThrowsOnNotAcceptable() {
@@ -97,6 +131,101 @@ class VerificationServiceIT {
 			new Webmention(source, target))).isTrue();
 	}
 
+	@Test
+	@DisplayName("#verify reports source fetch and verifier")
+	void verifyReportsMetrics() throws Exception {
+		String body = "<a href=\"https://example.com\">cool site</a>";
+		SOURCE_SERVER.stubFor(get("/blog/post").willReturn(ok().withHeader(HttpHeaders.CONTENT_TYPE,
+			ContentType.TEXT_HTML.toString()).withBody(body)));
+
+		MetricsRecorder recorder = new MetricsRecorder();
+		VerificationService instrumentedVerificationService = new VerificationService(List.of(new HtmlVerifier()),
+			FetchLimits.DEFAULT,
+			VerificationService.DEFAULT_SPOOL_THRESHOLD_BYTES,
+			recorder);
+		URI source = URI.create(SOURCE_SERVER.url("/blog/post"));
+		assertThat(instrumentedVerificationService.isWebmentionValid(HTTP_CLIENT_EXTENSION.get(),
+			new Webmention(source, URI.create("https://example.com")))).isTrue();
+
+		assertThat(recorder.getDurations()).containsKeys(new MetricsRecorder.Series(Phase.SOURCE_FETCH, "", "200"),
+			new MetricsRecorder.Series(Phase.VERIFY, "text/html", "valid"));
+		assertThat(recorder.getBytes().get(new MetricsRecorder.Series(Phase.SOURCE_FETCH, "", "200")).get())
+			.isEqualTo(body.length());
+	}
+
+	@Test
+	@DisplayName("#isWebmentionValid emits JFR event")
+	void isWebmentionValidEmitsEvent(@TempDir Path tempDir) throws Exception {
+		String body = "<a href=\"https://example.com\">cool site</a>";
+		SOURCE_SERVER.stubFor(get("/blog/post").willReturn(ok().withHeader(HttpHeaders.CONTENT_TYPE,
+			ContentType.TEXT_HTML.toString()).withBody(body)));
+		URI source = URI.create(SOURCE_SERVER.url("/blog/post"));
+
+		Path recordingFile = tempDir.resolve("recording.jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable(VerificationEvent.NAME);
+			recording.start();
+			verificationService.isWebmentionValid(HTTP_CLIENT_EXTENSION.get(),
+				new Webmention(source, URI.create("https://example.com")));
+			recording.stop();
+			recording.dump(recordingFile);
+		}
+
+		List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+		assertThat(events).singleElement().satisfies(event -> {
+			assertThat(event.getString("source")).isEqualTo(source.toString());
+			assertThat(event.getString("target")).isEqualTo("https://example.com");
+			assertThat(event.getString("verifier")).isEqualTo("text/html");
+			assertThat(event.getLong("bytesRead")).isEqualTo(body.length());
+			assertThat(event.getString("outcome")).isEqualTo("valid");
+		});
+	}
+
+	@Test
+	@DisplayName("#verify keeps source body and links")
+	void verifyKeepsSource() throws Exception {
+		String body = """
+			<html lang="en">
+			<body>
+				<img src="/avatar.png">
+				<a href="https://example.com">cool site</a>
+			</body>
+			</html>""";
+		SOURCE_SERVER.stubFor(get("/blog/post").willReturn(ok().withHeader(HttpHeaders.CONTENT_TYPE,
+			ContentType.TEXT_HTML.toString()).withHeader("Last-Modified", "Wed, 21 Oct 2015 07:28:00 GMT").withBody(body)));
+
+		URI source = URI.create(SOURCE_SERVER.url("/blog/post"));
+		URI target = URI.create("https://example.com");
+		// Threshold is smaller than the body, so a temporary file is used.
+		VerificationService spoolingVerificationService = new VerificationService(List.of(new HtmlVerifier()),
+			FetchLimits.DEFAULT,
+			16);
+		VerificationService.Verification verification = spoolingVerificationService.verify(HTTP_CLIENT_EXTENSION.get(),
+			new Webmention(source, target));
+		try (SpooledBody spooledBody = verification.body()) {
+			assertThat(verification.valid()).isTrue();
+			assertThat(verification.statusCode()).isEqualTo(HttpStatus.SC_OK);
+			assertThat(verification.headers().get("last-modified")).containsExactly("Wed, 21 Oct 2015 07:28:00 GMT");
+			assertThat(verification.links()).containsExactly("/avatar.png", "https://example.com");
+			assertThat(new String(spooledBody.openStream().readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(body);
+		}
+	}
+
+	@Test
+	@DisplayName("#verify sends conditional request if validators are given")
+	void verifyRevalidates() throws Exception {
+		SOURCE_SERVER.stubFor(get("/blog/post").withHeader("If-None-Match", equalTo("\"abc\""))
+			.willReturn(status(HttpStatus.SC_NOT_MODIFIED)));
+
+		URI source = URI.create(SOURCE_SERVER.url("/blog/post"));
+		URI target = URI.create("https://example.com");
+		VerificationService.Verification verification = verificationService.verify(HTTP_CLIENT_EXTENSION.get(),
+			new Webmention(source, target),
+			"\"abc\"",
+			null);
+		assertThat(verification.notModified()).isTrue();
+	}
+
 	@Test
 	@DisplayName("#isWebmentionValid returns false if response does not contain link")
 	void isWebmentionValidChecksContentFalse() throws Exception {
@@ -116,4 +245,59 @@ class VerificationServiceIT {
 		assertThat(verificationService.isWebmentionValid(HTTP_CLIENT_EXTENSION.get(),
 			new Webmention(source, target))).isFalse();
 	}
+
+	@Test
+	@DisplayName("#isWebmentionValid aborts if body exceeds size limit")
+	void isWebmentionValidAbortsOnBodySize() {
+		SOURCE_SERVER.stubFor(get("/blog/post").willReturn(ok().withHeader(HttpHeaders.CONTENT_TYPE,
+			ContentType.TEXT_PLAIN.toString()).withBody("https://example.com ".repeat(100))));
+
+		VerificationService limitedVerificationService = new VerificationService(List.of(new TextVerifier()),
+			new FetchLimits(100, 100, Duration.ofSeconds(5), Duration.ofSeconds(5), Duration.ofSeconds(5)));
+		URI source = URI.create(SOURCE_SERVER.url("/blog/post"));
+		URI target = URI.create("https://example.com");
+
+		assertThatThrownBy(() -> limitedVerificationService.isWebmentionValid(HTTP_CLIENT_EXTENSION.get(),
+			new Webmention(source, target))).isInstanceOf(FetchLimitExceededException.class)
+			.extracting("limit")
+			.isEqualTo(FetchLimitExceededException.Limit.BODY_SIZE);
+		assertThat(limitedVerificationService.getLimitExceededCount()).isEqualTo(1);
+	}
+
+	@Test
+	@DisplayName("#isWebmentionValid aborts if body is streamed slower than the total time limit")
+	void isWebmentionValidAbortsOnTotalTimeout() {
+		SOURCE_SERVER.stubFor(get("/blog/post").willReturn(ok().withHeader(HttpHeaders.CONTENT_TYPE,
+			ContentType.TEXT_PLAIN.toString()).withBody("https://example.com ".repeat(100)).withChunkedDribbleDelay(20, 2000)));
+
+		VerificationService limitedVerificationService = new VerificationService(List.of(new TextVerifier()),
+			new FetchLimits(10_000, 100, Duration.ofSeconds(5), Duration.ofSeconds(5), Duration.ofMillis(500)));
+		URI source = URI.create(SOURCE_SERVER.url("/blog/post"));
+		URI target = URI.create("https://example.com");
+
+		assertThatThrownBy(() -> limitedVerificationService.isWebmentionValid(HTTP_CLIENT_EXTENSION.get(),
+			new Webmention(source, target))).isInstanceOf(FetchLimitExceededException.class)
+			.extracting("limit")
+			.isEqualTo(FetchLimitExceededException.Limit.TOTAL_TIMEOUT);
+	}
+
+	@Test
+	@DisplayName("#isWebmentionValid aborts a read blocking past the total time limit")
+	void isWebmentionValidAbortsBlockedRead() {
+		// Each chunk takes longer than the total time limit, but less than the response timeout.
+		SOURCE_SERVER.stubFor(get("/blog/post").willReturn(ok().withHeader(HttpHeaders.CONTENT_TYPE,
+			ContentType.TEXT_PLAIN.toString()).withBody("https://example.com ".repeat(100)).withChunkedDribbleDelay(2, 4000)));
+
+		VerificationService limitedVerificationService = new VerificationService(List.of(new TextVerifier()),
+			new FetchLimits(10_000, 100, Duration.ofSeconds(5), Duration.ofSeconds(5), Duration.ofMillis(500)));
+		URI source = URI.create(SOURCE_SERVER.url("/blog/post"));
+		URI target = URI.create("https://example.com");
+
+		long start = System.nanoTime();
+		assertThatThrownBy(() -> limitedVerificationService.isWebmentionValid(HTTP_CLIENT_EXTENSION.get(),
+			new Webmention(source, target))).isInstanceOf(FetchLimitExceededException.class)
+			.extracting("limit")
+			.isEqualTo(FetchLimitExceededException.Limit.TOTAL_TIMEOUT);
+		assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(1500));
+	}
 }
@@ -0,0 +1,37 @@
+package dev.rilling.webmention4j.server.internal.verifier;
+
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.http.message.BasicClassicHttpResponse;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TextVerifierTest {
+
+	final TextVerifier textVerifier = new TextVerifier();
+
+	@Test
+	@DisplayName("#verify extracts links and finds the target within them")
+	void verifyExtractsLinks() throws IOException {
+		try (ClassicHttpResponse response = new BasicClassicHttpResponse(HttpStatus.SC_OK)) {
+			response.setHeader(HttpHeaders.CONTENT_TYPE, ContentType.TEXT_PLAIN.toString());
+			// Padding moves the links across the boundaries of the read buffer.
+			response.setEntity(new StringEntity("x".repeat(8190) + " <https://example.com/post>\n" +
+												"see:\"http://example.org\"", StandardCharsets.UTF_8));
+
+			Verifier.Result result = textVerifier.verify(response, URI.create("https://example.com"));
+
+			assertThat(result.valid()).isTrue();
+			assertThat(result.links()).containsExactly("https://example.com/post", "http://example.org");
+		}
+	}
+}
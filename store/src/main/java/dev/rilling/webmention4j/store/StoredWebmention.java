@@ -0,0 +1,16 @@
+package dev.rilling.webmention4j.store;
+
+import dev.rilling.webmention4j.common.Webmention;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Instant;
+
+/**
+ * A Webmention as stored in a {@link WebmentionStore}.
+ *
+ * @param sequence   Position in the store. Increases with each change, so it can be used as cursor.
+ * @param webmention The Webmention.
+ * @param receivedAt When the Webmention was (last) received. Millisecond precision.
+ */
+public record StoredWebmention(long sequence, @NotNull Webmention webmention, @NotNull Instant receivedAt) {
+}
@@ -0,0 +1,229 @@
+package dev.rilling.webmention4j.store;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Servlet exporting Webmentions of a {@link WebmentionStore} as newline-delimited JSON, one object per line with the
+ * fields {@code sequence}, {@code source}, {@code target} and {@code receivedAt}.
+ * <p>
+ * Query parameters of {@code GET} requests (exactly one of the first two must be set):
+ * <ul>
+ *     <li>{@code target}: Returns all Webmentions of this target URL.</li>
+ *     <li>{@code since}: Returns Webmentions stored after this cursor, e.g. the highest {@code sequence} of a
+ *     previous response. {@code 0} returns all Webmentions.</li>
+ *     <li>{@code limit}: Maximum number of Webmentions to return. If not set, all are returned.</li>
+ * </ul>
+ * <p>
+ * Responses are streamed without being buffered as a whole. If the servlet supports async processing, no container
+ * thread is occupied while waiting for slow clients. Responses carry an {@code ETag}, so that clients can poll using
+ * {@code If-None-Match} and receive {@code 304 Not Modified} if nothing changed.
+ * <p>
+ * Serialization of this servlet is NOT supported.
+ */
+@SuppressWarnings("serial")
+public class WebmentionExportServlet extends HttpServlet {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(WebmentionExportServlet.class);
+
+	private static final String CONTENT_TYPE = "application/x-ndjson";
+	// Large enough to amortize write calls, small enough to not matter per request.
+	private static final int CHUNK_BYTES = 8 * 1024;
+
+	private final transient WebmentionStore store;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param store Store to export. Not closed by this servlet.
+	 */
+	public WebmentionExportServlet(@NotNull WebmentionStore store) {
+		this.store = store;
+	}
+
+	@Override
+	protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+		Query query;
+		try {
+			query = parseQuery(req);
+		} catch (IllegalArgumentException e) {
+			resp.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+			return;
+		}
+
+		// Get version before querying, so it is never paired with newer results.
+		String etag = "W/\"%d\"".formatted(query.target != null ?
+										   store.getTargetVersion(query.target) :
+										   store.getLastSequence());
+		resp.setHeader("ETag", etag);
+		resp.setHeader("Cache-Control", "no-cache");
+		if (matchesEtag(req.getHeader("If-None-Match"), etag)) {
+			resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+
+		resp.setStatus(HttpServletResponse.SC_OK);
+		resp.setContentType(CONTENT_TYPE);
+		resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		if ("HEAD".equals(req.getMethod())) {
+			return;
+		}
+
+		Stream<StoredWebmention> mentions = query.target != null ?
+											store.streamByTarget(query.target) :
+											store.streamSince(query.since);
+		if (query.limit >= 0) {
+			mentions = mentions.limit(query.limit);
+		}
+		Iterator<StoredWebmention> iterator = mentions.iterator();
+
+		if (req.isAsyncSupported()) {
+			AsyncContext asyncContext = req.startAsync();
+			// Exports may take long for slow clients, the write listener is notified about errors instead.
+			asyncContext.setTimeout(0);
+			ServletOutputStream outputStream = resp.getOutputStream();
+			outputStream.setWriteListener(new ExportWriter(asyncContext, outputStream, iterator));
+		} else {
+			ServletOutputStream outputStream = resp.getOutputStream();
+			while (iterator.hasNext()) {
+				outputStream.write(encodeChunk(iterator));
+			}
+		}
+	}
+
+	@Override
+	protected void doHead(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+		// The default implementation does not work with async writing.
+		doGet(req, resp);
+	}
+
+	private static Query parseQuery(HttpServletRequest req) {
+		String targetParam = req.getParameter("target");
+		String sinceParam = req.getParameter("since");
+		String limitParam = req.getParameter("limit");
+		if ((targetParam == null) == (sinceParam == null)) {
+			throw new IllegalArgumentException("Exactly one of the parameters 'target' and 'since' must be set.");
+		}
+
+		URI target = null;
+		if (targetParam != null) {
+			try {
+				target = new URI(targetParam);
+			} catch (URISyntaxException e) {
+				throw new IllegalArgumentException("Invalid URL syntax: '%s'.".formatted(targetParam), e);
+			}
+		}
+		long since = sinceParam != null ? parseNonNegative(sinceParam, "since") : 0;
+		long limit = limitParam != null ? parseNonNegative(limitParam, "limit") : -1;
+		return new Query(target, since, limit);
+	}
+
+	private static long parseNonNegative(String value, String name) {
+		long parsed;
+		try {
+			parsed = Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Parameter '%s' must be a number.".formatted(name), e);
+		}
+		if (parsed < 0) {
+			throw new IllegalArgumentException("Parameter '%s' must not be negative.".formatted(name));
+		}
+		return parsed;
+	}
+
+	private static boolean matchesEtag(String ifNoneMatch, String etag) {
+		if (ifNoneMatch == null) {
+			return false;
+		}
+		// Weak comparison, as required for 'If-None-Match'.
+		String opaqueTag = etag.substring(2);
+		for (String candidate : ifNoneMatch.split(",")) {
+			String trimmed = candidate.trim();
+			if (trimmed.equals("*") || trimmed.equals(etag) || trimmed.equals(opaqueTag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static byte[] encodeChunk(Iterator<StoredWebmention> iterator) {
+		StringBuilder chunk = new StringBuilder(CHUNK_BYTES + 512);
+		while (iterator.hasNext() && chunk.length() < CHUNK_BYTES) {
+			StoredWebmention stored = iterator.next();
+			chunk.append("{\"sequence\":").append(stored.sequence());
+			chunk.append(",\"source\":");
+			appendJsonString(chunk, stored.webmention().source().toString());
+			chunk.append(",\"target\":");
+			appendJsonString(chunk, stored.webmention().target().toString());
+			chunk.append(",\"receivedAt\":\"").append(stored.receivedAt()).append("\"}\n");
+		}
+		return chunk.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static void appendJsonString(StringBuilder builder, String value) {
+		builder.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				builder.append('\\').append(c);
+			} else if (c < 0x20) {
+				builder.append("\\u%04x".formatted((int) c));
+			} else {
+				builder.append(c);
+			}
+		}
+		builder.append('"');
+	}
+
+	private record Query(URI target, long since, long limit) {
+	}
+
+	/**
+	 * Writes chunks only while the container can accept them without blocking, and is called back once it can
+	 * accept more.
+	 */
+	private static final class ExportWriter implements WriteListener {
+		private final AsyncContext asyncContext;
+		private final ServletOutputStream outputStream;
+		private final Iterator<StoredWebmention> iterator;
+
+		ExportWriter(AsyncContext asyncContext,
+					 ServletOutputStream outputStream,
+					 Iterator<StoredWebmention> iterator) {
+			this.asyncContext = asyncContext;
+			this.outputStream = outputStream;
+			this.iterator = iterator;
+		}
+
+		@Override
+		public void onWritePossible() throws IOException {
+			while (outputStream.isReady()) {
+				if (!iterator.hasNext()) {
+					asyncContext.complete();
+					return;
+				}
+				outputStream.write(encodeChunk(iterator));
+			}
+		}
+
+		@Override
+		public void onError(Throwable t) {
+			LOGGER.debug("Could not write export.", t);
+			asyncContext.complete();
+		}
+	}
+}
@@ -0,0 +1,492 @@
+package dev.rilling.webmention4j.store;
+
+import dev.rilling.webmention4j.common.Webmention;
+import dev.rilling.webmention4j.common.internal.SegmentLog;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * Embedded store for received Webmentions, e.g. to be filled from
+ * {@code AbstractWebmentionEndpointServlet#handleWebmention}.
+ * <p>
+ * Every change is appended as a record to a {@link SegmentLog}, and applied to an in-memory index allowing all
+ * Webmentions of a target to be queried without I/O. Receiving a Webmention again supersedes its previous record,
+ * deleting it writes a tombstone record. Once the segment exceeds the configured size (and twice the size of its
+ * live records), it is compacted by writing a new segment containing only live records.
+ * <p>
+ * Writes are serialized, but do not wait for each other's {@code fsync}: concurrent writes share a single one
+ * (group commit). Changes are visible to queries as soon as they were written, which may be shortly before they are
+ * durable. Queries never block.
+ */
+public final class WebmentionStore implements Closeable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(WebmentionStore.class);
+
+	private static final byte TYPE_PUT = 1;
+	private static final byte TYPE_DELETE = 2;
+	private static final byte TYPE_SEQUENCE = 3;
+
+	private final Config config;
+
+	private final Object writeLock = new Object();
+
+	// Modified under writeLock, readable without locking.
+	private final ConcurrentMap<Webmention, StoredWebmention> live = new ConcurrentHashMap<>();
+	private final ConcurrentNavigableMap<Long, StoredWebmention> bySequence = new ConcurrentSkipListMap<>();
+	private final ConcurrentMap<URI, Target> byTarget = new ConcurrentHashMap<>();
+	private volatile long lastSequence = 0;
+
+	// Set while opening.
+	private SegmentLog log;
+	// Guarded by writeLock.
+	private boolean closed = false;
+
+	private WebmentionStore(Config config) {
+		this.config = config;
+	}
+
+	/**
+	 * Opens the store with default configuration.
+	 *
+	 * @see #open(Path, Config)
+	 */
+	@NotNull
+	public static WebmentionStore open(@NotNull Path directory) throws IOException {
+		return open(directory, new Config());
+	}
+
+	/**
+	 * Opens the store, loading existing segments into the index.
+	 *
+	 * @param directory Directory to store segments in. Created if it does not exist.
+	 *                  Must not be used by another store at the same time.
+	 * @param config    Configuration.
+	 * @return The opened store.
+	 * @throws IOException if I/O fails.
+	 */
+	@NotNull
+	public static WebmentionStore open(@NotNull Path directory, @NotNull Config config) throws IOException {
+		if (config.getSegmentBytes() < 1) {
+			throw new IllegalArgumentException("Segment size must be positive.");
+		}
+		WebmentionStore store = new WebmentionStore(new Config(config));
+		synchronized (store.writeLock) {
+			store.log = SegmentLog.open(directory,
+				"store",
+				config.getSegmentBytes(),
+				store::applyRecord,
+				store::writeLive);
+		}
+		if (store.size() > 0) {
+			LOGGER.info("Loaded {} Webmention(s) from store '{}'.", store.size(), directory);
+		}
+		return store;
+	}
+
+	/**
+	 * Stores a Webmention received now.
+	 *
+	 * @see #put(Webmention, Instant)
+	 */
+	@NotNull
+	public StoredWebmention put(@NotNull Webmention webmention) throws IOException {
+		return put(webmention, Instant.now());
+	}
+
+	/**
+	 * Stores a Webmention, superseding a previous record of it.
+	 *
+	 * @param webmention Webmention to store.
+	 * @param receivedAt When it was received.
+	 * @return The stored Webmention.
+	 * @throws IOException if I/O fails.
+	 */
+	@NotNull
+	public StoredWebmention put(@NotNull Webmention webmention, @NotNull Instant receivedAt) throws IOException {
+		StoredWebmention stored;
+		long count;
+		synchronized (writeLock) {
+			ensureOpen();
+			stored = new StoredWebmention(lastSequence + 1,
+				webmention,
+				Instant.ofEpochMilli(receivedAt.toEpochMilli()));
+			count = log.append(encodePut(stored));
+			lastSequence = stored.sequence();
+			applyPut(stored);
+			log.rollIfNeeded();
+		}
+		syncIfConfigured(count);
+		return stored;
+	}
+
+	/**
+	 * Deletes a Webmention, e.g. because its source no longer links to the target.
+	 *
+	 * @param webmention Webmention to delete.
+	 * @return if the Webmention was stored.
+	 * @throws IOException if I/O fails.
+	 */
+	public boolean delete(@NotNull Webmention webmention) throws IOException {
+		long count;
+		synchronized (writeLock) {
+			ensureOpen();
+			if (!live.containsKey(webmention)) {
+				return false;
+			}
+			long sequence = lastSequence + 1;
+			count = log.append(encodeDelete(sequence, webmention));
+			lastSequence = sequence;
+			applyDelete(sequence, webmention);
+			log.rollIfNeeded();
+		}
+		syncIfConfigured(count);
+		return true;
+	}
+
+	/**
+	 * @param webmention Webmention to look up.
+	 * @return The stored Webmention, if present.
+	 */
+	@NotNull
+	public Optional<StoredWebmention> get(@NotNull Webmention webmention) {
+		return Optional.ofNullable(live.get(webmention));
+	}
+
+	/**
+	 * @param target Target URL.
+	 * @return All stored Webmentions of the target, in order of their sequence.
+	 */
+	@NotNull
+	public List<StoredWebmention> findByTarget(@NotNull URI target) {
+		Target entry = byTarget.get(target);
+		if (entry == null) {
+			return List.of();
+		}
+		return List.copyOf(entry.mentions.values());
+	}
+
+	/**
+	 * Streams the Webmentions of a target without copying them, e.g. to export many of them.
+	 * The stream is weakly consistent: it may or may not reflect changes made while it is consumed.
+	 *
+	 * @param target Target URL.
+	 * @return All stored Webmentions of the target, in order of their sequence.
+	 */
+	@NotNull
+	public Stream<StoredWebmention> streamByTarget(@NotNull URI target) {
+		Target entry = byTarget.get(target);
+		if (entry == null) {
+			return Stream.empty();
+		}
+		return entry.mentions.values().stream();
+	}
+
+	/**
+	 * @param target Target URL.
+	 * @return Number of stored Webmentions of the target.
+	 */
+	public int countByTarget(@NotNull URI target) {
+		Target entry = byTarget.get(target);
+		return entry == null ? 0 : entry.mentions.size();
+	}
+
+	/**
+	 * Gets a value identifying the current Webmentions of a target, e.g. for use as an HTTP entity tag.
+	 * To avoid pairing it with newer results, get it before querying the Webmentions.
+	 *
+	 * @param target Target URL.
+	 * @return Sequence of the latest change to the Webmentions of the target, or 0 if there are none.
+	 */
+	public long getTargetVersion(@NotNull URI target) {
+		Target entry = byTarget.get(target);
+		return entry == null ? 0 : entry.version;
+	}
+
+	/**
+	 * Queries Webmentions stored after a cursor, e.g. to export them incrementally.
+	 * Only live records are returned: Webmentions that were superseded or deleted in the meantime are skipped.
+	 *
+	 * @param cursor Sequence to start after. 0 to start at the beginning.
+	 * @param limit  Maximum number of Webmentions to return.
+	 * @return Stored Webmentions, in order of their sequence.
+	 */
+	@NotNull
+	public List<StoredWebmention> findSince(long cursor, int limit) {
+		return streamSince(cursor).limit(limit).toList();
+	}
+
+	/**
+	 * Streams Webmentions stored after a cursor without copying them.
+	 * The stream is weakly consistent: it may or may not reflect changes made while it is consumed.
+	 *
+	 * @param cursor Sequence to start after. 0 to start at the beginning.
+	 * @return Stored Webmentions, in order of their sequence.
+	 * @see #findSince(long, int)
+	 */
+	@NotNull
+	public Stream<StoredWebmention> streamSince(long cursor) {
+		return bySequence.tailMap(cursor, false).values().stream();
+	}
+
+	/**
+	 * @return Sequence of the latest change, or 0 if the store was never changed.
+	 */
+	public long getLastSequence() {
+		return lastSequence;
+	}
+
+	/**
+	 * @return Number of stored Webmentions.
+	 */
+	public int size() {
+		return live.size();
+	}
+
+	/**
+	 * Compacts the segment now, instead of waiting until it exceeds its size.
+	 *
+	 * @throws IOException if I/O fails.
+	 */
+	public void compact() throws IOException {
+		synchronized (writeLock) {
+			ensureOpen();
+			log.roll();
+		}
+	}
+
+	/**
+	 * Forces all changes to disk.
+	 * Only needed if {@link Config#setSyncWrites(boolean)} is disabled.
+	 *
+	 * @throws IOException if I/O fails.
+	 */
+	public void sync() throws IOException {
+		log.sync();
+	}
+
+	@Override
+	public void close() throws IOException {
+		synchronized (writeLock) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			log.close();
+		}
+	}
+
+	private void ensureOpen() {
+		if (closed) {
+			throw new IllegalStateException("Store is closed.");
+		}
+	}
+
+	// Must hold writeLock.
+	private void applyPut(StoredWebmention stored) {
+		Webmention webmention = stored.webmention();
+		StoredWebmention current = live.get(webmention);
+		if (current != null && current.sequence() >= stored.sequence()) {
+			// Replayed from a segment left behind by an interrupted compaction.
+			return;
+		}
+		Target target = byTarget.computeIfAbsent(webmention.target(), ignored -> new Target());
+		// Add before removing the previous record, so that queries never miss the Webmention.
+		target.mentions.put(stored.sequence(), stored);
+		bySequence.put(stored.sequence(), stored);
+		StoredWebmention previous = live.put(webmention, stored);
+		if (previous != null) {
+			target.mentions.remove(previous.sequence());
+			bySequence.remove(previous.sequence());
+		}
+		// Updated last, so that a version is never paired with older results.
+		target.version = stored.sequence();
+	}
+
+	// Must hold writeLock.
+	private void applyDelete(long sequence, Webmention webmention) {
+		StoredWebmention previous = live.get(webmention);
+		// A replayed deletion must not remove a later record.
+		if (previous == null || previous.sequence() > sequence) {
+			return;
+		}
+		live.remove(webmention);
+		bySequence.remove(previous.sequence());
+		Target target = byTarget.get(webmention.target());
+		if (target != null) {
+			target.mentions.remove(previous.sequence());
+			target.version = sequence;
+			if (target.mentions.isEmpty()) {
+				byTarget.remove(webmention.target(), target);
+			}
+		}
+	}
+
+	private void syncIfConfigured(long count) throws IOException {
+		if (config.isSyncWrites()) {
+			log.sync(count);
+		}
+	}
+
+	// Must hold writeLock.
+	private void writeLive(SegmentLog.Writer writer) throws IOException {
+		// Keeps the sequence from going backwards if the latest changes were deletions.
+		writer.write(encodeSequence(lastSequence));
+		for (StoredWebmention stored : bySequence.values()) {
+			writer.write(encodePut(stored));
+		}
+	}
+
+	private void applyRecord(ByteBuffer payload, Path file) {
+		byte type = payload.get();
+		long sequence = payload.getLong();
+		lastSequence = Math.max(lastSequence, sequence);
+		try {
+			if (type == TYPE_PUT) {
+				Instant receivedAt = Instant.ofEpochMilli(payload.getLong());
+				applyPut(new StoredWebmention(sequence, readWebmention(payload), receivedAt));
+			} else if (type == TYPE_DELETE) {
+				applyDelete(sequence, readWebmention(payload));
+			} else if (type != TYPE_SEQUENCE) {
+				LOGGER.warn("Unknown record type {} in store segment '{}', skipping.", type, file);
+			}
+		} catch (URISyntaxException | IllegalArgumentException e) {
+			LOGGER.warn("Invalid Webmention in store segment '{}', skipping.", file, e);
+		}
+	}
+
+	private static byte[] encodePut(StoredWebmention stored) {
+		byte[] source = stored.webmention().source().toString().getBytes(StandardCharsets.UTF_8);
+		byte[] target = stored.webmention().target().toString().getBytes(StandardCharsets.UTF_8);
+		ByteBuffer payload = ByteBuffer.allocate(1 + Long.BYTES * 2 + Integer.BYTES + source.length + Integer.BYTES +
+												 target.length);
+		payload.put(TYPE_PUT).putLong(stored.sequence()).putLong(stored.receivedAt().toEpochMilli());
+		payload.putInt(source.length).put(source);
+		payload.putInt(target.length).put(target);
+		return payload.array();
+	}
+
+	private static byte[] encodeDelete(long sequence, Webmention webmention) {
+		byte[] source = webmention.source().toString().getBytes(StandardCharsets.UTF_8);
+		byte[] target = webmention.target().toString().getBytes(StandardCharsets.UTF_8);
+		ByteBuffer payload = ByteBuffer.allocate(1 + Long.BYTES + Integer.BYTES + source.length + Integer.BYTES +
+												 target.length);
+		payload.put(TYPE_DELETE).putLong(sequence);
+		payload.putInt(source.length).put(source);
+		payload.putInt(target.length).put(target);
+		return payload.array();
+	}
+
+	private static byte[] encodeSequence(long sequence) {
+		ByteBuffer payload = ByteBuffer.allocate(1 + Long.BYTES);
+		payload.put(TYPE_SEQUENCE).putLong(sequence);
+		return payload.array();
+	}
+
+	private static Webmention readWebmention(ByteBuffer payload) throws URISyntaxException {
+		return new Webmention(new URI(readString(payload)), new URI(readString(payload)));
+	}
+
+	private static String readString(ByteBuffer payload) {
+		byte[] bytes = new byte[payload.getInt()];
+		payload.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static final class Target {
+		final ConcurrentNavigableMap<Long, StoredWebmention> mentions = new ConcurrentSkipListMap<>();
+		volatile long version;
+	}
+
+	/**
+	 * Configuration POJO.
+	 */
+	public static class Config {
+		private long segmentBytes;
+		private boolean syncWrites;
+
+		/**
+		 * Creates a new configuration with default values.
+		 */
+		public Config() {
+			segmentBytes = 64L * 1024 * 1024;
+			syncWrites = true;
+		}
+
+		private Config(Config original) {
+			segmentBytes = original.segmentBytes;
+			syncWrites = original.syncWrites;
+		}
+
+		/**
+		 * Configures the size after which the segment is compacted.
+		 * Disk usage is bounded by this size or twice the size of the live records, whichever is larger.
+		 * Defaults to 64 MiB.
+		 */
+		public void setSegmentBytes(long segmentBytes) {
+			this.segmentBytes = segmentBytes;
+		}
+
+		/**
+		 * @see #setSegmentBytes(long)
+		 */
+		public long getSegmentBytes() {
+			return segmentBytes;
+		}
+
+		/**
+		 * Configures if changes are forced to disk before they are acknowledged.
+		 * If disabled, changes reach the operating system but may be lost if it crashes, unless
+		 * {@link WebmentionStore#sync()} is called. This is useful for bulk imports.
+		 * Defaults to {@code true}.
+		 */
+		public void setSyncWrites(boolean syncWrites) {
+			this.syncWrites = syncWrites;
+		}
+
+		/**
+		 * @see #setSyncWrites(boolean)
+		 */
+		public boolean isSyncWrites() {
+			return syncWrites;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj == null || getClass() != obj.getClass()) {
+				return false;
+			}
+			Config config = (Config) obj;
+			return segmentBytes == config.segmentBytes && syncWrites == config.syncWrites;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(segmentBytes, syncWrites);
+		}
+
+		@Override
+		public String toString() {
+			return "Config{" + "segmentBytes=" + segmentBytes + ", syncWrites=" + syncWrites + '}';
+		}
+	}
+}
@@ -0,0 +1,143 @@
+package dev.rilling.webmention4j.store;
+
+import dev.rilling.webmention4j.common.Webmention;
+import org.eclipse.jetty.server.NetworkConnector;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WebmentionExportServletIT {
+
+	private static final URI TARGET = URI.create("https://b.example.com/post");
+	private static final Webmention WEBMENTION = new Webmention(URI.create("https://a.example.com"), TARGET);
+
+	private static final HttpClient HTTP_CLIENT = HttpClient.newHttpClient();
+
+	@TempDir
+	static Path directory;
+
+	private static WebmentionStore store;
+	private static Server server;
+	private static URI servletUri;
+
+	@BeforeAll
+	static void setUp() throws Exception {
+		store = WebmentionStore.open(directory);
+
+		server = new Server(0);
+		ServletHandler servletHandler = new ServletHandler();
+		ServletHolder servletHolder = new ServletHolder(new WebmentionExportServlet(store));
+		servletHolder.setAsyncSupported(true);
+		servletHandler.addServletWithMapping(servletHolder, "/mentions");
+		server.setHandler(servletHandler);
+		server.start();
+
+		int port = ((NetworkConnector) server.getConnectors()[0]).getLocalPort();
+		servletUri = URI.create("http://localhost:%d/mentions".formatted(port));
+	}
+
+	@AfterAll
+	static void tearDown() throws Exception {
+		server.stop();
+		store.close();
+	}
+
+	@Test
+	@DisplayName("Streams Webmentions of target as NDJSON")
+	void streamsByTarget() throws Exception {
+		store.put(WEBMENTION, Instant.parse("2024-01-02T03:04:05Z"));
+		store.put(new Webmention(URI.create("https://c.example.com"), URI.create("https://d.example.com")));
+
+		HttpResponse<String> response = HTTP_CLIENT.send(HttpRequest.newBuilder(targetQuery(TARGET)).build(),
+			HttpResponse.BodyHandlers.ofString());
+
+		assertThat(response.statusCode()).isEqualTo(200);
+		assertThat(response.headers().firstValue("Content-Type")).hasValueSatisfying(contentType -> assertThat(
+			contentType).startsWith("application/x-ndjson"));
+		long sequence = store.get(WEBMENTION).orElseThrow().sequence();
+		assertThat(response.body()).isEqualTo(("{\"sequence\":%d,\"source\":\"https://a.example.com\"," +
+											   "\"target\":\"https://b.example.com/post\"," +
+											   "\"receivedAt\":\"2024-01-02T03:04:05Z\"}\n").formatted(sequence));
+
+		store.delete(WEBMENTION);
+	}
+
+	@Test
+	@DisplayName("Answers conditional request with 304 until target changes")
+	void answersConditionalRequest() throws Exception {
+		URI uri = targetQuery(URI.create("https://e.example.com"));
+		store.put(new Webmention(URI.create("https://f.example.com"), URI.create("https://e.example.com")));
+
+		HttpResponse<String> response = HTTP_CLIENT.send(HttpRequest.newBuilder(uri).build(),
+			HttpResponse.BodyHandlers.ofString());
+		String etag = response.headers().firstValue("ETag").orElseThrow();
+
+		HttpResponse<String> unchangedResponse = HTTP_CLIENT.send(HttpRequest.newBuilder(uri)
+			.header("If-None-Match", etag)
+			.build(), HttpResponse.BodyHandlers.ofString());
+		assertThat(unchangedResponse.statusCode()).isEqualTo(304);
+
+		store.put(new Webmention(URI.create("https://g.example.com"), URI.create("https://e.example.com")));
+		HttpResponse<String> changedResponse = HTTP_CLIENT.send(HttpRequest.newBuilder(uri)
+			.header("If-None-Match", etag)
+			.build(), HttpResponse.BodyHandlers.ofString());
+		assertThat(changedResponse.statusCode()).isEqualTo(200);
+		assertThat(changedResponse.body().lines()).hasSize(2);
+	}
+
+	@Test
+	@DisplayName("Streams large exports since cursor")
+	void streamsSince() throws Exception {
+		long cursor = store.getLastSequence();
+		for (int i = 0; i < 20_000; i++) {
+			store.put(new Webmention(URI.create("https://h.example.com/" + i), URI.create("https://i.example.com")));
+		}
+
+		HttpResponse<InputStream> response = HTTP_CLIENT.send(HttpRequest.newBuilder(URI.create(
+			servletUri + "?since=" + cursor)).build(), HttpResponse.BodyHandlers.ofInputStream());
+		assertThat(response.statusCode()).isEqualTo(200);
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.body(),
+			StandardCharsets.UTF_8))) {
+			List<String> lines = reader.lines().toList();
+			assertThat(lines).hasSize(20_000);
+			assertThat(lines.get(0)).contains("\"source\":\"https://h.example.com/0\"");
+		}
+
+		HttpResponse<String> limitedResponse = HTTP_CLIENT.send(HttpRequest.newBuilder(URI.create(
+			servletUri + "?since=" + cursor + "&limit=10")).build(), HttpResponse.BodyHandlers.ofString());
+		assertThat(limitedResponse.body().lines()).hasSize(10);
+	}
+
+	@Test
+	@DisplayName("Rejects request without query")
+	void rejectsMissingQuery() throws Exception {
+		HttpResponse<String> response = HTTP_CLIENT.send(HttpRequest.newBuilder(servletUri).build(),
+			HttpResponse.BodyHandlers.ofString());
+
+		assertThat(response.statusCode()).isEqualTo(400);
+	}
+
+	private static URI targetQuery(URI target) {
+		return URI.create(servletUri + "?target=" + URLEncoder.encode(target.toString(), StandardCharsets.UTF_8));
+	}
+}
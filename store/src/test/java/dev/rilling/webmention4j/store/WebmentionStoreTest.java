@@ -0,0 +1,181 @@
+package dev.rilling.webmention4j.store;
+
+import dev.rilling.webmention4j.common.Webmention;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WebmentionStoreTest {
+
+	private static final URI TARGET = URI.create("https://b.example.com");
+	private static final Webmention WEBMENTION_1 = new Webmention(URI.create("https://a.example.com"), TARGET);
+	private static final Webmention WEBMENTION_2 = new Webmention(URI.create("https://c.example.com"), TARGET);
+	private static final Webmention WEBMENTION_3 = new Webmention(URI.create("https://c.example.com"),
+		URI.create("https://d.example.com"));
+
+	@Test
+	@DisplayName("#findByTarget returns Webmentions of target")
+	void findByTarget(@TempDir Path directory) throws IOException {
+		try (WebmentionStore store = WebmentionStore.open(directory)) {
+			store.put(WEBMENTION_1);
+			store.put(WEBMENTION_2);
+			store.put(WEBMENTION_3);
+
+			assertThat(store.findByTarget(TARGET)).extracting(StoredWebmention::webmention)
+				.containsExactly(WEBMENTION_1, WEBMENTION_2);
+			assertThat(store.countByTarget(TARGET)).isEqualTo(2);
+			assertThat(store.findByTarget(URI.create("https://example.org"))).isEmpty();
+		}
+	}
+
+	@Test
+	@DisplayName("#put supersedes previous record")
+	void putSupersedes(@TempDir Path directory) throws IOException {
+		try (WebmentionStore store = WebmentionStore.open(directory)) {
+			store.put(WEBMENTION_1, Instant.ofEpochMilli(1000));
+			store.put(WEBMENTION_2);
+			StoredWebmention stored = store.put(WEBMENTION_1, Instant.ofEpochMilli(2000));
+
+			assertThat(store.findByTarget(TARGET)).extracting(StoredWebmention::webmention)
+				.containsExactly(WEBMENTION_2, WEBMENTION_1);
+			assertThat(store.get(WEBMENTION_1)).contains(stored);
+			assertThat(stored.receivedAt()).isEqualTo(Instant.ofEpochMilli(2000));
+			assertThat(store.size()).isEqualTo(2);
+		}
+	}
+
+	@Test
+	@DisplayName("#delete removes Webmention")
+	void delete(@TempDir Path directory) throws IOException {
+		try (WebmentionStore store = WebmentionStore.open(directory)) {
+			store.put(WEBMENTION_1);
+			store.put(WEBMENTION_2);
+			long version = store.getTargetVersion(TARGET);
+
+			assertThat(store.delete(WEBMENTION_1)).isTrue();
+			assertThat(store.delete(WEBMENTION_1)).isFalse();
+
+			assertThat(store.findByTarget(TARGET)).extracting(StoredWebmention::webmention)
+				.containsExactly(WEBMENTION_2);
+			assertThat(store.getTargetVersion(TARGET)).isGreaterThan(version);
+		}
+	}
+
+	@Test
+	@DisplayName("#findSince returns Webmentions after cursor")
+	void findSince(@TempDir Path directory) throws IOException {
+		try (WebmentionStore store = WebmentionStore.open(directory)) {
+			StoredWebmention stored1 = store.put(WEBMENTION_1);
+			store.put(WEBMENTION_2);
+			store.put(WEBMENTION_3);
+
+			assertThat(store.findSince(0, 2)).extracting(StoredWebmention::webmention)
+				.containsExactly(WEBMENTION_1, WEBMENTION_2);
+			assertThat(store.findSince(stored1.sequence(), 10)).extracting(StoredWebmention::webmention)
+				.containsExactly(WEBMENTION_2, WEBMENTION_3);
+			assertThat(store.findSince(store.getLastSequence(), 10)).isEmpty();
+		}
+	}
+
+	@Test
+	@DisplayName("#open loads stored Webmentions")
+	void loadsStored(@TempDir Path directory) throws IOException {
+		long lastSequence;
+		try (WebmentionStore store = WebmentionStore.open(directory)) {
+			store.put(WEBMENTION_1, Instant.ofEpochMilli(1000));
+			store.put(WEBMENTION_2);
+			store.delete(WEBMENTION_2);
+			lastSequence = store.getLastSequence();
+		}
+
+		try (WebmentionStore store = WebmentionStore.open(directory)) {
+			assertThat(store.findByTarget(TARGET)).containsExactly(new StoredWebmention(1,
+				WEBMENTION_1,
+				Instant.ofEpochMilli(1000)));
+			// Sequences must not be reused.
+			assertThat(store.getLastSequence()).isEqualTo(lastSequence);
+			assertThat(store.put(WEBMENTION_3).sequence()).isGreaterThan(lastSequence);
+		}
+	}
+
+	@Test
+	@DisplayName("#open ignores incomplete records")
+	void ignoresIncompleteRecords(@TempDir Path directory) throws IOException {
+		try (WebmentionStore store = WebmentionStore.open(directory)) {
+			store.put(WEBMENTION_1);
+		}
+		Path segment = listSegments(directory).get(0);
+		// Simulates a crash during a write.
+		Files.write(segment, new byte[]{0, 0, 0, 42, 1, 2}, StandardOpenOption.APPEND);
+
+		try (WebmentionStore store = WebmentionStore.open(directory)) {
+			assertThat(store.findByTarget(TARGET)).extracting(StoredWebmention::webmention)
+				.containsExactly(WEBMENTION_1);
+		}
+	}
+
+	@Test
+	@DisplayName("#open ignores records replayed from a duplicate segment")
+	void ignoresDuplicateSegment(@TempDir Path directory) throws IOException {
+		try (WebmentionStore store = WebmentionStore.open(directory)) {
+			store.put(WEBMENTION_1);
+			store.put(WEBMENTION_2);
+			store.delete(WEBMENTION_2);
+			store.put(WEBMENTION_2);
+		}
+		// Simulates a crash during compaction, which leaves both the old and the compacted segment.
+		Path segment = listSegments(directory).get(0);
+		Files.copy(segment, directory.resolve("store-%020d.log".formatted(1_000_000)));
+
+		for (int i = 0; i < 2; i++) {
+			try (WebmentionStore store = WebmentionStore.open(directory)) {
+				assertThat(store.get(WEBMENTION_1)).isPresent();
+				assertThat(store.get(WEBMENTION_2)).isPresent();
+				assertThat(store.findByTarget(TARGET)).extracting(StoredWebmention::webmention)
+					.containsExactly(WEBMENTION_1, WEBMENTION_2);
+				assertThat(store.streamSince(0)).hasSize(2);
+				assertThat(store.size()).isEqualTo(2);
+			}
+		}
+	}
+
+	@Test
+	@DisplayName("#put compacts segments")
+	void compactsSegments(@TempDir Path directory) throws IOException {
+		WebmentionStore.Config config = new WebmentionStore.Config();
+		config.setSegmentBytes(1024);
+		try (WebmentionStore store = WebmentionStore.open(directory, config)) {
+			store.put(WEBMENTION_1);
+			for (int i = 0; i < 100; i++) {
+				store.put(WEBMENTION_2);
+				store.delete(WEBMENTION_2);
+			}
+
+			List<Path> segments = listSegments(directory);
+			assertThat(segments).hasSize(1);
+			assertThat(Files.size(segments.get(0))).isLessThan(2048);
+		}
+
+		try (WebmentionStore store = WebmentionStore.open(directory, config)) {
+			assertThat(store.findByTarget(TARGET)).extracting(StoredWebmention::webmention)
+				.containsExactly(WEBMENTION_1);
+		}
+	}
+
+	private static List<Path> listSegments(Path directory) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.toList();
+		}
+	}
+}